@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.repo.search.impl.lucene.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.repo.search.MLAnalysisMode;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the analysis of a path with the {@link PathTokenFilter} (reused, as in the analyzer) and of a short
+ * multilingual text with the {@link MLTokenDuplicator} (created for each value, as in {@link MLAnalayser}).
+ * The text is analysed in several locales and ML analysis modes, so that each token is duplicated for a different
+ * number of locale prefixes.
+ * Run it with -prof gc to get the allocation rate, which is the main cost of both filters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalysisBenchmark
+{
+    private static final String PATH =
+            "/{http://www.alfresco.org/model/application/1.0}company_home"
+            + "/{http://www.alfresco.org/model/site/1.0}sites"
+            + "/{http://www.alfresco.org/model/content/1.0}swsdp"
+            + "/{http://www.alfresco.org/model/content/1.0}documentLibrary"
+            + "/{http://www.alfresco.org/model/content/1.0}Budget.xls";
+
+    private static final Map<String, String> TEXTS = Map.of(
+            "en_GB", "the quarterly budget report of the marketing department",
+            "fr_CA", "le rapport budg\u00e9taire trimestriel du d\u00e9partement de marketing",
+            "de_DE", "der viertelj\u00e4hrliche Budgetbericht der Marketingabteilung");
+
+    /**
+     * The text of the {@link MLTokenDuplicator} benchmark, in the given locale and ML analysis mode.
+     */
+    @State(Scope.Thread)
+    public static class MultilingualText
+    {
+        @Param({"en_GB", "fr_CA", "de_DE"})
+        public String locale;
+
+        @Param({"EXACT_LANGUAGE", "EXACT_COUNRTY", "EXACT_LANGUAGE_AND_ALL"})
+        public String mlAnalysisMode;
+
+        private Locale textLocale;
+        private MLAnalysisMode mode;
+        private String text;
+
+        @Setup
+        public void setUp()
+        {
+            textLocale = Locale.forLanguageTag(locale.replace('_', '-'));
+            mode = MLAnalysisMode.valueOf(mlAnalysisMode);
+            text = TEXTS.get(locale);
+        }
+    }
+
+    private PathTokenFilter pathTokenFilter;
+
+    @Setup
+    public void setUp()
+    {
+        pathTokenFilter = new PathTokenFilter(PathTokenFilter.PATH_SEPARATOR,
+                PathTokenFilter.SEPARATOR_TOKEN_TEXT, PathTokenFilter.NO_NS_TOKEN_TEXT,
+                PathTokenFilter.NAMESPACE_START_DELIMITER, PathTokenFilter.NAMESPACE_END_DELIMITER, true);
+    }
+
+    @Benchmark
+    public void pathTokenFilter(Blackhole blackhole) throws IOException
+    {
+        pathTokenFilter.setReader(new StringReader(PATH));
+        consume(pathTokenFilter, blackhole);
+    }
+
+    @Benchmark
+    public void mlTokenDuplicator(MultilingualText multilingualText, Blackhole blackhole) throws IOException
+    {
+        WhitespaceTokenizer source = new WhitespaceTokenizer();
+        StringReader reader = new StringReader(multilingualText.text);
+        source.setReader(reader);
+        consume(new MLTokenDuplicator(source, multilingualText.textLocale, reader, multilingualText.mode), blackhole);
+    }
+
+    private void consume(TokenStream tokenStream, Blackhole blackhole) throws IOException
+    {
+        CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+        tokenStream.reset();
+        while (tokenStream.incrementToken())
+        {
+            blackhole.consume(termAttribute.length());
+        }
+        tokenStream.end();
+        tokenStream.close();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr;
+
+import static java.util.stream.Collectors.toList;
+
+import static org.alfresco.solr.AlfrescoSolrUtils.getAcl;
+import static org.alfresco.solr.AlfrescoSolrUtils.getAclChangeSet;
+import static org.alfresco.solr.AlfrescoSolrUtils.getAclReaders;
+import static org.alfresco.solr.AlfrescoSolrUtils.getNode;
+import static org.alfresco.solr.AlfrescoSolrUtils.getNodeMetaData;
+import static org.alfresco.solr.AlfrescoSolrUtils.getTransaction;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.solr.client.Acl;
+import org.alfresco.solr.client.AclChangeSet;
+import org.alfresco.solr.client.AclReaders;
+import org.alfresco.solr.client.Node;
+import org.alfresco.solr.client.NodeMetaData;
+import org.alfresco.solr.client.SOLRAPIQueueClient;
+import org.alfresco.solr.client.StringPropertyValue;
+import org.alfresco.solr.client.Transaction;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.update.CommitUpdateCommand;
+
+/**
+ * The fixture shared by the benchmarks that need an index: an embedded core created from the production (rerank)
+ * template, with the same harness used by the integration tests. The Repository is replaced by the
+ * {@link SOLRAPIQueueClient} and the trackers are disabled, so the index only contains what the benchmarks add through
+ * the {@link SolrInformationServer}.
+ *
+ * ACL i is readable by "user(i % 100)", "GROUP_(i % 20)" and, for even ids, "GROUP_EVERYONE"; nodes are
+ * assigned to the ACLs round robin.
+ */
+public class EmbeddedAlfrescoCore extends AbstractAlfrescoSolrIT
+{
+    public static final String CORE_NAME = "benchmark";
+
+    private static SolrCore core;
+
+    public static synchronized SolrCore start() throws Exception
+    {
+        if (core == null)
+        {
+            initAlfrescoCore("schema.xml");
+            core = AlfrescoSolrUtils.createCoreUsingTemplate(
+                    h.getCoreContainer(), admin, CORE_NAME, AlfrescoCoreAdminHandler.DEFAULT_TEMPLATE, 1, 1);
+            admin.actionDisableIndexing(new ModifiableSolrParams());
+        }
+        return core;
+    }
+
+    public static synchronized void stop() throws Exception
+    {
+        if (core != null)
+        {
+            SOLRAPIQueueClient.NODE_META_DATA_MAP.clear();
+            core = null;
+            tearDown();
+        }
+    }
+
+    public static SolrInformationServer informationServer()
+    {
+        return (SolrInformationServer) admin.getInformationServers().get(CORE_NAME);
+    }
+
+    /**
+     * Indexes the given number of ACLs.
+     */
+    public static List<Acl> indexAcls(int count) throws Exception
+    {
+        AclChangeSet changeSet = getAclChangeSet(count);
+        List<Acl> acls = new ArrayList<>(count);
+        List<AclReaders> readers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            Acl acl = getAcl(changeSet);
+            List<String> authorities = new ArrayList<>(3);
+            authorities.add("user" + (i % 100));
+            authorities.add("GROUP_" + (i % 20));
+            if (i % 2 == 0)
+            {
+                authorities.add("GROUP_EVERYONE");
+            }
+            acls.add(acl);
+            readers.add(getAclReaders(changeSet, acl, authorities, List.of(), null));
+        }
+        informationServer().indexAcl(readers, true);
+        return acls;
+    }
+
+    /**
+     * Creates the given number of nodes (in a single transaction) and makes their metadata available through the
+     * {@link SOLRAPIQueueClient}. The nodes are not indexed.
+     */
+    public static List<Node> nodes(int count, List<Acl> acls)
+    {
+        Transaction txn = getTransaction(0, count);
+        List<Node> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            Acl acl = acls.get(i % acls.size());
+            Node node = getNode(txn, acl, Node.SolrApiNodeStatus.UPDATED);
+            NodeMetaData metadata = getNodeMetaData(node, txn, acl, "mike", new HashSet<>(), false);
+            metadata.getProperties().put(ContentModel.PROP_NAME, new StringPropertyValue("document " + i + ".txt"));
+            metadata.getProperties().put(ContentModel.PROP_TITLE, new StringPropertyValue("Quarterly report " + i));
+            SOLRAPIQueueClient.NODE_META_DATA_MAP.put(node.getId(), metadata);
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    public static List<NodeMetaData> metadata(List<Node> nodes)
+    {
+        return nodes.stream()
+                .map(Node::getId)
+                .map(SOLRAPIQueueClient.NODE_META_DATA_MAP::get)
+                .collect(toList());
+    }
+
+    /**
+     * Indexes the ACLs and the nodes used by the query benchmarks, then opens a new searcher.
+     */
+    public static void populate(int aclCount, int nodeCount) throws Exception
+    {
+        List<Acl> acls = indexAcls(aclCount);
+        int batchSize = 500;
+        for (int indexed = 0; indexed < nodeCount; indexed += batchSize)
+        {
+            informationServer().indexNodes(nodes(Math.min(batchSize, nodeCount - indexed), acls), true);
+        }
+        commit();
+    }
+
+    /**
+     * Commits and waits for the new searcher.
+     */
+    public static void commit() throws Exception
+    {
+        try (SolrQueryRequest request = new LocalSolrQueryRequest(core, new ModifiableSolrParams()))
+        {
+            core.getUpdateHandler().commit(new CommitUpdateCommand(request, false));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.solr.client.Acl;
+import org.alfresco.solr.client.Node;
+import org.alfresco.solr.client.NodeMetaData;
+import org.alfresco.solr.client.NodeMetaDataParameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the building of the node documents on a batch of nodes:
+ *
+ * <ul>
+ *     <li>populateFields: the documents alone, from the metadata (i.e. SolrInformationServer.populateFields and
+ *     populateProperties)</li>
+ *     <li>indexNodes: the whole {@link SolrInformationServer#indexNodes(List, boolean)}, that is metadata fetching
+ *     from the {@link org.alfresco.solr.client.SOLRAPIQueueClient}, document building and update processing</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class NodeDocumentBenchmark
+{
+    @Param({"100", "1000"})
+    public int nodes;
+
+    private SolrInformationServer informationServer;
+    private List<Node> batch;
+    private List<NodeMetaData> metadata;
+    private NodeMetaDataParameters parameters;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        EmbeddedAlfrescoCore.start();
+        informationServer = EmbeddedAlfrescoCore.informationServer();
+
+        List<Acl> acls = EmbeddedAlfrescoCore.indexAcls(10);
+        batch = EmbeddedAlfrescoCore.nodes(nodes, acls);
+        metadata = EmbeddedAlfrescoCore.metadata(batch);
+        parameters = new NodeMetaDataParameters();
+    }
+
+    @TearDown(Level.Iteration)
+    public void commit() throws Exception
+    {
+        // Keeps the transaction log and the RAM buffer bounded across iterations
+        EmbeddedAlfrescoCore.commit();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        EmbeddedAlfrescoCore.stop();
+    }
+
+    @Benchmark
+    public void populateFields(Blackhole blackhole)
+    {
+        for (NodeMetaData nodeMetaData : metadata)
+        {
+            blackhole.consume(informationServer.nodeDocument(nodeMetaData, parameters));
+        }
+    }
+
+    @Benchmark
+    public void indexNodes() throws Exception
+    {
+        informationServer.indexNodes(batch, true);
+    }
+}
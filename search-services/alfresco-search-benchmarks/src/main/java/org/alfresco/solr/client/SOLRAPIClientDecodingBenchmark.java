@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.client;
+
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.alfresco.repo.dictionary.NamespaceDAO;
+import org.alfresco.service.cmr.dictionary.DictionaryService;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the decoding of a GET_METADATA_URL response through a {@link JSONObject} with the streaming decoding.
+ *
+ * It doesn't need an index: it runs as the other benchmarks of this module (see README.md). The JMH GC profiler
+ * ({@code -prof gc}) gives the allocation rate of both paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SOLRAPIClientDecodingBenchmark
+{
+    private static final String CM = "{http://www.alfresco.org/model/content/1.0}";
+
+    @Param({"50", "2000"})
+    public int nodes;
+
+    private String payload;
+    private SOLRAPIClient client;
+    private JsonFactory jsonFactory;
+
+    @Setup
+    public void setUp()
+    {
+        // Unknown properties are decoded as strings by both paths
+        client = new SOLRAPIClient(null, mock(DictionaryService.class), mock(NamespaceDAO.class));
+        jsonFactory = new JsonFactory();
+        payload = nodesMetaDataResponse(nodes);
+    }
+
+    @Benchmark
+    public List<NodeMetaData> jsonObject()
+    {
+        JSONObject json = new JSONObject(new JSONTokener(reader()));
+        return client.nodesMetaDataFromJSON(json);
+    }
+
+    @Benchmark
+    public List<NodeMetaData> streaming() throws IOException
+    {
+        try (JsonParser parser = jsonFactory.createParser(reader()))
+        {
+            return client.readNodesMetaData(parser);
+        }
+    }
+
+    private LookAheadBufferedReader reader()
+    {
+        // Buffering is disabled as in production with the default logging level
+        return new LookAheadBufferedReader(new StringReader(payload), 250, false, false);
+    }
+
+    /**
+     * Builds a response similar to the ones returned by the Repository for documents with paths included.
+     */
+    static String nodesMetaDataResponse(int count)
+    {
+        StringBuilder json = new StringBuilder("{\"nodes\":[");
+        for (int i = 0; i < count; i++)
+        {
+            if (i > 0)
+            {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i)
+                .append(",\"tenantDomain\":\"\",\"aclId\":").append(i % 100)
+                .append(",\"txnId\":").append(i / 10)
+                .append(",\"nodeRef\":\"workspace://SpacesStore/node-").append(i).append('"')
+                .append(",\"type\":\"").append(CM).append("content\"")
+                .append(",\"aspects\":[\"").append(CM).append("auditable\",\"").append(CM).append("titled\"]")
+                .append(",\"paths\":[{\"path\":\"/").append(CM).append("company_home/").append(CM).append("folder-")
+                .append(i / 100).append("/").append(CM).append("node-").append(i)
+                .append("\",\"qname\":\"").append(CM).append("node-").append(i)
+                .append("\",\"apath\":\"/1/2/").append(i / 100).append("\"}]")
+                .append(",\"namePaths\":[{\"namePath\":[\"Company Home\",\"folder-").append(i / 100)
+                .append("\",\"node-").append(i).append("\"]}]")
+                .append(",\"ancestors\":[\"workspace://SpacesStore/root\",\"workspace://SpacesStore/folder-")
+                .append(i / 100).append("\"]")
+                .append(",\"properties\":{");
+            for (int p = 0; p < 20; p++)
+            {
+                if (p > 0)
+                {
+                    json.append(',');
+                }
+                json.append('"').append(CM).append("property").append(p).append("\":\"value of property ")
+                    .append(p).append(" for node ").append(i).append('"');
+            }
+            json.append("},\"parentAssocsCrc\":").append(i)
+                .append(",\"parentAssocs\":[\"workspace://SpacesStore/folder-").append(i / 100).append('|')
+                .append("workspace://SpacesStore/node-").append(i).append('|').append(CM).append("contains|")
+                .append(CM).append("node-").append(i).append("|true|-1\"]")
+                .append(",\"owner\":\"admin\"}");
+        }
+        return json.append("]}").toString();
+    }
+}
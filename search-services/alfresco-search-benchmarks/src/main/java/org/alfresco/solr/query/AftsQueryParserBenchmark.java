@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.solr.EmbeddedAlfrescoCore;
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.QParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the parsing of typical AFTS queries through the "afts" query parser, that is the FTS parsing and the
+ * building of the Lucene query in {@link Solr4QueryParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AftsQueryParserBenchmark
+{
+    @Param({
+            "TEXT:alfresco",
+            "cm:name:\"budget*\" AND TYPE:\"cm:content\"",
+            "(cm:title:report OR cm:description:report) AND cm:modified:[NOW-1YEAR TO NOW] AND NOT ASPECT:\"cm:workingcopy\"",
+            "PATH:\"/cm:projects//*\" AND =cm:creator:admin"})
+    public String query;
+
+    private SolrCore core;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        core = EmbeddedAlfrescoCore.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        EmbeddedAlfrescoCore.stop();
+    }
+
+    @Benchmark
+    public Query parse() throws Exception
+    {
+        try (SolrQueryRequest request = new LocalSolrQueryRequest(core, new ModifiableSolrParams()))
+        {
+            return QParser.getParser(query, "afts", request).getQuery();
+        }
+    }
+}
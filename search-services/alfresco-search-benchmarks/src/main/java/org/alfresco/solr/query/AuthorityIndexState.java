@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import org.alfresco.solr.EmbeddedAlfrescoCore;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.RefCounted;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The index shared by the authority benchmarks: {@link #ACLS} ACLs (see {@link EmbeddedAlfrescoCore} for their
+ * readers) and a parameterized number of nodes, plus the authorities of the user running the queries.
+ */
+@State(Scope.Benchmark)
+public class AuthorityIndexState
+{
+    static final int ACLS = 1000;
+
+    @Param({"10000", "100000"})
+    public int nodes;
+
+    /** The number of authorities of the user: "user1", then "GROUP_0", "GROUP_1" and so on. */
+    @Param({"1", "5", "20"})
+    public int authorities;
+
+    String[] auths;
+    String authoritiesString;
+    SolrIndexSearcher searcher;
+    private RefCounted<SolrIndexSearcher> searcherReference;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        EmbeddedAlfrescoCore.start();
+        EmbeddedAlfrescoCore.populate(ACLS, nodes);
+
+        auths = new String[authorities];
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < authorities; i++)
+        {
+            auths[i] = i == 0 ? "user1" : "GROUP_" + (i - 1);
+            builder.append('|').append(auths[i]);
+        }
+        authoritiesString = builder.toString();
+
+        searcherReference = EmbeddedAlfrescoCore.start().getSearcher();
+        searcher = searcherReference.get();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        searcherReference.decref();
+        EmbeddedAlfrescoCore.stop();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.solr.cache.CacheConstants;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.solr.search.SolrCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a {@link SolrReaderSetQuery} (i.e. the {@link SolrReaderSetScorer2}) counting the readable documents:
+ *
+ * <ul>
+ *     <li>cold: the reader set of the user is rebuilt for each query, as after a commit or for a new user</li>
+ *     <li>warm: the reader set is found in the alfrescoReaderCache, as for the following queries of the user</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReaderSetScorerBenchmark
+{
+    @Benchmark
+    public int cold(AuthorityIndexState index) throws Exception
+    {
+        SolrCache<?, ?> readerCache = index.searcher.getCache(CacheConstants.ALFRESCO_READER_CACHE);
+        readerCache.clear();
+        return count(index);
+    }
+
+    @Benchmark
+    public int warm(AuthorityIndexState index) throws Exception
+    {
+        return count(index);
+    }
+
+    private int count(AuthorityIndexState index) throws Exception
+    {
+        TotalHitCountCollector collector = new TotalHitCountCollector();
+        index.searcher.search(new SolrReaderSetQuery(index.authoritiesString), collector);
+        return collector.getTotalHits();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.transformer;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.solr.EmbeddedAlfrescoCore;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestHandler;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.QueryResponseWriter;
+import org.apache.solr.response.SolrQueryResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the rendering of search responses whose documents go through the {@link AlfrescoFieldMapperTransformer}:
+ *
+ * <ul>
+ *     <li>search: the request alone (field list rewriting, query and collection of the results)</li>
+ *     <li>searchAndWrite: the same request followed by the writing of the JSON response, where the stored fields of
+ *     the returned documents are loaded and mapped back to their Alfresco names</li>
+ * </ul>
+ *
+ * The difference between the two is the cost of writing the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FieldMapperTransformerBenchmark
+{
+    @Param({"100", "1000"})
+    public int rows;
+
+    @Param({"*,[fmap]", "id,DBID,cm_name,cm_title,[fmap]"})
+    public String fl;
+
+    private SolrCore core;
+    private SolrRequestHandler handler;
+    private QueryResponseWriter writer;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        core = EmbeddedAlfrescoCore.start();
+        EmbeddedAlfrescoCore.populate(100, 1000);
+        handler = core.getRequestHandler("/native");
+        writer = core.getQueryResponseWriter("json");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        EmbeddedAlfrescoCore.stop();
+    }
+
+    @Benchmark
+    public SolrQueryResponse search()
+    {
+        try (SolrQueryRequest request = request())
+        {
+            return execute(request);
+        }
+        finally
+        {
+            SolrRequestInfo.clearRequestInfo();
+        }
+    }
+
+    @Benchmark
+    public SolrQueryResponse searchAndWrite() throws Exception
+    {
+        try (SolrQueryRequest request = request())
+        {
+            SolrQueryResponse response = execute(request);
+            writer.write(Writer.nullWriter(), request, response);
+            return response;
+        }
+        finally
+        {
+            SolrRequestInfo.clearRequestInfo();
+        }
+    }
+
+    private SolrQueryRequest request()
+    {
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set("q", "*:*");
+        params.set("fl", fl);
+        params.set("rows", rows);
+        params.set("sort", "id asc");
+        params.set("wt", "json");
+        return new LocalSolrQueryRequest(core, params);
+    }
+
+    private SolrQueryResponse execute(SolrQueryRequest request)
+    {
+        SolrQueryResponse response = new SolrQueryResponse();
+        SolrRequestInfo.setRequestInfo(new SolrRequestInfo(request, response));
+        core.execute(handler, request, response);
+        return response;
+    }
+}
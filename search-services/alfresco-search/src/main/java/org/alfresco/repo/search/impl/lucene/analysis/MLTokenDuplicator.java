@@ -49,6 +49,8 @@ import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
  * language is specified {fr_CA}Token - if a language and country is specified {fr_CA_Varient}Token - for all three
  * {fr__Varient}Token - for a language varient with no country
  * 
+ * The duplicates of a source token are written straight into the term attribute, one prefix at a time.
+ * 
  * @author andyh
  */
 public class MLTokenDuplicator extends TokenStream
@@ -59,9 +61,10 @@ public class MLTokenDuplicator extends TokenStream
 
     Locale locale;
 
-    Iterator<PackedTokenAttributeImpl> it;
-
     HashSet<String> prefixes;
+
+    /** The prefixes, in the order their duplicates are emitted */
+    private final char[][] prefixChars;
     
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
 
@@ -73,6 +76,22 @@ public class MLTokenDuplicator extends TokenStream
 
     private boolean done = false;
 
+    private CharTermAttribute sourceTermAtt;
+    private OffsetAttribute sourceOffsetAtt;
+    private TypeAttribute sourceTypeAtt;
+    private PositionIncrementAttribute sourcePosIncAtt;
+
+    /** The current source token */
+    private char[] term = new char[64];
+    private int termLength;
+    private int startOffset;
+    private int endOffset;
+    private String type;
+    private int positionIncrement;
+
+    /** The prefix of the next duplicate of the current source token */
+    private int prefix;
+
     public MLTokenDuplicator(TokenStream source, Locale locale, Reader reader, MLAnalysisMode mlAnalysisMode)
     {
         this.source = source;
@@ -94,6 +113,8 @@ public class MLTokenDuplicator extends TokenStream
                 prefixes.add(builder.toString());
             }
         }
+        prefixChars = toChars(prefixes);
+        prefix = prefixChars.length;
         if(s_logger.isDebugEnabled())
         {
             s_logger.debug("Locale "+ locale +" using "+mlAnalysisMode+" is "+prefixes);
@@ -126,6 +147,8 @@ public class MLTokenDuplicator extends TokenStream
                 prefixes.add(builder.toString());
             }
         }
+        prefixChars = toChars(prefixes);
+        prefix = prefixChars.length;
         if(s_logger.isDebugEnabled())
         {
             s_logger.debug("Locale "+ locale +" using "+mlAnalysisMode+" is "+prefixes);
@@ -150,6 +173,8 @@ public class MLTokenDuplicator extends TokenStream
     {
         source.reset();
         super.reset();
+        done = false;
+        prefix = prefixChars.length;
     }
 
     /* (non-Javadoc)
@@ -162,68 +187,50 @@ public class MLTokenDuplicator extends TokenStream
         super.end();
     }
 
-    private PackedTokenAttributeImpl next() throws IOException
+    private static char[][] toChars(Collection<String> prefixes)
     {
-    	PackedTokenAttributeImpl t = null;
-        if (it == null)
-        {
-            it = buildIterator();
-        }
-        if (it == null)
-        {
-            return null;
-        }
-        if (it.hasNext())
-        {
-            t = it.next();
-            
-            return t;
-        }
-        else
+        char[][] chars = new char[prefixes.size()][];
+        int i = 0;
+        for (String prefix : prefixes)
         {
-            it = null;
-            t = this.next();
-            return t;
+            chars[i++] = prefix.toCharArray();
         }
+        return chars;
     }
 
-    private Iterator<PackedTokenAttributeImpl> buildIterator() throws IOException
+    /**
+     * Copies the next token of the source.
+     *
+     * @return false at the end of the source
+     */
+    private boolean nextSourceToken() throws IOException
     {
-        // TODO: use incrementToken() somehow?
-        if(!done && source.incrementToken())
+        if (done || !source.incrementToken())
         {
-            CharTermAttribute cta = source.getAttribute(CharTermAttribute.class);
-            OffsetAttribute offsetAtt = source.getAttribute(OffsetAttribute.class);
-            TypeAttribute typeAtt = null;
-            if(source.hasAttribute(TypeAttribute.class))
-            {
-                typeAtt = source.getAttribute(TypeAttribute.class);
-            }
-            PositionIncrementAttribute posIncAtt = null;
-            if(source.hasAttribute(PositionIncrementAttribute.class))
-            {
-                posIncAtt = source.getAttribute(PositionIncrementAttribute.class);
-            }
-            PackedTokenAttributeImpl token = new PackedTokenAttributeImpl();
-            token.setEmpty().append(new String(cta.buffer()), 0, cta.length());
-            token.setOffset(offsetAtt.startOffset(), offsetAtt.endOffset());
-            if(typeAtt != null)
-            {
-                token.setType(typeAtt.type());
-            }
-            if(posIncAtt != null)
-            {
-                token.setPositionIncrement(posIncAtt.getPositionIncrement());
-            }
-            return buildIterator(token);
+            done = true;
+            return false;
         }
-        else
+
+        if (sourceTermAtt == null)
         {
-            done = true;
-            return buildIterator(null);
+            sourceTermAtt = source.getAttribute(CharTermAttribute.class);
+            sourceOffsetAtt = source.getAttribute(OffsetAttribute.class);
+            sourceTypeAtt = source.hasAttribute(TypeAttribute.class) ? source.getAttribute(TypeAttribute.class) : null;
+            sourcePosIncAtt = source.hasAttribute(PositionIncrementAttribute.class) ? source.getAttribute(PositionIncrementAttribute.class) : null;
         }
-        
 
+        termLength = sourceTermAtt.length();
+        if (termLength > term.length)
+        {
+            term = new char[Math.max(termLength, term.length * 2)];
+        }
+        System.arraycopy(sourceTermAtt.buffer(), 0, term, 0, termLength);
+        startOffset = sourceOffsetAtt.startOffset();
+        endOffset = sourceOffsetAtt.endOffset();
+        type = sourceTypeAtt != null ? sourceTypeAtt.type() : TypeAttribute.DEFAULT_TYPE;
+        positionIncrement = sourcePosIncAtt != null ? sourcePosIncAtt.getPositionIncrement() : 1;
+        prefix = 0;
+        return true;
     }
 
 
@@ -260,19 +267,25 @@ public class MLTokenDuplicator extends TokenStream
     public final boolean incrementToken() throws IOException
     {
         clearAttributes();
-        
-        PackedTokenAttributeImpl next = next();
-        if (next == null)
+
+        while (prefix == prefixChars.length)
         {
-            return false;
+            if (!nextSourceToken())
+            {
+                return false;
+            }
         }
-        
-        termAtt.copyBuffer(next.buffer(), 0, next.length());
-        offsetAtt.setOffset(next.startOffset(), next.endOffset());
-        typeAtt.setType(next.type());
-        posIncAtt.setPositionIncrement(next.getPositionIncrement());
+
+        char[] prefixText = prefixChars[prefix];
+        char[] buffer = termAtt.resizeBuffer(prefixText.length + termLength);
+        System.arraycopy(prefixText, 0, buffer, 0, prefixText.length);
+        System.arraycopy(term, 0, buffer, prefixText.length, termLength);
+        termAtt.setLength(prefixText.length + termLength);
+        offsetAtt.setOffset(startOffset, endOffset);
+        typeAtt.setType(type);
+        posIncAtt.setPositionIncrement(prefix == 0 ? positionIncrement : 0);
+        prefix++;
         return true;
-        
     }
 
     // TODO: temporary replacement for Token.termText()
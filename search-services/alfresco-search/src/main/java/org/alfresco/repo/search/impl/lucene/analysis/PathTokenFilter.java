@@ -27,21 +27,23 @@
 package org.alfresco.repo.search.impl.lucene.analysis;
 
 import java.io.IOException;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
-import org.apache.lucene.analysis.tokenattributes.PackedTokenAttributeImpl;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 
 /**
- * @author andyh TODO To change the template for this generated type comment go to Window - Preferences - Java - Code
- *         Style - Code Templates
+ * Splits paths into their elements. Each path (paths are separated by the path separator) is emitted as: the number
+ * of its elements, the namespace (if included) and the local name of each element, and a separator token.
+ *
+ * The number of elements comes first, so the elements of one path are read before emitting it: their text is kept
+ * in a reused buffer and the tokens are written straight into the term attribute, without intermediate tokens.
+ *
+ * @author andyh
  */
 public class PathTokenFilter extends Tokenizer
 {
@@ -67,6 +69,28 @@ public class PathTokenFilter extends Tokenizer
 
     public final static String TOKEN_TYPE_PATH_ELEMENT_NAMESPACE_PREFIX = "PATH_ELEMENT_NAMESPACE_PREFIX";
 
+    private static final int READ_PATH = 0;
+    private static final int NAMESPACE = 1;
+    private static final int NAME = 2;
+    private static final int SEPARATOR = 3;
+
+    /**
+     * A path element: the ranges of its namespace and name in the path buffer, with their offsets.
+     */
+    private static class PathElement
+    {
+        /** -1 for no namespace */
+        int namespaceFrom;
+        int namespaceTo;
+        int namespaceStartOffset;
+        int namespaceEndOffset;
+        String namespaceType;
+        int nameFrom;
+        int nameTo;
+        int nameStartOffset;
+        int nameEndOffset;
+    }
+
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
 
     private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
@@ -91,13 +115,31 @@ public class PathTokenFilter extends Tokenizer
 
     char nsPrefixDelimiter = ':';
 
-    LinkedList<PackedTokenAttributeImpl> tokens = new LinkedList<PackedTokenAttributeImpl>();
-
-    Iterator<PackedTokenAttributeImpl> it = null;
-
     private boolean includeNamespace;
 
     private boolean endOfStream = false;
+
+    private final char[] readBuffer = new char[1024];
+    private int readBufferPosition;
+    private int readBufferLength;
+    int readerPosition = 0;
+
+    /** The text of the elements of the current path */
+    private char[] pathText = new char[256];
+    private int pathTextLength;
+
+    /** The elements of the current path: instances are reused from one path to the next */
+    private final List<PathElement> elements = new ArrayList<>();
+    private int elementCount;
+    private int pathStartOffset;
+    private int pathEndOffset;
+    private boolean lastPath;
+
+    private int qNameStartOffset;
+    private int qNameEndOffset;
+
+    private int state = READ_PATH;
+    private int element;
     
     public PathTokenFilter(char pathSeparator, String separatorTokenText, String noNsTokenText,
             char nsStartDelimiter, char nsEndDelimiter, boolean includeNameSpace)
@@ -114,197 +156,95 @@ public class PathTokenFilter extends Tokenizer
 
     }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see org.apache.lucene.analysis.TokenStream#next()
-     */
-
-    public PackedTokenAttributeImpl next() throws IOException
+    @Override
+    public final boolean incrementToken() throws IOException
     {
-    	PackedTokenAttributeImpl nextToken;
-        if (it == null)
-        {
-            buildTokenListAndIterator();
-        }
-        if (it.hasNext())
-        {
-            nextToken = it.next();
-        }
-        else
+        clearAttributes();
+
+        switch (state)
         {
-            nextToken = null;
+            case READ_PATH:
+                if (lastPath)
+                {
+                    return false;
+                }
+                readPath();
+                emitElementCount();
+                element = 0;
+                state = nextElementState();
+                return true;
+            case NAMESPACE:
+                emitNamespace(elements.get(element));
+                state = NAME;
+                return true;
+            case NAME:
+                emitName(elements.get(element));
+                element++;
+                state = nextElementState();
+                return true;
+            case SEPARATOR:
+                emit(separatorTokenText, TOKEN_TYPE_PATH_SEP, pathStartOffset, pathEndOffset);
+                state = READ_PATH;
+                return true;
+            default:
+                return false;
         }
-        return nextToken;
     }
 
-    // TODO: temporary replacement for Token.termText()
-    private String termText(PackedTokenAttributeImpl token)
+    private int nextElementState()
     {
-        return new String(token.buffer(), 0, token.length());
+        if (element < elementCount)
+        {
+            return includeNamespace ? NAMESPACE : NAME;
+        }
+        return SEPARATOR;
     }
-    
-    private void buildTokenListAndIterator() throws IOException
+
+    /**
+     * Reads the elements of the next path, up to the path separator or to the end of the input. Empty elements
+     * (e.g. // or /;) are skipped. The last path, with no separator, always ends the stream and has no offsets.
+     */
+    private void readPath() throws IOException
     {
-        NumberFormat nf = new DecimalFormat(INTEGER_FORMAT);
-
-        // Could optimise to read each path ata time - not just all paths
-        int insertCountAt = 0;
-        int lengthCounter = 0;
-        PackedTokenAttributeImpl t;
-        PackedTokenAttributeImpl pathSplitToken = null;
-        PackedTokenAttributeImpl nameToken = null;
-        PackedTokenAttributeImpl countToken = null;
-        PackedTokenAttributeImpl namespaceToken = null;
-        while ((t = nextToken()) != null)
+        elementCount = 0;
+        pathTextLength = 0;
+        while (!endOfStream)
         {
-            String text = termText(t);
-
-            if (text.length() == 0)
-            {
-                continue; // Skip if we find // or /; or ;; etc
-            }
-
-            if (text.charAt(text.length() - 1) == pathSeparator)
-            {
-                text = text.substring(0, text.length() - 1);
-                pathSplitToken = new PackedTokenAttributeImpl();
-                pathSplitToken.setEmpty().append(separatorTokenText);
-                pathSplitToken.setOffset(t.startOffset(), t.endOffset());
-                pathSplitToken.setType( TOKEN_TYPE_PATH_SEP);
-                pathSplitToken.setPositionIncrement(1);
-
-            }
-
-            int split = -1;
-            boolean isPrefix = false;
-
-            if ((text.length() > 0) && (text.charAt(0) == nsStartDelimiter))
-            {
-                split = text.indexOf(nsEndDelimiter);
-            }
-
-            if (split == -1)
-            {
-                split = text.indexOf(nsPrefixDelimiter);
-                isPrefix = true;
-            }
-
-            if (split == -1)
-            {
-                namespaceToken = new PackedTokenAttributeImpl();
-                namespaceToken.setEmpty().append(noNsTokenText);
-                namespaceToken.setOffset(t.startOffset(), t.startOffset());
-                namespaceToken.setType(TOKEN_TYPE_PATH_ELEMENT_NAMESPACE);
-                nameToken = new PackedTokenAttributeImpl();
-                nameToken.setEmpty().append(text);
-                nameToken.setOffset(t.startOffset(), t.endOffset());
-                
-                nameToken.setType(TOKEN_TYPE_PATH_ELEMENT_NAME);
-            }
-            else
-            {
-                if (isPrefix)
-                {
-                    namespaceToken = new PackedTokenAttributeImpl();
-                    namespaceToken.setEmpty().append(text.substring(0, split));
-                    namespaceToken.setOffset(t.startOffset(), t.startOffset() + split);
-                    namespaceToken.setType(TOKEN_TYPE_PATH_ELEMENT_NAMESPACE_PREFIX);
-                    nameToken = new PackedTokenAttributeImpl();
-                    nameToken.setEmpty().append(text.substring(split + 1));
-                    nameToken.setOffset(t.startOffset() + split + 1, t.endOffset());
-                    nameToken.setType(TOKEN_TYPE_PATH_ELEMENT_NAME);
-                }
-                else
-                {
-                    namespaceToken = new PackedTokenAttributeImpl();
-                    namespaceToken.setEmpty().append(text.substring(nsStartDelimiterLength, (split + nsEndDelimiterLength - 1)));
-                    namespaceToken.setOffset(t.startOffset(), t.startOffset() + split);
-                    namespaceToken.setType(TOKEN_TYPE_PATH_ELEMENT_NAMESPACE);
-                    nameToken = new PackedTokenAttributeImpl();
-                    nameToken.setEmpty().append(text.substring(split + nsEndDelimiterLength));
-                    nameToken.setOffset(t.startOffset() + split + nsEndDelimiterLength, t.endOffset());
-                    nameToken.setType(TOKEN_TYPE_PATH_ELEMENT_NAME);
-                }
-            }
-
-            namespaceToken.setPositionIncrement(1);
-            nameToken.setPositionIncrement(1);
-
-            if (includeNamespace)
+            int from = pathTextLength;
+            readQName();
+            int to = pathTextLength;
+            if (to == from)
             {
-                if (termText(namespaceToken).equals(""))
-                {
-                    namespaceToken = new PackedTokenAttributeImpl();
-                    namespaceToken.setEmpty().append(noNsTokenText);
-                    namespaceToken.setOffset(t.startOffset(), t.startOffset());
-                    namespaceToken.setType(TOKEN_TYPE_PATH_ELEMENT_NAMESPACE);
-                    namespaceToken.setPositionIncrement(1);
-                }
-
-                tokens.add(namespaceToken);
-
+                continue;
             }
-            tokens.add(nameToken);
-
-            lengthCounter++;
 
-            if (pathSplitToken != null)
+            if (pathText[to - 1] == pathSeparator)
             {
-
-                String countString = nf.format(lengthCounter);
-                countToken = new PackedTokenAttributeImpl();
-                countToken.setEmpty().append(countString);
-                countToken.setOffset(t.startOffset(), t.endOffset());
-                countToken.setType(TOKEN_TYPE_PATH_SEP);
-                countToken.setPositionIncrement(1);
-
-                tokens.add(insertCountAt, countToken);
-                tokens.add(pathSplitToken);
-
-                lengthCounter = 0;
-                insertCountAt = tokens.size();
-
-                pathSplitToken = null;
+                addElement(from, to - 1);
+                pathStartOffset = qNameStartOffset;
+                pathEndOffset = qNameEndOffset;
+                return;
             }
+            addElement(from, to);
         }
 
-        String countString = nf.format(lengthCounter);
-        countToken = new PackedTokenAttributeImpl();
-        countToken.setEmpty().append(countString);
-        countToken.setOffset(0, 0); 
-        countToken.setType(TOKEN_TYPE_PATH_SEP);
-        countToken.setPositionIncrement(1);
-
-        tokens.add(insertCountAt, countToken);
-
-        if ((tokens.size() == 0) || !(termText(tokens.get(tokens.size() - 1)).equals(TOKEN_TYPE_PATH_SEP)))
-        {
-            pathSplitToken = new PackedTokenAttributeImpl();
-            pathSplitToken.setEmpty().append(separatorTokenText);
-            pathSplitToken.setOffset(0, 0);
-            pathSplitToken.setType(TOKEN_TYPE_PATH_SEP);
-            pathSplitToken.setPositionIncrement(1);
-            tokens.add(pathSplitToken);
-        }
-
-        it = tokens.iterator();
+        lastPath = true;
+        pathStartOffset = 0;
+        pathEndOffset = 0;
     }
 
-    int readerPosition = 0;
-
-    private PackedTokenAttributeImpl nextToken() throws IOException
+    /**
+     * Appends the next QName of the input to the path text: QNames are separated by '/' and the last QName of a
+     * path keeps its trailing ';'. Namespaces between the delimiters are not split.
+     */
+    private void readQName() throws IOException
     {
-        if (endOfStream)
-        {
-            return null;
-        }
-        StringBuilder buffer = new StringBuilder(64);
         boolean inNameSpace = false;
+        int from = pathTextLength;
         int start = readerPosition;
         int current;
         char c;
-        while ((current = input.read()) != -1)
+        while ((current = read()) != -1)
         {
             c = (char) current;
             readerPosition++;
@@ -318,23 +258,19 @@ public class PathTokenFilter extends Tokenizer
             }
             else if (!inNameSpace && (c == '/'))
             {
-            	PackedTokenAttributeImpl qNameToken =  new PackedTokenAttributeImpl();
-            	qNameToken.setEmpty().append(buffer.toString());
-            	qNameToken.setOffset(start, readerPosition - 1);
-            	qNameToken.setType("QNAME");
-                return qNameToken;
+                qNameStartOffset = start;
+                qNameEndOffset = readerPosition - 1;
+                return;
             }
             else if (!inNameSpace && (c == ';'))
             {
-                buffer.append(c);
-                PackedTokenAttributeImpl lastQNameToken = new PackedTokenAttributeImpl();
-                lastQNameToken.setEmpty().append(buffer.toString());
-                lastQNameToken.setOffset(start, readerPosition);
-                lastQNameToken.setType("LASTQNAME");
-                return lastQNameToken;
+                append(c);
+                qNameStartOffset = start;
+                qNameEndOffset = readerPosition;
+                return;
             }
 
-            buffer.append(c);
+            append(c);
         }
         int end = readerPosition - 1;
         // Stop the final token being returned with an end before the start.
@@ -345,45 +281,184 @@ public class PathTokenFilter extends Tokenizer
         endOfStream = true;
         if (!inNameSpace)
         {
-        	PackedTokenAttributeImpl qNameToken = new PackedTokenAttributeImpl();
-        	qNameToken.setEmpty().append(buffer.toString());
-        	qNameToken.setOffset(start, end);
-        	qNameToken.setType("QNAME");
-            return qNameToken;
+            qNameStartOffset = start;
+            qNameEndOffset = end;
+        }
+        else
+        {
+            throw new IllegalStateException("QName terminated incorrectly: " + new String(pathText, from, pathTextLength - from));
+        }
+    }
+
+    private void addElement(int from, int to)
+    {
+        if (elementCount == elements.size())
+        {
+            elements.add(new PathElement());
+        }
+        PathElement pathElement = elements.get(elementCount++);
+        int start = qNameStartOffset;
+        int end = qNameEndOffset;
+
+        int split = -1;
+        boolean isPrefix = false;
+
+        if ((to > from) && (pathText[from] == nsStartDelimiter))
+        {
+            split = indexOf(nsEndDelimiter, from, to);
+        }
+
+        if (split == -1)
+        {
+            split = indexOf(nsPrefixDelimiter, from, to);
+            isPrefix = true;
+        }
+
+        if (split == -1)
+        {
+            setNoNamespace(pathElement, start);
+            setName(pathElement, from, to, start, end);
+        }
+        else if (isPrefix)
+        {
+            pathElement.namespaceFrom = from;
+            pathElement.namespaceTo = from + split;
+            pathElement.namespaceStartOffset = start;
+            pathElement.namespaceEndOffset = start + split;
+            pathElement.namespaceType = TOKEN_TYPE_PATH_ELEMENT_NAMESPACE_PREFIX;
+            setName(pathElement, from + split + 1, to, start + split + 1, end);
         }
         else
         {
-            throw new IllegalStateException("QName terminated incorrectly: " + buffer.toString());
+            pathElement.namespaceFrom = from + nsStartDelimiterLength;
+            pathElement.namespaceTo = from + split + nsEndDelimiterLength - 1;
+            pathElement.namespaceStartOffset = start;
+            pathElement.namespaceEndOffset = start + split;
+            pathElement.namespaceType = TOKEN_TYPE_PATH_ELEMENT_NAMESPACE;
+            setName(pathElement, from + split + nsEndDelimiterLength, to, start + split + nsEndDelimiterLength, end);
         }
 
+        if (includeNamespace && pathElement.namespaceFrom != -1 && pathElement.namespaceFrom == pathElement.namespaceTo)
+        {
+            setNoNamespace(pathElement, start);
+        }
     }
 
-    @Override
-    public final boolean incrementToken() throws IOException
+    private void setNoNamespace(PathElement pathElement, int start)
     {
-        clearAttributes();
-        
-        PackedTokenAttributeImpl next = next();
-        if (next == null)
+        pathElement.namespaceFrom = -1;
+        pathElement.namespaceTo = -1;
+        pathElement.namespaceStartOffset = start;
+        pathElement.namespaceEndOffset = start;
+        pathElement.namespaceType = TOKEN_TYPE_PATH_ELEMENT_NAMESPACE;
+    }
+
+    private void setName(PathElement pathElement, int from, int to, int start, int end)
+    {
+        pathElement.nameFrom = from;
+        pathElement.nameTo = to;
+        pathElement.nameStartOffset = start;
+        pathElement.nameEndOffset = end;
+    }
+
+    /**
+     * @return the position of the character relative to from, or -1
+     */
+    private int indexOf(char c, int from, int to)
+    {
+        for (int i = from; i < to; i++)
         {
-            return false;
+            if (pathText[i] == c)
+            {
+                return i - from;
+            }
+        }
+        return -1;
+    }
+
+    private void emitElementCount()
+    {
+        // The count is formatted as INTEGER_FORMAT
+        char[] buffer = termAtt.resizeBuffer(INTEGER_FORMAT.length());
+        int count = elementCount;
+        for (int i = INTEGER_FORMAT.length() - 1; i >= 0; i--)
+        {
+            buffer[i] = (char) ('0' + (count % 10));
+            count /= 10;
+        }
+        termAtt.setLength(INTEGER_FORMAT.length());
+        setAttributes(TOKEN_TYPE_PATH_SEP, pathStartOffset, pathEndOffset);
+    }
+
+    private void emitNamespace(PathElement pathElement)
+    {
+        if (pathElement.namespaceFrom == -1)
+        {
+            emit(noNsTokenText, pathElement.namespaceType, pathElement.namespaceStartOffset, pathElement.namespaceEndOffset);
+        }
+        else
+        {
+            termAtt.copyBuffer(pathText, pathElement.namespaceFrom, pathElement.namespaceTo - pathElement.namespaceFrom);
+            setAttributes(pathElement.namespaceType, pathElement.namespaceStartOffset, pathElement.namespaceEndOffset);
+        }
+    }
+
+    private void emitName(PathElement pathElement)
+    {
+        termAtt.copyBuffer(pathText, pathElement.nameFrom, pathElement.nameTo - pathElement.nameFrom);
+        setAttributes(TOKEN_TYPE_PATH_ELEMENT_NAME, pathElement.nameStartOffset, pathElement.nameEndOffset);
+    }
+
+    private void emit(String text, String type, int startOffset, int endOffset)
+    {
+        termAtt.setEmpty().append(text);
+        setAttributes(type, startOffset, endOffset);
+    }
+
+    private void setAttributes(String type, int startOffset, int endOffset)
+    {
+        offsetAtt.setOffset(correctOffset(startOffset), correctOffset(endOffset));
+        typeAtt.setType(type);
+        posIncAtt.setPositionIncrement(1);
+    }
+
+    private void append(char c)
+    {
+        if (pathTextLength == pathText.length)
+        {
+            char[] newPathText = new char[pathText.length * 2];
+            System.arraycopy(pathText, 0, newPathText, 0, pathTextLength);
+            pathText = newPathText;
+        }
+        pathText[pathTextLength++] = c;
+    }
+
+    private int read() throws IOException
+    {
+        while (readBufferPosition == readBufferLength)
+        {
+            int read = input.read(readBuffer);
+            if (read == -1)
+            {
+                return -1;
+            }
+            readBufferPosition = 0;
+            readBufferLength = read;
         }
-        
-        termAtt.copyBuffer(next.buffer(), 0, next.length());
-        offsetAtt.setOffset(correctOffset(next.startOffset()), correctOffset(next.endOffset()));
-        typeAtt.setType(next.type());
-        posIncAtt.setPositionIncrement(next.getPositionIncrement());
-        return true;
+        return readBuffer[readBufferPosition++];
     }
 
     @Override
     public void reset() throws IOException
     {
         super.reset();
-        tokens.clear();
-        it = null;
+        readBufferPosition = 0;
+        readBufferLength = 0;
         readerPosition = 0;
         endOfStream = false;
+        elementCount = 0;
+        lastPath = false;
+        state = READ_PATH;
     }
 
     @Override
@@ -36,6 +36,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -43,7 +44,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.alfresco.error.AlfrescoRuntimeException;
@@ -201,6 +204,12 @@ public class AlfrescoSolrDataModel implements QueryConstants
 
     static final String SHARED_PROPERTIES = "shared.properties";
 
+    /**
+     * Upper bound of the entries of each field mapping table: lookups of keys coming from the requests
+     * (e.g. mapProperty) can't grow the tables indefinitely between two model changes.
+     */
+    static final int MAX_FIELD_MAPPINGS = 10000;
+
     protected final static Logger log = LoggerFactory.getLogger(AlfrescoSolrDataModel.class);
 
     private static final String CHANGE_SET = "CHANGE_SET";
@@ -228,6 +237,8 @@ public class AlfrescoSolrDataModel implements QueryConstants
     private final Set<QName> identifierProperties = new HashSet<>();
     private final ThreadPoolExecutor threadPool;
 
+    private volatile FieldMappings fieldMappings = new FieldMappings(0);
+
     public void close() {
         threadPool.shutdown();
     }
@@ -421,6 +432,11 @@ public class AlfrescoSolrDataModel implements QueryConstants
             return schemaField;
         }
 
+        return lookup(fieldMappings.alfrescoProperties, schemaField, field -> computeAlfrescoPropertyFromSchemaField(field, index));
+    }
+
+    private String computeAlfrescoPropertyFromSchemaField(String schemaField, int index)
+    {
         String alfrescoQueryField = schemaField.substring(index+1);
         QName qName = QName.createQName(alfrescoQueryField);
         alfrescoQueryField = qName.toPrefixString(namespaceDAO);
@@ -620,6 +636,12 @@ public class AlfrescoSolrDataModel implements QueryConstants
     }
 
     public IndexedField getIndexedFieldForSpecializedPropertyMetadata(QName propertyQName, SpecializedFieldType type)
+    {
+        return lookup(fieldMappings.specializedFields, Arrays.asList(propertyQName, type),
+                key -> computeIndexedFieldForSpecializedPropertyMetadata(propertyQName, type).immutableCopy());
+    }
+
+    private IndexedField computeIndexedFieldForSpecializedPropertyMetadata(QName propertyQName, SpecializedFieldType type)
     {
         IndexedField indexedField = new IndexedField();
         PropertyDefinition propertyDefinition = getPropertyDefinition(propertyQName);
@@ -696,6 +718,12 @@ public class AlfrescoSolrDataModel implements QueryConstants
             return getIndexedFieldForSpecializedPropertyMetadata(propertyQName, type);
         }
 
+        return lookup(fieldMappings.queryableFields, Arrays.asList(propertyQName, fieldUse),
+                key -> computeQueryableFields(propertyQName, fieldUse).immutableCopy());
+    }
+
+    private IndexedField computeQueryableFields(QName propertyQName, FieldUse fieldUse)
+    {
         IndexedField indexedField = new IndexedField();
         PropertyDefinition propertyDefinition = getPropertyDefinition(propertyQName);
         if((propertyDefinition == null))
@@ -1163,8 +1191,12 @@ public class AlfrescoSolrDataModel implements QueryConstants
      */
     public IndexedField getIndexedFieldNamesForProperty(QName propertyQName)
     {
-        // TODO: Cache and throw on model refresh
+        return lookup(fieldMappings.indexedFields, propertyQName,
+                key -> computeIndexedFieldNamesForProperty(propertyQName).immutableCopy());
+    }
 
+    private IndexedField computeIndexedFieldNamesForProperty(QName propertyQName)
+    {
         IndexedField indexedField = new IndexedField();
         PropertyDefinition propertyDefinition = getPropertyDefinition(propertyQName);
         if((propertyDefinition == null))
@@ -1365,6 +1397,7 @@ public class AlfrescoSolrDataModel implements QueryConstants
     {
         modelErrors.remove(model.getName());
         dictionaryDAO.putModelIgnoringConstraints(model);
+        refreshFieldMappings();
         return true;
     }
 
@@ -1372,6 +1405,7 @@ public class AlfrescoSolrDataModel implements QueryConstants
     {
         modelErrors.remove(getM2Model(modelQName).getName());
         dictionaryDAO.removeModel(modelQName);
+        refreshFieldMappings();
     }
 
     M2Model getM2Model(QName modelQName)
@@ -1385,6 +1419,46 @@ public class AlfrescoSolrDataModel implements QueryConstants
         {
             cds.afterDictionaryInit();
         }
+        refreshFieldMappings();
+    }
+
+    /**
+     * Version of the loaded models: it changes every time a model is added, updated or removed,
+     * so callers can tell whether anything they derived from the field mappings is still valid.
+     *
+     * @return the version of the field mappings currently in use
+     */
+    public long getModelVersion()
+    {
+        return fieldMappings.modelVersion;
+    }
+
+    /**
+     * Replaces the field mappings with empty ones for the new version of the models.
+     * The dictionary has already been updated, so the new tables are only filled with up to date mappings,
+     * while any lookup still running against the previous tables leaves them behind with the old version.
+     */
+    private synchronized void refreshFieldMappings()
+    {
+        fieldMappings = new FieldMappings(fieldMappings.modelVersion + 1);
+    }
+
+    /**
+     * Returns the mapping of the given key, computing it from the dictionary only the first time it is requested
+     * for the current version of the models.
+     */
+    private <K, V> V lookup(Map<K, V> mappings, K key, Function<K, V> mappingFunction)
+    {
+        V value = mappings.get(key);
+        if (value == null)
+        {
+            value = mappingFunction.apply(key);
+            if (value != null && mappings.size() < MAX_FIELD_MAPPINGS)
+            {
+                mappings.putIfAbsent(key, value);
+            }
+        }
+        return value;
     }
 
     public org.alfresco.repo.search.impl.querymodel.Query parseCMISQueryToAlfrescoAbstractQuery(CMISQueryMode mode, SearchParameters searchParameters,
@@ -1484,9 +1558,38 @@ public class AlfrescoSolrDataModel implements QueryConstants
         return modelErrors;
     }
 
+    /**
+     * Schema fields and derived property names computed from the dictionary for one version of the models.
+     * Lookups fill the tables as they go; a model change replaces the whole instance, instead of updating it.
+     */
+    private static final class FieldMappings
+    {
+        private final long modelVersion;
+        private final Map<QName, IndexedField> indexedFields = new ConcurrentHashMap<>();
+        private final Map<List<Object>, IndexedField> specializedFields = new ConcurrentHashMap<>();
+        private final Map<List<Object>, IndexedField> queryableFields = new ConcurrentHashMap<>();
+        private final Map<List<Object>, String> mappedProperties = new ConcurrentHashMap<>();
+        private final Map<String, String> alfrescoProperties = new ConcurrentHashMap<>();
+
+        private FieldMappings(long modelVersion)
+        {
+            this.modelVersion = modelVersion;
+        }
+    }
+
     public static class IndexedField
     {
-        private final List<FieldInstance> fields = new LinkedList<>();
+        private final List<FieldInstance> fields;
+
+        public IndexedField()
+        {
+            this(new LinkedList<>());
+        }
+
+        private IndexedField(List<FieldInstance> fields)
+        {
+            this.fields = fields;
+        }
 
         public List<FieldInstance> getFields()
         {
@@ -1497,6 +1600,14 @@ public class AlfrescoSolrDataModel implements QueryConstants
         {
             fields.add(new FieldInstance(prefix, localised, sort));
         }
+
+        /**
+         * The copy can be shared between threads: adding fields to it throws an UnsupportedOperationException.
+         */
+        IndexedField immutableCopy()
+        {
+            return new IndexedField(unmodifiableList(new ArrayList<>(fields)));
+        }
     }
 
     public static class FieldInstance
@@ -1713,6 +1824,13 @@ public class AlfrescoSolrDataModel implements QueryConstants
     }
 
     public String  mapProperty(String  potentialProperty,  FieldUse fieldUse, SolrQueryRequest req, int position)
+    {
+        // The mapping also depends on the fields defined in the schema of the requested core
+        return lookup(fieldMappings.mappedProperties, Arrays.asList(req.getSchema(), potentialProperty, fieldUse, position),
+                key -> computeMappedProperty(potentialProperty, fieldUse, req, position));
+    }
+
+    private String computeMappedProperty(String potentialProperty, FieldUse fieldUse, SolrQueryRequest req, int position)
     {
         if(potentialProperty.equals("asc") || potentialProperty.equals("desc") || potentialProperty.equals("_docid_"))
         {
@@ -1815,6 +1933,7 @@ public class AlfrescoSolrDataModel implements QueryConstants
         if(getNamespaceDAO().getURIs().contains(NamespaceService.CONTENT_MODEL_1_0_URI))
         {
             getNamespaceDAO().addPrefix("", NamespaceService.CONTENT_MODEL_1_0_URI);
+            refreshFieldMappings();
         }
     }
 
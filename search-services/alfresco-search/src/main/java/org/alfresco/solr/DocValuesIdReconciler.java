@@ -0,0 +1,292 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import org.alfresco.solr.adapters.IOpenBitSet;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.LongBitSet;
+
+/**
+ * Reconciles the ids (transaction, ACL change set, node ids) stored in a numeric docValues field of the index with
+ * the ids of the Repository.
+ *
+ * The index side is collected by streaming the docValues of each segment: the ids are kept sorted (in a bitset or in
+ * a sorted array) and the ids found more than once are recorded as duplicates. The report is then a merge
+ * of the two sorted id sets, so the cost is linear in the number of documents and in the size of the id range,
+ * instead of one facet request for each range of ids.
+ */
+final class DocValuesIdReconciler
+{
+    /**
+     * The ids of a docValues field found in the index, either as a bitset over the range of the ids or, when the ids
+     * are sparse, as a sorted array: whichever is the smallest.
+     */
+    static final class IndexedIds
+    {
+        private static final IndexedIds EMPTY = new IndexedIds(0, null, new long[0], 0, new long[0]);
+
+        private final long offset;
+        private final LongBitSet bits;
+        private final long[] sorted;
+        private final int sortedSize;
+        private final long[] duplicates;
+
+        private IndexedIds(long offset, LongBitSet bits, long[] sorted, int sortedSize, long[] duplicates)
+        {
+            this.offset = offset;
+            this.bits = bits;
+            this.sorted = sorted;
+            this.sortedSize = sortedSize;
+            this.duplicates = duplicates;
+        }
+
+        /**
+         * @return the first id in the index greater than or equal to the given one, -1 if there is none.
+         */
+        long nextId(long id)
+        {
+            if (bits == null)
+            {
+                int index = Arrays.binarySearch(sorted, 0, sortedSize, id);
+                index = index < 0 ? -index - 1 : index;
+                return index < sortedSize ? sorted[index] : -1;
+            }
+
+            long index = Math.max(id, offset) - offset;
+            if (index >= bits.length())
+            {
+                return -1;
+            }
+
+            long next = bits.nextSetBit(index);
+            return next == -1 ? -1 : next + offset;
+        }
+
+        /**
+         * @return the ids found more than once in the index, in ascending order.
+         */
+        long[] duplicates()
+        {
+            return duplicates;
+        }
+
+        /**
+         * @return the number of distinct ids in the index.
+         */
+        long cardinality()
+        {
+            return bits == null ? sortedSize : bits.cardinality();
+        }
+    }
+
+    private DocValuesIdReconciler()
+    {
+    }
+
+    /**
+     * Collects the ids within [minId, maxId] of the live documents which have a value for the given field.
+     *
+     * A first pass finds the bounds and the number of the values, so that the ids are kept in a structure of the
+     * right size from the start: a bitset over the actual range of the ids (not over [minId, maxId], which may be
+     * open, e.g. for the DBIDs) or a sorted array when that is smaller (1 bit per id in the range against 64 bits
+     * per value).
+     *
+     * @param reader the index reader.
+     * @param field the (single valued, numeric) docValues field.
+     * @param filter if not null, only the documents which contain this term are considered.
+     * @param minId the lowest id to collect.
+     * @param maxId the highest id to collect.
+     */
+    static IndexedIds collect(IndexReader reader, String field, Term filter, long minId, long maxId) throws IOException
+    {
+        long[] bounds = { Long.MAX_VALUE, Long.MIN_VALUE };
+        long count = forEachValue(reader, field, filter, minId, maxId, id -> {
+            bounds[0] = Math.min(bounds[0], id);
+            bounds[1] = Math.max(bounds[1], id);
+        });
+        if (count == 0)
+        {
+            return IndexedIds.EMPTY;
+        }
+
+        long offset = bounds[0];
+        long range = bounds[1] - offset + 1;
+        if (range > 0 && range / Long.SIZE <= count && range / Long.SIZE < ArrayUtil.MAX_ARRAY_LENGTH)
+        {
+            LongBitSet bits = new LongBitSet(range);
+            LongHashSet duplicates = new LongHashSet();
+            forEachValue(reader, field, filter, minId, maxId, id -> {
+                if (bits.getAndSet(id - offset))
+                {
+                    duplicates.add(id);
+                }
+            });
+            long[] sortedDuplicates = duplicates.toArray();
+            Arrays.sort(sortedDuplicates);
+            return new IndexedIds(offset, bits, null, 0, sortedDuplicates);
+        }
+
+        // Sparse ids: the number of values is bounded by the number of documents, so it fits an array
+        long[] values = new long[(int) count];
+        int[] size = { 0 };
+        forEachValue(reader, field, filter, minId, maxId, id -> values[size[0]++] = id);
+        Arrays.sort(values);
+
+        // The distinct values are compacted at the beginning of the array
+        LongArrayList duplicates = new LongArrayList();
+        int unique = 0;
+        for (int i = 0; i < values.length; i++)
+        {
+            if (unique == 0 || values[i] != values[unique - 1])
+            {
+                values[unique++] = values[i];
+            }
+            else if (duplicates.isEmpty() || duplicates.get(duplicates.size() - 1) != values[i])
+            {
+                duplicates.add(values[i]);
+            }
+        }
+        return new IndexedIds(offset, null, values, unique, duplicates.toArray());
+    }
+
+    /**
+     * Passes to the consumer the values within [minId, maxId] of the live documents (of the filter, if any) which
+     * have a value for the given field.
+     *
+     * @return the number of values.
+     */
+    private static long forEachValue(IndexReader reader, String field, Term filter, long minId, long maxId,
+                                     LongConsumer consumer) throws IOException
+    {
+        long count = 0;
+        for (LeafReaderContext context : reader.leaves())
+        {
+            LeafReader leaf = context.reader();
+            NumericDocValues values = DocValues.getNumeric(leaf, field);
+            Bits docsWithField = DocValues.getDocsWithField(leaf, field);
+            Bits liveDocs = leaf.getLiveDocs();
+
+            DocIdSetIterator docs;
+            if (filter == null)
+            {
+                docs = DocIdSetIterator.all(leaf.maxDoc());
+            }
+            else
+            {
+                docs = leaf.postings(filter, PostingsEnum.NONE);
+                if (docs == null)
+                {
+                    continue;
+                }
+            }
+
+            for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc())
+            {
+                if ((liveDocs == null || liveDocs.get(doc)) && docsWithField.get(doc))
+                {
+                    long id = values.get(doc);
+                    if (id >= minId && id <= maxId)
+                    {
+                        consumer.accept(id);
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Merges the ids in the index with the ids in the Repository, both in ascending order, and reports the
+     * differences, the duplicates and the number of distinct ids in the index.
+     *
+     * @param indexedIds the ids collected from the index within [minId, maxId].
+     * @param idsInDb the ids in the Repository, none of them is greater than maxId.
+     * @param minId the lowest id to check.
+     * @param maxId the highest id to check.
+     */
+    static void reconcile(IndexedIds indexedIds, IOpenBitSet idsInDb, long minId, long maxId,
+                          SolrInformationServer.TransactionInfoReporter reporter)
+    {
+        long idInIndex = indexedIds.nextId(minId);
+        long idInDb = nextIdInDb(idsInDb, minId, maxId);
+        while (idInIndex != -1 || idInDb != -1)
+        {
+            if (idInDb == -1 || (idInIndex != -1 && idInIndex < idInDb))
+            {
+                reporter.reportIdInIndexButNotInDb(idInIndex);
+                idInIndex = indexedIds.nextId(idInIndex + 1);
+            }
+            else if (idInIndex == -1 || idInDb < idInIndex)
+            {
+                reporter.reportIdInDbButNotInIndex(idInDb);
+                idInDb = nextIdInDb(idsInDb, idInDb + 1, maxId);
+            }
+            else
+            {
+                idInIndex = indexedIds.nextId(idInIndex + 1);
+                idInDb = nextIdInDb(idsInDb, idInDb + 1, maxId);
+            }
+        }
+
+        for (long duplicate : indexedIds.duplicates())
+        {
+            reporter.reportDuplicatedIdInIndex(duplicate);
+        }
+
+        reporter.reportUniqueIdsInIndex(indexedIds.cardinality());
+    }
+
+    /**
+     * The bitset of the Repository ids doesn't grow past its highest id, so the lookup must not go beyond maxId.
+     */
+    private static long nextIdInDb(IOpenBitSet idsInDb, long id, long maxId)
+    {
+        if (id > maxId)
+        {
+            return -1;
+        }
+
+        long next = idsInDb.nextSetBit(id);
+        return next > maxId ? -1 : next;
+    }
+}
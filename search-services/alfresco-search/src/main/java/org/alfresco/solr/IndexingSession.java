@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import org.alfresco.solr.client.AclChangeSet;
+import org.alfresco.solr.client.AclReaders;
+import org.alfresco.solr.client.Node;
+import org.alfresco.solr.client.Transaction;
+import org.apache.solr.common.SolrInputDocument;
+import org.json.JSONException;
+
+/**
+ * A batch of index updates written through a single update request and update processor chain.
+ * The documents added through the session are written in order, exactly like the corresponding single-call methods
+ * of the {@link InformationServer}, but the request and the processor chain are created once and finished when the
+ * session is closed.
+ *
+ * A session is not thread safe: it must be used and closed by the thread which opened it.
+ *
+ * @see InformationServer#openIndexingSession()
+ */
+public interface IndexingSession extends Closeable
+{
+    /**
+     * @see InformationServer#indexNode(Node, boolean)
+     */
+    void indexNode(Node node, boolean overwrite) throws IOException, JSONException;
+
+    /**
+     * @see InformationServer#indexNodes(List, boolean)
+     */
+    void indexNodes(List<Node> nodes, boolean overwrite) throws IOException, JSONException;
+
+    /**
+     * @see InformationServer#indexTransaction(Transaction, boolean)
+     */
+    void indexTransaction(Transaction txn, boolean overwrite) throws IOException;
+
+    /**
+     * @see InformationServer#updateTransaction(Transaction)
+     */
+    void updateTransaction(Transaction txn) throws IOException;
+
+    /**
+     * @see InformationServer#indexAcl(List, boolean)
+     */
+    long indexAcl(List<AclReaders> aclReaderList, boolean overwrite) throws IOException;
+
+    /**
+     * @see InformationServer#indexAclTransaction(AclChangeSet, boolean)
+     */
+    void indexAclTransaction(AclChangeSet changeSet, boolean overwrite) throws IOException;
+
+    /**
+     * @see InformationServer#indexContent(List)
+     */
+    void indexContent(List<SolrInputDocument> docs) throws IOException;
+
+    /**
+     * Finishes the update processor chain and releases the underlying request.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -27,10 +27,13 @@
 package org.alfresco.solr;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+import com.carrotsearch.hppc.LongHashSet;
 import org.alfresco.httpclient.AuthenticationException;
 import org.alfresco.repo.dictionary.DictionaryComponent;
 import org.alfresco.repo.dictionary.M2Model;
@@ -41,11 +44,13 @@ import org.alfresco.solr.adapters.IOpenBitSet;
 import org.alfresco.solr.client.AclChangeSet;
 import org.alfresco.solr.client.AclReaders;
 import org.alfresco.solr.client.AlfrescoModel;
+import org.alfresco.solr.client.AsyncSOLRAPIClient;
 import org.alfresco.solr.client.Node;
 import org.alfresco.solr.client.NodeMetaData;
 import org.alfresco.solr.client.Transaction;
 import org.alfresco.solr.tracker.IndexHealthReport;
 import org.alfresco.solr.tracker.TrackerStats;
+import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.util.NamedList;
 import org.json.JSONException;
 
@@ -98,6 +103,22 @@ public interface InformationServer extends InformationServerCollectionProvider
     
     void indexNodes(List<Node> nodes, boolean overwrite) throws IOException, AuthenticationException, JSONException;
 
+    /**
+     * Opens a session for writing a batch of node, transaction, ACL and state documents through a single update
+     * request and processor chain. The caller must close it once the batch has been written.
+     *
+     * @return a new indexing session.
+     */
+    IndexingSession openIndexingSession();
+
+    /**
+     * Returns the asynchronous Repository client of this core, which bounds the number of in-flight requests of all
+     * its trackers.
+     *
+     * @return the asynchronous client sharing the underlying connections with the blocking one.
+     */
+    AsyncSOLRAPIClient getAsyncRepositoryClient();
+
     void cascadeNodes(List<NodeMetaData> nodes, boolean overwrite) throws IOException, AuthenticationException, JSONException;
 
     List<NodeMetaData> getCascadeNodes(List<Long> txnIds) throws AuthenticationException, IOException, JSONException;
@@ -116,6 +137,24 @@ public interface InformationServer extends InformationServerCollectionProvider
 
     boolean aclChangeSetInIndex(long changeSetId, boolean populateCache) throws IOException;
 
+    /**
+     * Batch version of {@link #txnInIndex(long, boolean)}.
+     *
+     * @param txnIds the transaction ids to check.
+     * @param populateCache true if the ids should be recorded as processed.
+     * @return the subset of the input ids which are already in the index (or already processed).
+     */
+    LongHashSet txnsInIndex(long[] txnIds, boolean populateCache) throws IOException;
+
+    /**
+     * Batch version of {@link #aclChangeSetInIndex(long, boolean)}.
+     *
+     * @param changeSetIds the ACL change set ids to check.
+     * @param populateCache true if the ids should be recorded as processed.
+     * @return the subset of the input ids which are already in the index (or already processed).
+     */
+    LongHashSet aclChangeSetsInIndex(long[] changeSetIds, boolean populateCache) throws IOException;
+
     List<Transaction> getCascades(int num) throws IOException;
 
     void updateTransaction(Transaction txn) throws IOException;
@@ -152,6 +191,12 @@ public interface InformationServer extends InformationServerCollectionProvider
 
     long getHoleRetention();
 
+    /**
+     * Returns the directory where the long running maintenance operations (e.g. the index check) save their
+     * checkpoints, so that they can resume after an interruption.
+     */
+    Path getCheckpointsDirectory();
+
     AclReport checkAclInIndex(Long aclid, AclReport aclReport);
 
     IndexHealthReport reportIndexTransactions(Long minTxId, IOpenBitSet txIdsInDb, long maxTxId) throws IOException;
@@ -160,6 +205,18 @@ public interface InformationServer extends InformationServerCollectionProvider
 
     void updateContent(TenantDbId docRef) throws Exception;
 
+    /**
+     * Fetches the text content of the given document from the Repository, through the asynchronous Repository client,
+     * and builds the (partial) document which updates it in the index. Nothing is written in the index: see
+     * {@link #indexContent(List)}.
+     */
+    CompletableFuture<SolrInputDocument> getContentDocument(TenantDbId docRef);
+
+    /**
+     * Writes a batch of documents built by {@link #getContentDocument(TenantDbId)} through a single update processor.
+     */
+    void indexContent(List<SolrInputDocument> docs) throws IOException;
+
     void addCommonNodeReportInfo(NodeReport nodeReport);
 
     /**
@@ -168,7 +225,8 @@ public interface InformationServer extends InformationServerCollectionProvider
      */
     void addContentOutdatedAndUpdatedCounts(NamedList<Object> ihr);
 
-    IndexHealthReport reportAclTransactionsInIndex(Long minAclTxId, IOpenBitSet aclTxIdsInDb, long maxAclTxId);
+    IndexHealthReport reportAclTransactionsInIndex(Long minAclTxId, IOpenBitSet aclTxIdsInDb, long maxAclTxId)
+            throws IOException;
 
     int getAclTxDocsSize(String aclTxId, String aclTxCommitTime) throws IOException;
     
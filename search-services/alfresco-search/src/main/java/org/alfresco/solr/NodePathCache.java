@@ -0,0 +1,374 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.solr.client.NodeMetaData;
+import org.alfresco.solr.client.PropertyValue;
+import org.alfresco.solr.client.StringPropertyValue;
+import org.alfresco.util.ISO9075;
+import org.alfresco.util.Pair;
+
+/**
+ * A bounded cache of the path information (paths, ancestor paths, name paths and ancestors) of the folders,
+ * keyed by their NodeRef.
+ *
+ * When the node batches are fetched without paths, the paths of a node can be derived locally from the cached
+ * paths of its parents and from its parent associations (and name), instead of fetching the node again with its
+ * paths. A node cached here is a node whose paths have been checked against the format this class derives: the
+ * paths of the nodes which can't be derived safely (e.g. nodes with categories) are always fetched.
+ *
+ * The cache learns from the nodes fetched with their paths: each one of them gives the entry of its parent (when it
+ * has a single parent) and, for a folder, its own entry. Since the path of a node depends on all its ancestors, an
+ * entry is evicted together with the entries of its descendants when the node is moved or renamed (i.e. when its
+ * paths change or when it is part of a cascade transaction).
+ */
+class NodePathCache
+{
+    private final int maxSize;
+    private final Predicate<QName> categoryProperty;
+    private final Map<NodeRef, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of cached folders.
+     * @param categoryProperty tells which properties are categories: the categories of a node add paths to it.
+     */
+    NodePathCache(int maxSize, Predicate<QName> categoryProperty)
+    {
+        this.maxSize = maxSize;
+        this.categoryProperty = categoryProperty;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<NodeRef, Entry> eldest)
+            {
+                return size() > NodePathCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Fills in the paths, ancestor paths, name paths and ancestors of the given node from the cached entries of
+     * its parents.
+     *
+     * @param node a node fetched without paths, but with its parent associations and properties.
+     * @param container true if the node may have children, so that its entry is cached as well.
+     * @return false if the paths of the node can't be derived locally: the node is left untouched.
+     */
+    boolean derivePaths(NodeMetaData node, boolean container)
+    {
+        String name = name(node);
+        List<ChildAssociationRef> parentAssocs = node.getParentAssocs();
+        if (name == null || node.getNodeRef() == null || parentAssocs == null || parentAssocs.isEmpty() || hasCategories(node))
+        {
+            misses.increment();
+            return false;
+        }
+
+        List<Entry> parents = new ArrayList<>(parentAssocs.size());
+        synchronized (entries)
+        {
+            for (ChildAssociationRef parentAssoc : parentAssocs)
+            {
+                Entry parent = entries.get(parentAssoc.getParentRef());
+                if (parent == null)
+                {
+                    misses.increment();
+                    return false;
+                }
+                parents.add(parent);
+            }
+        }
+
+        List<String> paths = new ArrayList<>();
+        List<String> ancestorPaths = new ArrayList<>();
+        List<List<String>> namePaths = new ArrayList<>();
+        Set<NodeRef> ancestors = new HashSet<>();
+        String id = node.getNodeRef().getId();
+        for (int i = 0; i < parentAssocs.size(); i++)
+        {
+            String element = element(parentAssocs.get(i).getQName());
+            Entry parent = parents.get(i);
+            for (int j = 0; j < parent.paths.size(); j++)
+            {
+                paths.add(parent.paths.get(j) + element);
+                ancestorPaths.add(parent.ancestorPaths.get(j) + "/" + id);
+                List<String> namePath = new ArrayList<>(parent.namePaths.get(j));
+                namePath.add(name);
+                namePaths.add(namePath);
+            }
+            ancestors.addAll(parent.ancestors);
+            ancestors.add(parentAssocs.get(i).getParentRef());
+        }
+
+        List<Pair<String, QName>> nodePaths = new ArrayList<>(paths.size());
+        paths.forEach(path -> nodePaths.add(new Pair<>(path, null)));
+        node.setPaths(nodePaths);
+        node.setAncestorPaths(ancestorPaths);
+        node.setNamePaths(namePaths);
+        node.setAncestors(ancestors);
+        hits.increment();
+
+        if (container)
+        {
+            put(node.getNodeRef(), new Entry(paths, ancestorPaths, namePaths, ancestors));
+        }
+        return true;
+    }
+
+    /**
+     * Learns from a node fetched with its paths: caches the entry of its parent, when the node has a single parent,
+     * and the entry of the node itself if it is a container.
+     */
+    void learn(NodeMetaData node, boolean container)
+    {
+        String name = name(node);
+        List<ChildAssociationRef> parentAssocs = node.getParentAssocs();
+        List<Pair<String, QName>> paths = node.getPaths();
+        List<String> ancestorPaths = node.getAncestorPaths();
+        List<List<String>> namePaths = node.getNamePaths();
+        if (name == null || node.getNodeRef() == null || parentAssocs == null || parentAssocs.isEmpty()
+                || paths == null || paths.isEmpty() || ancestorPaths == null || namePaths == null || node.getAncestors() == null
+                || ancestorPaths.size() != paths.size() || namePaths.size() != paths.size())
+        {
+            return;
+        }
+
+        // Check that the paths are in the format this cache derives
+        String idElement = "/" + node.getNodeRef().getId();
+        Set<String> elements = new HashSet<>();
+        parentAssocs.forEach(parentAssoc -> elements.add(element(parentAssoc.getQName())));
+        List<String> nodePaths = new ArrayList<>(paths.size());
+        for (int i = 0; i < paths.size(); i++)
+        {
+            String path = paths.get(i).getFirst();
+            String ancestorPath = ancestorPaths.get(i);
+            List<String> namePath = namePaths.get(i);
+            if (paths.get(i).getSecond() != null
+                    || path == null
+                    || elements.stream().noneMatch(path::endsWith)
+                    || ancestorPath == null
+                    || !ancestorPath.endsWith(idElement)
+                    || namePath == null
+                    || namePath.isEmpty()
+                    || !name.equals(namePath.get(namePath.size() - 1)))
+            {
+                return;
+            }
+            nodePaths.add(path);
+        }
+
+        if (parentAssocs.size() == 1)
+        {
+            ChildAssociationRef parentAssoc = parentAssocs.get(0);
+            NodeRef parentRef = parentAssoc.getParentRef();
+            String element = element(parentAssoc.getQName());
+            String parentIdElement = "/" + parentRef.getId();
+            List<String> parentPaths = new ArrayList<>(paths.size());
+            List<String> parentAncestorPaths = new ArrayList<>(paths.size());
+            List<List<String>> parentNamePaths = new ArrayList<>(paths.size());
+            for (int i = 0; i < nodePaths.size(); i++)
+            {
+                if (!nodePaths.get(i).endsWith(element))
+                {
+                    parentPaths = null;
+                    break;
+                }
+                String parentPath = nodePaths.get(i).substring(0, nodePaths.get(i).length() - element.length());
+                String parentAncestorPath = ancestorPaths.get(i).substring(0, ancestorPaths.get(i).length() - idElement.length());
+                if (parentPath.isEmpty() || !parentAncestorPath.endsWith(parentIdElement))
+                {
+                    // The parent is the root node (or the ancestor paths are in a different format)
+                    parentPaths = null;
+                    break;
+                }
+                parentPaths.add(parentPath);
+                parentAncestorPaths.add(parentAncestorPath);
+                parentNamePaths.add(namePaths.get(i).subList(0, namePaths.get(i).size() - 1));
+            }
+
+            if (parentPaths != null)
+            {
+                Set<NodeRef> parentAncestors = new HashSet<>(node.getAncestors());
+                parentAncestors.remove(parentRef);
+                put(parentRef, new Entry(parentPaths, parentAncestorPaths, parentNamePaths, parentAncestors));
+            }
+        }
+
+        if (container)
+        {
+            put(node.getNodeRef(), new Entry(nodePaths, ancestorPaths, namePaths, node.getAncestors()));
+        }
+    }
+
+    /**
+     * Evicts the entry of the given node and the entries of its descendants.
+     */
+    void invalidate(NodeRef nodeRef)
+    {
+        synchronized (entries)
+        {
+            entries.remove(nodeRef);
+            removeDescendants(nodeRef);
+        }
+    }
+
+    void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+        }
+    }
+
+    int size()
+    {
+        synchronized (entries)
+        {
+            return entries.size();
+        }
+    }
+
+    long getHits()
+    {
+        return hits.sum();
+    }
+
+    long getMisses()
+    {
+        return misses.sum();
+    }
+
+    private void put(NodeRef nodeRef, Entry entry)
+    {
+        synchronized (entries)
+        {
+            Entry previous = entries.put(nodeRef, entry);
+            if (previous != null && !previous.equals(entry))
+            {
+                // The node has been moved or renamed (a rename may change the name paths only): the paths of its
+                // descendants have changed as well
+                removeDescendants(nodeRef);
+            }
+        }
+    }
+
+    private void removeDescendants(NodeRef nodeRef)
+    {
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); )
+        {
+            if (iterator.next().ancestors.contains(nodeRef))
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    private boolean hasCategories(NodeMetaData node)
+    {
+        Map<QName, PropertyValue> properties = node.getProperties();
+        return properties != null && properties.keySet().stream().anyMatch(categoryProperty);
+    }
+
+    private static String name(NodeMetaData node)
+    {
+        Map<QName, PropertyValue> properties = node.getProperties();
+        PropertyValue name = properties == null ? null : properties.get(ContentModel.PROP_NAME);
+        return name instanceof StringPropertyValue ? ((StringPropertyValue) name).getValue() : null;
+    }
+
+    /**
+     * The element a child association adds to the path of the parent (the same as in the repository paths).
+     */
+    private static String element(QName assocQName)
+    {
+        return "/" + ISO9075.getXPathName(assocQName);
+    }
+
+    private static final class Entry
+    {
+        private final List<String> paths;
+        private final List<String> ancestorPaths;
+        private final List<List<String>> namePaths;
+        private final Set<NodeRef> ancestors;
+
+        private Entry(List<String> paths, List<String> ancestorPaths, List<List<String>> namePaths, Collection<NodeRef> ancestors)
+        {
+            this.paths = unmodifiableList(new ArrayList<>(paths));
+            this.ancestorPaths = unmodifiableList(new ArrayList<>(ancestorPaths));
+            List<List<String>> copies = new ArrayList<>(namePaths.size());
+            namePaths.forEach(namePath -> copies.add(unmodifiableList(new ArrayList<>(namePath))));
+            this.namePaths = unmodifiableList(copies);
+            this.ancestors = unmodifiableSet(new HashSet<>(ancestors));
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (this == other)
+            {
+                return true;
+            }
+            if (!(other instanceof Entry))
+            {
+                return false;
+            }
+            Entry entry = (Entry) other;
+            return paths.equals(entry.paths)
+                    && ancestorPaths.equals(entry.ancestorPaths)
+                    && namePaths.equals(entry.namePaths)
+                    && ancestors.equals(entry.ancestors);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(paths, ancestorPaths, namePaths, ancestors);
+        }
+    }
+}
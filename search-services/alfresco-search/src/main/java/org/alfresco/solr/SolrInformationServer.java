@@ -92,13 +92,18 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.IsoFields;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -113,6 +118,13 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
@@ -123,10 +135,10 @@ import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 
 import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongArrayList;
 import com.carrotsearch.hppc.LongHashSet;
 import com.carrotsearch.hppc.cursors.LongCursor;
 
-import org.alfresco.httpclient.AuthenticationException;
 import org.alfresco.model.ContentModel;
 import org.alfresco.opencmis.dictionary.CMISStrictDictionaryService;
 import org.alfresco.repo.dictionary.DictionaryComponent;
@@ -151,6 +163,7 @@ import org.alfresco.solr.adapters.SolrSimpleOrderedMap;
 import org.alfresco.solr.client.AclChangeSet;
 import org.alfresco.solr.client.AclReaders;
 import org.alfresco.solr.client.AlfrescoModel;
+import org.alfresco.solr.client.AsyncSOLRAPIClient;
 import org.alfresco.solr.client.ContentPropertyValue;
 import org.alfresco.solr.client.MLTextPropertyValue;
 import org.alfresco.solr.client.MultiPropertyValue;
@@ -165,21 +178,26 @@ import org.alfresco.solr.client.StringPropertyValue;
 import org.alfresco.solr.client.Transaction;
 import org.alfresco.solr.config.ConfigUtil;
 import org.alfresco.solr.logging.Log;
+import org.alfresco.solr.query.DocValuesCache;
 import org.alfresco.solr.tracker.IndexHealthReport;
 import org.alfresco.solr.tracker.TrackerStats;
 import org.alfresco.solr.utils.Utils;
 import org.alfresco.util.ISO9075;
 import org.alfresco.util.Pair;
+import org.alfresco.util.TraceableThreadFactory;
 import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.minhash.ContextAccumulatingFilterFactory;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
-import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
@@ -189,11 +207,13 @@ import org.apache.lucene.search.LegacyNumericRangeQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.common.SolrDocument;
@@ -215,11 +235,11 @@ import org.apache.solr.response.BasicResultContext;
 import org.apache.solr.response.ResultContext;
 import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.NumberType;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.DelegatingCollector;
 import org.apache.solr.search.DocIterator;
 import org.apache.solr.search.DocList;
-import org.apache.solr.search.QueryWrapperFilter;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.update.AddUpdateCommand;
 import org.apache.solr.update.CommitUpdateCommand;
@@ -397,6 +417,12 @@ public class SolrInformationServer implements InformationServer
      * and the transactions are long
      */
     private static final int BATCH_FACET_TXS = 4096;
+
+    /* Cascade updates: how many children metadata are requested in a single call, and how many calls can be in flight */
+    private static final int DEFAULT_CASCADE_METADATA_BATCH_SIZE = 500;
+    private static final int DEFAULT_CASCADE_METADATA_PARALLELISM = 4;
+    /* Asynchronous Repository calls: how many requests of this core can be in flight */
+    private static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 4;
     private static final String FINGERPRINT_FIELD = "MINHASH";
     /** Shared property to determine if the cascade tracking is enabled. */
     public static final String CASCADE_TRACKER_ENABLED = "alfresco.cascade.tracker.enabled";
@@ -432,6 +458,11 @@ public class SolrInformationServer implements InformationServer
     // Get Paths information from Repository for a batch of nodes (true by default)
     // When false, Paths information is only recovered for single nodes
     private final boolean getPathsInNodeBatches;
+
+    // When the paths aren't fetched in node batches, the paths of the nodes are derived (when possible) from the
+    // cached paths of their parents rather than fetched node by node (null if disabled)
+    private final NodePathCache nodePathCache;
+    private final DocValuesCache docValuesCache = new DocValuesCache();
     
     // Metadata pulling control
     private boolean skipDescendantDocsForSpecificTypes;
@@ -458,6 +489,11 @@ public class SolrInformationServer implements InformationServer
 
     private final boolean dateFieldDestructuringHasBeenEnabledOnThisInstance;
 
+    private final int cascadeMetadataBatchSize;
+    private final int cascadeMetadataParallelism;
+    private final ThreadPoolExecutor cascadeMetadataExecutor;
+    private final AsyncSOLRAPIClient asyncRepositoryClient;
+
     static class DocListCollector implements Collector, LeafCollector
     {
         private final IntArrayList docs = new IntArrayList();
@@ -517,23 +553,154 @@ public class SolrInformationServer implements InformationServer
         }
     }
 
-    static class TxnCollector extends DelegatingCollector
+    /**
+     * {@link IndexingSession} backed by a single local request and update processor chain.
+     */
+    private class SolrIndexingSession implements IndexingSession
     {
+        private final SolrQueryRequest request;
+        private final UpdateRequestProcessor processor;
+
+        SolrIndexingSession()
+        {
+            request = newSolrQueryRequest();
+            try
+            {
+                processor = core.getUpdateProcessingChain(null).createProcessor(request, newSolrQueryResponse());
+            }
+            catch (RuntimeException exception)
+            {
+                request.close();
+                throw exception;
+            }
+        }
+
+        @Override
+        public void indexNode(Node node, boolean overwrite) throws IOException
+        {
+            SolrInformationServer.this.indexNode(processor, request, node, overwrite);
+        }
+
+        @Override
+        public void indexNodes(List<Node> nodes, boolean overwrite) throws IOException, JSONException
+        {
+            SolrInformationServer.this.indexNodes(processor, request, nodes, overwrite);
+        }
+
+        @Override
+        public void indexTransaction(Transaction txn, boolean overwrite) throws IOException
+        {
+            SolrInformationServer.this.indexTransaction(processor, request, txn, overwrite);
+        }
+
+        @Override
+        public void updateTransaction(Transaction txn) throws IOException
+        {
+            SolrInformationServer.this.updateTransaction(processor, request, txn);
+        }
+
+        @Override
+        public long indexAcl(List<AclReaders> aclReaderList, boolean overwrite) throws IOException
+        {
+            return SolrInformationServer.this.indexAcl(processor, request, aclReaderList, overwrite);
+        }
+
+        @Override
+        public void indexAclTransaction(AclChangeSet changeSet, boolean overwrite) throws IOException
+        {
+            SolrInformationServer.this.indexAclTransaction(processor, request, changeSet, overwrite);
+        }
+
+        @Override
+        public void indexContent(List<SolrInputDocument> docs) throws IOException
+        {
+            SolrInformationServer.this.indexContent(processor, request, docs);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                processor.finish();
+            }
+            finally
+            {
+                request.close();
+            }
+        }
+    }
+
+    /**
+     * Adds to a target set the ids, read from the doc values of the given field, which belong to the wanted set.
+     */
+    static class IdsInIndexCollector extends SimpleCollector
+    {
+        private final String fieldName;
+        private final LongHashSet wanted;
+        private final LongHashSet found;
         private NumericDocValues currentLongs;
-        private final LongHashSet txnSet = new LongHashSet(1000);
-        private final long txnFloor;
-        private final long txnCeil;
 
-        TxnCollector(long txnFloor)
+        IdsInIndexCollector(String fieldName, LongHashSet wanted, LongHashSet found)
         {
-            this.txnFloor = txnFloor;
-            this.txnCeil = txnFloor+500;
+            this.fieldName = fieldName;
+            this.wanted = wanted;
+            this.found = found;
+        }
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException
+        {
+            currentLongs = DocValues.getNumeric(context.reader(), fieldName);
+        }
+
+        @Override
+        public void collect(int doc)
+        {
+            long id = currentLongs.get(doc);
+            if (wanted.contains(id))
+            {
+                found.add(id);
+            }
+        }
+
+        @Override
+        public boolean needsScores()
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Collects, in a single pass, the documents whose transaction hasn't been already processed (i.e. it isn't in the
+     * clean content cache). Only the documents belonging to the next N transactions are kept: the lowest transaction id
+     * found (the floor) and the transaction ids lower than the floor plus an arbitrary window.
+     */
+    static class OutdatedContentCollector extends DelegatingCollector
+    {
+        static final long TXN_WINDOW = 500;
+
+        private final Map<Long, Long> cleanContentCache;
+        private final IntArrayList docs = new IntArrayList();
+        private final LongArrayList txnIds = new LongArrayList();
+        private NumericDocValues currentLongs;
+        private int currentDocBase;
+        private long txnFloor = Long.MAX_VALUE;
+
+        // Documents of the same transaction are usually adjacent: avoid looking up the (synchronized) cache for each of them
+        private long lastTxnId = -1;
+        private boolean lastTxnIsClean;
+
+        OutdatedContentCollector(Map<Long, Long> cleanContentCache)
+        {
+            this.cleanContentCache = cleanContentCache;
         }
 
         @Override
         public void doSetNextReader(LeafReaderContext context) throws IOException
         {
             currentLongs = context.reader().getNumericDocValues(FIELD_INTXID);
+            currentDocBase = context.docBase;
         }
 
         @Override
@@ -546,16 +713,181 @@ public class SolrInformationServer implements InformationServer
         public void collect(int doc)
         {
             long txnId = currentLongs.get(doc);
-            if(txnId >= txnFloor && txnId < txnCeil)
+            if (txnId != lastTxnId)
+            {
+                lastTxnId = txnId;
+                lastTxnIsClean = cleanContentCache.containsKey(txnId);
+            }
+
+            if (lastTxnIsClean)
+            {
+                return;
+            }
+
+            txnFloor = Math.min(txnFloor, txnId);
+            if (txnId - txnFloor < TXN_WINDOW)
+            {
+                docs.add(currentDocBase + doc);
+                txnIds.add(txnId);
+            }
+        }
+
+        /**
+         * Calls the given consumer with the (global) id and the transaction of the collected documents within the window.
+         */
+        void forEachDocument(DocumentConsumer consumer) throws IOException
+        {
+            for (int i = 0; i < docs.size(); i++)
+            {
+                long txnId = txnIds.get(i);
+                // The floor could have been lowered after the document has been collected
+                if (txnId - txnFloor < TXN_WINDOW)
+                {
+                    consumer.accept(docs.get(i), txnId);
+                }
+            }
+        }
+
+        interface DocumentConsumer
+        {
+            void accept(int doc, long txnId) throws IOException;
+        }
+    }
+
+    /**
+     * Reads the identifier, the content locale and the latest applied content version of the documents with outdated
+     * content from the doc values of their segment. Segments written without those doc values fall back to stored fields.
+     */
+    private static class OutdatedContentReader
+    {
+        private final SolrIndexSearcher searcher;
+        private final List<LeafReaderContext> leaves;
+        private int leafIndex = -1;
+        private LeafReaderContext context;
+        private NumericDocValues dbIds;
+        private Bits docsWithDbId;
+        private SortedDocValues tenants;
+        private SortedDocValues locales;
+        private NumericDocValues latestAppliedVersions;
+        private Bits docsWithLatestAppliedVersion;
+
+        OutdatedContentReader(SolrIndexSearcher searcher)
+        {
+            this.searcher = searcher;
+            this.leaves = searcher.getTopReaderContext().leaves();
+        }
+
+        /**
+         * Reads the given document. Documents must be read in ascending order.
+         */
+        TenantDbId read(int doc) throws IOException
+        {
+            while (context == null || doc >= context.docBase + context.reader().maxDoc())
             {
-                txnSet.add(txnId);
+                context = leaves.get(++leafIndex);
+                LeafReader reader = context.reader();
+                dbIds = reader.getNumericDocValues(FIELD_DBID);
+                docsWithDbId = reader.getDocsWithField(FIELD_DBID);
+                tenants = reader.getSortedDocValues(FIELD_TENANT);
+                locales = reader.getSortedDocValues(CONTENT_LOCALE_FIELD);
+                latestAppliedVersions = reader.getNumericDocValues(LATEST_APPLIED_CONTENT_VERSION_ID);
+                docsWithLatestAppliedVersion = reader.getDocsWithField(LATEST_APPLIED_CONTENT_VERSION_ID);
+            }
+
+            int segmentDoc = doc - context.docBase;
+            if (dbIds == null || tenants == null || locales == null || latestAppliedVersions == null || !docsWithDbId.get(segmentDoc))
+            {
+                return readStoredFields(doc);
+            }
 
+            TenantDbId tenantAndDbId = new TenantDbId();
+            tenantAndDbId.dbId = dbIds.get(segmentDoc);
+            int tenantOrd = tenants.getOrd(segmentDoc);
+            tenantAndDbId.tenant = tenantOrd == -1 ? "" : tenants.lookupOrd(tenantOrd).utf8ToString();
+
+            int localeOrd = locales.getOrd(segmentDoc);
+            if (localeOrd != -1)
+            {
+                tenantAndDbId.setProperty(CONTENT_LOCALE_FIELD, locales.lookupOrd(localeOrd).utf8ToString());
             }
+
+            tenantAndDbId.setProperty(
+                    LATEST_APPLIED_CONTENT_VERSION_ID,
+                    docsWithLatestAppliedVersion.get(segmentDoc)
+                            ? Long.toString(latestAppliedVersions.get(segmentDoc))
+                            : null);
+            return tenantAndDbId;
         }
 
-        LongHashSet getTxnSet()
+        private TenantDbId readStoredFields(int doc) throws IOException
         {
-            return txnSet;
+            Document document = searcher.doc(doc, ID_AND_CONTENT_VERSION_ID_AND_CONTENT_LOCALE);
+            TenantDbId tenantAndDbId = AlfrescoSolrDataModel.decodeNodeDocumentId(document.getField(FIELD_SOLR4_ID).stringValue());
+
+            ofNullable(document.getField(CONTENT_LOCALE_FIELD))
+                    .map(IndexableField::stringValue)
+                    .ifPresent(value -> tenantAndDbId.setProperty(CONTENT_LOCALE_FIELD, value));
+
+            int segmentDoc = doc - context.docBase;
+            tenantAndDbId.setProperty(
+                    LATEST_APPLIED_CONTENT_VERSION_ID,
+                    ofNullable(document.getField(LATEST_APPLIED_CONTENT_VERSION_ID))
+                            .map(IndexableField::stringValue)
+                            .orElseGet(() ->
+                                    latestAppliedVersions != null && docsWithLatestAppliedVersion.get(segmentDoc)
+                                            ? Long.toString(latestAppliedVersions.get(segmentDoc))
+                                            : null));
+            return tenantAndDbId;
+        }
+    }
+
+    /**
+     * Collects the DBID of the matching documents from the doc values, without loading any stored field.
+     * Segments written without DBID doc values fall back to the stored document id.
+     */
+    static class DbidCollector extends SimpleCollector
+    {
+        private final LongHashSet dbids = new LongHashSet();
+        private NumericDocValues currentLongs;
+        private Bits currentDocsWithField;
+        private LeafReader currentReader;
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException
+        {
+            currentReader = context.reader();
+            currentLongs = currentReader.getNumericDocValues(FIELD_DBID);
+            currentDocsWithField = currentReader.getDocsWithField(FIELD_DBID);
+        }
+
+        @Override
+        public boolean needsScores()
+        {
+            return false;
+        }
+
+        @Override
+        public void collect(int doc) throws IOException
+        {
+            if (currentLongs == null)
+            {
+                Document document = currentReader.document(doc, REQUEST_ONLY_ID_FIELD);
+                dbids.add(AlfrescoSolrDataModel.decodeNodeDocumentId(document.get(FIELD_SOLR4_ID)).dbId);
+            }
+            else if (currentDocsWithField.get(doc))
+            {
+                dbids.add(currentLongs.get(doc));
+            }
+        }
+
+        /**
+         * @return the collected DBIDs, in ascending order.
+         */
+        long[] getDbids()
+        {
+            long[] sorted = dbids.toArray();
+            Arrays.sort(sorted);
+            return sorted;
         }
     }
 
@@ -631,6 +963,8 @@ public class SolrInformationServer implements InformationServer
         contentStreamLimit = Integer.parseInt(coreConfiguration.getProperty("alfresco.contentStreamLimit", "10000000"));
         
         getPathsInNodeBatches = Boolean.parseBoolean(coreConfiguration.getProperty("alfresco.metadata.getPathsInNodeBatches", "true"));
+        int nodePathCacheSize = Integer.parseInt(coreConfiguration.getProperty("alfresco.metadata.pathCache.size", "10000"));
+        nodePathCache = getPathsInNodeBatches || nodePathCacheSize <= 0 ? null : new NodePathCache(nodePathCacheSize, this::isCategoryProperty);
 
         props = AlfrescoSolrDataModel.getCommonConfig();
         hostName = ConfigUtil.locateProperty(SOLR_HOST, props.getProperty(SOLR_HOST));
@@ -642,6 +976,43 @@ public class SolrInformationServer implements InformationServer
         LOGGER.info(
                 "Date fields destructuring has been {} on this instance.",
                 dateFieldDestructuringHasBeenEnabledOnThisInstance ? "enabled" : "disabled");
+
+        cascadeMetadataBatchSize =
+                Math.max(1, Integer.parseInt(coreConfiguration.getProperty("alfresco.cascade.tracker.metadataBatchSize", String.valueOf(DEFAULT_CASCADE_METADATA_BATCH_SIZE))));
+        cascadeMetadataParallelism =
+                Math.max(1, Integer.parseInt(coreConfiguration.getProperty("alfresco.cascade.tracker.metadataParallelism", String.valueOf(DEFAULT_CASCADE_METADATA_PARALLELISM))));
+
+        // Idle threads are released, so the pool doesn't need to be explicitly shut down with the core
+        TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+        threadFactory.setThreadDaemon(true);
+        threadFactory.setNamePrefix("CascadeMetadata-" + core.getName() + "-");
+        cascadeMetadataExecutor =
+                new ThreadPoolExecutor(
+                        cascadeMetadataParallelism,
+                        cascadeMetadataParallelism,
+                        60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(),
+                        threadFactory);
+        cascadeMetadataExecutor.allowCoreThreadTimeOut(true);
+
+        // Same as above, idle threads are released; the client is closed with the core to cancel the queued requests
+        int maxInFlightRequests =
+                Math.max(1, Integer.parseInt(coreConfiguration.getProperty("alfresco.repository.maxInFlightRequests", String.valueOf(DEFAULT_MAX_IN_FLIGHT_REQUESTS))));
+        asyncRepositoryClient = new AsyncSOLRAPIClient(repositoryClient, core.getName(), maxInFlightRequests);
+    }
+
+    @Override
+    public AsyncSOLRAPIClient getAsyncRepositoryClient()
+    {
+        return asyncRepositoryClient;
+    }
+
+    /**
+     * @return the numeric doc values cache of the core, used by the permission queries.
+     */
+    public DocValuesCache getDocValuesCache()
+    {
+        return docValuesCache;
     }
 
     @Override
@@ -766,6 +1137,7 @@ public class SolrInformationServer implements InformationServer
 
     @Override
     public IndexHealthReport reportIndexTransactions(Long minTxId, IOpenBitSet txIdsInDb, long maxTxId)
+            throws IOException
     {
         try (SolrQueryRequest request = newSolrQueryRequest())
         {
@@ -824,6 +1196,7 @@ public class SolrInformationServer implements InformationServer
 
     @Override
     public IndexHealthReport reportAclTransactionsInIndex(Long minAclTxId, IOpenBitSet aclTxIdsInDb, long maxAclTxId)
+            throws IOException
     {
         try (SolrQueryRequest request = newSolrQueryRequest())
         {
@@ -909,112 +1282,31 @@ public class SolrInformationServer implements InformationServer
                 cleanContentLastPurged = purgeTime;
             }
 
-            long txnFloor;
-            Sort sort = new Sort(new SortField(FIELD_INTXID, SortField.Type.LONG));
-            sort = sort.rewrite(searcher);
-            TopFieldCollector collector = TopFieldCollector.create(sort,
-                    1,
-                    null,
-                    false,
-                    false,
-                    false);
-
-            DelegatingCollector delegatingCollector = new TxnCacheFilter(cleanContentCache); //Filter transactions that have already been processed.
-            delegatingCollector.setLastDelegate(collector);
-            searcher.search(documentsWithOutdatedContentQuery(), delegatingCollector);
-
-            LOGGER.debug("{}-[CORE {}] Processing {} documents with content to be indexed", Thread.currentThread().getId(), core.getName(), collector.getTotalHits());
+            // Filter transactions that have already been processed and keep only the next N transactions.
+            OutdatedContentCollector collector = new OutdatedContentCollector(cleanContentCache);
+            searcher.search(documentsWithOutdatedContentQuery(), collector);
 
+            OutdatedContentReader reader = new OutdatedContentReader(searcher);
+            LongHashSet processedTxns = new LongHashSet();
+            collector.forEachDocument((doc, txnId) -> {
+                processedTxns.add(txnId);
+                docIds.add(reader.read(doc));
+            });
 
-            if(collector.getTotalHits() == 0)
+            if (docIds.isEmpty())
             {
                 LOGGER.debug("No documents with outdated text content have been found.");
                 return docIds;
             }
 
-            LOGGER.debug("Found {} documents with outdated text content.", collector.getTotalHits());
-
-            ScoreDoc[] scoreDocs = collector.topDocs().scoreDocs;
-            List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
-            int index = ReaderUtil.subIndex(scoreDocs[0].doc, leaves);
-            LeafReaderContext context = leaves.get(index);
-            NumericDocValues longs = context.reader().getNumericDocValues(FIELD_INTXID);
-            txnFloor = longs.get(scoreDocs[0].doc - context.docBase);
-
-            //Find the next N transactions
-            //The TxnCollector collects the transaction ids from the matching documents
-            //The txnIds are limited to a range >= the txnFloor and < an arbitrary transaction ceiling.
-            TxnCollector txnCollector = new TxnCollector(txnFloor);
-            searcher.search(documentsWithOutdatedContentQuery(), txnCollector);
-            LongHashSet txnSet = txnCollector.getTxnSet();
-
-            if(txnSet.size() == 0)
-            {
-                //This should really never be the case, at a minimum the transaction floor should be collected.
-                return docIds;
-            }
-
-            FieldType fieldType = searcher.getSchema().getField(FIELD_INTXID).getType();
-            BooleanQuery.Builder builder = new BooleanQuery.Builder();
-
-            for (LongCursor cursor : txnSet)
-            {
-                long txnID = cursor.value;
-                //Build up the query for the filter of transactions we need to pull the dirty content for.
-                TermQuery txnIDQuery = new TermQuery(new Term(FIELD_INTXID, fieldType.readableToIndexed(Long.toString(txnID))));
-                builder.add(new BooleanClause(txnIDQuery, BooleanClause.Occur.SHOULD));
-            }
-
-            BooleanQuery txnFilterQuery = builder.build();
-
-            //Get the docs with dirty content for the transactions gathered above.
-            DocListCollector docListCollector = new DocListCollector();
-            BooleanQuery.Builder builder2 = new BooleanQuery.Builder();
-
-            builder2.add(documentsWithOutdatedContentQuery(), BooleanClause.Occur.MUST);
-            builder2.add(new QueryWrapperFilter(txnFilterQuery), BooleanClause.Occur.MUST);
-
-            searcher.search(builder2.build(), docListCollector);
-            IntArrayList docList = docListCollector.getDocs();
-            int size = docList.size();
-
-            List<Long> processedTxns = new ArrayList<>();
-            for (int i = 0; i < size; ++i)
-            {
-                int doc = docList.get(i);
-                Document document = searcher.doc(doc, ID_AND_CONTENT_VERSION_ID_AND_CONTENT_LOCALE);
-                index = ReaderUtil.subIndex(doc, leaves);
-                context = leaves.get(index);
-                longs = context.reader().getNumericDocValues(FIELD_INTXID);
-
-                long txnId = longs.get(doc - context.docBase);
-
-                if(!cleanContentCache.containsKey(txnId))
-                {
-                    processedTxns.add(txnId);
-                    IndexableField id = document.getField(FIELD_SOLR4_ID);
-                    String idString = id.stringValue();
-                    TenantDbId tenantAndDbId = AlfrescoSolrDataModel.decodeNodeDocumentId(idString);
-
-                    ofNullable(document.getField(CONTENT_LOCALE_FIELD))
-                            .map(IndexableField::stringValue)
-                            .ifPresent(value -> tenantAndDbId.setProperty(CONTENT_LOCALE_FIELD, value));
-
-                    tenantAndDbId.setProperty(
-                            LATEST_APPLIED_CONTENT_VERSION_ID,
-                            ofNullable(document.getField(LATEST_APPLIED_CONTENT_VERSION_ID))
-                                    .map(IndexableField::stringValue)
-                                    .orElse(null));
-                    docIds.add(tenantAndDbId);
-                }
-            }
+            LOGGER.debug("{}-[CORE {}] Found {} documents with outdated text content.", Thread.currentThread().getId(), core.getName(), docIds.size());
 
             long txnTime = System.currentTimeMillis();
 
-            for(Long l : processedTxns)
+            for(LongCursor cursor : processedTxns)
             {
                 //Save the indexVersion so we know when we can clean out this entry
-                cleanContentCache.put(l, txnTime);
+                cleanContentCache.put(cursor.value, txnTime);
             }
 
             return docIds;
@@ -1242,8 +1534,20 @@ public class SolrInformationServer implements InformationServer
                 {
                     coreSummary.add("/alfrescoPathCache", infoMBean.getStatistics());
                 }
+
+                if (key.equals("alfrescoAclSetCache"))
+                {
+                    coreSummary.add("/alfrescoAclSetCache", infoMBean.getStatistics());
+                }
+
+                if (infoMBean instanceof ContextAccumulatingFilterFactory)
+                {
+                    coreSummary.add("/" + key, infoMBean.getStatistics());
+                }
             }
 
+            coreSummary.add("/" + DocValuesCache.MBEAN_KEY, docValuesCache.getStatistics());
+
             // Adds detailed stats for each registered searcher
             int searcherIndex = 0;
             List<SolrIndexSearcher> searchers = getRegisteredSearchers();
@@ -1357,6 +1661,12 @@ public class SolrInformationServer implements InformationServer
         return this.holeRetention;
     }
 
+    @Override
+    public Path getCheckpointsDirectory()
+    {
+        return Paths.get(core.getDataDir(), "checkpoints");
+    }
+
     @Override
     public M2Model getM2Model(QName modelQName)
     {
@@ -1513,47 +1823,52 @@ public class SolrInformationServer implements InformationServer
         state.setLastStartTime(startTime);
     }
 
+    @Override
+    public IndexingSession openIndexingSession()
+    {
+        return new SolrIndexingSession();
+    }
+
     @Override
     public long indexAcl(List<AclReaders> aclReaderList, boolean overwrite) throws IOException
+    {
+        try (IndexingSession session = openIndexingSession())
+        {
+            return session.indexAcl(aclReaderList, overwrite);
+        }
+    }
+
+    private long indexAcl(UpdateRequestProcessor processor, SolrQueryRequest request, List<AclReaders> aclReaderList, boolean overwrite) throws IOException
     {
         long start = System.nanoTime();
 
-        UpdateRequestProcessor processor = null;
-        try (SolrQueryRequest request = newSolrQueryRequest())
+        for (AclReaders aclReaders : notNullOrEmpty(aclReaderList))
         {
-            processor = this.core.getUpdateProcessingChain(null).createProcessor(request, newSolrQueryResponse());
-            for (AclReaders aclReaders : notNullOrEmpty(aclReaderList))
-            {
-                SolrInputDocument acl = new SolrInputDocument();
+            SolrInputDocument acl = new SolrInputDocument();
 
-                acl.addField(FIELD_SOLR4_ID, getAclDocumentId(aclReaders.getTenantDomain(), aclReaders.getId()));
-                acl.addField(FIELD_VERSION, "0");
-                acl.addField(FIELD_ACLID, aclReaders.getId());
-                acl.addField(FIELD_INACLTXID, aclReaders.getAclChangeSetId());
+            acl.addField(FIELD_SOLR4_ID, getAclDocumentId(aclReaders.getTenantDomain(), aclReaders.getId()));
+            acl.addField(FIELD_VERSION, "0");
+            acl.addField(FIELD_ACLID, aclReaders.getId());
+            acl.addField(FIELD_INACLTXID, aclReaders.getAclChangeSetId());
 
-                String tenant = aclReaders.getTenantDomain();
-                for (String reader : notNullOrEmpty(aclReaders.getReaders()))
-                {
-                    reader = addTenantToAuthority(reader, tenant);
-                    acl.addField(FIELD_READER, reader);
-                }
-
-                for (String denied : aclReaders.getDenied())
-                {
-                    denied = addTenantToAuthority(denied, tenant);
-                    acl.addField(FIELD_DENIED, denied);
-                }
-                acl.addField(FIELD_DOC_TYPE, DOC_TYPE_ACL);
+            String tenant = aclReaders.getTenantDomain();
+            for (String reader : notNullOrEmpty(aclReaders.getReaders()))
+            {
+                reader = addTenantToAuthority(reader, tenant);
+                acl.addField(FIELD_READER, reader);
+            }
 
-                AddUpdateCommand cmd = new AddUpdateCommand(request);
-                cmd.overwrite = overwrite;
-                cmd.solrDoc = acl;
-                processor.processAdd(cmd);
+            for (String denied : aclReaders.getDenied())
+            {
+                denied = addTenantToAuthority(denied, tenant);
+                acl.addField(FIELD_DENIED, denied);
             }
-        }
-        finally
-        {
-            if (processor != null) processor.finish();
+            acl.addField(FIELD_DOC_TYPE, DOC_TYPE_ACL);
+
+            AddUpdateCommand cmd = new AddUpdateCommand(request);
+            cmd.overwrite = overwrite;
+            cmd.solrDoc = acl;
+            processor.processAdd(cmd);
         }
 
         return (System.nanoTime() - start);
@@ -1562,31 +1877,30 @@ public class SolrInformationServer implements InformationServer
     @Override
     public void indexAclTransaction(AclChangeSet changeSet, boolean overwrite) throws IOException
     {
-        canUpdate();
-        UpdateRequestProcessor processor = null;
-        try (SolrQueryRequest request = newSolrQueryRequest())
+        try (IndexingSession session = openIndexingSession())
         {
-            processor = this.core.getUpdateProcessingChain(null).createProcessor(request, newSolrQueryResponse());
+            session.indexAclTransaction(changeSet, overwrite);
+        }
+    }
 
-            SolrInputDocument aclTx = new SolrInputDocument();
-            aclTx.addField(FIELD_SOLR4_ID, getAclChangeSetDocumentId(changeSet.getId()));
-            aclTx.addField(FIELD_VERSION, "0");
-            aclTx.addField(FIELD_ACLTXID, changeSet.getId());
-            aclTx.addField(FIELD_INACLTXID, changeSet.getId());
-            aclTx.addField(FIELD_ACLTXCOMMITTIME, changeSet.getCommitTimeMs());
-            aclTx.addField(FIELD_DOC_TYPE, DOC_TYPE_ACL_TX);
+    private void indexAclTransaction(UpdateRequestProcessor processor, SolrQueryRequest request, AclChangeSet changeSet, boolean overwrite) throws IOException
+    {
+        canUpdate();
 
-            AddUpdateCommand cmd = new AddUpdateCommand(request);
-            cmd.overwrite = overwrite;
-            cmd.solrDoc = aclTx;
-            processor.processAdd(cmd);
+        SolrInputDocument aclTx = new SolrInputDocument();
+        aclTx.addField(FIELD_SOLR4_ID, getAclChangeSetDocumentId(changeSet.getId()));
+        aclTx.addField(FIELD_VERSION, "0");
+        aclTx.addField(FIELD_ACLTXID, changeSet.getId());
+        aclTx.addField(FIELD_INACLTXID, changeSet.getId());
+        aclTx.addField(FIELD_ACLTXCOMMITTIME, changeSet.getCommitTimeMs());
+        aclTx.addField(FIELD_DOC_TYPE, DOC_TYPE_ACL_TX);
 
-            putAclTransactionState(processor, request, changeSet);
-        }
-        finally
-        {
-            if (processor != null) processor.finish();
-        }
+        AddUpdateCommand cmd = new AddUpdateCommand(request);
+        cmd.overwrite = overwrite;
+        cmd.solrDoc = aclTx;
+        processor.processAdd(cmd);
+
+        putAclTransactionState(processor, request, changeSet);
     }
 
     @Override
@@ -1689,14 +2003,17 @@ public class SolrInformationServer implements InformationServer
     @Override
     public void indexNode(Node node, boolean overwrite) throws IOException, JSONException
     {
-        long start = System.nanoTime();
-        final SolrQueryRequest request = newSolrQueryRequest();
+        try (IndexingSession session = openIndexingSession())
+        {
+            session.indexNode(node, overwrite);
+        }
+    }
 
-        UpdateRequestProcessor processor = null;
+    private void indexNode(UpdateRequestProcessor processor, SolrQueryRequest request, Node node, boolean overwrite) throws IOException
+    {
+        long start = System.nanoTime();
         try
         {
-            processor = this.core.getUpdateProcessingChain(null).createProcessor(request, newSolrQueryResponse());
-
             LOGGER.debug("Incoming Node {} with Status {}", node.getId(), node.getStatus());
 
             if ((node.getStatus() == SolrApiNodeStatus.DELETED)
@@ -1769,10 +2086,6 @@ public class SolrInformationServer implements InformationServer
                     node.getTxnId(),
                     exception);
 
-            processor =
-                    ofNullable(processor)
-                        .orElseGet(() -> this.core.getUpdateProcessingChain(null).createProcessor(request, newSolrQueryResponse()));
-
             AddUpdateCommand addDocCmd = new AddUpdateCommand(request);
             addDocCmd.overwrite = overwrite;
 
@@ -1797,9 +2110,6 @@ public class SolrInformationServer implements InformationServer
         }
         finally
         {
-            if (processor != null) processor.finish();
-            if (request != null) request.close();
-
             this.trackerStats.addNodeTime(System.nanoTime() - start);
         }
     }
@@ -1875,6 +2185,15 @@ public class SolrInformationServer implements InformationServer
             allNodeMetaDatas.addAll(nodeMetaDatas.orElse(Collections.emptyList()));
         }
 
+        if (nodePathCache != null)
+        {
+            // The paths of the descendants of these nodes have changed
+            allNodeMetaDatas.stream()
+                    .map(NodeMetaData::getNodeRef)
+                    .filter(Objects::nonNull)
+                    .forEach(nodePathCache::invalidate);
+        }
+
         return allNodeMetaDatas;
     }
 
@@ -1903,63 +2222,123 @@ public class SolrInformationServer implements InformationServer
         {
             if (processor != null)
             {
-                processor.finish();
+                processor.finish();
+            }
+        }
+    }
+
+    @Override
+    public void updateContent(TenantDbId docRef) throws Exception
+    {
+        try
+        {
+            // The content is fetched before opening the session, which holds the update request only for the write
+            SolrInputDocument doc = getContentDocument(docRef).get();
+            try (IndexingSession session = openIndexingSession())
+            {
+                session.indexContent(Collections.singletonList(doc));
+            }
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Unable to update the text content of node {}. See the stacktrace below for further details.", docRef.dbId, exception);
+        }
+    }
+
+    @Override
+    public CompletableFuture<SolrInputDocument> getContentDocument(TenantDbId docRef)
+    {
+        LOGGER.debug("Text content of Document DBID={} is going to be updated.", docRef.dbId);
+
+        SolrInputDocument doc = new PartialSolrInputDocument();
+        doc.removeField(FIELD_DBID);
+        doc.addField(FIELD_DBID, docRef.dbId);
+        doc.setField(FIELD_SOLR4_ID,
+                AlfrescoSolrDataModel.getNodeDocumentId(
+                        docRef.tenant,
+                        docRef.dbId));
+
+        if (!docRef.optionalBag.containsKey(CONTENT_LOCALE_FIELD))
+        {
+            return CompletableFuture.completedFuture(markContentDocumentAsInSynch(docRef, doc));
+        }
+
+        String locale = (String) docRef.optionalBag.get(CONTENT_LOCALE_FIELD);
+        String qNamePart = CONTENT_LOCALE_FIELD.substring(AlfrescoSolrDataModel.CONTENT_S_LOCALE_PREFIX.length());
+        QName propertyQName = QName.createQName(qNamePart);
+        long start = System.nanoTime();
+
+        // Expensive call to be done with ContentTracker: no thread waits for the transformation while it is queued
+        CompletableFuture<GetTextContentResponse> textContent = asyncRepositoryClient.getTextContent(docRef.dbId, propertyQName, null);
+        CompletableFuture<SolrInputDocument> contentDocument =
+                textContent.thenApply(response -> {
+                    try
+                    {
+                        addContentPropertyToDoc(doc, propertyQName, response, locale, start);
+                        return markContentDocumentAsInSynch(docRef, doc);
+                    }
+                    catch (IOException exception)
+                    {
+                        throw new CompletionException(exception);
+                    }
+                });
+        // Cancelling the content document cancels the request, e.g. while it is queued by the client
+        contentDocument.whenComplete((result, exception) -> {
+            if (contentDocument.isCancelled())
+            {
+                textContent.cancel(true);
             }
-        }
+        });
+        return contentDocument;
     }
 
-    @Override
-    public void updateContent(TenantDbId docRef) throws Exception
+    private SolrInputDocument markContentDocumentAsInSynch(TenantDbId docRef, SolrInputDocument doc)
     {
-        LOGGER.debug("Text content of Document DBID={} is going to be updated.", docRef.dbId);
+        LOGGER.debug("Text content of Document DBID={} has been updated (not yet indexed)", docRef.dbId);
 
-        UpdateRequestProcessor processor = null;
-        try (SolrQueryRequest request = newSolrQueryRequest())
-        {
-            processor = this.core.getUpdateProcessingChain(null).createProcessor(request, newSolrQueryResponse());
+        final Long latestAppliedVersionId =
+                    ofNullable(docRef.optionalBag.get(LATEST_APPLIED_CONTENT_VERSION_ID))
+                            .map(String.class::cast)
+                            .map(Long::parseLong)
+                            .orElse(CONTENT_UPDATED_MARKER);
 
-            SolrInputDocument doc = new PartialSolrInputDocument();
-            doc.removeField(FIELD_DBID);
-            doc.addField(FIELD_DBID, docRef.dbId);
-            doc.setField(FIELD_SOLR4_ID,
-                    AlfrescoSolrDataModel.getNodeDocumentId(
-                            docRef.tenant,
-                            docRef.dbId));
+        markAsContentInSynch(doc, latestAppliedVersionId);
 
-            if (docRef.optionalBag.containsKey(CONTENT_LOCALE_FIELD))
-            {
-                addContentToDoc(docRef, doc, docRef.dbId);
-            }
+        LOGGER.debug(
+                "Text content of Document DBID={} has been marked as updated (latest content version ID = {})",
+                docRef.dbId,
+                (latestAppliedVersionId == CONTENT_UPDATED_MARKER ? "N.A." : latestAppliedVersionId));
 
-            LOGGER.debug("Text content of Document DBID={} has been updated (not yet indexed)", docRef.dbId);
-
-            final Long latestAppliedVersionId =
-                        ofNullable(docRef.optionalBag.get(LATEST_APPLIED_CONTENT_VERSION_ID))
-                                .map(String.class::cast)
-                                .map(Long::parseLong)
-                                .orElse(CONTENT_UPDATED_MARKER);
+        return doc;
+    }
 
-            markAsContentInSynch(doc, latestAppliedVersionId);
+    @Override
+    public void indexContent(List<SolrInputDocument> docs) throws IOException
+    {
+        try (IndexingSession session = openIndexingSession())
+        {
+            session.indexContent(docs);
+        }
+    }
 
+    private void indexContent(UpdateRequestProcessor processor, SolrQueryRequest request, List<SolrInputDocument> docs)
+    {
+        for (SolrInputDocument doc : docs)
+        {
             // Add to index
             AddUpdateCommand addDocCmd = new AddUpdateCommand(request);
             addDocCmd.overwrite = true;
             addDocCmd.solrDoc = doc;
 
-            processor.processAdd(addDocCmd);
-
-            LOGGER.debug(
-                    "Text content of Document DBID={} has been marked as updated (latest content version ID = {})",
-                    docRef.dbId,
-                    (latestAppliedVersionId == CONTENT_UPDATED_MARKER ? "N.A." : latestAppliedVersionId));
-        }
-        catch (Exception exception)
-        {
-            LOGGER.error("Unable to update the text content of node {}. See the stacktrace below for further details.", docRef.dbId, exception);
-        }
-        finally
-        {
-            if(processor != null) {processor.finish();}
+            try
+            {
+                processor.processAdd(addDocCmd);
+            }
+            catch (Exception exception)
+            {
+                // The document is still marked as outdated, so it will be picked up again by the next ContentTracker cycle
+                LOGGER.error("Unable to update the text content of node {}. See the stacktrace below for further details.", doc.getFieldValue(FIELD_DBID), exception);
+            }
         }
     }
 
@@ -1967,11 +2346,16 @@ public class SolrInformationServer implements InformationServer
     @Override
     public void indexNodes(List<Node> nodes, boolean overwrite) throws IOException, JSONException
     {
-        UpdateRequestProcessor processor = null;
-        try (SolrQueryRequest request = newSolrQueryRequest())
+        try (IndexingSession session = openIndexingSession())
         {
-            processor = this.core.getUpdateProcessingChain(null).createProcessor(request, newSolrQueryResponse());
+            session.indexNodes(nodes, overwrite);
+        }
+    }
 
+    private void indexNodes(UpdateRequestProcessor processor, SolrQueryRequest request, List<Node> nodes, boolean overwrite) throws IOException, JSONException
+    {
+        try
+        {
             Map<Long, Node> nodeIdsToNodes = new HashMap<>();
             EnumMap<SolrApiNodeStatus, List<Long>> nodeStatusToNodeIds = new EnumMap<>(SolrApiNodeStatus.class);
 
@@ -2113,9 +2497,7 @@ public class SolrInformationServer implements InformationServer
                     // Make sure any unindexed or error doc is removed.
                     deleteErrorNode(processor, request, node);
 
-                    addDocCmd.solrDoc =
-                            populateWithMetadata(basicDocument(nodeMetaData, DOC_TYPE_NODE, PartialSolrInputDocument::new),
-                                    nodeMetaData, nmdp);
+                    addDocCmd.solrDoc = nodeDocument(nodeMetaData, nmdp);
                     processor.processAdd(addDocCmd);
 
                     this.trackerStats.addNodeTime(System.nanoTime() - start);
@@ -2125,20 +2507,24 @@ public class SolrInformationServer implements InformationServer
         catch (Exception e)
         {
             LOGGER.error(" Bulk indexing failed, do one node at a time. See the stacktrace below for further details.", e);
+
+            // Not through the processor which failed: each node is indexed with its own request and processor
             for (Node node : nodes)
             {
-                this.indexNode(node, true);
-            }
-        }
-        finally
-        {
-            if (processor != null)
-            {
-                processor.finish();
+                indexNode(node, true);
             }
         }
     }
 
+    /**
+     * Builds the (partial) document of a node, as indexed by {@link #indexNodes(List, boolean)}, from its metadata.
+     * It doesn't touch the index, so it can be also used for measuring the document building alone.
+     */
+    PartialSolrInputDocument nodeDocument(NodeMetaData metadata, NodeMetaDataParameters nmdp)
+    {
+        return populateWithMetadata(basicDocument(metadata, DOC_TYPE_NODE, PartialSolrInputDocument::new), metadata, nmdp);
+    }
+
     private PartialSolrInputDocument populateWithMetadata(PartialSolrInputDocument document, NodeMetaData metadata, NodeMetaDataParameters nmdp)
     {
         populateFields(metadata, document, nmdp);
@@ -2208,7 +2594,7 @@ public class SolrInformationServer implements InformationServer
             // the node with that information before updating the SOLR Document
             if (!getPathsInNodeBatches)
             {
-                extendedMetadata = getNodeMetaDataWithPathInfo(metadata.getId());
+                extendedMetadata = getNodeMetaDataWithPaths(metadata);
             }
             updatePathRelatedFields(extendedMetadata, doc);
             updateNamePathRelatedFields(extendedMetadata, doc);
@@ -2273,6 +2659,35 @@ public class SolrInformationServer implements InformationServer
         nmdp.setMaxResults(1);
         return getNodesMetaDataFromRepository(nmdp).get().iterator().next();
     }
+
+    /**
+     * Gets the paths information of a node fetched without it: the paths are derived from the cached paths of the
+     * parents when possible, otherwise the node is fetched again from the repository with its paths.
+     */
+    private NodeMetaData getNodeMetaDataWithPaths(NodeMetaData metadata)
+    {
+        if (nodePathCache == null)
+        {
+            return getNodeMetaDataWithPathInfo(metadata.getId());
+        }
+
+        boolean container = mayHaveChildren(metadata);
+        if (nodePathCache.derivePaths(metadata, container))
+        {
+            return metadata;
+        }
+
+        NodeMetaData extendedMetadata = getNodeMetaDataWithPathInfo(metadata.getId());
+        nodePathCache.learn(extendedMetadata, container);
+        return extendedMetadata;
+    }
+
+    private boolean isCategoryProperty(QName propertyQName)
+    {
+        return ofNullable(dataModel.getPropertyDefinition(propertyQName))
+                .map(definition -> DataTypeDefinition.CATEGORY.equals(definition.getDataType().getName()))
+                .orElse(false);
+    }
     
     private void updateAncestorRelatedFields(NodeMetaData nodeMetaData, SolrInputDocument doc)
     {
@@ -2693,16 +3108,6 @@ public class SolrInformationServer implements InformationServer
         }
     }
 
-    private void addContentToDoc(TenantDbId docRef, SolrInputDocument doc, long dbId) throws AuthenticationException, IOException
-    {
-        String locale = (String) docRef.optionalBag.get(CONTENT_LOCALE_FIELD);
-        String qNamePart = CONTENT_LOCALE_FIELD.substring(AlfrescoSolrDataModel.CONTENT_S_LOCALE_PREFIX.length());
-        QName propertyQName = QName.createQName(qNamePart);
-        addContentPropertyToDocUsingAlfrescoRepository(doc, propertyQName, dbId, locale);
-    }
-
-
-
     /**
      * Extracts the text content from the given API response.
      *
@@ -2729,16 +3134,18 @@ public class SolrInformationServer implements InformationServer
         }
     }
 
-    private void addContentPropertyToDocUsingAlfrescoRepository(
+    /**
+     * Adds the text content of the given API response, and its transformation metadata, to the document.
+     * The response is released.
+     */
+    private void addContentPropertyToDoc(
             SolrInputDocument doc,
             QName propertyQName,
-            long dbId,
-            String locale) throws AuthenticationException, IOException
+            GetTextContentResponse textContent,
+            String locale,
+            long start) throws IOException
     {
-        long start = System.nanoTime();
-
-        // Expensive call to be done with ContentTracker
-        try (GetTextContentResponse response = repositoryClient.getTextContent(dbId, propertyQName, null)) {
+        try (GetTextContentResponse response = textContent) {
             addContentPropertyMetadata(doc, propertyQName, AlfrescoSolrDataModel.SpecializedFieldType.TRANSFORMATION_STATUS, response);
             addContentPropertyMetadata(doc, propertyQName, AlfrescoSolrDataModel.SpecializedFieldType.TRANSFORMATION_EXCEPTION, response);
             addContentPropertyMetadata(doc, propertyQName, AlfrescoSolrDataModel.SpecializedFieldType.TRANSFORMATION_TIME, response);
@@ -2885,83 +3292,75 @@ public class SolrInformationServer implements InformationServer
     @Override
     public void updateTransaction(Transaction txn) throws IOException
     {
-        canUpdate();
-        UpdateRequestProcessor processor = null;
-        try (SolrQueryRequest request = newSolrQueryRequest())
+        try (IndexingSession session = openIndexingSession())
         {
-            processor = this.core.getUpdateProcessingChain(null).createProcessor(request, newSolrQueryResponse());
-
-            AddUpdateCommand cmd = new AddUpdateCommand(request);
-            cmd.overwrite = true;
-            SolrInputDocument input = new SolrInputDocument();
-            input.addField(FIELD_SOLR4_ID, AlfrescoSolrDataModel.getTransactionDocumentId(txn.getId()));
-            input.addField(FIELD_VERSION, 1);
-            input.addField(FIELD_TXID, txn.getId());
-            input.addField(FIELD_INTXID, txn.getId());
-            input.addField(FIELD_TXCOMMITTIME, txn.getCommitTimeMs());
-            input.addField(FIELD_DOC_TYPE, DOC_TYPE_TX);
-            if (cascadeTrackingEnabled())
-            {
-                input.addField(FIELD_CASCADE_FLAG, 0);
-            }
-            cmd.solrDoc = input;
-            processor.processAdd(cmd);
+            session.updateTransaction(txn);
         }
-        finally
+    }
+
+    private void updateTransaction(UpdateRequestProcessor processor, SolrQueryRequest request, Transaction txn) throws IOException
+    {
+        canUpdate();
+
+        AddUpdateCommand cmd = new AddUpdateCommand(request);
+        cmd.overwrite = true;
+        SolrInputDocument input = new SolrInputDocument();
+        input.addField(FIELD_SOLR4_ID, AlfrescoSolrDataModel.getTransactionDocumentId(txn.getId()));
+        input.addField(FIELD_VERSION, 1);
+        input.addField(FIELD_TXID, txn.getId());
+        input.addField(FIELD_INTXID, txn.getId());
+        input.addField(FIELD_TXCOMMITTIME, txn.getCommitTimeMs());
+        input.addField(FIELD_DOC_TYPE, DOC_TYPE_TX);
+        if (cascadeTrackingEnabled())
         {
-            if (processor != null)
-            {
-                processor.finish();
-            }
+            input.addField(FIELD_CASCADE_FLAG, 0);
         }
+        cmd.solrDoc = input;
+        processor.processAdd(cmd);
     }
 
     @Override
     public void indexTransaction(Transaction info, boolean overwrite) throws IOException
     {
-        canUpdate();
-        UpdateRequestProcessor processor = null;
-        try (SolrQueryRequest request = newSolrQueryRequest())
+        try (IndexingSession session = openIndexingSession())
         {
-            processor = this.core.getUpdateProcessingChain(null).createProcessor(request, newSolrQueryResponse());
-
-            AddUpdateCommand cmd = new AddUpdateCommand(request);
-            cmd.overwrite = overwrite;
-            SolrInputDocument input = new SolrInputDocument();
-            input.addField(FIELD_SOLR4_ID, AlfrescoSolrDataModel.getTransactionDocumentId(info.getId()));
-            input.addField(FIELD_VERSION, 0);
-            input.addField(FIELD_TXID, info.getId());
-            input.addField(FIELD_INTXID, info.getId());
-            input.addField(FIELD_TXCOMMITTIME, info.getCommitTimeMs());
-            input.addField(FIELD_DOC_TYPE, DOC_TYPE_TX);
+            session.indexTransaction(info, overwrite);
+        }
+    }
 
-            /*
-                For backwards compat reasons adding 3 new stored fields. 2 of these fields are duplicate data but there are needed so that
-                we can properly update the transaction record for ACE-4284.
-            */
-            //This fields will be used to update the transaction record
-            //They will only be on the record until the cascading updates for this transaction are processed
-            input.addField(FIELD_S_TXID, info.getId());
-            input.addField(FIELD_S_TXCOMMITTIME, info.getCommitTimeMs());
+    private void indexTransaction(UpdateRequestProcessor processor, SolrQueryRequest request, Transaction info, boolean overwrite) throws IOException
+    {
+        canUpdate();
 
-            if (cascadeTrackingEnabled())
-            {
-                //Set the cascade flag to 1. This means cascading updates have not been done yet.
-                input.addField(FIELD_CASCADE_FLAG, 1);
-            }
+        AddUpdateCommand cmd = new AddUpdateCommand(request);
+        cmd.overwrite = overwrite;
+        SolrInputDocument input = new SolrInputDocument();
+        input.addField(FIELD_SOLR4_ID, AlfrescoSolrDataModel.getTransactionDocumentId(info.getId()));
+        input.addField(FIELD_VERSION, 0);
+        input.addField(FIELD_TXID, info.getId());
+        input.addField(FIELD_INTXID, info.getId());
+        input.addField(FIELD_TXCOMMITTIME, info.getCommitTimeMs());
+        input.addField(FIELD_DOC_TYPE, DOC_TYPE_TX);
 
-            cmd.solrDoc = input;
-            processor.processAdd(cmd);
+        /*
+            For backwards compat reasons adding 3 new stored fields. 2 of these fields are duplicate data but there are needed so that
+            we can properly update the transaction record for ACE-4284.
+        */
+        //This fields will be used to update the transaction record
+        //They will only be on the record until the cascading updates for this transaction are processed
+        input.addField(FIELD_S_TXID, info.getId());
+        input.addField(FIELD_S_TXCOMMITTIME, info.getCommitTimeMs());
 
-            putTransactionState(processor, request, info);
-        }
-        finally
+        if (cascadeTrackingEnabled())
         {
-            if (processor != null)
-            {
-                processor.finish();
-            }
+            //Set the cascade flag to 1. This means cascading updates have not been done yet.
+            input.addField(FIELD_CASCADE_FLAG, 1);
         }
+
+        cmd.solrDoc = input;
+        processor.processAdd(cmd);
+
+        putTransactionState(processor, request, info);
     }
 
     /**
@@ -3108,6 +3507,18 @@ public class SolrInformationServer implements InformationServer
         return isInIndex(changeSetId, aclChangeSetCache, FIELD_ACLTXID, populateCache, core);
     }
 
+    @Override
+    public LongHashSet txnsInIndex(long[] txnIds, boolean populateCache) throws IOException
+    {
+        return idsInIndex(txnIds, txnIdCache, FIELD_TXID, populateCache, core);
+    }
+
+    @Override
+    public LongHashSet aclChangeSetsInIndex(long[] changeSetIds, boolean populateCache) throws IOException
+    {
+        return idsInIndex(changeSetIds, aclChangeSetCache, FIELD_ACLTXID, populateCache, core);
+    }
+
     @Override
     public void clearProcessedTransactions()
     {
@@ -3382,6 +3793,56 @@ public class SolrInformationServer implements InformationServer
         }
     }
 
+    /**
+     * Batch version of {@link #isInIndex(long, LRU, String, boolean, SolrCore)}: the ids missing from the cache are
+     * resolved with a single range query, collecting the matching ids from the doc values of the field, instead of
+     * running a search (and acquiring a searcher) for each of them.
+     */
+    private LongHashSet idsInIndex(long[] ids, LRU cache, String fieldName, boolean populateCache, SolrCore core) throws IOException
+    {
+        LongHashSet found = new LongHashSet();
+        LongHashSet missing = new LongHashSet();
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long id : ids)
+        {
+            if (cache.containsKey(id))
+            {
+                found.add(id);
+            }
+            else
+            {
+                missing.add(id);
+                min = Math.min(min, id);
+                max = Math.max(max, id);
+                if (populateCache)
+                {
+                    cache.put(id, null); // Safe to add this here because we reset this on rollback.
+                }
+            }
+        }
+
+        if (missing.isEmpty())
+        {
+            return found;
+        }
+
+        RefCounted<SolrIndexSearcher> refCounted = null;
+        try
+        {
+            refCounted = core.getSearcher();
+            SolrIndexSearcher searcher = refCounted.get();
+            SchemaField field = searcher.getSchema().getField(fieldName);
+            Query q = field.getType().getRangeQuery(null, field, Long.toString(min), Long.toString(max), true, true);
+            searcher.search(q, new IdsInIndexCollector(fieldName, missing, found));
+            return found;
+        }
+        finally
+        {
+            ofNullable(refCounted).ifPresent(RefCounted::decref);
+        }
+    }
+
     private SolrDocumentList executeQueryRequest(SolrQueryRequest request, SolrQueryResponse response, SolrRequestHandler handler)
     {
         handler.handleRequest(request, response);
@@ -3525,15 +3986,18 @@ public class SolrInformationServer implements InformationServer
             });
     }
 
-    private void cascadeUpdateV2(
+    /**
+     * Updates the path related fields of the indexed descendants of the given node, whose metadata is requested in
+     * batches from the Repository.
+     */
+    void cascadeUpdateV2(
             NodeMetaData parentNodeMetaData,
             boolean overwrite,
             SolrQueryRequest request,
             UpdateRequestProcessor processor) throws IOException, JSONException
     {
         RefCounted<SolrIndexSearcher> refCounted = null;
-        IntArrayList docList;
-        Set<Long> childIds = new HashSet<>();
+        long[] childIds;
 
         try
         {
@@ -3544,73 +4008,105 @@ public class SolrInformationServer implements InformationServer
             BooleanClause booleanClause = new BooleanClause(termQuery, BooleanClause.Occur.MUST);
             builder.add(booleanClause);
             BooleanQuery booleanQuery = builder.build();
-            DocListCollector collector = new DocListCollector();
+            DbidCollector collector = new DbidCollector();
             searcher.search(booleanQuery, collector);
-            docList = collector.getDocs();
-            int size = docList.size();
-            for(int i=0; i<size; i++)
-            {
-                int docId = docList.get(i);
-                Document document = searcher.doc(docId, REQUEST_ONLY_ID_FIELD);
-                IndexableField indexableField = document.getField(FIELD_SOLR4_ID);
-                String id = indexableField.stringValue();
-                TenantDbId ids = AlfrescoSolrDataModel.decodeNodeDocumentId(id);
-                childIds.add(ids.dbId);
-            }
+            childIds = collector.getDbids();
         }
         finally
         {
             ofNullable(refCounted).ifPresent(RefCounted::decref);
         }
 
-        for (Long childId : childIds)
+        // Children metadata are requested in batches, keeping at most cascadeMetadataParallelism requests in flight.
+        // Responses are consumed in submission order, on the calling thread, because the update processor isn't thread safe.
+        Deque<Future<Optional<Collection<NodeMetaData>>>> inFlight = new ArrayDeque<>(cascadeMetadataParallelism);
+        int nextBatchStart = 0;
+        try
         {
-            NodeMetaDataParameters nmdp = new NodeMetaDataParameters();
-            nmdp.setFromNodeId(childId);
-            nmdp.setToNodeId(childId);
-            nmdp.setIncludeAclId(true);
-            nmdp.setIncludeAspects(false);
-            nmdp.setIncludeChildAssociations(false);
-            nmdp.setIncludeChildIds(true);
-            nmdp.setIncludeNodeRef(true);
-            nmdp.setIncludeOwner(false);
-            nmdp.setIncludeParentAssociations(false);
-
-            // We only care about the path and ancestors (which is included) for this case
-            nmdp.setIncludePaths(true);
-            nmdp.setIncludeProperties(false);
-            nmdp.setIncludeType(true);
-            nmdp.setIncludeTxnId(true);
-            nmdp.setMaxResults(1);
-            // Gets only one
-            Optional<Collection<NodeMetaData>> nodeMetaDatas = getNodesMetaDataFromRepository(nmdp);
-
-            if (nodeMetaDatas.isPresent() && !nodeMetaDatas.get().isEmpty())
+            while (nextBatchStart < childIds.length || !inFlight.isEmpty())
             {
-                NodeMetaData nodeMetaData = nodeMetaDatas.get().iterator().next();
+                while (nextBatchStart < childIds.length && inFlight.size() < cascadeMetadataParallelism)
+                {
+                    int batchEnd = Math.min(nextBatchStart + cascadeMetadataBatchSize, childIds.length);
+                    NodeMetaDataParameters nmdp = cascadeMetadataParameters(Arrays.copyOfRange(childIds, nextBatchStart, batchEnd));
+                    inFlight.add(cascadeMetadataExecutor.submit(() -> getNodesMetaDataFromRepository(nmdp)));
+                    nextBatchStart = batchEnd;
+                }
 
-                // Only cascade update nods we know can not have changed and must be in this shard
-                // Node in the current TX will be explicitly updated in the outer loop
-                // We do not bring in changes from the future as nodes may switch shards and we do not want the logic here.
-                if (nodeMetaData.getTxnId() < parentNodeMetaData.getTxnId())
+                Optional<Collection<NodeMetaData>> nodeMetaDatas = waitFor(inFlight.poll());
+                for (NodeMetaData nodeMetaData : nodeMetaDatas.orElse(Collections.emptyList()))
                 {
-                    LOGGER.debug("Cascade update child doc {}", childId);
+                    // Only cascade update nods we know can not have changed and must be in this shard
+                    // Node in the current TX will be explicitly updated in the outer loop
+                    // We do not bring in changes from the future as nodes may switch shards and we do not want the logic here.
+                    if (nodeMetaData.getTxnId() < parentNodeMetaData.getTxnId())
+                    {
+                        LOGGER.debug("Cascade update child doc {}", nodeMetaData.getId());
 
-                    SolrInputDocument document = basicDocument(nodeMetaData, DOC_TYPE_NODE, PartialSolrInputDocument::new);
+                        SolrInputDocument document = basicDocument(nodeMetaData, DOC_TYPE_NODE, PartialSolrInputDocument::new);
 
-                    AddUpdateCommand addDocCmd = new AddUpdateCommand(request);
-                    addDocCmd.overwrite = overwrite;
-                    addDocCmd.solrDoc = document;
-                    if (cascadeTrackingEnabled())
-                    {
-                        updatePathRelatedFields(nodeMetaData, document);
-                        updateNamePathRelatedFields(nodeMetaData, document);
-                        updateAncestorRelatedFields(nodeMetaData, document);
-                    }
+                        AddUpdateCommand addDocCmd = new AddUpdateCommand(request);
+                        addDocCmd.overwrite = overwrite;
+                        addDocCmd.solrDoc = document;
+                        if (cascadeTrackingEnabled())
+                        {
+                            updatePathRelatedFields(nodeMetaData, document);
+                            updateNamePathRelatedFields(nodeMetaData, document);
+                            updateAncestorRelatedFields(nodeMetaData, document);
+                        }
                         processor.processAdd(addDocCmd);
+                    }
                 }
             }
         }
+        finally
+        {
+            inFlight.forEach(pending -> pending.cancel(true));
+        }
+    }
+
+    private NodeMetaDataParameters cascadeMetadataParameters(long[] childIds)
+    {
+        List<Long> nodeIds = new ArrayList<>(childIds.length);
+        for (long childId : childIds)
+        {
+            nodeIds.add(childId);
+        }
+
+        NodeMetaDataParameters nmdp = new NodeMetaDataParameters();
+        nmdp.setNodeIds(nodeIds);
+        nmdp.setIncludeAclId(true);
+        nmdp.setIncludeAspects(false);
+        nmdp.setIncludeChildAssociations(false);
+        nmdp.setIncludeChildIds(true);
+        nmdp.setIncludeNodeRef(true);
+        nmdp.setIncludeOwner(false);
+        nmdp.setIncludeParentAssociations(false);
+
+        // We only care about the path and ancestors (which is included) for this case
+        nmdp.setIncludePaths(true);
+        nmdp.setIncludeProperties(false);
+        nmdp.setIncludeType(true);
+        nmdp.setIncludeTxnId(true);
+        nmdp.setMaxResults(nodeIds.size());
+        return nmdp;
+    }
+
+    private static <T> T waitFor(Future<T> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the children metadata.", exception);
+        }
+        catch (ExecutionException exception)
+        {
+            throw new IOException("Unable to get the children metadata.", exception.getCause());
+        }
     }
 
     private long topNodeId(SolrQuery.ORDER order)
@@ -3665,10 +4161,22 @@ public class SolrInformationServer implements InformationServer
         }
     }
 
+    /**
+     * Reports the differences between the ids of the given field in the index and in the Repository.
+     * When the field has docValues, the ids in the index are collected by streaming the docValues of each
+     * segment and merged with the Repository ids (see {@link DocValuesIdReconciler}); otherwise they are faceted by
+     * ranges of {@link #BATCH_FACET_TXS} ids.
+     */
     private void reportTransactionInfo(TransactionInfoReporter reporter, Long minId, long maxId, IOpenBitSet idsInDb,
-                                       SolrQueryRequest request, String field)
+                                       SolrQueryRequest request, String field) throws IOException
     {
-        if (minId != null)
+        if (minId != null && hasNumericDocValues(field))
+        {
+            DocValuesIdReconciler.IndexedIds idsInIndex =
+                    DocValuesIdReconciler.collect(request.getSearcher().getIndexReader(), field, null, minId, maxId);
+            DocValuesIdReconciler.reconcile(idsInIndex, idsInDb, minId, maxId, reporter);
+        }
+        else if (minId != null)
         {
             IOpenBitSet idsInIndex = this.getOpenBitSetInstance();
             long batchStartId = minId;
@@ -3728,8 +4236,21 @@ public class SolrInformationServer implements InformationServer
     }
 
     private void setDuplicates(IndexHealthReport report, SolrQueryRequest request, String docType,
-                               SetDuplicatesCommand cmd)
+                               SetDuplicatesCommand cmd) throws IOException
     {
+        if (hasNumericDocValues(FIELD_DBID))
+        {
+            // The documents of the given type are found through the postings of DOC_TYPE, which has no docValues
+            DocValuesIdReconciler.IndexedIds dbIds =
+                    DocValuesIdReconciler.collect(request.getSearcher().getIndexReader(), FIELD_DBID,
+                            new Term(FIELD_DOC_TYPE, docType), 0, Long.MAX_VALUE);
+            for (long duplicatedDbId : dbIds.duplicates())
+            {
+                cmd.execute(report, duplicatedDbId);
+            }
+            return;
+        }
+
         // A mincount of 2 checks for duplicates in solr
         NamedList<Integer> dbIdCounts = getFacets(request, FIELD_DOC_TYPE + ":" + docType, FIELD_DBID, 2);
         for (Map.Entry<String, Integer> dbId : dbIdCounts)
@@ -3739,6 +4260,15 @@ public class SolrInformationServer implements InformationServer
         }
     }
 
+    private boolean hasNumericDocValues(String field)
+    {
+        SchemaField schemaField = core.getLatestSchema().getFieldOrNull(field);
+        return schemaField != null
+                && schemaField.hasDocValues()
+                && !schemaField.multiValued()
+                && schemaField.getType().getNumberType() == NumberType.LONG;
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     private NamedList<Integer> getFacets(SolrQueryRequest request, String query, String field, int minCount)
     {
@@ -3771,11 +4301,16 @@ public class SolrInformationServer implements InformationServer
 
     private String getFieldValueString(SolrDocument doc, String fieldName)
     {
-        IndexableField field = (IndexableField)doc.getFieldValue(fieldName);
+        // Stored fields come as IndexableField, docValues only fields (e.g. _version_) as plain values
+        Object field = doc.getFieldValue(fieldName);
         String value = null;
-        if (field != null)
+        if (field instanceof IndexableField)
+        {
+            value = ((IndexableField) field).stringValue();
+        }
+        else if (field != null)
         {
-            value = field.stringValue();
+            value = field.toString();
         }
         return value;
     }
@@ -3787,6 +4322,7 @@ public class SolrInformationServer implements InformationServer
 
     private Query documentsWithOutdatedContentQuery()
     {
+        // The marker is rarely set, so the lookup goes through the postings of the (indexed) field
         Query onlyDocumentsWhoseContentNeedsToBeUpdated =
                 LegacyNumericRangeQuery.newLongRange(
                         LAST_INCOMING_CONTENT_VERSION_ID,
@@ -28,6 +28,7 @@ package org.alfresco.solr.cache;
 
 import java.io.IOException;
 
+import org.alfresco.solr.query.AuthoritySetDocSet;
 import org.apache.lucene.search.Query;
 import org.apache.solr.search.CacheRegenerator;
 import org.apache.solr.search.SolrCache;
@@ -36,6 +37,9 @@ import org.apache.solr.search.SolrIndexSearcher;
 /**
  * Cache regeneration for AUTHORITY and AUTHSET queries.
  * 
+ * It also regenerates the reader and denied caches: the documents of the segments
+ * which are still part of the new searcher are reused (see {@link AuthoritySetDocSet}).
+ * 
  * @author Matt Ward
  */
 public class AuthorityCacheRegenerator implements CacheRegenerator
@@ -53,6 +57,12 @@ public class AuthorityCacheRegenerator implements CacheRegenerator
             // Execute the query on the new searcher - resulting in cache population as a side-effect.
             newSearcher.getDocSet(authQuery);
         }
+        else if (oldKey instanceof String && oldVal instanceof AuthoritySetDocSet)
+        {
+            // The reader and denied caches contain the documents readable or denied by a set of authorities.
+            AuthoritySetDocSet previous = (AuthoritySetDocSet) oldVal;
+            newCache.put(oldKey, AuthoritySetDocSet.build(newSearcher, previous.getField(), (String) oldKey, previous));
+        }
         return true;
     }
 }
@@ -44,5 +44,6 @@ public class CacheConstants
     public final static String ALFRESCO_OWNERLOOKUP_CACHE = "alfrescoOwnerCache";
     public final static String ALFRESCO_READER_CACHE = "alfrescoReaderCache";
     public final static String ALFRESCO_DENIED_CACHE = "alfrescoDeniedCache";
+    public final static String ALFRESCO_ACL_SET_CACHE = "alfrescoAclSetCache";
     public final static String ALFRESCO_PATH_CACHE = "alfrescoPathCache";
 }
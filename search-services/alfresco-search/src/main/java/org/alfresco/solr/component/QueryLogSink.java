@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.component;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.alfresco.util.TraceableThreadFactory;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the query log entries in a bounded buffer, which is drained by a background thread that adds them in
+ * batches to the query log core. When the buffer is full (e.g. the query log core can't keep up) the new entries are
+ * dropped, so the search requests never wait for the query log.
+ */
+class QueryLogSink implements Closeable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryLogSink.class);
+
+    private static final long CLOSE_TIMEOUT_IN_MILLIS = 5000;
+
+    private final CoreContainer container;
+    private final String logCoreName;
+    private final BlockingQueue<SolrInputDocument> buffer;
+    private final int batchSize;
+    private final Thread drainer;
+    private volatile boolean closed;
+
+    private final LongAdder logged = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    QueryLogSink(CoreContainer container, String logCoreName, int bufferSize, int batchSize)
+    {
+        this.container = container;
+        this.logCoreName = logCoreName;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.batchSize = batchSize;
+
+        TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+        threadFactory.setThreadDaemon(true);
+        threadFactory.setNamePrefix("QueryLog-" + logCoreName + "-");
+        this.drainer = threadFactory.newThread(this::drain);
+        this.drainer.start();
+    }
+
+    /**
+     * Adds an entry to the buffer, without waiting.
+     *
+     * @return false if the entry has been dropped because the buffer is full (or the sink has been closed).
+     */
+    boolean offer(SolrInputDocument entry)
+    {
+        if (closed || !buffer.offer(entry))
+        {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    NamedList<Object> getStatistics()
+    {
+        NamedList<Object> statistics = new SimpleOrderedMap<>();
+        statistics.add("logged", logged.sum());
+        statistics.add("dropped", dropped.sum());
+        statistics.add("failed", failed.sum());
+        statistics.add("pending", buffer.size());
+        return statistics;
+    }
+
+    /**
+     * Stops accepting new entries and waits (for a while) for the pending ones to be written.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        try
+        {
+            drainer.join(CLOSE_TIMEOUT_IN_MILLIS);
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+        drainer.interrupt();
+    }
+
+    private void drain()
+    {
+        List<SolrInputDocument> batch = new ArrayList<>(batchSize);
+        while (!closed || !buffer.isEmpty())
+        {
+            try
+            {
+                SolrInputDocument first = buffer.poll(1, TimeUnit.SECONDS);
+                if (first != null)
+                {
+                    batch.add(first);
+                    buffer.drainTo(batch, batchSize - 1);
+                    write(batch);
+                    batch.clear();
+                }
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void write(List<SolrInputDocument> batch)
+    {
+        SolrCore logCore = container.getCore(logCoreName);
+        if (logCore == null)
+        {
+            dropped.add(batch.size());
+            return;
+        }
+
+        SolrQueryRequest request = null;
+        try
+        {
+            request = new LocalSolrQueryRequest(logCore, new NamedList<>());
+            UpdateRequestProcessor processor = logCore.getUpdateProcessingChain(null).createProcessor(request, new SolrQueryResponse());
+            for (SolrInputDocument entry : batch)
+            {
+                AddUpdateCommand cmd = new AddUpdateCommand(request);
+                cmd.overwrite = true;
+                cmd.solrDoc = entry;
+                processor.processAdd(cmd);
+            }
+            processor.finish();
+            logged.add(batch.size());
+        }
+        catch (Exception exception)
+        {
+            failed.add(batch.size());
+            LOGGER.warn("Unable to add {} entries to the query log core {}.", batch.size(), logCoreName, exception);
+        }
+        finally
+        {
+            if (request != null)
+            {
+                request.close();
+            }
+            logCore.close();
+        }
+    }
+}
@@ -40,42 +40,115 @@ import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ShardParams;
 import org.apache.solr.common.params.SpellingParams;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.CloseHook;
 import org.apache.solr.core.CoreContainer;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.handler.component.ResponseBuilder;
 import org.apache.solr.handler.component.SearchComponent;
-import org.apache.solr.request.LocalSolrQueryRequest;
-import org.apache.solr.request.SolrQueryRequest;
-import org.apache.solr.response.SolrQueryResponse;
-import org.apache.solr.update.AddUpdateCommand;
-import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.apache.solr.util.plugin.SolrCoreAware;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 
 /**
+ * Logs the queries in the query log core (i.e. the core named as the current one with the "_qlog" suffix).
+ * The entries are built on the request thread and then handed over to a {@link QueryLogSink}, which writes them in
+ * batches in background; the "bufferSize" and "batchSize" init args control the sink. The sink (and its thread) is
+ * only created once the query log core is there, so the cores without one don't pay for it.
+ *
  * @author Andy
  */
-public class QueryLoggingComponent extends SearchComponent
+public class QueryLoggingComponent extends SearchComponent implements SolrCoreAware
 {
+    private static final int DEFAULT_BUFFER_SIZE = 10000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private CoreContainer container;
+    private String logCoreName;
+    private volatile QueryLogSink sink;
+    private boolean closed;
 
     @Override
-    public void finishStage(ResponseBuilder rb)
+    public void init(NamedList args)
     {
-        super.finishStage(rb);
-        if (rb.stage != ResponseBuilder.STAGE_GET_FIELDS)
-            return;
-        try
+        super.init(args);
+        if (args != null)
+        {
+            Object bufferSizeArg = args.get("bufferSize");
+            if (bufferSizeArg != null)
+            {
+                bufferSize = Integer.parseInt(bufferSizeArg.toString());
+            }
+            Object batchSizeArg = args.get("batchSize");
+            if (batchSizeArg != null)
+            {
+                batchSize = Integer.parseInt(batchSizeArg.toString());
+            }
+        }
+    }
+
+    @Override
+    public void inform(SolrCore core)
+    {
+        container = core.getCoreContainer();
+        logCoreName = core.getName() + "_qlog";
+        core.addCloseHook(new CloseHook()
+        {
+            @Override
+            public void preClose(SolrCore core)
+            {
+                closeSink();
+            }
+
+            @Override
+            public void postClose(SolrCore core)
+            {
+                // Nothing to be done here
+            }
+        });
+    }
+
+    /**
+     * @return the sink of the query log core, created on first use; null if the component has been closed.
+     */
+    private QueryLogSink getSink()
+    {
+        QueryLogSink result = sink;
+        if (result == null)
         {
-            log(rb);
+            synchronized (this)
+            {
+                if (sink == null && !closed)
+                {
+                    sink = new QueryLogSink(container, logCoreName, bufferSize, batchSize);
+                }
+                result = sink;
+            }
         }
-        catch (IOException e)
+        return result;
+    }
+
+    private synchronized void closeSink()
+    {
+        closed = true;
+        if (sink != null)
         {
-            e.printStackTrace();
+            sink.close();
         }
     }
 
+    @Override
+    public void finishStage(ResponseBuilder rb)
+    {
+        super.finishStage(rb);
+        if (rb.stage != ResponseBuilder.STAGE_GET_FIELDS)
+            return;
+        log(rb);
+    }
+
     /*
      * (non-Javadoc)
      * @see org.apache.solr.handler.component.SearchComponent#prepare(org.apache.solr.handler.component.ResponseBuilder)
@@ -97,115 +170,94 @@ public class QueryLoggingComponent extends SearchComponent
         log(rb);
     }
 
-    private void log(ResponseBuilder rb) throws IOException
+    private void log(ResponseBuilder rb)
     {
         boolean isShard = rb.req.getParams().getBool(ShardParams.IS_SHARD, false);
-        if (!isShard)
+        QueryLogSink logSink = !isShard && container != null && container.isLoaded(logCoreName) ? getSink() : null;
+        if (logSink != null)
         {
-            CoreContainer container = rb.req.getCore().getCoreContainer();
-            SolrCore logCore = container.getCore(rb.req.getCore().getName() + "_qlog");
-            if (logCore != null)
-            {
-                JSONObject json = (JSONObject) rb.req.getContext().get(AbstractQParser.ALFRESCO_JSON);
+            JSONObject json = (JSONObject) rb.req.getContext().get(AbstractQParser.ALFRESCO_JSON);
 
-                SolrQueryRequest request = null;
-                UpdateRequestProcessor processor = null;
-                try
-                {
-                    request = new LocalSolrQueryRequest(logCore, new NamedList<>());
-                    processor = logCore.getUpdateProcessingChain(null).createProcessor(request, new SolrQueryResponse());
-
-                    AddUpdateCommand cmd = new AddUpdateCommand(request);
-                    cmd.overwrite = true;
-                    SolrInputDocument input = new SolrInputDocument();
-                    input.addField("id", GUID.generate());
-                    input.addField("_version_", "1");
+            SolrInputDocument input = new SolrInputDocument();
+            input.addField("id", GUID.generate());
+            input.addField("_version_", "1");
 
-                    input.addField("timestamp", DateTimeFormatter.ISO_INSTANT.format(Instant.now()));
+            input.addField("timestamp", DateTimeFormatter.ISO_INSTANT.format(Instant.now()));
 
-                    if (json != null)
-                    {
-                        try
-                        {
-                            ArrayList<String> authorityList = new ArrayList<String>(1);
-                            JSONArray authorities = json.getJSONArray("authorities");
-                            for (int i = 0; i < authorities.length(); i++)
-                            {
-                                String authorityString = authorities.getString(i);
-                                authorityList.add(authorityString);
-                            }
-
-                            for (String authority : authorityList)
-                            {
-                                if (AuthorityType.getAuthorityType(authority) == AuthorityType.USER)
-                                {
-                                    input.addField("user", authority);
-                                    break;
-                                }
-                            }
-                        }
-                        catch (JSONException e)
-                        {
-                            input.addField("user", "<UNKNOWN>");
-                        }
-                    }
-                    else
+            if (json != null)
+            {
+                try
+                {
+                    ArrayList<String> authorityList = new ArrayList<String>(1);
+                    JSONArray authorities = json.getJSONArray("authorities");
+                    for (int i = 0; i < authorities.length(); i++)
                     {
-                        input.addField("user", "<UNKNOWN>");
+                        String authorityString = authorities.getString(i);
+                        authorityList.add(authorityString);
                     }
 
-                    String userQuery = rb.req.getParams().get(SpellingParams.SPELLCHECK_Q);
-                    if (userQuery == null)
+                    for (String authority : authorityList)
                     {
-                        if (json != null)
+                        if (AuthorityType.getAuthorityType(authority) == AuthorityType.USER)
                         {
-                            try
-                            {
-                                userQuery = json.getString("query");
-                            }
-                            catch (JSONException e)
-                            {
-                            }
+                            input.addField("user", authority);
+                            break;
                         }
                     }
-                    if (userQuery == null)
-                    {
-                        userQuery = rb.req.getParams().get(CommonParams.Q);
-                    }
-
-                    if (userQuery != null)
-                    {
-                        input.addField("user_query", userQuery);
-                    }
-
-                    Query query = rb.getQuery();
-                    input.addField("query", query.toString());
-
-                    if (rb.getResults().docList != null)
-                    {
-                        input.addField("found", rb.getResults().docList.matches());
-                    }
-                    input.addField("time", rb.req.getRequestTimer().getTime());
-
-                    cmd.solrDoc = input;
-                    processor.processAdd(cmd);
                 }
+                catch (JSONException e)
+                {
+                    input.addField("user", "<UNKNOWN>");
+                }
+            }
+            else
+            {
+                input.addField("user", "<UNKNOWN>");
+            }
 
-                finally
+            String userQuery = rb.req.getParams().get(SpellingParams.SPELLCHECK_Q);
+            if (userQuery == null)
+            {
+                if (json != null)
                 {
-                    if (processor != null)
+                    try
                     {
-                        processor.finish();
+                        userQuery = json.getString("query");
                     }
-                    if (request != null)
+                    catch (JSONException e)
                     {
-                        request.close();
                     }
                 }
             }
+            if (userQuery == null)
+            {
+                userQuery = rb.req.getParams().get(CommonParams.Q);
+            }
+
+            if (userQuery != null)
+            {
+                input.addField("user_query", userQuery);
+            }
+
+            Query query = rb.getQuery();
+            input.addField("query", query.toString());
+
+            if (rb.getResults().docList != null)
+            {
+                input.addField("found", rb.getResults().docList.matches());
+            }
+            input.addField("time", rb.req.getRequestTimer().getTime());
+
+            logSink.offer(input);
         }
     }
 
+    @Override
+    public NamedList<Object> getStatistics()
+    {
+        return sink != null ? sink.getStatistics() : super.getStatistics();
+    }
+
     /*
      * (non-Javadoc)
      * @see org.apache.solr.handler.component.SearchComponent#getDescription()
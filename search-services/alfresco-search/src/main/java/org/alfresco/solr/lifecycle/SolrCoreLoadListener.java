@@ -45,6 +45,7 @@ import org.alfresco.solr.SolrInformationServer;
 import org.alfresco.solr.SolrKeyResourceLoader;
 import org.alfresco.solr.client.SOLRAPIClient;
 import org.alfresco.solr.client.SOLRAPIClientFactory;
+import org.alfresco.solr.query.DocValuesCache;
 import org.alfresco.solr.security.SecretSharedPropertyCollector;
 import org.alfresco.solr.tracker.AclTracker;
 import org.alfresco.solr.tracker.CascadeTracker;
@@ -56,6 +57,10 @@ import org.alfresco.solr.tracker.ShardStatePublisher;
 import org.alfresco.solr.tracker.SolrTrackerScheduler;
 import org.alfresco.solr.tracker.Tracker;
 import org.alfresco.solr.tracker.TrackerRegistry;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.minhash.ContextAccumulatingFilterFactory;
+import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.apache.solr.analysis.TokenizerChain;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.StrUtils;
 import org.apache.solr.core.AbstractSolrEventListener;
@@ -67,6 +72,7 @@ import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrResourceLoader;
 import org.apache.solr.handler.ReplicationHandler;
 import org.apache.solr.request.SolrRequestHandler;
+import org.apache.solr.schema.FieldType;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -130,6 +136,10 @@ public class SolrCoreLoadListener extends AbstractSolrEventListener
         coreProperties.putAll(informationServer.getProps());
         admin.getInformationServers().put(core.getName(), informationServer);
 
+        // The permission queries get the doc values cache of the core from its MBeans
+        core.getInfoRegistry().put(DocValuesCache.MBEAN_KEY, informationServer.getDocValuesCache());
+        registerContextStores(core);
+
         final SolrTrackerScheduler scheduler = admin.getScheduler();
 
         // Prevents other threads from registering the ModelTracker at the same time
@@ -163,6 +173,11 @@ public class SolrCoreLoadListener extends AbstractSolrEventListener
 
                 // IMPORTANT: the closure needs to be created with the trackers created in this method
                 shutdownTrackers(core, trackers, scheduler, false);
+
+                // Cancels the Repository requests still queued by the trackers
+                informationServer.getAsyncRepositoryClient().close();
+
+                informationServer.getDocValuesCache().clear();
             }
 
             @Override
@@ -237,6 +252,30 @@ public class SolrCoreLoadListener extends AbstractSolrEventListener
         trackers.add(commitTracker);
     }
 
+    /**
+     * Registers the {@link ContextAccumulatingFilterFactory}s of the schema, if any, with the core MBeans, so the
+     * counters of their context stores are exposed with the statistics of the core.
+     */
+    private void registerContextStores(SolrCore core)
+    {
+        for (FieldType fieldType : core.getLatestSchema().getFieldTypes().values())
+        {
+            Analyzer analyzer = fieldType.getIndexAnalyzer();
+            if (analyzer instanceof TokenizerChain)
+            {
+                for (TokenFilterFactory filterFactory : ((TokenizerChain) analyzer).getTokenFilterFactories())
+                {
+                    if (filterFactory instanceof ContextAccumulatingFilterFactory)
+                    {
+                        core.getInfoRegistry().put(
+                                ContextAccumulatingFilterFactory.MBEAN_KEY_PREFIX + fieldType.getTypeName(),
+                                (ContextAccumulatingFilterFactory) filterFactory);
+                    }
+                }
+            }
+        }
+    }
+
     List<Tracker> createAndScheduleCoreTrackers(SolrCore core,
                                                 TrackerRegistry trackerRegistry,
                                                 Properties props,
@@ -35,6 +35,7 @@ import org.apache.lucene.index.TermContext;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Weight;
+import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
 
 /**
@@ -48,6 +49,8 @@ public abstract class AbstractAuthorityQueryWeight extends Weight
     protected SolrIndexSearcher searcher;
     protected float value;
     protected boolean needsScores;
+
+    private DocSet docSet;
     
     public AbstractAuthorityQueryWeight(SolrIndexSearcher searcher, boolean needsScores, Query query, String authTermName, String authTermText) throws IOException
     {
@@ -82,4 +85,24 @@ public abstract class AbstractAuthorityQueryWeight extends Weight
     {
         return 0;
     }
+
+    /**
+     * Returns the docs matching the query across the whole index, loading them on the first call. The segments
+     * of a concurrent search all ask for them at once: they wait for a single load instead of racing to build
+     * the same set.
+     */
+    protected synchronized DocSet getDocSet(DocSetLoader loader) throws IOException
+    {
+        if (docSet == null)
+        {
+            docSet = loader.load();
+        }
+        return docSet;
+    }
+
+    @FunctionalInterface
+    protected interface DocSetLoader
+    {
+        DocSet load() throws IOException;
+    }
 }
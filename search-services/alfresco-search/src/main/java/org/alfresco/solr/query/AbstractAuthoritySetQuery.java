@@ -37,12 +37,12 @@ import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.FixedBitSet;
-import org.apache.solr.search.DocIterator;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
 
@@ -95,7 +95,7 @@ public abstract class AbstractAuthoritySetQuery extends Query
     *  This method collects the bitset of documents that match the authorities.
     */
 
-    protected HybridBitSet getACLSet(String[] auths, String field, SolrIndexSearcher searcher) throws IOException
+    protected static HybridBitSet getACLSet(String[] auths, String field, SolrIndexSearcher searcher) throws IOException
     {
         /*
         * Build a query that matches the authorities with a field in the ACL records in the index.
@@ -115,47 +115,33 @@ public abstract class AbstractAuthoritySetQuery extends Query
 
         DocSet docSet = searcher.getDocSet(queryBuilder.build());
 
-        DocIterator iterator = docSet.iterator();
-        if(!iterator.hasNext())
+        if(docSet.size() == 0)
         {
             return new EmptyHybridBitSet();
         }
 
-        //TODO : makes this configurable. For some systems this is huge and for others not big enough.
-        HybridBitSet hybridBitSet = new HybridBitSet(60000000);
+        HybridBitSet hybridBitSet = new HybridBitSet();
+        DocValuesCache docValuesCache = DocValuesCache.of(searcher);
 
         /*
         * Collect the ACLID's from the matching acl records.
         * This is done in a separate step so the initial ACL query can be cached in the FilterCache
         * The initial ACL query may be expensive if the number of authorities is very large.
+        * Each segment reads its own slice of the docset, so concurrent callers don't share any iteration state.
         */
 
-        List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
-        LeafReaderContext context = leaves.get(0);
-        NumericDocValues aclValues = DocValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, context.reader());
-        LeafReader reader = context.reader();
-        int ceil = reader.maxDoc();
-        int base = 0;
-        int ord = 0;
-        while (iterator.hasNext()) {
-            int doc = iterator.nextDoc();
-            if(doc >= ceil)
+        for(LeafReaderContext context : searcher.getTopReaderContext().leaves())
+        {
+            NumericDocValues aclValues = docValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, context.reader());
+            if(aclValues == null)
             {
-                do
-                {
-                    ++ord;
-                    context = leaves.get(ord);
-                    reader = context.reader();
-                    base = context.docBase;
-                    ceil = base+reader.maxDoc();
-                    aclValues = DocValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, reader);
-                }
-                while(doc >= ceil);
+                continue;
             }
 
-            if(aclValues != null) {
-                long aclId = aclValues.get(doc - base);
-                hybridBitSet.set(aclId);
+            DocIdSetIterator iterator = AbstractSolrCachingScorer.segmentIterator(docSet, context.docBase, context.reader().maxDoc());
+            for(int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc())
+            {
+                hybridBitSet.set(aclValues.get(doc));
             }
         }
 
@@ -167,6 +153,7 @@ public abstract class AbstractAuthoritySetQuery extends Query
         HybridBitSet aclBits = getACLSet(auths, field, searcher);
         List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
         List<FixedBitSet> bitSets = new ArrayList<FixedBitSet>(leaves.size());
+        DocValuesCache docValuesCache = DocValuesCache.of(searcher);
 
         for(LeafReaderContext readerContext :  leaves)
         {
@@ -175,7 +162,7 @@ public abstract class AbstractAuthoritySetQuery extends Query
             FixedBitSet bits = new FixedBitSet(maxDoc);
             bitSets.add(bits);
 
-            NumericDocValues fieldValues = DocValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, reader);
+            NumericDocValues fieldValues = docValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, reader);
             if (fieldValues != null) {
                 for (int i = 0; i < maxDoc; i++) {
                     long aclID = fieldValues.get(i);
@@ -27,7 +27,7 @@
 package org.alfresco.solr.query;
 
 import java.io.IOException;
-import java.util.stream.LongStream;
+import java.util.Arrays;
 
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.DocIdSetIterator;
@@ -38,42 +38,27 @@ import org.apache.solr.search.BitDocSet;
 import org.apache.solr.search.DocIterator;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.SortedIntDocSet;
 
 
 /**
+ * Base class of the scorers which match a cached (top level) {@link DocSet}.
+ *
+ * The scorer only iterates the documents of its own segment, directly on the cached set: the bits of a
+ * {@link BitDocSet} in the segment range, or the slice of the sorted ids of a {@link SortedIntDocSet}. Nothing is
+ * copied, so scoring a cached set doesn't allocate anything proportional to the index size.
+ *
  * @author Andy
  *
  */
 public abstract class AbstractSolrCachingScorer extends Scorer
 {
-    protected static class LongCache 
-		{
-			private static int CACHE_SIZE = 1000000;
-			
-			private LongCache(){}
-	
-			static final long cache[] = LongStream.range(0, CACHE_SIZE).toArray();
-		}
-
-	protected static Long getLong(long l) {
-		if(l > LongCache.CACHE_SIZE)
-		{
-			return Long.valueOf(l);
-		}
-		else
-		{
-			return LongCache.cache[(int)l];
-		}
-	}
-
-	
-    
-    SolrCachingScorerDoIdSetIterator iterator;
+    private final DocIdSetIterator iterator;
     
     AbstractSolrCachingScorer(Weight weight, DocSet in, LeafReaderContext context, SolrIndexSearcher searcher)
     {
         super(weight);
-        iterator = new SolrCachingScorerDoIdSetIterator(in, context, searcher);
+        iterator = segmentIterator(in, context.docBase, context.reader().maxDoc());
     }
 
     @Override
@@ -101,98 +86,165 @@ public abstract class AbstractSolrCachingScorer extends Scorer
 		return iterator;
 	}
 
+    /**
+     * Returns an iterator over the documents of the given top level set which belong to the segment
+     * [base, base + maxDoc), with segment relative ids.
+     */
+    static DocIdSetIterator segmentIterator(DocSet in, int base, int maxDoc)
+    {
+        if (in instanceof BitDocSet)
+        {
+            return new BitsSegmentIterator(((BitDocSet) in).getBits(), base, maxDoc);
+        }
+        else if (in instanceof SortedIntDocSet)
+        {
+            return new SortedDocsSegmentIterator(((SortedIntDocSet) in).getDocs(), base, maxDoc);
+        }
 
+        // Any other set: only the documents of the segment are collected
+        int[] docs = new int[Math.min(in.size(), maxDoc)];
+        int size = 0;
+        for (DocIterator it = in.iterator(); it.hasNext(); /* */)
+        {
+            int doc = it.nextDoc();
+            if (doc >= base && doc < base + maxDoc)
+            {
+                docs[size++] = doc;
+            }
+        }
+        int[] segmentDocs = Arrays.copyOf(docs, size);
+        Arrays.sort(segmentDocs);
+        return new SortedDocsSegmentIterator(segmentDocs, base, maxDoc);
+    }
 
-	private static class SolrCachingScorerDoIdSetIterator extends DocIdSetIterator
+    /**
+     * Iterates the set bits of a top level bit set in the range of a segment.
+     */
+    private static class BitsSegmentIterator extends DocIdSetIterator
     {
-    	BitDocSet matches;
+        private final FixedBitSet bits;
+        private final int base;
+        private final int end;
+        private int doc = -1;
 
-        int doc = -1;
+        BitsSegmentIterator(FixedBitSet bits, int base, int maxDoc)
+        {
+            this.bits = bits;
+            this.base = base;
+            // The bit set may be shorter than the index (e.g. an empty set)
+            this.end = Math.min(bits.length(), base + maxDoc);
+        }
 
-        FixedBitSet bitSet;
+        @Override
+        public int docID()
+        {
+            return doc;
+        }
 
-        LeafReaderContext context;
-        
-        SolrCachingScorerDoIdSetIterator(DocSet in, LeafReaderContext context, SolrIndexSearcher searcher)
+        @Override
+        public int nextDoc()
         {
-        	  this.context = context;
-              
-              if (in instanceof BitDocSet)
-              {
-                  matches = (BitDocSet) in;
-              }
-              else
-              {
-                  this.matches = new BitDocSet(new FixedBitSet(searcher.maxDoc()));
-                  for (DocIterator it = in.iterator(); it.hasNext(); /* */)
-                  {
-                      matches.addUnique(it.nextDoc());
-                  }
-              }
-              bitSet = matches.getBits();
-              
-              doc = getBase() - 1;
+            return doc == NO_MORE_DOCS ? NO_MORE_DOCS : advance(doc + 1);
         }
-        
-        private boolean next()
-        {        
-            if(doc+1 < bitSet.length())
-            {
-                doc = bitSet.nextSetBit(doc+1);
-                return (doc != NO_MORE_DOCS)  && (doc < (getBase()  + context.reader().maxDoc()));
-            }
-            else
+
+        @Override
+        public int advance(int target)
+        {
+            // Checked before adding the base, which would overflow for NO_MORE_DOCS
+            if (target >= end - base)
             {
-                return false;
+                return doc = NO_MORE_DOCS;
             }
+            int next = bits.nextSetBit(base + target);
+            return doc = next < end ? next - base : NO_MORE_DOCS;
         }
-        
-        private int getBase()
+
+        @Override
+        public long cost()
         {
-            return context.docBase;
+            return Math.max(0, end - base);
         }
-        
-        @Override
-        public int nextDoc() throws IOException
+    }
+
+    /**
+     * Iterates the slice of a sorted array of top level ids which belongs to a segment.
+     */
+    private static class SortedDocsSegmentIterator extends DocIdSetIterator
+    {
+        private final int[] docs;
+        private final int base;
+        private final int maxDoc;
+        private final int to;
+        private final int from;
+        private int index;
+        private int doc = -1;
+
+        SortedDocsSegmentIterator(int[] docs, int base, int maxDoc)
         {
-        	while (next())
-        	{
-        		return docID();
-        	}
-            return NO_MORE_DOCS;
+            this.docs = docs;
+            this.base = base;
+            this.maxDoc = maxDoc;
+            this.from = lowerBound(docs, base, 0, docs.length);
+            this.to = lowerBound(docs, base + maxDoc, from, docs.length);
+            this.index = from - 1;
         }
 
-        
         @Override
         public int docID()
         {
-            // TODO: check this expression as for next()
-            if ((doc > -1) && (doc != NO_MORE_DOCS))
+            return doc;
+        }
+
+        @Override
+        public int nextDoc()
+        {
+            if (index + 1 >= to)
             {
-                return doc - getBase();
+                index = to;
+                return doc = NO_MORE_DOCS;
             }
-            return doc;
+            return doc = docs[++index] - base;
         }
 
         @Override
-        public int advance(int target) throws IOException
-        {	
-        	while (next())
-        	{
-        		final int current = docID();
-        		if (current >= target)
-        		{
-        			return current;
-        		}
-        	}
-        	return NO_MORE_DOCS;
+        public int advance(int target)
+        {
+            // Checked before adding the base, which would overflow for NO_MORE_DOCS
+            if (target >= maxDoc || index + 1 >= to)
+            {
+                index = to;
+                return doc = NO_MORE_DOCS;
+            }
+            index = lowerBound(docs, base + target, index + 1, to);
+            return index < to ? (doc = docs[index] - base) : (doc = NO_MORE_DOCS);
         }
 
-        // TODO: implement
         @Override
         public long cost()
         {
-           return 1;
+            return to - from;
+        }
+
+        /**
+         * The index of the first element in [from, to) which is greater or equal to the key (to if none).
+         */
+        private static int lowerBound(int[] docs, int key, int from, int to)
+        {
+            int low = from;
+            int high = to;
+            while (low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if (docs[middle] < key)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            return low;
         }
     }
 }
@@ -26,7 +26,7 @@
 
 package org.alfresco.solr.query;
 
-public abstract class AbstractStructuredFieldPosition implements StructuredFieldPosition
+public abstract class AbstractStructuredFieldPosition implements StructuredFieldPosition, Cloneable
 {
     private String termText;
 
@@ -84,6 +84,20 @@ public abstract class AbstractStructuredFieldPosition implements StructuredField
         return this.tps;
     }
 
+    public StructuredFieldPosition withCachingTermPositions(CachingTermPositions tps)
+    {
+        try
+        {
+            AbstractStructuredFieldPosition copy = (AbstractStructuredFieldPosition) clone();
+            copy.tps = tps;
+            return copy;
+        }
+        catch (CloneNotSupportedException e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+
     
     
     public boolean allowsLinkingBySelf()
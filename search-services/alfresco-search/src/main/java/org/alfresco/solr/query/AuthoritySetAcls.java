@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.alfresco.repo.search.adaptor.QueryConstants;
+import org.alfresco.service.cmr.security.AuthorityType;
+import org.alfresco.solr.cache.CacheConstants;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * What the permission post filters need to know about a set of authorities: the ids of the ACLs which match the
+ * authorities in a given field (readers or denied) and, for the readers, the documents owned by the user authorities.
+ *
+ * Instances are cached per searcher in the {@link CacheConstants#ALFRESCO_ACL_SET_CACHE}, keyed by the field and the
+ * normalized authorities (sorted and without duplicates), so the same user gets the same entry regardless of the
+ * order of its authorities.
+ *
+ * @see org.alfresco.solr.cache.AclSetCacheRegenerator
+ */
+public class AuthoritySetAcls
+{
+    private final String field;
+    private final String[] authorities;
+    private final HybridBitSet aclIds;
+    private final DocSet ownedDocs;
+
+    private AuthoritySetAcls(String field, String[] authorities, HybridBitSet aclIds, DocSet ownedDocs)
+    {
+        this.field = field;
+        this.authorities = authorities;
+        this.aclIds = aclIds;
+        this.ownedDocs = ownedDocs;
+    }
+
+    /**
+     * Returns the ACLs of the given authorities from the searcher cache, computing (and caching) them if needed.
+     */
+    public static AuthoritySetAcls lookup(SolrIndexSearcher searcher, String field, String[] authorities) throws IOException
+    {
+        Key key = new Key(field, normalize(authorities));
+        AuthoritySetAcls acls = (AuthoritySetAcls) searcher.cacheLookup(CacheConstants.ALFRESCO_ACL_SET_CACHE, key);
+        if (acls == null)
+        {
+            acls = build(searcher, key.field, key.authorities);
+            searcher.cacheInsert(CacheConstants.ALFRESCO_ACL_SET_CACHE, key, acls);
+        }
+        return acls;
+    }
+
+    /**
+     * Computes the ACLs of the given (normalized) authorities, without going through the cache.
+     */
+    public static AuthoritySetAcls build(SolrIndexSearcher searcher, String field, String[] authorities) throws IOException
+    {
+        HybridBitSet aclIds = AbstractAuthoritySetQuery.getACLSet(authorities, field, searcher);
+        DocSet ownedDocs = QueryConstants.FIELD_READER.equals(field) ? getOwnedDocs(authorities, searcher) : null;
+        return new AuthoritySetAcls(field, authorities, aclIds, ownedDocs);
+    }
+
+    public String getField()
+    {
+        return field;
+    }
+
+    public String[] getAuthorities()
+    {
+        return authorities;
+    }
+
+    public HybridBitSet getAclIds()
+    {
+        return aclIds;
+    }
+
+    /**
+     * The (top level) ids of the documents owned by the user authorities, null if the field is not the readers one
+     * (and empty if there is no user authority).
+     */
+    public DocSet getOwnedDocs()
+    {
+        return ownedDocs;
+    }
+
+    static String[] normalize(String[] authorities)
+    {
+        String[] normalized = authorities.clone();
+        Arrays.sort(normalized);
+        int size = 0;
+        for (int i = 0; i < normalized.length; i++)
+        {
+            if (i == 0 || !normalized[i].equals(normalized[size - 1]))
+            {
+                normalized[size++] = normalized[i];
+            }
+        }
+        return size == normalized.length ? normalized : Arrays.copyOf(normalized, size);
+    }
+
+    private static DocSet getOwnedDocs(String[] authorities, SolrIndexSearcher searcher) throws IOException
+    {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        boolean hasUser = false;
+        for (String authority : authorities)
+        {
+            if (AuthorityType.getAuthorityType(authority) == AuthorityType.USER)
+            {
+                builder.add(new TermQuery(new Term(QueryConstants.FIELD_OWNER, authority)), BooleanClause.Occur.SHOULD);
+                hasUser = true;
+            }
+        }
+
+        // e.g. the owner authority, whose ACLs only are needed: no lookup, and no empty set in the filter cache
+        return hasUser ? searcher.getDocSet(builder.build()) : DocSet.EMPTY;
+    }
+
+    /**
+     * The cache key: the field and the normalized authorities.
+     */
+    static class Key
+    {
+        private final String field;
+        private final String[] authorities;
+        private final int hashCode;
+
+        Key(String field, String[] authorities)
+        {
+            this.field = field;
+            this.authorities = authorities;
+            this.hashCode = 31 * field.hashCode() + Arrays.hashCode(authorities);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            Key that = (Key) o;
+            return field.equals(that.field) && Arrays.equals(authorities, that.authorities);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public String toString()
+        {
+            return field + ":" + String.join("|", authorities);
+        }
+    }
+}
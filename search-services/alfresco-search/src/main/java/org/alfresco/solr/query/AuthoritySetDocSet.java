@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.alfresco.repo.search.adaptor.QueryConstants;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.search.BitDocSet;
+import org.apache.solr.search.DocIterator;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.WrappedQuery;
+
+/**
+ * The documents readable (or denied) by a set of authorities, as cached in the reader (or denied) cache.
+ *
+ * Besides the matching documents, it remembers the ACL ids they have been selected with and the segments of the
+ * searcher they have been computed on. When a new searcher is opened, as long as the authorities still match the same
+ * ACL ids, the documents of the segments which are still there are copied over and only the new (or merged) segments
+ * are evaluated.
+ *
+ * @see org.alfresco.solr.cache.AuthorityCacheRegenerator
+ */
+public class AuthoritySetDocSet extends BitDocSet
+{
+    private final String field;
+    private final HybridBitSet aclIds;
+    private final Object[] segmentKeys;
+    private final int[] segmentBases;
+    private final int[] segmentSizes;
+
+    private AuthoritySetDocSet(FixedBitSet bits, String field, HybridBitSet aclIds, List<LeafReaderContext> leaves)
+    {
+        super(bits);
+        this.field = field;
+        this.aclIds = aclIds;
+        this.segmentKeys = new Object[leaves.size()];
+        this.segmentBases = new int[leaves.size()];
+        this.segmentSizes = new int[leaves.size()];
+        for (int i = 0; i < leaves.size(); i++)
+        {
+            LeafReaderContext leaf = leaves.get(i);
+            segmentKeys[i] = leaf.reader().getCoreCacheKey();
+            segmentBases[i] = leaf.docBase;
+            segmentSizes[i] = leaf.reader().maxDoc();
+        }
+    }
+
+    /**
+     * @return the field (i.e. {@link QueryConstants#FIELD_READER} or {@link QueryConstants#FIELD_DENIED}) the authorities have been matched against.
+     */
+    public String getField()
+    {
+        return field;
+    }
+
+    /**
+     * Builds the documents whose ACL lists any of the given authorities in the given field.
+     * The ACL documents themselves are excluded.
+     *
+     * @param searcher the searcher the result is computed on.
+     * @param field {@link QueryConstants#FIELD_READER} or {@link QueryConstants#FIELD_DENIED}.
+     * @param authorities the authorities, in the "separator + authorities" form used as cache key.
+     * @param previous the result computed for the same authorities on a previous searcher, if any, which segments are reused.
+     */
+    public static AuthoritySetDocSet build(SolrIndexSearcher searcher, String field, String authorities, AuthoritySetDocSet previous) throws IOException
+    {
+        String[] auths = authorities.substring(1).split(authorities.substring(0, 1));
+
+        BooleanQuery.Builder bQuery = new BooleanQuery.Builder();
+        for(String current : auths)
+        {
+            bQuery.add(new TermQuery(new Term(field, current)), Occur.SHOULD);
+        }
+        WrappedQuery wrapped = new WrappedQuery(bQuery.build());
+        wrapped.setCache(false);
+
+        DocSet aclDocs = searcher.getDocSet(wrapped);
+
+        HybridBitSet aclsFound = new HybridBitSet();
+        NumericDocValues aclDocValues = searcher.getSlowAtomicReader().getNumericDocValues(QueryConstants.FIELD_ACLID);
+        for (DocIterator it = aclDocs.iterator(); it.hasNext(); /**/)
+        {
+            int docID = it.nextDoc();
+            // Obtain the ACL ID for this ACL doc.
+            long aclID = aclDocValues.get(docID);
+            aclsFound.set(aclID);
+        }
+
+        // The segments of the previous result can be reused only if the authorities still match the same ACLs
+        boolean reusable = previous != null && previous.field.equals(field) && previous.aclIds.equals(aclsFound);
+
+        FixedBitSet bits = new FixedBitSet(searcher.maxDoc());
+        List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+        DocValuesCache docValuesCache = DocValuesCache.of(searcher);
+        if(!aclsFound.isEmpty())
+        {
+            // The segments which can't be copied from the previous result are scanned (concurrently if enabled)
+            List<LeafReaderContext> scanned = new ArrayList<>(leaves.size());
+            for(LeafReaderContext readerContext : leaves)
+            {
+                if(!(reusable && previous.copySegment(readerContext, bits)))
+                {
+                    scanned.add(readerContext);
+                }
+            }
+
+            List<FixedBitSet> segments = ConcurrentSegmentSearch.forEachLeaf(scanned, readerContext -> {
+                int maxDoc = readerContext.reader().maxDoc();
+                FixedBitSet segment = new FixedBitSet(maxDoc);
+                NumericDocValues fieldValues = docValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, readerContext.reader());
+                if(fieldValues != null)
+                {
+                    for(int i = 0; i < maxDoc; i++)
+                    {
+                        long aclID = fieldValues.get(i);
+                        if(aclsFound.get(aclID))
+                        {
+                            segment.set(i);
+                        }
+                    }
+                }
+                return segment;
+            });
+            for(int i = 0; i < scanned.size(); i++)
+            {
+                ConcurrentSegmentSearch.or(bits, scanned.get(i).docBase, segments.get(i));
+            }
+        }
+
+        // Exclude the ACL docs from the results, we only want real docs that match.
+        for (DocIterator it = aclDocs.iterator(); it.hasNext(); /**/)
+        {
+            bits.clear(it.nextDoc());
+        }
+
+        return new AuthoritySetDocSet(bits, field, aclsFound, leaves);
+    }
+
+    /**
+     * Copies the documents of the given segment, if it was part of the searcher this set has been computed on.
+     *
+     * @return true if the segment has been copied, false if it has to be evaluated.
+     */
+    private boolean copySegment(LeafReaderContext readerContext, FixedBitSet target)
+    {
+        Object segmentKey = readerContext.reader().getCoreCacheKey();
+        for (int i = 0; i < segmentKeys.length; i++)
+        {
+            if (segmentKeys[i] == segmentKey && segmentSizes[i] == readerContext.reader().maxDoc())
+            {
+                FixedBitSet source = getBits();
+                int end = segmentBases[i] + segmentSizes[i];
+                int delta = readerContext.docBase - segmentBases[i];
+                for (int doc = segmentSizes[i] == 0 ? DocIdSetIterator.NO_MORE_DOCS : source.nextSetBit(segmentBases[i]);
+                     doc < end;
+                     doc = doc + 1 < source.length() ? source.nextSetBit(doc + 1) : DocIdSetIterator.NO_MORE_DOCS)
+                {
+                    target.set(doc + delta);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+}
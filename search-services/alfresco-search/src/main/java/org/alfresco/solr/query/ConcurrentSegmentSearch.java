@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.search.BitDocSet;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.WrappedQuery;
+
+/**
+ * Evaluates the segments of the index concurrently when building the document sets of the Alfresco queries
+ * (e.g. the results of a PATH query or the documents readable by a set of authorities).
+ *
+ * The mode is opt-in: it is enabled for a request when the search handler puts its executor in the request context
+ * (see {@link org.apache.solr.handler.component.AlfrescoSearchHandler}). Otherwise, and on the worker threads
+ * themselves, the segments are evaluated one after the other on the calling thread.
+ */
+public final class ConcurrentSegmentSearch
+{
+    /** The key of the executor in the request context. */
+    public static final String EXECUTOR = "alfresco.concurrentSegmentSearch.executor";
+
+    private ConcurrentSegmentSearch()
+    {
+    }
+
+    /**
+     * The work done on a single segment.
+     */
+    @FunctionalInterface
+    public interface LeafTask<T>
+    {
+        T apply(LeafReaderContext leaf) throws IOException;
+    }
+
+    /**
+     * @return the executor of the current request, null if the segments of the request must be evaluated in sequence.
+     */
+    public static Executor executor()
+    {
+        SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+        SolrQueryRequest request = requestInfo == null ? null : requestInfo.getReq();
+        return request == null ? null : (Executor) request.getContext().get(EXECUTOR);
+    }
+
+    /**
+     * Applies the task to each one of the given segments, concurrently when the current request allows it.
+     *
+     * @return the results, in the order of the segments.
+     */
+    public static <T> List<T> forEachLeaf(List<LeafReaderContext> leaves, LeafTask<T> task) throws IOException
+    {
+        List<T> results = new ArrayList<>(leaves.size());
+        Executor executor = executor();
+        if (executor == null || leaves.size() < 2)
+        {
+            for (LeafReaderContext leaf : leaves)
+            {
+                results.add(task.apply(leaf));
+            }
+            return results;
+        }
+
+        List<FutureTask<T>> futures = new ArrayList<>(leaves.size());
+        for (LeafReaderContext leaf : leaves)
+        {
+            FutureTask<T> future = new FutureTask<>(() -> task.apply(leaf));
+            futures.add(future);
+            executor.execute(future);
+        }
+
+        try
+        {
+            for (FutureTask<T> future : futures)
+            {
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while searching the index segments.", exception);
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Unable to search the index segments.", cause);
+        }
+        finally
+        {
+            for (FutureTask<T> future : futures)
+            {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Returns the documents matching the query, without going through the filter cache.
+     * The segments are searched concurrently when the current request allows it.
+     */
+    public static DocSet getDocSet(SolrIndexSearcher searcher, Query query) throws IOException
+    {
+        List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+        if (executor() == null || leaves.size() < 2)
+        {
+            WrappedQuery wrapped = new WrappedQuery(query);
+            wrapped.setCache(false);
+            return searcher.getDocSet(wrapped);
+        }
+
+        Weight weight = searcher.createNormalizedWeight(query, false);
+        List<FixedBitSet> segments = forEachLeaf(leaves, leaf -> {
+            FixedBitSet bits = new FixedBitSet(leaf.reader().maxDoc());
+            Scorer scorer = weight.scorer(leaf);
+            if (scorer != null)
+            {
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                DocIdSetIterator iterator = scorer.iterator();
+                for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc())
+                {
+                    if (liveDocs == null || liveDocs.get(doc))
+                    {
+                        bits.set(doc);
+                    }
+                }
+            }
+            return bits;
+        });
+
+        FixedBitSet bits = new FixedBitSet(searcher.maxDoc());
+        for (int i = 0; i < leaves.size(); i++)
+        {
+            or(bits, leaves.get(i).docBase, segments.get(i));
+        }
+        return new BitDocSet(bits);
+    }
+
+    /**
+     * Sets in target the documents of a segment, shifted by the segment base.
+     */
+    static void or(FixedBitSet target, int docBase, FixedBitSet segment)
+    {
+        int length = segment.length();
+        for (int doc = length == 0 ? DocIdSetIterator.NO_MORE_DOCS : segment.nextSetBit(0);
+             doc != DocIdSetIterator.NO_MORE_DOCS;
+             doc = doc + 1 < length ? segment.nextSetBit(doc + 1) : DocIdSetIterator.NO_MORE_DOCS)
+        {
+            target.set(docBase + doc);
+        }
+    }
+}
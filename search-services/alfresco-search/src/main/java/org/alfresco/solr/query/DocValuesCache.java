@@ -27,12 +27,25 @@
 package org.alfresco.solr.query;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrInfoMBean;
+import org.apache.solr.search.SolrIndexSearcher;
 
 
 /**
@@ -40,72 +53,287 @@ import org.apache.lucene.index.NumericDocValues;
  * possible access to numeric docValues. The DocValuesCache can be used instead of the Direct DocValues format which also
  * provides uncompressed in-memory docValues. The DocValuesCache can be used in situations when it is not
  * practical to re-index to use Direct docValues.
+ *
+ * Each core has its own cache, owned by the information server of the core and registered with the core MBeans
+ * (see SolrCoreLoadListener): the queries get it from the core of their searcher (see {@link #of(SolrIndexSearcher)})
+ * and it is cleared when the core is closed.
+ *
+ * Values are cached per field and per segment (i.e. segment core cache key). Lookups don't lock: the first thread
+ * which asks for a segment decodes it while the other threads asking for the same segment wait for it; the entries
+ * are evicted when the segment core is closed.
+ *
+ * When the "alfresco.docValuesCache.offHeap" system property is true the decoded values are kept in direct
+ * buffers, outside the Java heap.
  **/
 
-public class DocValuesCache
+public class DocValuesCache implements SolrInfoMBean
 {
-    private static Map<String, WeakHashMap<Object, NumericDocValues>> cache = new HashMap<String, WeakHashMap<Object, NumericDocValues>>();
+    public static final String OFF_HEAP_PROPERTY = "alfresco.docValuesCache.offHeap";
 
-    public static synchronized NumericDocValues getNumericDocValues(String field, LeafReader reader) throws IOException
+    /** The key of the cache in the core MBeans */
+    public static final String MBEAN_KEY = "alfrescoDocValuesCache";
+
+    private static final boolean OFF_HEAP = Boolean.parseBoolean(System.getProperty(OFF_HEAP_PROPERTY, "false"));
+
+    /** Used for the searchers whose core has no cache: the values are read from the segments, without caching them */
+    private static final DocValuesCache UNCACHED = new DocValuesCache(false);
+
+    private final boolean enabled;
+    private final Map<CacheKey, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final Set<Object> trackedSegments = ConcurrentHashMap.newKeySet();
+
+    public DocValuesCache()
     {
-        WeakHashMap<Object, NumericDocValues> fieldCache = cache.get(field);
+        this(true);
+    }
 
-        if(fieldCache == null)
+    private DocValuesCache(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param searcher the searcher the values are read for.
+     * @return the cache of the core of the given searcher, or a cache which doesn't retain anything if the core has
+     * none (e.g. a core which isn't an Alfresco core).
+     */
+    public static DocValuesCache of(SolrIndexSearcher searcher)
+    {
+        SolrCore core = searcher.getCore();
+        SolrInfoMBean cache = core == null ? null : core.getInfoRegistry().get(MBEAN_KEY);
+        return cache instanceof DocValuesCache ? (DocValuesCache) cache : UNCACHED;
+    }
+
+    public NumericDocValues getNumericDocValues(String field, LeafReader reader) throws IOException
+    {
+        if(!enabled)
         {
-            fieldCache = new WeakHashMap<Object, NumericDocValues>();
-            cache.put(field, fieldCache);
+            return reader.getNumericDocValues(field);
         }
 
-        Object cacheKey = reader.getCoreCacheKey();
-        NumericDocValues cachedValues = fieldCache.get(cacheKey);
+        Object coreCacheKey = reader.getCoreCacheKey();
+        CacheKey cacheKey = new CacheKey(field, coreCacheKey);
 
-        if(cachedValues == null)
+        CacheEntry entry = cache.get(cacheKey);
+        if(entry == null)
         {
-            NumericDocValues fieldValues = reader.getNumericDocValues(field);
-            if(fieldValues == null)
+            CacheEntry newEntry = new CacheEntry();
+            entry = cache.putIfAbsent(cacheKey, newEntry);
+            if(entry == null)
             {
-                return null;
+                entry = newEntry;
+                if(trackedSegments.add(coreCacheKey))
+                {
+                    reader.addCoreClosedListener(this::evict);
+                }
             }
-            else
+        }
+
+        return entry.get(field, reader);
+    }
+
+    /**
+     * Removes all the values cached for the given segment.
+     */
+    void evict(Object coreCacheKey)
+    {
+        if(trackedSegments.remove(coreCacheKey))
+        {
+            cache.keySet().removeIf(key -> key.coreCacheKey == coreCacheKey);
+        }
+    }
+
+    /**
+     * Removes all the cached values, when the core is closed.
+     */
+    public void clear()
+    {
+        trackedSegments.clear();
+        cache.clear();
+    }
+
+    @Override
+    public String getName()
+    {
+        return DocValuesCache.class.getName();
+    }
+
+    @Override
+    public String getVersion()
+    {
+        return getClass().getPackage().getSpecificationVersion();
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "Uncompressed numeric doc values of the segments of the core";
+    }
+
+    @Override
+    public Category getCategory()
+    {
+        return Category.CACHE;
+    }
+
+    @Override
+    public String getSource()
+    {
+        return null;
+    }
+
+    @Override
+    public URL[] getDocs()
+    {
+        return null;
+    }
+
+    @Override
+    public NamedList<Object> getStatistics()
+    {
+        long hitCount = 0;
+        long lookups = 0;
+        long ramBytesUsed = 0;
+        int size = 0;
+        for(CacheEntry entry : cache.values())
+        {
+            long entryHits = entry.hits.sum();
+            hitCount += entryHits;
+            lookups += entryHits;
+
+            Accountable values = entry.values;
+            if(values != null)
             {
-                int maxDoc = reader.maxDoc();
-                boolean longs = false;
-                int[] intValues = new int[maxDoc]; //Always start off with an int array.
-                SettableDocValues settableValues = new IntValues(intValues);
+                // The lookup which decoded the values is the only miss of the entry
+                lookups++;
+                ramBytesUsed += values.ramBytesUsed();
+                size++;
+            }
+        }
+
+        NamedList<Object> statistics = new SimpleOrderedMap<>();
+        statistics.add("lookups", lookups);
+        statistics.add("hits", hitCount);
+        statistics.add("hitratio", lookups == 0 ? 0.0f : (float)hitCount / lookups);
+        statistics.add("size", size);
+        statistics.add("offHeap", OFF_HEAP);
+        statistics.add("ramBytesUsed", ramBytesUsed);
+        return statistics;
+    }
+
+    private static final class CacheKey
+    {
+        private final String field;
+        private final Object coreCacheKey;
+
+        private CacheKey(String field, Object coreCacheKey)
+        {
+            this.field = field;
+            this.coreCacheKey = coreCacheKey;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(this == o) return true;
+            if(!(o instanceof CacheKey)) return false;
+
+            CacheKey that = (CacheKey) o;
+            return coreCacheKey == that.coreCacheKey && field.equals(that.field);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * field.hashCode() + System.identityHashCode(coreCacheKey);
+        }
+    }
+
+    /**
+     * Decodes the values of a segment once: the threads asking for a segment which is being decoded wait for it.
+     * A segment without values for the field is cached as well (as {@link #NO_VALUES}).
+     */
+    private static final class CacheEntry
+    {
+        private final LongAdder hits = new LongAdder();
+        private volatile CachedDocValues values;
 
-                for(int i=0; i<maxDoc; i++)
+        NumericDocValues get(String field, LeafReader reader) throws IOException
+        {
+            CachedDocValues result = values;
+            if(result == null)
+            {
+                synchronized (this)
                 {
-                    long value = fieldValues.get(i);
-                    if(value > Integer.MAX_VALUE && !longs)
+                    result = values;
+                    if(result == null)
                     {
-                        longs = true;
-                        settableValues = new LongValues(intValues);
+                        result = decode(reader.getNumericDocValues(field), reader.maxDoc());
+                        values = result;
+                        return result == NO_VALUES ? null : result;
                     }
-
-                    settableValues.set(i, value);
                 }
-                fieldCache.put(cacheKey, settableValues);
-                return settableValues;
             }
+
+            hits.increment();
+            return result == NO_VALUES ? null : result;
         }
-        else
+    }
+
+    private static CachedDocValues decode(NumericDocValues fieldValues, int maxDoc)
+    {
+        if(fieldValues == null)
         {
-            return cachedValues;
+            return NO_VALUES;
         }
+
+        //Always start off with an int array.
+        CachedDocValues settableValues = OFF_HEAP ? new OffHeapIntValues(maxDoc) : new IntValues(maxDoc);
+        boolean longs = false;
+        for(int i=0; i<maxDoc; i++)
+        {
+            long value = fieldValues.get(i);
+            if(!longs && (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE))
+            {
+                longs = true;
+                settableValues = OFF_HEAP ? new OffHeapLongValues(settableValues, maxDoc) : new LongValues(settableValues, maxDoc);
+            }
+
+            settableValues.set(i, value);
+        }
+        return settableValues;
     }
 
-    private static abstract class SettableDocValues extends NumericDocValues
+    private static abstract class CachedDocValues extends NumericDocValues implements Accountable
     {
         public abstract void set(int index, long value);
     }
 
-    private static class IntValues extends SettableDocValues
+    private static final CachedDocValues NO_VALUES = new CachedDocValues()
     {
-        private int[] values;
+        public void set(int index, long value)
+        {
+            throw new UnsupportedOperationException();
+        }
 
-        public IntValues(int[] values)
+        public long get(int index)
         {
-            this.values = values;
+            return 0;
+        }
+
+        public long ramBytesUsed()
+        {
+            return 0;
+        }
+    };
+
+    private static class IntValues extends CachedDocValues
+    {
+        private final int[] values;
+
+        public IntValues(int maxDoc)
+        {
+            this.values = new int[maxDoc];
         }
 
         public void set(int index, long value)
@@ -116,17 +344,22 @@ public class DocValuesCache
         public long get(int index) {
             return values[index];
         }
+
+        public long ramBytesUsed()
+        {
+            return RamUsageEstimator.sizeOf(values);
+        }
     }
 
-    private static class LongValues extends SettableDocValues
+    private static class LongValues extends CachedDocValues
     {
-        private long[] values;
+        private final long[] values;
 
-        public LongValues(int[] ivalues)
+        public LongValues(NumericDocValues intValues, int maxDoc)
         {
-            values = new long[ivalues.length];
-            for(int i=0; i< ivalues.length; i++) {
-                values[i] = ivalues[i];
+            values = new long[maxDoc];
+            for(int i=0; i< maxDoc; i++) {
+                values[i] = intValues.get(i);
             }
         }
 
@@ -139,5 +372,63 @@ public class DocValuesCache
         {
             return values[index];
         }
+
+        public long ramBytesUsed()
+        {
+            return RamUsageEstimator.sizeOf(values);
+        }
+    }
+
+    private static class OffHeapIntValues extends CachedDocValues
+    {
+        private final IntBuffer values;
+
+        public OffHeapIntValues(int maxDoc)
+        {
+            this.values = ByteBuffer.allocateDirect(Math.multiplyExact(maxDoc, Integer.BYTES)).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+
+        public void set(int index, long value)
+        {
+            values.put(index, (int)value);
+        }
+
+        public long get(int index)
+        {
+            return values.get(index);
+        }
+
+        public long ramBytesUsed()
+        {
+            return (long)values.capacity() * Integer.BYTES;
+        }
+    }
+
+    private static class OffHeapLongValues extends CachedDocValues
+    {
+        private final LongBuffer values;
+
+        public OffHeapLongValues(NumericDocValues intValues, int maxDoc)
+        {
+            values = ByteBuffer.allocateDirect(Math.multiplyExact(maxDoc, Long.BYTES)).order(ByteOrder.nativeOrder()).asLongBuffer();
+            for(int i=0; i< maxDoc; i++) {
+                values.put(i, intValues.get(i));
+            }
+        }
+
+        public void set(int index, long value)
+        {
+            values.put(index, value);
+        }
+
+        public long get(int index)
+        {
+            return values.get(index);
+        }
+
+        public long ramBytesUsed()
+        {
+            return (long)values.capacity() * Long.BYTES;
+        }
     }
 }
\ No newline at end of file
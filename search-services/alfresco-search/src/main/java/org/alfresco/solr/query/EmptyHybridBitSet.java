@@ -37,4 +37,10 @@ public class EmptyHybridBitSet extends HybridBitSet
     {
         return false;
     }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return true;
+    }
 }
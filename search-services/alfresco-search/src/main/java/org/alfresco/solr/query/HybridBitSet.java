@@ -26,55 +26,234 @@
 
 package org.alfresco.solr.query;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.Objects;
 
-import org.apache.lucene.util.FixedBitSet;
+import com.carrotsearch.hppc.LongHashSet;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
 
 /**
-*  The HybridBitSet is a random access (doesn't support iteration) BitSet implementation that uses a FixedBitSet for the first N bits
-*  and a HashSet for higher bits. This is designed to provide a balance between the high performance of FixedBitSet and
-*  the efficient sparse behavior of a HashSet.
+*  The HybridBitSet is a random access (doesn't support iteration) set of positive longs (e.g. ACL ids).
+*  The values are split in containers of 2^16 values, addressed by their high bits: a container starts as a sorted
+*  array of its (low 16 bits) values and it is converted to a bitmap once it holds more than 4096 values. In this way
+*  the memory used follows the actual number and distribution of values instead of a fixed upper bound.
+*  Values which don't fit in the container directory (greater than 2^32) go to a primitive hash set.
 **/
 
 public class HybridBitSet
 {
-    private FixedBitSet bits;
-    private Set<Long> set = new HashSet<Long>();
-    private int maxBit;
+    private static final int CONTAINER_BITS = 16;
+    private static final int CONTAINER_MASK = (1 << CONTAINER_BITS) - 1;
+    private static final long MAX_CONTAINERS = 1L << CONTAINER_BITS;
+
+    /* Above this size a sorted char array takes more memory than a 2^16 bitmap */
+    private static final int MAX_ARRAY_CONTAINER_SIZE = 4096;
+
+    private Container[] containers = new Container[0];
+    private LongHashSet overflow;
+    private boolean empty = true;
 
     public HybridBitSet()
     {
 
     }
 
-    HybridBitSet(int maxBit)
+    public void set(long bit)
     {
-        this.bits = new FixedBitSet(maxBit);
-        this.maxBit = maxBit;
+        empty = false;
+
+        long key = bit >>> CONTAINER_BITS;
+        if(key >= MAX_CONTAINERS)
+        {
+            if(overflow == null)
+            {
+                overflow = new LongHashSet();
+            }
+            overflow.add(bit);
+            return;
+        }
+
+        int index = (int)key;
+        if(index >= containers.length)
+        {
+            containers = Arrays.copyOf(containers, ArrayUtil.oversize(index + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF));
+        }
+
+        Container container = containers[index];
+        containers[index] = container == null
+                ? new ArrayContainer().add((int)bit & CONTAINER_MASK)
+                : container.add((int)bit & CONTAINER_MASK);
     }
 
-    public void set(long bit)
+    public boolean get(long bit)
     {
-        if(bit < maxBit)
+        long key = bit >>> CONTAINER_BITS;
+        if(key >= MAX_CONTAINERS)
         {
-            bits.set((int)bit);
+            return overflow != null && overflow.contains(bit);
         }
-        else
+
+        int index = (int)key;
+        if(index >= containers.length)
         {
-            set.add((long)bit);
+            return false;
         }
+
+        Container container = containers[index];
+        return container != null && container.contains((int)bit & CONTAINER_MASK);
     }
 
-    public boolean get(long bit)
+    public boolean isEmpty()
+    {
+        return empty;
+    }
+
+    /**
+     * Two sets are equal when they contain the same values (a container type only depends on its values).
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        if(this == o) return true;
+        if(!(o instanceof HybridBitSet)) return false;
+
+        HybridBitSet that = (HybridBitSet) o;
+        if(isEmpty() || that.isEmpty())
+        {
+            return isEmpty() && that.isEmpty();
+        }
+
+        int length = Math.max(containers.length, that.containers.length);
+        for(int i = 0; i < length; i++)
+        {
+            Container container = i < containers.length ? containers[i] : null;
+            Container other = i < that.containers.length ? that.containers[i] : null;
+            if(!Objects.equals(container, other))
+            {
+                return false;
+            }
+        }
+
+        return Objects.equals(
+                overflow == null || overflow.isEmpty() ? null : overflow,
+                that.overflow == null || that.overflow.isEmpty() ? null : that.overflow);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = overflow == null ? 0 : overflow.hashCode();
+        for(int i = 0; i < containers.length; i++)
+        {
+            if(containers[i] != null)
+            {
+                hash += 31 * i + containers[i].hashCode();
+            }
+        }
+        return hash;
+    }
+
+    private interface Container
+    {
+        /**
+         * Adds the given value, returning the container that holds it (this one or its replacement).
+         */
+        Container add(int value);
+
+        boolean contains(int value);
+    }
+
+    private static final class ArrayContainer implements Container
+    {
+        private char[] values = new char[4];
+        private int size;
+
+        @Override
+        public Container add(int value)
+        {
+            int index = Arrays.binarySearch(values, 0, size, (char)value);
+            if(index >= 0)
+            {
+                return this;
+            }
+
+            if(size == MAX_ARRAY_CONTAINER_SIZE)
+            {
+                BitmapContainer bitmap = new BitmapContainer();
+                for(int i = 0; i < size; i++)
+                {
+                    bitmap.add(values[i]);
+                }
+                return bitmap.add(value);
+            }
+
+            if(size == values.length)
+            {
+                values = Arrays.copyOf(values, Math.min(MAX_ARRAY_CONTAINER_SIZE, size * 2));
+            }
+
+            int insertionPoint = -index - 1;
+            System.arraycopy(values, insertionPoint, values, insertionPoint + 1, size - insertionPoint);
+            values[insertionPoint] = (char)value;
+            size++;
+            return this;
+        }
+
+        @Override
+        public boolean contains(int value)
+        {
+            return Arrays.binarySearch(values, 0, size, (char)value) >= 0;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(!(o instanceof ArrayContainer)) return false;
+
+            ArrayContainer that = (ArrayContainer) o;
+            return Arrays.equals(values, 0, size, that.values, 0, that.size);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = 1;
+            for(int i = 0; i < size; i++)
+            {
+                hash = 31 * hash + values[i];
+            }
+            return hash;
+        }
+    }
+
+    private static final class BitmapContainer implements Container
     {
-        if(bit < maxBit)
+        private final long[] bits = new long[1 << (CONTAINER_BITS - 6)];
+
+        @Override
+        public Container add(int value)
+        {
+            bits[value >>> 6] |= 1L << value;
+            return this;
+        }
+
+        @Override
+        public boolean contains(int value)
         {
-            return bits.get((int)bit);
+            return (bits[value >>> 6] & (1L << value)) != 0;
         }
-        else
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof BitmapContainer && Arrays.equals(bits, ((BitmapContainer) o).bits);
+        }
+
+        @Override
+        public int hashCode()
         {
-            return set.contains((long)bit);
+            return Arrays.hashCode(bits);
         }
     }
 }
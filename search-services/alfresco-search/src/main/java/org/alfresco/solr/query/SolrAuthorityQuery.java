@@ -36,6 +36,7 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Weight;
+import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
 
 /**
@@ -79,7 +80,8 @@ public class SolrAuthorityQuery extends AbstractAuthorityQuery
         @Override
         public Scorer scorer(LeafReaderContext context) throws IOException
         {
-            return SolrAuthorityScorer.createAuthorityScorer(this, context, searcher, authority);
+            DocSet docs = getDocSet(() -> SolrAuthorityScorer.getAuthorityDocSet(searcher, authority));
+            return new SolrAuthorityScorer(this, docs, context, searcher);
         }
 
 		@Override
@@ -56,6 +56,14 @@ public class SolrAuthorityScorer extends AbstractSolrCachingScorer
     }
 
     public static SolrAuthorityScorer createAuthorityScorer(Weight weight, LeafReaderContext context, SolrIndexSearcher searcher, String authority) throws IOException
+    {
+        return new SolrAuthorityScorer(weight, getAuthorityDocSet(searcher, authority), context, searcher);
+    }
+
+    /**
+     * Returns the docs the authority can read across the whole index, from the cache when present.
+     */
+    static DocSet getAuthorityDocSet(SolrIndexSearcher searcher, String authority) throws IOException
     {
         Properties p = searcher.getSchema().getResourceLoader().getCoreProperties();
         boolean doPermissionChecks = Boolean.parseBoolean(p.getProperty("alfresco.doPermissionChecks", "true"));
@@ -66,7 +74,7 @@ public class SolrAuthorityScorer extends AbstractSolrCachingScorer
         if(answer != null)
         {
             // Answer was in the cache, so return it.
-            return new SolrAuthorityScorer(weight, answer, context, searcher);
+            return answer;
         }
         
         // Answer was not in cache, so build the results, cache and return.        
@@ -76,7 +84,7 @@ public class SolrAuthorityScorer extends AbstractSolrCachingScorer
         {
             // can read all
             DocSet allDocs = searcher.getDocSet(new MatchAllDocsQuery());
-            return new SolrAuthorityScorer(weight, allDocs, context, searcher);
+            return allDocs;
         }
 
         // Docs for which the authority has explicit read access.
@@ -90,7 +98,7 @@ public class SolrAuthorityScorer extends AbstractSolrCachingScorer
             // Final set of docs that the authority can read.
             DocSet toCache = readableDocSet.union(authorityOwnedDocs);
             searcher.cacheInsert(CacheConstants.ALFRESCO_AUTHORITY_CACHE, key, toCache);
-            return new SolrAuthorityScorer(weight, toCache, context, searcher);
+            return toCache;
         }
         else
         {
@@ -103,7 +111,7 @@ public class SolrAuthorityScorer extends AbstractSolrCachingScorer
             // Final set of docs that the authority can read.
             DocSet toCache = readableDocSet.union(docsAuthorityOwnsAndCanRead);
             searcher.cacheInsert(CacheConstants.ALFRESCO_AUTHORITY_CACHE, key, toCache);
-            return new SolrAuthorityScorer(weight, toCache, context, searcher);
+            return toCache;
         }
     }
 }
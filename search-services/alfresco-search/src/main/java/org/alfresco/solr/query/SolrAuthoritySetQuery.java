@@ -52,6 +52,7 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.solr.search.DelegatingCollector;
+import org.apache.solr.search.DocSet;
 import org.apache.solr.search.PostFilter;
 import org.apache.solr.search.SolrIndexSearcher;
 
@@ -161,28 +162,23 @@ public class SolrAuthoritySetQuery extends AbstractAuthoritySetQuery implements
         {
 
             /*
-            *  Collect the ACLID's that match the authorities.
-            *  This is done by querying the ACL records in the index. See the method for more
-            *  documentation on this query.
+            *  Collect the ACLID's that match the authorities and the documents that the user owns.
+            *  This is done by querying the ACL records in the index (see getACLSet for more
+            *  documentation on this query) the first time the same set of authorities is seen by the searcher,
+            *  then the result is taken from the alfrescoAclSetCache.
             */
 
-            HybridBitSet aclSet = getACLSet(auths, QueryConstants.FIELD_READER, solrIndexSearcher);
-
-            /*
-            * Collect the documents that the user owns.
-            */
-
-            BitsFilter ownerFilter = getOwnerFilter(auths, solrIndexSearcher);
+            AuthoritySetAcls readerAcls = AuthoritySetAcls.lookup(solrIndexSearcher, QueryConstants.FIELD_READER, auths);
 
             if (globalReaders.contains(PermissionService.OWNER_AUTHORITY))
             {
-                return new AccessControlCollector(aclSet, ownerFilter);
+                return new AccessControlCollector(readerAcls.getAclIds(), readerAcls.getOwnedDocs(), DocValuesCache.of(solrIndexSearcher));
             }
             else
             {
                 String[] ownerAuth = {PermissionService.OWNER_AUTHORITY};
-                HybridBitSet ownerAclSet = getACLSet(ownerAuth, QueryConstants.FIELD_READER, solrIndexSearcher);
-                return new AccessControlCollectorWithoutOwnerRead(aclSet, ownerAclSet, ownerFilter);
+                HybridBitSet ownerAclSet = AuthoritySetAcls.lookup(solrIndexSearcher, QueryConstants.FIELD_READER, ownerAuth).getAclIds();
+                return new AccessControlCollectorWithoutOwnerRead(readerAcls.getAclIds(), ownerAclSet, readerAcls.getOwnedDocs(), DocValuesCache.of(solrIndexSearcher));
             }
         }
         catch(Exception e)
@@ -294,14 +290,15 @@ public class SolrAuthoritySetQuery extends AbstractAuthoritySetQuery implements
     class AccessControlCollector extends DelegatingCollector
     {
         private HybridBitSet aclIds;
+        private DocValuesCache docValuesCache;
         private NumericDocValues fieldValues;
-        private BitsFilter ownerFilter;
-        private FixedBitSet ownerDocs;
+        private DocSet ownedDocs;
 
-        public AccessControlCollector(HybridBitSet aclIds, BitsFilter ownerFilter)
+        public AccessControlCollector(HybridBitSet aclIds, DocSet ownedDocs, DocValuesCache docValuesCache)
         {
             this.aclIds=aclIds;
-            this.ownerFilter = ownerFilter;
+            this.ownedDocs = ownedDocs;
+            this.docValuesCache = docValuesCache;
         }
 
         public boolean acceptsDocsOutOfOrder()
@@ -312,8 +309,7 @@ public class SolrAuthoritySetQuery extends AbstractAuthoritySetQuery implements
         public void doSetNextReader(LeafReaderContext context) throws IOException
         {
         	super.doSetNextReader(context);
-            this.fieldValues = DocValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, context.reader());
-            this.ownerDocs = ownerFilter.getBitSets().get(context.ord);
+            this.fieldValues = docValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, context.reader());
         }
 
         /*
@@ -326,7 +322,7 @@ public class SolrAuthoritySetQuery extends AbstractAuthoritySetQuery implements
         {
             long aclId = this.fieldValues.get(doc);
 
-            if(aclIds.get(aclId) || ownerDocs.get(doc))
+            if(aclIds.get(aclId) || ownedDocs.exists(docBase + doc))
             {
                 super.collect(doc);
             }
@@ -337,14 +333,15 @@ public class SolrAuthoritySetQuery extends AbstractAuthoritySetQuery implements
     {
         private HybridBitSet aclIds;
         private HybridBitSet ownerAclIds;
+        private DocValuesCache docValuesCache;
         private NumericDocValues fieldValues;
-        private BitsFilter ownerFilter;
-        private FixedBitSet ownerDocs;
-        public AccessControlCollectorWithoutOwnerRead(HybridBitSet aclIds, HybridBitSet ownerAclIds, BitsFilter ownerFilter)
+        private DocSet ownedDocs;
+        public AccessControlCollectorWithoutOwnerRead(HybridBitSet aclIds, HybridBitSet ownerAclIds, DocSet ownedDocs, DocValuesCache docValuesCache)
         {
             this.aclIds=aclIds;
             this.ownerAclIds = ownerAclIds;
-            this.ownerFilter = ownerFilter;
+            this.ownedDocs = ownedDocs;
+            this.docValuesCache = docValuesCache;
         }
 
         public boolean acceptsDocsOutOfOrder()
@@ -355,14 +352,13 @@ public class SolrAuthoritySetQuery extends AbstractAuthoritySetQuery implements
         public void doSetNextReader(LeafReaderContext context) throws IOException
         {
         	super.doSetNextReader(context);
-            this.fieldValues = DocValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, context.reader());
-            this.ownerDocs = ownerFilter.getBitSets().get(context.ord);
+            this.fieldValues = docValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, context.reader());
         }
 
         public void collect(int doc) throws IOException
         {
             long aclId = this.fieldValues.get(doc);
-            if(aclIds.get(aclId) || (ownerDocs.get(doc) && ownerAclIds.get(aclId)))
+            if(aclIds.get(aclId) || (ownerAclIds.get(aclId) && ownedDocs.exists(docBase + doc)))
             {
                 super.collect(doc);
             }
@@ -35,7 +35,6 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Weight;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
-import org.apache.solr.search.WrappedQuery;
 
 /**
  * Decorator that executes a SolrPathQuery and returns cached results where possible.
@@ -71,9 +70,7 @@ public class SolrCachingPathQuery extends Query
         if (results == null)
         {
             // Cache miss: get path query results and cache them
-            WrappedQuery wrapped = new WrappedQuery(pathQuery);
-            wrapped.setCache(false);
-            results = searcher.getDocSet(wrapped);
+            results = ConcurrentSegmentSearch.getDocSet(searcher, pathQuery);
             searcher.cacheInsert(CacheConstants.ALFRESCO_PATH_CACHE, pathQuery, results);
         }
 
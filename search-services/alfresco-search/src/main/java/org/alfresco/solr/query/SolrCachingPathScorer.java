@@ -33,7 +33,6 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.Weight;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
-import org.apache.solr.search.WrappedQuery;
 
 /**
  * Caching wrapper for {@link SolrPathQuery}.
@@ -61,9 +60,7 @@ public class SolrCachingPathScorer extends AbstractSolrCachingScorer
         if (results == null)
         {
             // Cache miss: get path query results and cache them
-            WrappedQuery wrapped = new WrappedQuery(wrappedPathQuery);
-            wrapped.setCache(false);
-            results = searcher.getDocSet(wrapped);
+            results = ConcurrentSegmentSearch.getDocSet(searcher, wrappedPathQuery);
             searcher.cacheInsert(CacheConstants.ALFRESCO_PATH_CACHE, wrappedPathQuery, results);
         }
         
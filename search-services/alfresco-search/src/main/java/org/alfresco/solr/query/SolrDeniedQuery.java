@@ -36,6 +36,7 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Weight;
+import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
 
 /**
@@ -78,7 +79,8 @@ public class SolrDeniedQuery extends AbstractAuthorityQuery
         @Override
         public Scorer scorer(LeafReaderContext context) throws IOException
         {
-            return SolrDeniedScorer.createDenyScorer(this, context, searcher, authority);
+            DocSet docs = getDocSet(() -> SolrDeniedScorer.getDeniedDocSet(searcher, authority));
+            return new SolrDeniedScorer(this, docs, context, searcher);
         }
 
         @Override
@@ -55,6 +55,14 @@ public class SolrDeniedScorer extends AbstractSolrCachingScorer
     }
 
     public static SolrDeniedScorer createDenyScorer(Weight weight, LeafReaderContext context, SolrIndexSearcher searcher, String authority) throws IOException
+    {
+        return new SolrDeniedScorer(weight, getDeniedDocSet(searcher, authority), context, searcher);
+    }
+
+    /**
+     * Returns the docs denied to the authority across the whole index, from the cache when present.
+     */
+    static DocSet getDeniedDocSet(SolrIndexSearcher searcher, String authority) throws IOException
     {     
         DocSet deniedDocs = (DocSet) searcher.cacheLookup(CacheConstants.ALFRESCO_DENIED_CACHE, authority);
 
@@ -84,6 +92,6 @@ public class SolrDeniedScorer extends AbstractSolrCachingScorer
             
             searcher.cacheInsert(CacheConstants.ALFRESCO_DENIED_CACHE, authority, deniedDocs);
         }
-        return new SolrDeniedScorer(weight, deniedDocs, context, searcher);
+        return deniedDocs;
     }
 }
@@ -96,14 +96,14 @@ public class SolrDenySetQuery extends AbstractAuthoritySetQuery implements PostF
         String[] auths = authorities.substring(1).split(authorities.substring(0, 1));
         try
         {
-            HybridBitSet denySet = getACLSet(auths, QueryConstants.FIELD_DENIED, (SolrIndexSearcher) searcher);
+            HybridBitSet denySet = AuthoritySetAcls.lookup((SolrIndexSearcher) searcher, QueryConstants.FIELD_DENIED, auths).getAclIds();
             if(denySet instanceof EmptyHybridBitSet)
             {
                 return new AllAccessCollector();
             }
             else
             {
-                return new AccessControlCollector(denySet);
+                return new AccessControlCollector(denySet, DocValuesCache.of((SolrIndexSearcher) searcher));
             }
         }
         catch(Exception e)
@@ -124,11 +124,13 @@ public class SolrDenySetQuery extends AbstractAuthoritySetQuery implements PostF
     class AccessControlCollector extends DelegatingCollector
     {
         private HybridBitSet aclIds;
+        private DocValuesCache docValuesCache;
         private NumericDocValues fieldValues;
 
-        public AccessControlCollector(HybridBitSet aclIds)
+        public AccessControlCollector(HybridBitSet aclIds, DocValuesCache docValuesCache)
         {
             this.aclIds=aclIds;
+            this.docValuesCache = docValuesCache;
         }
 
         public boolean acceptsDocsOutOfOrder() 
@@ -139,7 +141,7 @@ public class SolrDenySetQuery extends AbstractAuthoritySetQuery implements PostF
         public void doSetNextReader(LeafReaderContext context) throws IOException 
         {
         	super.doSetNextReader(context);
-            this.fieldValues = DocValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, context.reader());
+            this.fieldValues = docValuesCache.getNumericDocValues(QueryConstants.FIELD_ACLID, context.reader());
         }
 
         public void collect(int doc) throws IOException{
@@ -36,6 +36,7 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Weight;
+import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
 
 /**
@@ -79,7 +80,8 @@ public class SolrOwnerSetQuery extends AbstractAuthoritySetQuery
         @Override
         public Scorer scorer(LeafReaderContext context) throws IOException
         {
-            return SolrOwnerSetScorer.createOwnerSetScorer(this, context, searcher, authorities);
+            DocSet docs = getDocSet(() -> SolrOwnerSetScorer.getOwnerSetDocSet(searcher, authorities));
+            return new SolrOwnerSetScorer(this, docs, context, searcher);
         }
         
 
@@ -59,6 +59,14 @@ public class SolrOwnerSetScorer extends AbstractSolrCachingScorer
     }
 
     public static SolrOwnerSetScorer createOwnerSetScorer(Weight weight, LeafReaderContext context, SolrIndexSearcher searcher, String authorities) throws IOException
+    {
+        return new SolrOwnerSetScorer(weight, getOwnerSetDocSet(searcher, authorities), context, searcher);
+    }
+
+    /**
+     * Returns the docs owned by the authorities across the whole index, from the cache when present.
+     */
+    static DocSet getOwnerSetDocSet(SolrIndexSearcher searcher, String authorities) throws IOException
     {
         
         DocSet authorityOwnedDocs = (DocSet) searcher.cacheLookup(CacheConstants.ALFRESCO_OWNERLOOKUP_CACHE, authorities);
@@ -86,7 +94,7 @@ public class SolrOwnerSetScorer extends AbstractSolrCachingScorer
         }
         
         // TODO: Cache the final set? e.g. searcher.cacheInsert(authorities, authorityOwnedDocs)
-        return new SolrOwnerSetScorer(weight, authorityOwnedDocs, context, searcher);
+        return authorityOwnedDocs;
        
     }
 }
@@ -27,7 +27,8 @@
 package org.alfresco.solr.query;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.alfresco.service.cmr.dictionary.DictionaryService;
 import org.apache.lucene.index.LeafReaderContext;
@@ -48,53 +49,42 @@ public class SolrPathScorer extends Scorer
     }
   
 
+    /**
+     * Creates the scorer of a segment. The query isn't modified: the segment matches its own copies of the
+     * query positions, so the segments of an index can be scored concurrently.
+     */
     public static SolrPathScorer createPathScorer(SolrPathQuery solrPathQuery, LeafReaderContext context, Weight weight, DictionaryService dictionarySertvice, boolean repeat) throws IOException
     {
-        
-//        StructuredFieldPosition last = null;
-//        if(solrPathQuery.getPathStructuredFieldPositions().size() > 0)
-//        {
-//           last = solrPathQuery.getPathStructuredFieldPositions().get(solrPathQuery.getPathStructuredFieldPositions().size() - 1);
-//        }
-   
-        
-        if (solrPathQuery.getPathStructuredFieldPositions().size() == 0) 
+        List<StructuredFieldPosition> queryPositions = solrPathQuery.getPathStructuredFieldPositions();
+        if (queryPositions.size() == 0) 
         {
-                ArrayList<StructuredFieldPosition> answer = new ArrayList<StructuredFieldPosition>(2);
-                answer.add(new SelfAxisStructuredFieldPosition());
-                answer.add(new SelfAxisStructuredFieldPosition());
-                
-                solrPathQuery.appendQuery(answer);
+            queryPositions = Arrays.asList(new SelfAxisStructuredFieldPosition(), new SelfAxisStructuredFieldPosition());
         }
 
-        
-        for (StructuredFieldPosition sfp : solrPathQuery.getPathStructuredFieldPositions())
+        StructuredFieldPosition[] positions = new StructuredFieldPosition[queryPositions.size()];
+        for (int i = 0; i < positions.length; i++)
         {
+            StructuredFieldPosition sfp = queryPositions.get(i);
             if (sfp.getTermText() != null)
             {
                 PostingsEnum p = context.reader().postings(new Term(solrPathQuery.getPathField(), sfp.getTermText()), PostingsEnum.POSITIONS);
                 if (p == null)
                     return null;
-                CachingTermPositions ctp = new CachingTermPositions(p);
-                sfp.setCachingTermPositions(ctp);
+                positions[i] = sfp.withCachingTermPositions(new CachingTermPositions(p));
+            }
+            else
+            {
+                positions[i] = sfp.withCachingTermPositions(null);
             }
         }
 
-        SolrContainerScorer cs = null;
-
         PostingsEnum rootContainerPositions = null;
         if (solrPathQuery.getPathRootTerm() != null)
         {
             rootContainerPositions = context.reader().postings(solrPathQuery.getPathRootTerm(), PostingsEnum.POSITIONS);
         }
-       
-        if (solrPathQuery.getPathStructuredFieldPositions().size() > 0)
-        {
-            cs = new SolrContainerScorer(weight, rootContainerPositions, (StructuredFieldPosition[]) solrPathQuery.getPathStructuredFieldPositions().toArray(new StructuredFieldPosition[] {}));
-        }
-       
-       
-        return new SolrPathScorer(weight, cs);
+
+        return new SolrPathScorer(weight, new SolrContainerScorer(weight, rootContainerPositions, positions));
     }
 
     @Override
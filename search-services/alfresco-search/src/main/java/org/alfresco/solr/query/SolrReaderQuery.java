@@ -36,6 +36,7 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Weight;
+import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
 
 /**
@@ -79,7 +80,8 @@ public class SolrReaderQuery extends AbstractAuthorityQuery
         @Override
         public Scorer scorer(LeafReaderContext context) throws IOException
         {
-            return SolrReaderScorer.createReaderScorer(this, context, searcher, authority);
+            DocSet docs = getDocSet(() -> SolrReaderScorer.getReaderDocSet(searcher, authority));
+            return new SolrReaderScorer(this, docs, context, searcher);
         }  
         
         @Override
@@ -55,6 +55,14 @@ public class SolrReaderScorer extends AbstractSolrCachingScorer
     }
 
     public static SolrReaderScorer createReaderScorer(Weight weight, LeafReaderContext context, SolrIndexSearcher searcher, String authority) throws IOException
+    {
+        return new SolrReaderScorer(weight, getReaderDocSet(searcher, authority), context, searcher);
+    }
+
+    /**
+     * Returns the docs the authority is a reader of across the whole index, from the cache when present.
+     */
+    static DocSet getReaderDocSet(SolrIndexSearcher searcher, String authority) throws IOException
     {     
         DocSet readableDocs = (DocSet) searcher.cacheLookup(CacheConstants.ALFRESCO_READER_CACHE, authority);
 
@@ -84,6 +92,6 @@ public class SolrReaderScorer extends AbstractSolrCachingScorer
             searcher.cacheInsert(CacheConstants.ALFRESCO_READER_CACHE, authority, readableDocs);
         }
         
-        return new SolrReaderScorer(weight, readableDocs, context, searcher);
+        return readableDocs;
     }
 }
@@ -30,13 +30,13 @@ import java.io.IOException;
 import java.util.Set;
 
 import org.alfresco.repo.search.adaptor.QueryConstants;
-import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Weight;
+import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
 
 /**
@@ -79,8 +79,8 @@ public class SolrReaderSetQuery extends AbstractAuthoritySetQuery
         @Override
         public Scorer scorer(LeafReaderContext context) throws IOException
         {
-            LeafReader reader = context.reader();
-            return SolrReaderSetScorer2.createReaderSetScorer(this, context, searcher, authorities, reader);
+            DocSet docs = getDocSet(() -> SolrReaderSetScorer2.getReaderSetDocSet(searcher, authorities));
+            return new SolrReaderSetScorer2(this, docs, context, searcher);
         }
         
         @Override
@@ -103,6 +103,17 @@ public interface StructuredFieldPosition
 
     public CachingTermPositions getCachingTermPositions();
 
+    /**
+     * A copy of this element using the given caching term positions. The
+     * elements of a query are shared by all the segments being searched, so
+     * each segment works on its own copies rather than setting the term
+     * positions on the query.
+     * 
+     * @param tps CachingTermPositions
+     * @return StructuredFieldPosition
+     */
+    public StructuredFieldPosition withCachingTermPositions(CachingTermPositions tps);
+
     /**
      * Normally paths would require onlt parent chaining. for some it is parent
      * and child chaining.
@@ -93,6 +93,16 @@ public abstract class AbstractTracker implements Tracker
 
     DocRouter docRouter;
 
+    /**
+     * Minimum time (in ms) between two saves of the checkpoint of an index check (see {@link IndexHealthCheckpoint}).
+     */
+    long indexCheckCheckpointInterval;
+
+    /**
+     * Maximum age (in ms) of the checkpoint of an index check which can be resumed.
+     */
+    long indexCheckCheckpointMaxAge;
+
     /**
      * The property to use for determining the shard.
      * Note that this property is not used by all trackers, it is actually managed by the {@link ShardStatePublisher} and
@@ -137,6 +147,9 @@ public abstract class AbstractTracker implements Tracker
         
         transformContent = Boolean.parseBoolean(p.getProperty("alfresco.index.transformContent", "true"));
 
+        indexCheckCheckpointInterval = Long.parseLong(p.getProperty("alfresco.indexCheck.checkpointInterval", "60000"));
+        indexCheckCheckpointMaxAge = Long.parseLong(p.getProperty("alfresco.indexCheck.checkpointMaxAge", "86400000"));
+
         this.trackerStats = this.infoSrv.getTrackerStats();
         
         this.type = type;
@@ -27,27 +27,35 @@
 package org.alfresco.solr.tracker;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import com.carrotsearch.hppc.LongHashSet;
 import com.google.common.collect.Lists;
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.httpclient.AuthenticationException;
 import org.alfresco.solr.AclReport;
 import org.alfresco.solr.BoundedDeque;
+import org.alfresco.solr.IndexingSession;
 import org.alfresco.solr.InformationServer;
 import org.alfresco.solr.TrackerState;
 import org.alfresco.solr.adapters.IOpenBitSet;
@@ -55,6 +63,7 @@ import org.alfresco.solr.client.Acl;
 import org.alfresco.solr.client.AclChangeSet;
 import org.alfresco.solr.client.AclChangeSets;
 import org.alfresco.solr.client.AclReaders;
+import org.alfresco.solr.client.AsyncSOLRAPIClient;
 import org.alfresco.solr.client.SOLRAPIClient;
 import org.json.JSONException;
 import org.slf4j.Logger;
@@ -75,6 +84,8 @@ public class AclTracker extends ActivatableTracker
     private static final int DEFAULT_ACL_BATCH_SIZE = 100;
     private static final int DEFAULT_ACL_TRACKER_MAX_PARALLELISM = 32;
     private static final long DEFAULT_ACL_TRACKER_TIMESTEP = TIME_STEP_1_HR_IN_MS;
+    private static final int DEFAULT_PIPELINE_PAGE_SIZE = 10000;
+    private static final int DEFAULT_PIPELINE_MAX_IN_FLIGHT = 8;
 
     protected static final long INITIAL_MAX_ACL_CHANGE_SET_ID = 2000L;
     private static final int MAX_NUMBER_OF_ACL_CHANGE_SETS = 2000;
@@ -91,6 +102,14 @@ public class AclTracker extends ActivatableTracker
     private long timeStep;
     private int maxNumberOfAclChangeSets;
 
+    /**
+     * When enabled, the ACLs are listed by pages and their readers requested ahead, while the readers already
+     * received are indexed (see {@link #indexChangeSetBatchesPipelined}).
+     */
+    private boolean pipelineEnabled;
+    private int pipelinePageSize;
+    private int pipelineMaxInFlight;
+
     private ConcurrentLinkedQueue<Long> aclChangeSetsToReindex = new ConcurrentLinkedQueue<>();
     private ConcurrentLinkedQueue<Long> aclChangeSetsToIndex = new ConcurrentLinkedQueue<>();
     private ConcurrentLinkedQueue<Long> aclChangeSetsToPurge = new ConcurrentLinkedQueue<>();
@@ -150,6 +169,17 @@ public class AclTracker extends ActivatableTracker
         maxNumberOfAclChangeSets = Integer.parseInt(p.getProperty("alfresco.acl.tracker.maxNumberOfAclChangeSets",
                 String.valueOf(MAX_NUMBER_OF_ACL_CHANGE_SETS)));
 
+        pipelineEnabled = Boolean.parseBoolean(p.getProperty("alfresco.acl.tracker.pipeline.enabled", "false"));
+        pipelinePageSize = Math.max(1, Integer.parseInt(p.getProperty("alfresco.acl.tracker.pipeline.pageSize",
+                String.valueOf(DEFAULT_PIPELINE_PAGE_SIZE))));
+        pipelineMaxInFlight = Math.max(1, Integer.parseInt(p.getProperty("alfresco.acl.tracker.pipeline.maxInFlight",
+                String.valueOf(DEFAULT_PIPELINE_MAX_IN_FLIGHT))));
+        if (pipelineEnabled)
+        {
+            LOGGER.info("[CORE {}] ACL tracker pipeline enabled, page size {}, max in flight {}",
+                    coreName, pipelinePageSize, pipelineMaxInFlight);
+        }
+
         RUN_LOCK_BY_CORE.put(coreName, new Semaphore(1, true));
         WRITE_LOCK_BY_CORE.put(coreName, new Semaphore(1, true));
     }
@@ -593,57 +623,66 @@ public class AclTracker extends ActivatableTracker
         }
 
         IOpenBitSet aclTxIdsInDb = infoSrv.getOpenBitSetInstance();
-        long lastAclTxCommitTime = firstChangeSetCommitTimex;
-        if (fromTime != null)
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(checkpointFile(), aclTxIdsInDb,
+                toAclTx, fromTime, toTime,
+                indexCheckCheckpointInterval, indexCheckCheckpointMaxAge))
         {
-            lastAclTxCommitTime = fromTime;
-        }
-        
-        long maxAclTxId = 0;
-        Long minAclTxId = null;
-        long endTime = System.currentTimeMillis() + infoSrv.getHoleRetention();
-        AclChangeSets aclTransactions;
-        BoundedDeque<AclChangeSet> changeSetsFound = new  BoundedDeque<>(ACL_CHANGE_SETS_FOUND_QUEUE_SIZE);
-        DO: do
-        {
-            aclTransactions = getSomeAclChangeSets(changeSetsFound,
-                    lastAclTxCommitTime, timeStep, maxNumberOfAclChangeSets, endTime);
-            for (AclChangeSet set : aclTransactions.getAclChangeSets())
-            {
-                // include
-                if (toTime != null)
+            long lastAclTxCommitTime = firstChangeSetCommitTimex;
+            if (fromTime != null)
+            {
+                lastAclTxCommitTime = fromTime;
+            }
+            if (checkpoint.isResumed())
+            {
+                lastAclTxCommitTime = checkpoint.getLastCommitTime();
+                LOGGER.info("[CORE {}] Index check resumed from ACL change set commit time {}", coreName, lastAclTxCommitTime);
+            }
+
+            long endTime = System.currentTimeMillis() + infoSrv.getHoleRetention();
+            AclChangeSets aclTransactions;
+            BoundedDeque<AclChangeSet> changeSetsFound = new  BoundedDeque<>(ACL_CHANGE_SETS_FOUND_QUEUE_SIZE);
+            DO: do
+            {
+                aclTransactions = getSomeAclChangeSets(changeSetsFound,
+                        lastAclTxCommitTime, timeStep, maxNumberOfAclChangeSets, endTime);
+                for (AclChangeSet set : aclTransactions.getAclChangeSets())
                 {
-                    if (set.getCommitTimeMs() > toTime)
+                    // include
+                    if (toTime != null)
                     {
-                        break DO;
+                        if (set.getCommitTimeMs() > toTime)
+                        {
+                            break DO;
+                        }
                     }
-                }
-                if (toAclTx != null)
-                {
-                    if (set.getId() > toAclTx)
+                    if (toAclTx != null)
                     {
-                        break DO;
+                        if (set.getId() > toAclTx)
+                        {
+                            break DO;
+                        }
                     }
-                }
 
-                // bounds for later loops
-                if (minAclTxId == null)
-                {
-                    minAclTxId = set.getId();
-                }
-                if (maxAclTxId < set.getId())
-                {
-                    maxAclTxId = set.getId();
+                    // bounds for later loops are kept by the checkpoint
+                    lastAclTxCommitTime = set.getCommitTimeMs();
+                    checkpoint.add(set.getId(), set.getCommitTimeMs());
+                    changeSetsFound.add(set);
                 }
-
-                lastAclTxCommitTime = set.getCommitTimeMs();
-                aclTxIdsInDb.set(set.getId());
-                changeSetsFound.add(set);
+                checkpoint.save();
             }
+            while (aclTransactions.getAclChangeSets().size() > 0);
+
+            IndexHealthReport report =
+                    this.infoSrv.reportAclTransactionsInIndex(checkpoint.getMinId(), aclTxIdsInDb, checkpoint.getMaxId());
+            checkpoint.delete();
+            return report;
         }
-        while (aclTransactions.getAclChangeSets().size() > 0);
-        
-        return this.infoSrv.reportAclTransactionsInIndex(minAclTxId, aclTxIdsInDb, maxAclTxId);
+    }
+
+    private Path checkpointFile()
+    {
+        Path checkpoints = infoSrv.getCheckpointsDirectory();
+        return checkpoints == null ? null : checkpoints.resolve("acl-index-check.checkpoint");
     }
 
     public List<Long> getAclsForDbAclTransaction(Long acltxid)
@@ -756,24 +795,32 @@ public class AclTracker extends ActivatableTracker
                 }
 
                 final AtomicInteger counter = new AtomicInteger();
+                Predicate<AclChangeSet> notIndexed = aclChangeSetsNotIndexed(aclChangeSets.getAclChangeSets());
                 Collection<List<AclChangeSet>> changeSetBatches = aclChangeSets.getAclChangeSets().stream()
                         .peek(changeSetsFound::add)
-                        .filter(this::isAclChangeSetAlreadyIndexed)
+                        .filter(notIndexed)
                         .collect(Collectors.groupingBy(it -> counter.getAndAdd(1) / changeSetAclsBatchSize))
                         .values();
 
 
-                for (List<AclChangeSet> changeSetBatch : changeSetBatches)
+                if (pipelineEnabled)
                 {
-                    aclCount = indexBatchOfChangeSets(changeSetBatch);
-                    // Update last committed transactions
-                    setLastChangeSetIdAndCommitTimeInTrackerState(changeSetBatch, state);
-                    indexAclChangeSetAfterWorker(changeSetBatch, state);
-
-                    long endElapsed = System.nanoTime();
-                    trackerStats.addElapsedAclTime(aclCount, endElapsed-startElapsed);
-                    startElapsed = endElapsed;
-                    totalAclCount += aclCount;
+                    totalAclCount += indexChangeSetBatchesPipelined(new ArrayList<>(changeSetBatches));
+                }
+                else
+                {
+                    for (List<AclChangeSet> changeSetBatch : changeSetBatches)
+                    {
+                        aclCount = indexBatchOfChangeSets(changeSetBatch);
+                        // Update last committed transactions
+                        setLastChangeSetIdAndCommitTimeInTrackerState(changeSetBatch, state);
+                        indexAclChangeSetAfterWorker(changeSetBatch, state);
+
+                        long endElapsed = System.nanoTime();
+                        trackerStats.addElapsedAclTime(aclCount, endElapsed-startElapsed);
+                        startElapsed = endElapsed;
+                        totalAclCount += aclCount;
+                    }
                 }
 
             }
@@ -793,28 +840,44 @@ public class AclTracker extends ActivatableTracker
         
     }
 
-    private boolean isAclChangeSetAlreadyIndexed(AclChangeSet changeSet)
+    /**
+     * Checks, in a single pass over the index, which change sets of the given page have been already indexed.
+     * Only the change sets not newer than the last indexed one are looked up.
+     *
+     * @param changeSets the page of ACL change sets returned by the repository.
+     * @return a predicate accepting the change sets which still need to be indexed.
+     */
+    private Predicate<AclChangeSet> aclChangeSetsNotIndexed(List<AclChangeSet> changeSets)
     {
+        long[] candidates = changeSets.stream()
+                .filter(changeSet -> changeSet.getCommitTimeMs() <= state.getLastIndexedChangeSetCommitTime())
+                .mapToLong(AclChangeSet::getId)
+                .toArray();
+        if (candidates.length == 0)
+        {
+            return changeSet -> true;
+        }
 
         try
         {
-            boolean isInIndex = (changeSet.getCommitTimeMs() <= state.getLastIndexedChangeSetCommitTime() &&
-                    infoSrv.aclChangeSetInIndex(changeSet.getId(), true));
-            if (LOGGER.isTraceEnabled())
-            {
-                LOGGER.trace("{}-[CORE {}] Skipping change Set Id {} as it was already indexed",
-                        Thread.currentThread().getId(), coreName, changeSet.getId());
-            }
-            return !isInIndex;
+            LongHashSet indexed = infoSrv.aclChangeSetsInIndex(candidates, true);
+            return changeSet -> {
+                boolean isInIndex = indexed.contains(changeSet.getId());
+                if (isInIndex && LOGGER.isTraceEnabled())
+                {
+                    LOGGER.trace("{}-[CORE {}] Skipping change Set Id {} as it was already indexed",
+                            Thread.currentThread().getId(), coreName, changeSet.getId());
+                }
+                return !isInIndex;
+            };
         }
         catch (IOException e)
         {
             LOGGER.warn(
-                    "{}-[CORE {}] Error catched while checking if ACL Change Set {} was in index",
-                    Thread.currentThread().getId(), coreName, changeSet.getId(), e);
-            return true;
+                    "{}-[CORE {}] Error catched while checking if {} ACL Change Sets were in index",
+                    Thread.currentThread().getId(), coreName, candidates.length, e);
+            return changeSet -> true;
         }
-
     }
 
     private void setLastChangeSetIdAndCommitTimeInTrackerState(List<AclChangeSet> aclChangeSets, TrackerState state)
@@ -833,23 +896,27 @@ public class AclTracker extends ActivatableTracker
     }
 
     /**
-     * Index ACL Change Set transaction after ACLs has been indexed by the worker
+     * Index ACL Change Set transaction after ACLs has been indexed by the worker.
+     * The change set and state documents of the whole batch are written through a single indexing session.
      */
     private void indexAclChangeSetAfterWorker(Collection<AclChangeSet> changeSetsIndexed, TrackerState state)
                 throws IOException
     {
-        for (AclChangeSet set : changeSetsIndexed)
+        try (IndexingSession session = infoSrv.openIndexingSession())
         {
-            infoSrv.indexAclTransaction(set, true);
-            // Acl change sets are ordered by commit time and tie-broken by id
-            if (set.getCommitTimeMs() > state.getLastIndexedChangeSetCommitTime()
-                    || set.getCommitTimeMs() == state.getLastIndexedChangeSetCommitTime()
-                    && set.getId() > state.getLastIndexedChangeSetId())
+            for (AclChangeSet set : changeSetsIndexed)
             {
-                state.setLastIndexedChangeSetCommitTime(set.getCommitTimeMs());
-                state.setLastIndexedChangeSetId(set.getId());
+                session.indexAclTransaction(set, true);
+                // Acl change sets are ordered by commit time and tie-broken by id
+                if (set.getCommitTimeMs() > state.getLastIndexedChangeSetCommitTime()
+                        || set.getCommitTimeMs() == state.getLastIndexedChangeSetCommitTime()
+                        && set.getId() > state.getLastIndexedChangeSetId())
+                {
+                    state.setLastIndexedChangeSetCommitTime(set.getCommitTimeMs());
+                    state.setLastIndexedChangeSetId(set.getId());
+                }
+                trackerStats.addChangeSetAcls(set.getAclCount());
             }
-            trackerStats.addChangeSetAcls(set.getAclCount());
         }
     }
 
@@ -888,6 +955,207 @@ public class AclTracker extends ActivatableTracker
     }
 
 
+    /**
+     * Indexes the given batches of ACL change sets as a pipeline:
+     *
+     * <ol>
+     *     <li>ACL listing: the ACLs of each batch of change sets are requested by pages of "pageSize" ACLs, the next
+     *     page being requested as soon as the previous one has been received.</li>
+     *     <li>Readers fetching: the ACLs of each page routed to this shard are split in batches of "aclBatchSize"
+     *     ACLs, whose readers are requested through the asynchronous Repository client of the core. No more than
+     *     "maxInFlight" batches are requested ahead of the indexing.</li>
+     *     <li>Indexing: the calling thread indexes the readers in request order, together with the ones of the
+     *     following batches already received. As soon as all the ACLs of the oldest change sets have been indexed,
+     *     those change sets are indexed and the tracker state is advanced.</li>
+     * </ol>
+     *
+     * @param changeSetBatches Batches of ACL change sets to be indexed, ordered by commit time
+     * @return the number of ACLs indexed
+     */
+    private int indexChangeSetBatchesPipelined(List<List<AclChangeSet>> changeSetBatches)
+            throws AuthenticationException, IOException, JSONException, ExecutionException, InterruptedException
+    {
+        AsyncSOLRAPIClient asyncClient = infoSrv.getAsyncRepositoryClient();
+        AclPipeline pipeline = new AclPipeline(changeSetBatches);
+        CompletableFuture<List<Acl>> nextPage = null;
+        try
+        {
+            for (List<AclChangeSet> changeSetBatch : changeSetBatches)
+            {
+                // Exclude ACL Change Set with no ACLs inside
+                List<AclChangeSet> nonEmptyChangeSets = changeSetBatch.stream()
+                        .filter(set -> set.getAclCount() > 0)
+                        .collect(Collectors.toList());
+
+                nextPage = nonEmptyChangeSets.isEmpty() ? null : asyncClient.getAcls(nonEmptyChangeSets, null, pipelinePageSize);
+                while (nextPage != null)
+                {
+                    checkShutdown();
+                    List<Acl> page = nextPage.get();
+
+                    // ACLs come ordered by id, so a full page may be followed by another one
+                    nextPage = page.size() < pipelinePageSize
+                            ? null
+                            : asyncClient.getAcls(nonEmptyChangeSets, page.get(page.size() - 1).getId() + 1, pipelinePageSize);
+
+                    // The readers are requested in batches of ACLs routed to this shard; the other ACLs only count
+                    // towards the completion of their change sets
+                    Map<Boolean, List<Acl>> routing = page.stream()
+                            .collect(Collectors.partitioningBy(acl -> docRouter.routeAcl(shardCount, shardInstance, acl)));
+                    if (!routing.get(false).isEmpty())
+                    {
+                        pipeline.add(routing.get(false), CompletableFuture.completedFuture(Collections.emptyList()));
+                    }
+                    for (List<Acl> routedAcls : Lists.partition(routing.get(true), aclBatchSize))
+                    {
+                        pipeline.add(routedAcls, asyncClient.getAclReaders(routedAcls));
+                        while (pipeline.inFlight() >= pipelineMaxInFlight)
+                        {
+                            pipeline.indexReceived();
+                        }
+                    }
+                }
+                pipeline.allListed(changeSetBatch);
+            }
+
+            while (pipeline.inFlight() > 0)
+            {
+                pipeline.indexReceived();
+            }
+            return pipeline.indexedAcls;
+        }
+        finally
+        {
+            // Only pending when the indexing failed
+            if (nextPage != null)
+            {
+                nextPage.cancel(true);
+            }
+            pipeline.cancel();
+        }
+    }
+
+    /**
+     * The state of {@link #indexChangeSetBatchesPipelined}: the batches of ACLs whose readers have been requested,
+     * in request order, and the change sets waiting for their ACLs to be indexed, in commit order.
+     */
+    private class AclPipeline
+    {
+        private final Queue<PipelinedAclBatch> inFlight = new ArrayDeque<>();
+        private final Queue<AclChangeSet> pendingChangeSets = new ArrayDeque<>();
+        private final Map<Long, Integer> pendingAcls = new HashMap<>();
+        private long startElapsed = System.nanoTime();
+        private int indexedAcls;
+
+        AclPipeline(List<List<AclChangeSet>> changeSetBatches)
+        {
+            for (List<AclChangeSet> changeSetBatch : changeSetBatches)
+            {
+                for (AclChangeSet changeSet : changeSetBatch)
+                {
+                    pendingChangeSets.add(changeSet);
+                    pendingAcls.put(changeSet.getId(), changeSet.getAclCount());
+                }
+            }
+        }
+
+        int inFlight()
+        {
+            return inFlight.size();
+        }
+
+        void add(List<Acl> acls, CompletableFuture<List<AclReaders>> readers)
+        {
+            inFlight.add(new PipelinedAclBatch(acls, readers, Collections.emptyList()));
+        }
+
+        /**
+         * Records that all the ACLs of the given change sets have been listed: the change sets are complete once
+         * the ACLs listed so far have been indexed, even if the Repository returned less ACLs than expected.
+         */
+        void allListed(List<AclChangeSet> changeSets)
+        {
+            inFlight.add(new PipelinedAclBatch(Collections.emptyList(), CompletableFuture.completedFuture(Collections.emptyList()), changeSets));
+        }
+
+        /**
+         * Indexes the readers of the oldest batch of ACLs, waiting for them if needed, together with the readers of
+         * the following batches already received. Then indexes the change sets completed in the meantime.
+         */
+        void indexReceived() throws IOException, ExecutionException, InterruptedException
+        {
+            List<PipelinedAclBatch> received = new ArrayList<>();
+            List<AclReaders> readers = new ArrayList<>();
+            do
+            {
+                PipelinedAclBatch batch = inFlight.remove();
+                received.add(batch);
+                readers.addAll(batch.readers.get());
+            }
+            while (!inFlight.isEmpty() && inFlight.peek().readers.isDone());
+
+            if (!readers.isEmpty())
+            {
+                indexAcl(readers, true);
+            }
+
+            int aclCount = 0;
+            for (PipelinedAclBatch batch : received)
+            {
+                for (Acl acl : batch.acls)
+                {
+                    pendingAcls.computeIfPresent(acl.getAclChangeSetId(), (id, count) -> count - 1);
+                }
+                batch.listedChangeSets.forEach(changeSet -> pendingAcls.computeIfPresent(changeSet.getId(), (id, count) -> 0));
+                aclCount += batch.acls.size();
+            }
+
+            List<AclChangeSet> indexedChangeSets = new ArrayList<>();
+            while (!pendingChangeSets.isEmpty() && pendingAcls.get(pendingChangeSets.peek().getId()) <= 0)
+            {
+                AclChangeSet changeSet = pendingChangeSets.remove();
+                pendingAcls.remove(changeSet.getId());
+                indexedChangeSets.add(changeSet);
+            }
+            if (!indexedChangeSets.isEmpty())
+            {
+                // Update last committed transactions
+                setLastChangeSetIdAndCommitTimeInTrackerState(indexedChangeSets, state);
+                indexAclChangeSetAfterWorker(indexedChangeSets, state);
+            }
+
+            long endElapsed = System.nanoTime();
+            trackerStats.addElapsedAclTime(aclCount, endElapsed - startElapsed);
+            startElapsed = endElapsed;
+            indexedAcls += aclCount;
+        }
+
+        void cancel()
+        {
+            inFlight.forEach(batch -> batch.readers.cancel(true));
+            inFlight.clear();
+        }
+    }
+
+    /**
+     * A batch of ACLs (at most "aclBatchSize") whose readers have been requested by the pipeline.
+     */
+    private static class PipelinedAclBatch
+    {
+        final List<Acl> acls;
+        final CompletableFuture<List<AclReaders>> readers;
+        // The change sets whose ACLs have all been listed before this batch
+        final List<AclChangeSet> listedChangeSets;
+
+        PipelinedAclBatch(List<Acl> acls, CompletableFuture<List<AclReaders>> readers, List<AclChangeSet> listedChangeSets)
+        {
+            this.acls = acls;
+            this.readers = readers;
+            this.listedChangeSets = listedChangeSets;
+        }
+    }
+
+
     /**
      * ACL Indexer
      */
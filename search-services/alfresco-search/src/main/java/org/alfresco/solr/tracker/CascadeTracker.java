@@ -44,6 +44,7 @@ import java.util.concurrent.Semaphore;
 
 import com.google.common.collect.Lists;
 import org.alfresco.httpclient.AuthenticationException;
+import org.alfresco.solr.IndexingSession;
 import org.alfresco.solr.InformationServer;
 import org.alfresco.solr.client.NodeMetaData;
 import org.alfresco.solr.client.SOLRAPIClient;
@@ -133,9 +134,12 @@ public class CascadeTracker extends ActivatableTracker
     private void updateTransactionsAfterWorker(List<Transaction> txsIndexed)
             throws IOException
     {
-        for (Transaction tx : txsIndexed)
+        try (IndexingSession session = super.infoSrv.openIndexingSession())
         {
-            super.infoSrv.updateTransaction(tx);
+            for (Transaction tx : txsIndexed)
+            {
+                session.updateTransaction(tx);
+            }
         }
     }
 
@@ -30,15 +30,23 @@ import com.google.common.collect.Lists;
 import org.alfresco.solr.AlfrescoSolrDataModel.TenantDbId;
 import org.alfresco.solr.InformationServer;
 import org.alfresco.solr.client.SOLRAPIClient;
+import org.apache.solr.common.SolrInputDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 
 import static org.alfresco.solr.utils.Utils.notNullOrEmpty;
@@ -56,13 +64,18 @@ public class ContentTracker extends ActivatableTracker
     // Keep this value to 1/4 of all the other pools, as ContentTracker Threads are heavier
     private static final int DEFAULT_CONTENT_TRACKER_MAX_PARALLELISM = 8;
 
+    // The content requests mostly wait for the transformations, so we can afford more of them
+    private static final int DEFAULT_CONTENT_TRACKER_MAX_IN_FLIGHT = 4 * DEFAULT_CONTENT_TRACKER_MAX_PARALLELISM;
+    private static final int DEFAULT_CONTENT_INDEX_BATCH_SIZE = 100;
+
     private int contentTrackerParallelism;
     private int contentUpdateBatchSize;
+    private int contentTrackerMaxInFlight;
+    private int contentIndexBatchSize;
     
     // Share run and write locks across all ContentTracker threads
     private static final Map<String, Semaphore> RUN_LOCK_BY_CORE = new ConcurrentHashMap<>();
     private static final Map<String, Semaphore> WRITE_LOCK_BY_CORE = new ConcurrentHashMap<>();
-    private ForkJoinPool forkJoinPool;
 
     @Override
     public Semaphore getWriteLock()
@@ -87,7 +100,11 @@ public class ContentTracker extends ActivatableTracker
         contentTrackerParallelism = Integer.parseInt(p.getProperty("alfresco.content.tracker.maxParallelism",
                 String.valueOf(DEFAULT_CONTENT_TRACKER_MAX_PARALLELISM)));
 
-        forkJoinPool = new ForkJoinPool(contentTrackerParallelism);
+        contentTrackerMaxInFlight = Integer.parseInt(p.getProperty("alfresco.content.tracker.maxInFlight",
+                String.valueOf(Math.max(DEFAULT_CONTENT_TRACKER_MAX_IN_FLIGHT, 4 * contentTrackerParallelism))));
+
+        contentIndexBatchSize = Integer.parseInt(p.getProperty("alfresco.content.tracker.indexBatchSize",
+                String.valueOf(DEFAULT_CONTENT_INDEX_BATCH_SIZE)));
 
         RUN_LOCK_BY_CORE.put(coreName, new Semaphore(1, true));
         WRITE_LOCK_BY_CORE.put(coreName, new Semaphore(1, true));
@@ -124,14 +141,7 @@ public class ContentTracker extends ActivatableTracker
                     List<List<TenantDbId>> docBatches = Lists.partition(docs, contentUpdateBatchSize);
                     for (List<TenantDbId> batch : docBatches)
                     {
-                        Integer processedDocuments = forkJoinPool.submit(() ->
-                                // Parallel task here, for example
-                                batch.parallelStream().map(doc -> {
-                                    ContentIndexWorkerRunnable ciwr = new ContentIndexWorkerRunnable(doc, infoSrv);
-                                    ciwr.run();
-                                    return 1;
-                                }).reduce(0, Integer::sum)
-                        ).get();
+                        int processedDocuments = updateContent(batch);
 
                         long endElapsed = System.nanoTime();
                         trackerStats.addElapsedContentTime(processedDocuments, endElapsed - startElapsed);
@@ -157,6 +167,66 @@ public class ContentTracker extends ActivatableTracker
         }
     }
 
+    /**
+     * Fetches the text content of the given documents through the asynchronous Repository client, with at most
+     * contentTrackerMaxInFlight documents requested and not yet indexed, and writes them in the index,
+     * contentIndexBatchSize documents at a time, as they come back.
+     *
+     * @return the number of documents which have been processed.
+     */
+    private int updateContent(List<TenantDbId> batch) throws InterruptedException, IOException
+    {
+        Set<CompletableFuture<SolrInputDocument>> requested = new HashSet<>();
+        BlockingQueue<CompletableFuture<SolrInputDocument>> completed = new LinkedBlockingQueue<>();
+        Iterator<TenantDbId> docs = batch.iterator();
+        try
+        {
+            List<SolrInputDocument> fetched = new ArrayList<>(Math.min(contentIndexBatchSize, batch.size()));
+            while (docs.hasNext() || !requested.isEmpty())
+            {
+                while (docs.hasNext() && requested.size() < contentTrackerMaxInFlight)
+                {
+                    checkShutdown();
+                    CompletableFuture<SolrInputDocument> contentDocument = infoSrv.getContentDocument(docs.next());
+                    requested.add(contentDocument);
+                    contentDocument.whenComplete((result, exception) -> completed.add(contentDocument));
+                }
+
+                CompletableFuture<SolrInputDocument> contentDocument = completed.take();
+                requested.remove(contentDocument);
+                try
+                {
+                    fetched.add(contentDocument.get());
+                }
+                catch (ExecutionException exception)
+                {
+                    // This will be redone in future tracking operations
+                    Throwable failCausedBy = exception.getCause();
+                    LOGGER.warn("Content tracker failed due to {}", failCausedBy.getMessage(), failCausedBy);
+                }
+
+                if (fetched.size() >= contentIndexBatchSize)
+                {
+                    infoSrv.indexContent(fetched);
+                    fetched = new ArrayList<>(contentIndexBatchSize);
+                }
+            }
+
+            if (!fetched.isEmpty())
+            {
+                infoSrv.indexContent(fetched);
+            }
+        }
+        finally
+        {
+            // e.g. on shutdown, the requests still queued by the client are not sent
+            requested.forEach(contentDocument -> contentDocument.cancel(true));
+        }
+
+        checkShutdown();
+        return batch.size();
+    }
+
     public boolean hasMaintenance()
     {
         return false;
@@ -172,31 +242,4 @@ public class ContentTracker extends ActivatableTracker
         super.invalidateState();
         this.infoSrv.setCleanContentTxnFloor(-1);
     }
-
-    class ContentIndexWorkerRunnable extends AbstractWorker
-    {
-        InformationServer infoServer;
-        TenantDbId docRef;
-
-        ContentIndexWorkerRunnable(TenantDbId doc, InformationServer infoServer)
-        {
-            this.docRef = doc;
-            this.infoServer = infoServer;
-        }
-
-        @Override
-        protected void doWork() throws Exception
-        {
-            checkShutdown();
-
-            infoServer.updateContent(docRef);
-        }
-        
-        @Override
-        protected void onFail(Throwable failCausedBy)
-        {
-            // This will be redone in future tracking operations
-            LOGGER.warn("Content tracker failed due to {}", failCausedBy.getMessage(), failCausedBy);
-        }
-    }
 }
@@ -0,0 +1,424 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import com.carrotsearch.hppc.LongArrayList;
+import org.alfresco.solr.adapters.IOpenBitSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The checkpoint of the Repository side of an index check: the ids (of transactions or ACL change sets) listed so
+ * far and the commit time the listing has reached.
+ *
+ * The checkpoint file is append only: it starts with the parameters of the check and each save appends the ids
+ * listed since the previous one, as deflated deltas. When a check with the same parameters is started again, the ids
+ * of the file are loaded and the listing resumes from the last saved commit time (the ids with that commit time are
+ * listed again, which is harmless). A truncated last save, e.g. because Solr has been stopped while writing it, is
+ * discarded.
+ *
+ * A checkpoint older than the configured maximum age is discarded rather than resumed: the Repository may have purged
+ * some of its transactions since then. Only one check at a time uses a checkpoint file (e.g. a REPORT and a FIX
+ * running together on the same core): the other one keeps its checkpoint in memory only, as when there is no file
+ * (e.g. when the index has no data directory).
+ */
+final class IndexHealthCheckpoint implements AutoCloseable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexHealthCheckpoint.class);
+
+    /**
+     * The checkpoint files used by the running checks.
+     */
+    private static final Set<Path> FILES_IN_USE = ConcurrentHashMap.newKeySet();
+
+    private static final int MAGIC = 0x41494843;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 3 * (1 + 8);
+    private static final int SAVE_HEADER_SIZE = 8 + 8 + 8 + 4 + 4;
+
+    private final Path file;
+    private final IOpenBitSet ids;
+    private final long saveInterval;
+    private final long maxAge;
+    private final LongArrayList unsavedIds = new LongArrayList();
+
+    private boolean persistent;
+    private boolean locked;
+    private boolean resumed;
+    private long lastSave;
+    private long lastCommitTime;
+    private Long minId;
+    private long maxId;
+
+    private IndexHealthCheckpoint(Path file, IOpenBitSet ids, long saveInterval, long maxAge)
+    {
+        this.file = file == null ? null : file.toAbsolutePath().normalize();
+        this.ids = ids;
+        this.saveInterval = saveInterval;
+        this.maxAge = maxAge;
+        this.persistent = file != null;
+        this.lastSave = System.currentTimeMillis();
+    }
+
+    /**
+     * Opens the checkpoint of an index check. If the file holds the checkpoint of a check with the same parameters,
+     * its ids are set in the given bitset and the check is resumed, otherwise a new checkpoint is started.
+     *
+     * @param file the checkpoint file, null for a checkpoint which is not persisted.
+     * @param ids the (empty) ids of the Repository, filled while resuming and when adding.
+     * @param toId the toTx/toAclTx parameter of the check.
+     * @param fromTime the fromTime parameter of the check.
+     * @param toTime the toTime parameter of the check.
+     * @param saveInterval the minimum time (in ms) between two saves.
+     * @param maxAge the maximum age (in ms) of a checkpoint which can be resumed.
+     */
+    static IndexHealthCheckpoint open(Path file, IOpenBitSet ids, Long toId, Long fromTime, Long toTime,
+                                      long saveInterval, long maxAge)
+    {
+        IndexHealthCheckpoint checkpoint = new IndexHealthCheckpoint(file, ids, saveInterval, maxAge);
+        if (checkpoint.persistent && !FILES_IN_USE.add(checkpoint.file))
+        {
+            LOGGER.warn("Another index check is using the checkpoint {}, this check will not be resumable.", file);
+            checkpoint.persistent = false;
+        }
+        checkpoint.locked = checkpoint.persistent;
+
+        if (checkpoint.persistent)
+        {
+            try
+            {
+                if (!checkpoint.resume(toId, fromTime, toTime))
+                {
+                    checkpoint.start(toId, fromTime, toTime);
+                }
+            }
+            catch (IOException exception)
+            {
+                LOGGER.warn("Unable to use the index check checkpoint {}, the check will not be resumable.", file, exception);
+                checkpoint.persistent = false;
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * @return true if the ids of a previous, interrupted, check have been loaded.
+     */
+    boolean isResumed()
+    {
+        return resumed;
+    }
+
+    /**
+     * @return the commit time of the last id added (or loaded).
+     */
+    long getLastCommitTime()
+    {
+        return lastCommitTime;
+    }
+
+    /**
+     * @return the lowest id added (or loaded), null if there is none.
+     */
+    Long getMinId()
+    {
+        return minId;
+    }
+
+    /**
+     * @return the highest id added (or loaded), 0 if there is none.
+     */
+    long getMaxId()
+    {
+        return maxId;
+    }
+
+    void add(long id, long commitTime)
+    {
+        ids.set(id);
+        track(id, commitTime);
+        if (persistent)
+        {
+            unsavedIds.add(id);
+        }
+    }
+
+    /**
+     * Saves the ids added since the last save, if the save interval has elapsed.
+     */
+    void save()
+    {
+        if (System.currentTimeMillis() - lastSave >= saveInterval)
+        {
+            saveNow();
+        }
+    }
+
+    /**
+     * Deletes the checkpoint, once the check is complete.
+     */
+    void delete()
+    {
+        unsavedIds.clear();
+        if (persistent)
+        {
+            persistent = false;
+            try
+            {
+                Files.deleteIfExists(file);
+            }
+            catch (IOException exception)
+            {
+                LOGGER.warn("Unable to delete the index check checkpoint {}", file, exception);
+            }
+        }
+    }
+
+    /**
+     * Saves the ids not saved yet, so that an interrupted check resumes from where it stopped, and releases the
+     * checkpoint file for the next check.
+     */
+    @Override
+    public void close()
+    {
+        saveNow();
+        if (locked)
+        {
+            locked = false;
+            FILES_IN_USE.remove(file);
+        }
+    }
+
+    private void track(long id, long commitTime)
+    {
+        if (minId == null || id < minId)
+        {
+            minId = id;
+        }
+        if (maxId < id)
+        {
+            maxId = id;
+        }
+        lastCommitTime = commitTime;
+    }
+
+    private void saveNow()
+    {
+        lastSave = System.currentTimeMillis();
+        if (!persistent || unsavedIds.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            byte[] deltas = encode(unsavedIds);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file, StandardOpenOption.APPEND))))
+            {
+                output.writeLong(lastCommitTime);
+                output.writeLong(minId);
+                output.writeLong(maxId);
+                output.writeInt(unsavedIds.size());
+                output.writeInt(deltas.length);
+                output.write(deltas);
+            }
+            unsavedIds.clear();
+        }
+        catch (IOException exception)
+        {
+            LOGGER.warn("Unable to save the index check checkpoint {}, the check will not be resumable.", file, exception);
+            persistent = false;
+        }
+    }
+
+    private void start(Long toId, Long fromTime, Long toTime) throws IOException
+    {
+        Files.createDirectories(file.getParent());
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(file)))
+        {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(System.currentTimeMillis());
+            writeParameter(output, toId);
+            writeParameter(output, fromTime);
+            writeParameter(output, toTime);
+        }
+    }
+
+    private boolean resume(Long toId, Long fromTime, Long toTime) throws IOException
+    {
+        if (!Files.exists(file))
+        {
+            return false;
+        }
+
+        long validLength = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            if (input.readInt() != MAGIC
+                    || input.readInt() != VERSION)
+            {
+                return false;
+            }
+
+            long age = System.currentTimeMillis() - input.readLong();
+            if (age > maxAge)
+            {
+                LOGGER.info("Discarding the index check checkpoint {}, created {} ms ago.", file, age);
+                return false;
+            }
+
+            if (!Objects.equals(readParameter(input), toId)
+                    || !Objects.equals(readParameter(input), fromTime)
+                    || !Objects.equals(readParameter(input), toTime))
+            {
+                return false;
+            }
+            validLength = HEADER_SIZE;
+
+            while (true)
+            {
+                long savedCommitTime = input.readLong();
+                long savedMinId = input.readLong();
+                long savedMaxId = input.readLong();
+                int count = input.readInt();
+                byte[] deltas = new byte[input.readInt()];
+                input.readFully(deltas);
+
+                decode(deltas, count);
+                track(savedMinId, savedCommitTime);
+                track(savedMaxId, savedCommitTime);
+                resumed = true;
+                validLength += SAVE_HEADER_SIZE + deltas.length;
+            }
+        }
+        catch (EOFException | ZipException | NegativeArraySizeException exception)
+        {
+            // End of the file, or a save interrupted while writing
+        }
+
+        if (validLength == 0)
+        {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            channel.truncate(validLength);
+        }
+        return true;
+    }
+
+    private static void writeParameter(DataOutputStream output, Long value) throws IOException
+    {
+        output.writeBoolean(value != null);
+        output.writeLong(value == null ? 0 : value);
+    }
+
+    private static Long readParameter(DataInputStream input) throws IOException
+    {
+        boolean present = input.readBoolean();
+        long value = input.readLong();
+        return present ? value : null;
+    }
+
+    /**
+     * The ids are mostly ascending: each one is written as the zig-zag encoded variable length delta from the
+     * previous one, then the whole is deflated.
+     */
+    private static byte[] encode(LongArrayList ids) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream output = new DeflaterOutputStream(bytes))
+        {
+            long previous = 0;
+            for (int i = 0; i < ids.size(); i++)
+            {
+                long delta = ids.get(i) - previous;
+                long zigZag = (delta << 1) ^ (delta >> 63);
+                while ((zigZag & ~0x7FL) != 0)
+                {
+                    output.write((int) ((zigZag & 0x7F) | 0x80));
+                    zigZag >>>= 7;
+                }
+                output.write((int) zigZag);
+                previous = ids.get(i);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private void decode(byte[] deltas, int count) throws IOException
+    {
+        try (InputStream input = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(deltas))))
+        {
+            long previous = 0;
+            for (int i = 0; i < count; i++)
+            {
+                long zigZag = 0;
+                int shift = 0;
+                int b;
+                do
+                {
+                    b = input.read();
+                    if (b == -1)
+                    {
+                        throw new EOFException();
+                    }
+                    zigZag |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                }
+                while ((b & 0x80) != 0);
+
+                previous += (zigZag >>> 1) ^ -(zigZag & 1);
+                ids.set(previous);
+            }
+        }
+    }
+}
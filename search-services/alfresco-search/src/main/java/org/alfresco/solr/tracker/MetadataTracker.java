@@ -26,14 +26,17 @@
 
 package org.alfresco.solr.tracker;
 
+import com.carrotsearch.hppc.LongHashSet;
 import com.google.common.collect.Lists;
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.httpclient.AuthenticationException;
 import org.alfresco.solr.BoundedDeque;
+import org.alfresco.solr.IndexingSession;
 import org.alfresco.solr.InformationServer;
 import org.alfresco.solr.NodeReport;
 import org.alfresco.solr.TrackerState;
 import org.alfresco.solr.adapters.IOpenBitSet;
+import org.alfresco.solr.client.AsyncSOLRAPIClient;
 import org.alfresco.solr.client.GetNodesParameters;
 import org.alfresco.solr.client.Node;
 import org.alfresco.solr.client.Node.SolrApiNodeStatus;
@@ -41,25 +44,42 @@ import org.alfresco.solr.client.SOLRAPIClient;
 import org.alfresco.solr.client.Transaction;
 import org.alfresco.solr.client.Transactions;
 import org.alfresco.util.Pair;
+import org.alfresco.util.TraceableThreadFactory;
 import org.apache.commons.codec.EncoderException;
 import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static org.alfresco.repo.index.shard.ShardMethodEnum.DB_ID_RANGE;
@@ -80,6 +100,7 @@ public class MetadataTracker extends ActivatableTracker
     private static final String DEFAULT_INITIAL_TRANSACTION_RANGE = "0-2000";
     private static final long DEFAULT_METADATA_TRACKER_TIMESTEP = TIME_STEP_1_HR_IN_MS;
     private static final long INITIAL_MAX_TXN_ID = 2000L;
+    private static final int DEFAULT_PIPELINE_QUEUE_SIZE = 64;
 
     private int matadataTrackerParallelism;
     private int transactionDocsBatchSize;
@@ -87,6 +108,14 @@ public class MetadataTracker extends ActivatableTracker
     private int maxNumberOfTransactions;
     private long timeStep;
 
+    /**
+     * When enabled, transaction discovery, node listing and node indexing run as concurrent stages
+     * connected by bounded queues (see {@link #indexTransactionBatchesPipelined}).
+     */
+    private boolean pipelineEnabled;
+    private int pipelineQueueSize;
+    private ThreadPoolExecutor pipelineExecutor;
+
     private final ConcurrentLinkedQueue<Long> transactionsToReindex = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<Long> transactionsToIndex = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<Long> transactionsToPurge = new ConcurrentLinkedQueue<>();
@@ -172,6 +201,9 @@ public class MetadataTracker extends ActivatableTracker
 
         timeStep = Long.parseLong(p.getProperty("alfresco.metadata.tracker.timestep",
                 String.valueOf(DEFAULT_METADATA_TRACKER_TIMESTEP)));
+        pipelineEnabled = Boolean.parseBoolean(p.getProperty("alfresco.metadata.tracker.pipeline.enabled", "false"));
+        pipelineQueueSize = Integer.parseInt(p.getProperty("alfresco.metadata.tracker.pipeline.queueSize",
+                String.valueOf(DEFAULT_PIPELINE_QUEUE_SIZE)));
 
         String[] minTxninitialRangeString =
                 p.getProperty("solr.initial.transaction.range", DEFAULT_INITIAL_TRANSACTION_RANGE)
@@ -181,6 +213,18 @@ public class MetadataTracker extends ActivatableTracker
         minTxnIdRange = new Pair<>(Long.valueOf(minTxninitialRangeString[0]), Long.valueOf(minTxninitialRangeString[1]));
         forkJoinPool = new ForkJoinPool(matadataTrackerParallelism);
 
+        if (pipelineEnabled)
+        {
+            // Two threads: one prefetching the next page of transactions, one listing the nodes of the current page.
+            // Like the other pools of the core, idle threads are released so nothing is left behind by a core unload
+            TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+            threadFactory.setThreadDaemon(true);
+            threadFactory.setNamePrefix("MetadataTrackerPipeline-" + coreName + "-");
+            pipelineExecutor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+            pipelineExecutor.allowCoreThreadTimeOut(true);
+            LOGGER.info("[CORE {}] Metadata tracker pipeline enabled, queue size {}", coreName, pipelineQueueSize);
+        }
+
         if (p.getProperty("solr.initial.transaction.id") != null)
         {
             Long initialTransactionId = Long.parseLong(p.getProperty("solr.initial.transaction.id"));
@@ -467,19 +511,22 @@ public class MetadataTracker extends ActivatableTracker
                     gnp.setCoreName(coreName);
 
                     List<Node> nodes = client.getNodes(gnp, (int) info.getUpdates());
-                    for (Node node : nodes)
+                    try (IndexingSession session = this.infoSrv.openIndexingSession())
                     {
-                        docCount++;
-                        if (LOGGER.isDebugEnabled())
+                        for (Node node : nodes)
                         {
-                            LOGGER.debug(node.toString());
+                            docCount++;
+                            if (LOGGER.isDebugEnabled())
+                            {
+                                LOGGER.debug(node.toString());
+                            }
+                            session.indexNode(node, false);
+                            checkShutdown();
                         }
-                        this.infoSrv.indexNode(node, false);
-                        checkShutdown();
-                    }
 
-                    // Index the transaction doc after the node - if this is not found then a reindex will be done.
-                    this.infoSrv.indexTransaction(info, false);
+                        // Index the transaction doc after the node - if this is not found then a reindex will be done.
+                        session.indexTransaction(info, false);
+                    }
                     LOGGER.info("INDEX ACTION - Transaction {} has been indexed", transactionId);
                     requiresCommit = true;
 
@@ -555,19 +602,22 @@ public class MetadataTracker extends ActivatableTracker
                     gnp.setStoreIdentifier(storeRef.getIdentifier());
                     gnp.setCoreName(coreName);
                     List<Node> nodes =   client.getNodes(gnp, (int) info.getUpdates());
-                    for (Node node : nodes)
+                    try (IndexingSession session = this.infoSrv.openIndexingSession())
                     {
-                        docCount++;
-                        if (LOGGER.isDebugEnabled())
+                        for (Node node : nodes)
                         {
-                            LOGGER.debug(node.toString());
+                            docCount++;
+                            if (LOGGER.isDebugEnabled())
+                            {
+                                LOGGER.debug(node.toString());
+                            }
+                            session.indexNode(node, true);
+                            checkShutdown();
                         }
-                        this.infoSrv.indexNode(node, true);
-                        checkShutdown();
-                    }
 
-                    // Index the transaction doc after the node - if this is not found then a reindex will be done.
-                    this.infoSrv.indexTransaction(info, true);
+                        // Index the transaction doc after the node - if this is not found then a reindex will be done.
+                        session.indexTransaction(info, true);
+                    }
                     LOGGER.info("REINDEX ACTION - Transaction {} has been reindexed", transactionId);
                 }
                 else
@@ -848,28 +898,43 @@ public class MetadataTracker extends ActivatableTracker
         return transactions;
     }
 
-    private boolean isTransactionIndexed(Transaction transaction)
+    /**
+     * Checks, in a single pass over the index, which transactions of the given page have been already indexed.
+     * Only the transactions not newer than the last indexed one are looked up.
+     *
+     * @param transactions the page of transactions returned by the repository.
+     * @return a predicate accepting the transactions which still need to be indexed.
+     */
+    private Predicate<Transaction> transactionsNotIndexed(List<Transaction> transactions)
     {
+        long[] candidates = transactions.stream()
+                .filter(transaction -> transaction.getCommitTimeMs() <= state.getLastIndexedTxCommitTime())
+                .mapToLong(Transaction::getId)
+                .toArray();
+        if (candidates.length == 0)
+        {
+            return transaction -> true;
+        }
+
         try
         {
-            boolean isInIndex = (transaction.getCommitTimeMs() <= state.getLastIndexedTxCommitTime() &&
-                    infoSrv.txnInIndex(transaction.getId(), true));
-            if (LOGGER.isTraceEnabled())
-            {
-                if (isInIndex)
+            LongHashSet indexed = infoSrv.txnsInIndex(candidates, true);
+            return transaction -> {
+                boolean isInIndex = indexed.contains(transaction.getId());
+                if (isInIndex && LOGGER.isTraceEnabled())
                 {
                     LOGGER.trace("{}-[CORE {}] Skipping Transaction Id {} as it was already indexed",
                             Thread.currentThread().getId(), coreName, transaction.getId());
                 }
-            }
-            return !isInIndex;
+                return !isInIndex;
+            };
         }
         catch (IOException e)
         {
             LOGGER.warn(
-                    "{}-[CORE {}] Error catched while checking if Transaction Id {} was in index",
-                    Thread.currentThread().getId(), coreName, transaction.getId(), e);
-            return true;
+                    "{}-[CORE {}] Error catched while checking if {} Transactions were in index",
+                    Thread.currentThread().getId(), coreName, candidates.length, e);
+            return transaction -> true;
         }
     }
 
@@ -888,134 +953,455 @@ public class MetadataTracker extends ActivatableTracker
 
         Transactions transactions;
         BoundedDeque<Transaction> txnsFound = new BoundedDeque<>(METADATA_TRANSACTIONS_FOUND_QUEUE_SIZE);
+        PrefetchedTransactions prefetchedTransactions = null;
         int totalUpdatedDocs = 0;
 
         LOGGER.info("{}-[CORE {}] Starting metadata tracker execution", Thread.currentThread().getId(), coreName);
 
-        do
+        try
         {
-            try
+            do
             {
-                /*
-                * This write lock is used to lock out the Commit Tracker. The ensures that the MetaDataTracker will
-                * not be indexing content while commits or rollbacks are occurring.
-                */
-                getWriteLock().acquire();
-
-                /*
-                * We acquire the tracker state again here and set it globally. This is because the
-                * tracker state could have been invalidated due to a rollback by the CommitTracker.
-                * In this case the state will revert to the last transaction state record in the index.
-                */
-                this.state = getTrackerState();
-
-                Long fromCommitTime = getTxFromCommitTime(txnsFound,
-                        state.getLastIndexedTxCommitTime() == 0 ? state.getLastGoodTxCommitTimeInIndex()
-                                : state.getLastIndexedTxCommitTime());
-
-                // Get transaction list to be indexed
-                if (docRouter instanceof DBIDRangeRouter && txIntervalCommitTimeServiceAvailable)
+                try
                 {
-                    transactions = getDBIDRangeTransactions(fromCommitTime, txnsFound);
+                    /*
+                    * This write lock is used to lock out the Commit Tracker. The ensures that the MetaDataTracker will
+                    * not be indexing content while commits or rollbacks are occurring.
+                    */
+                    getWriteLock().acquire();
+
+                    /*
+                    * We acquire the tracker state again here and set it globally. This is because the
+                    * tracker state could have been invalidated due to a rollback by the CommitTracker.
+                    * In this case the state will revert to the last transaction state record in the index.
+                    */
+                    this.state = getTrackerState();
+
+                    Long fromCommitTime = getTxFromCommitTime(txnsFound,
+                            state.getLastIndexedTxCommitTime() == 0 ? state.getLastGoodTxCommitTimeInIndex()
+                                    : state.getLastIndexedTxCommitTime());
+
+                    // Get transaction list to be indexed, reusing the page prefetched by the pipeline when still valid
+                    transactions = prefetchedTransactions != null ? prefetchedTransactions.take(state, fromCommitTime) : null;
+                    prefetchedTransactions = null;
+                    if (transactions == null)
+                    {
+                        transactions = getTransactions(txnsFound, fromCommitTime);
+                    }
+
+                    long idTrackerCycle = System.currentTimeMillis();
+                    if (transactions.getTransactions().size() > 0)
+                    {
+                        LOGGER.info("{}:{}-[CORE {}] Found {} transactions after lastTxCommitTime {}, transactions from {} to {}",
+                                Thread.currentThread().getId(),
+                                idTrackerCycle,
+                                coreName,
+                                transactions.getTransactions().size(),
+                                fromCommitTime,
+                                transactions.getTransactions().get(0),
+                                transactions.getTransactions().get(transactions.getTransactions().size() - 1));
+                    }
+                    else
+                    {
+                        LOGGER.info("{}:{}-[CORE {}] No transaction found after lastTxCommitTime {}",
+                                Thread.currentThread().getId(),
+                                idTrackerCycle,
+                                coreName,
+                                ((txnsFound.size() > 0) ? txnsFound.getLast().getCommitTimeMs()
+                                        : state.getLastIndexedTxCommitTime()));
+                    }
+
+                    // Make sure we do not go ahead of where we started - we will check the holes here
+                    // correctly next time
+                    if (transactions.getTransactions()
+                            .stream()
+                            .anyMatch(transaction -> transaction.getCommitTimeMs() > state.getTimeToStopIndexing()))
+                    {
+                        break;
+                    }
+
+                    final AtomicInteger counterTransaction = new AtomicInteger();
+                    Predicate<Transaction> notIndexed = transactionsNotIndexed(transactions.getTransactions());
+                    Collection<List<Transaction>> txBatches = transactions.getTransactions().stream()
+                            .peek(txnsFound::add)
+                            .filter(notIndexed)
+                            .collect(Collectors.groupingBy(transaction -> counterTransaction.getAndAdd(
+                                    (int) (transaction.getDeletes() + transaction.getUpdates())) / transactionDocsBatchSize,
+                                    TreeMap::new, Collectors.toList()))
+                            .values();
+
+                    if (pipelineEnabled)
+                    {
+                        // Discover the next page of transactions while the current one is being indexed: an empty page
+                        // ends the tracking, so there is no next page to discover
+                        if (!transactions.getTransactions().isEmpty())
+                        {
+                            prefetchedTransactions = prefetchTransactions(txnsFound);
+                        }
+                        totalUpdatedDocs += indexTransactionBatchesPipelined(new ArrayList<>(txBatches), txnsFound, idTrackerCycle);
+                        setLastTxCommitTimeAndTxIdInTrackerState(transactions);
+                        continue;
+                    }
+
+                    // Index batches of transactions and the nodes updated or deleted within the transaction
+                    List<List<Node>> nodeBatches = new ArrayList<>();
+                    for (List<Transaction> batch : txBatches)
+                    {
+
+                        // Index nodes contained in the transactions
+                        long idTxBatch = System.currentTimeMillis();
+                        nodeBatches.addAll(buildBatchOfTransactions(batch, idTrackerCycle, idTxBatch));
+                    }
+                
+                    // Counter used to identify the worker inside the parallel stream processing
+                    final AtomicInteger counterBatch = new AtomicInteger(0);
+                    long idThread = Thread.currentThread().getId();
+                    totalUpdatedDocs += forkJoinPool.submit(() ->
+                            nodeBatches.parallelStream().map(batch -> {
+                                int count = counterBatch.addAndGet(1);
+                                if (LOGGER.isTraceEnabled())
+                                {
+                                    LOGGER.trace("{}:{}:{}-[CORE {}] indexing {} nodes ...",
+                                            idThread, idTrackerCycle, count,
+                                            coreName, batch.size());
+                                }
+                                new NodeIndexWorker(batch, infoSrv, idThread, idTrackerCycle, count).run();
+                                return batch.size();
+                            }).reduce(0, Integer::sum)).get();
+
+                    for (List<Transaction> batch : txBatches)
+                    {
+                        // Add the transactions as found to avoid processing them again in the next iteration
+                        batch.forEach(txnsFound::add);
+    
+                        // Index the transactions
+                        indexTransactionsAfterWorker(batch);
+                        long endElapsed = System.nanoTime();
+                        trackerStats.addElapsedNodeTime(totalUpdatedDocs, endElapsed - startElapsed);
+                        startElapsed = endElapsed;
+                    }
+                
+                    setLastTxCommitTimeAndTxIdInTrackerState(transactions);
                 }
-                else
+                catch(Exception e)
                 {
-                    transactions = getSomeTransactions(txnsFound, fromCommitTime, timeStep, maxNumberOfTransactions,
-                            state.getTimeToStopIndexing());
+                    throw new IOException(e);
                 }
-
-                long idTrackerCycle = System.currentTimeMillis();
-                if (transactions.getTransactions().size() > 0)
+                finally
                 {
-                    LOGGER.info("{}:{}-[CORE {}] Found {} transactions after lastTxCommitTime {}, transactions from {} to {}",
-                            Thread.currentThread().getId(),
-                            idTrackerCycle,
-                            coreName,
-                            transactions.getTransactions().size(),
-                            fromCommitTime,
-                            transactions.getTransactions().get(0),
-                            transactions.getTransactions().get(transactions.getTransactions().size() - 1));
+                    getWriteLock().release();
                 }
-                else
+        
+            }
+            while ((transactions.getTransactions().size() > 0));
+        }
+        finally
+        {
+            // A page prefetched for an iteration which doesn't happen (failure or end of the tracking) is discarded
+            if (prefetchedTransactions != null)
+            {
+                prefetchedTransactions.cancel();
+            }
+        }
+
+        LOGGER.info("{}-[CORE {}] Tracked {} DOCs", Thread.currentThread().getId(), coreName, totalUpdatedDocs);
+    }
+
+    /**
+     * Gets the next page of transactions to be indexed starting from the given commit time.
+     *
+     * @param txnsFound List of transactions previously found
+     * @param fromCommitTime Starting commit time to get transactions from Repository
+     * @return List of transactions to be indexed
+     */
+    private Transactions getTransactions(BoundedDeque<Transaction> txnsFound, Long fromCommitTime)
+            throws NoSuchMethodException, AuthenticationException, IOException, JSONException, EncoderException
+    {
+        if (docRouter instanceof DBIDRangeRouter && txIntervalCommitTimeServiceAvailable)
+        {
+            return getDBIDRangeTransactions(fromCommitTime, txnsFound);
+        }
+        else
+        {
+            return getSomeTransactions(txnsFound, fromCommitTime, timeStep, maxNumberOfTransactions,
+                    state.getTimeToStopIndexing());
+        }
+    }
+
+    /**
+     * Starts fetching, in background, the page of transactions following the ones already found.
+     * The result is only used by the next iteration if the tracker state and the starting commit time
+     * have not changed in the meantime (e.g. because of a rollback).
+     *
+     * @param txnsFound List of transactions previously found, including the current page
+     * @return a handle on the transactions being fetched
+     */
+    private PrefetchedTransactions prefetchTransactions(BoundedDeque<Transaction> txnsFound)
+    {
+        final TrackerState trackerState = state;
+        final Long fromCommitTime = getTxFromCommitTime(txnsFound, trackerState.getLastIndexedTxCommitTime() == 0
+                ? trackerState.getLastGoodTxCommitTimeInIndex() : trackerState.getLastIndexedTxCommitTime());
+
+        // Work on a copy, the current page is going to be added again to txnsFound while it is indexed
+        BoundedDeque<Transaction> txnsFoundSnapshot = new BoundedDeque<>(METADATA_TRANSACTIONS_FOUND_QUEUE_SIZE);
+        txnsFoundSnapshot.setDeque(txnsFound.getDeque());
+
+        CompletableFuture<Transactions> transactions = CompletableFuture.supplyAsync(() -> {
+            try
+            {
+                return getTransactions(txnsFoundSnapshot, fromCommitTime);
+            }
+            catch (Exception e)
+            {
+                throw new CompletionException(e);
+            }
+        }, pipelineExecutor);
+
+        return new PrefetchedTransactions(trackerState, fromCommitTime, transactions);
+    }
+
+    /**
+     * Indexes the given batches of transactions as a pipeline of concurrent stages:
+     *
+     * <ol>
+     *     <li>Node listing: a single thread gets the nodes for each batch of transactions (in commit order),
+     *     splits them in batches of "nodeBatchSize" size and puts them in a bounded queue. The producer
+     *     blocks when the queue is full, so the Repository is never asked for more nodes than Solr can index.
+     *     The nodes of up to "queueSize" following batches are requested ahead through the asynchronous
+     *     Repository client of the core, so the producer doesn't wait for each request in turn.</li>
+     *     <li>Node indexing: "maxParallelism" workers take node batches from the queue, get their metadata,
+     *     build the documents and add them to the index.</li>
+     *     <li>Transaction indexing: the calling thread waits for each batch of transactions to be completely indexed,
+     *     in commit order, and only then indexes the transactions and advances the tracker state.</li>
+     * </ol>
+     *
+     * While the nodes of a batch of transactions are being indexed, the nodes of the following batches are
+     * already being listed.
+     *
+     * @param txBatches Batches of transactions to be indexed, ordered by commit time
+     * @param txnsFound List of transactions previously found
+     * @param idTrackerCycle Id of the Tracker Cycle being executed
+     * @return the number of nodes indexed
+     */
+    private int indexTransactionBatchesPipelined(List<List<Transaction>> txBatches, BoundedDeque<Transaction> txnsFound,
+                long idTrackerCycle) throws IOException, InterruptedException, ExecutionException
+    {
+        if (txBatches.isEmpty())
+        {
+            return 0;
+        }
+
+        List<PipelinedTransactionBatch> pipelinedBatches = txBatches.stream()
+                .map(PipelinedTransactionBatch::new)
+                .collect(Collectors.toList());
+        BlockingQueue<PipelinedNodeBatch> nodeBatchQueue = new ArrayBlockingQueue<>(pipelineQueueSize);
+        long idThread = Thread.currentThread().getId();
+
+        // Stage 1: node listing
+        AsyncSOLRAPIClient asyncClient = infoSrv.getAsyncRepositoryClient();
+        AtomicBoolean stopListing = new AtomicBoolean();
+        Future<?> listing = pipelineExecutor.submit(() -> {
+            Queue<CompletableFuture<List<List<Node>>>> listedAhead = new ArrayDeque<>();
+            try
+            {
+                int nextToList = 0;
+                for (PipelinedTransactionBatch txBatch : pipelinedBatches)
                 {
-                    LOGGER.info("{}:{}-[CORE {}] No transaction found after lastTxCommitTime {}",
-                            Thread.currentThread().getId(),
-                            idTrackerCycle,
-                            coreName,
-                            ((txnsFound.size() > 0) ? txnsFound.getLast().getCommitTimeMs()
-                                    : state.getLastIndexedTxCommitTime()));
+                    checkShutdown();
+                    if (stopListing.get())
+                    {
+                        break;
+                    }
+                    while (nextToList < pipelinedBatches.size() && listedAhead.size() <= pipelineQueueSize)
+                    {
+                        listedAhead.add(listNodes(asyncClient, pipelinedBatches.get(nextToList++).transactions, idTrackerCycle));
+                    }
+                    List<List<Node>> nodeBatches = listedAhead.remove().get();
+                    for (List<Node> nodeBatch : nodeBatches)
+                    {
+                        txBatch.pendingNodeBatches.incrementAndGet();
+                        nodeBatchQueue.put(new PipelinedNodeBatch(txBatch, nodeBatch));
+                    }
+                    txBatch.nodeBatchCompleted();
                 }
+            }
+            catch (Exception e)
+            {
+                pipelinedBatches.forEach(txBatch -> txBatch.indexed.completeExceptionally(e));
+            }
+            finally
+            {
+                // The requests listed ahead are only left when the listing or the indexing failed
+                listedAhead.forEach(nodes -> nodes.cancel(true));
+                putUninterruptibly(nodeBatchQueue, PipelinedNodeBatch.END_OF_STREAM);
+            }
+        });
 
-                // Make sure we do not go ahead of where we started - we will check the holes here
-                // correctly next time
-                if (transactions.getTransactions()
-                        .stream()
-                        .anyMatch(transaction -> transaction.getCommitTimeMs() > state.getTimeToStopIndexing()))
+        // Stage 2: node indexing
+        final AtomicInteger counterBatch = new AtomicInteger(0);
+        List<Future<Integer>> indexers = new ArrayList<>(matadataTrackerParallelism);
+        for (int i = 0; i < matadataTrackerParallelism; i++)
+        {
+            indexers.add(forkJoinPool.submit(() -> {
+                int indexedNodes = 0;
+                PipelinedNodeBatch nodeBatch;
+                while ((nodeBatch = nodeBatchQueue.take()) != PipelinedNodeBatch.END_OF_STREAM)
                 {
-                    break;
+                    int count = counterBatch.addAndGet(1);
+                    if (LOGGER.isTraceEnabled())
+                    {
+                        LOGGER.trace("{}:{}:{}-[CORE {}] indexing {} nodes ...",
+                                idThread, idTrackerCycle, count,
+                                coreName, nodeBatch.nodes.size());
+                    }
+                    try
+                    {
+                        new NodeIndexWorker(nodeBatch.nodes, infoSrv, idThread, idTrackerCycle, count).run();
+                        indexedNodes += nodeBatch.nodes.size();
+                    }
+                    finally
+                    {
+                        nodeBatch.txBatch.nodeBatchCompleted();
+                    }
                 }
+                // Let the other indexers know that there is nothing left to do
+                putUninterruptibly(nodeBatchQueue, PipelinedNodeBatch.END_OF_STREAM);
+                return indexedNodes;
+            }));
+        }
 
-                final AtomicInteger counterTransaction = new AtomicInteger();
-                Collection<List<Transaction>> txBatches = transactions.getTransactions().stream()
-                        .peek(txnsFound::add)
-                        .filter(this::isTransactionIndexed)
-                        .collect(Collectors.groupingBy(transaction -> counterTransaction.getAndAdd(
-                                (int) (transaction.getDeletes() + transaction.getUpdates())) / transactionDocsBatchSize))
-                        .values();
-
-                // Index batches of transactions and the nodes updated or deleted within the transaction
-                List<List<Node>> nodeBatches = new ArrayList<>();
-                for (List<Transaction> batch : txBatches)
-                {
+        // Stage 3: transaction indexing, strictly in commit order
+        int totalIndexedNodes = 0;
+        try
+        {
+            long startElapsed = System.nanoTime();
+            for (PipelinedTransactionBatch txBatch : pipelinedBatches)
+            {
+                txBatch.indexed.get();
+
+                // Add the transactions as found to avoid processing them again in the next iteration
+                txBatch.transactions.forEach(txnsFound::add);
+                int txBatchDocs = txBatch.transactions.stream()
+                        .mapToInt(tx -> (int) (tx.getDeletes() + tx.getUpdates()))
+                        .sum();
+
+                indexTransactionsAfterWorker(txBatch.transactions);
+                long endElapsed = System.nanoTime();
+                trackerStats.addElapsedNodeTime(txBatchDocs, endElapsed - startElapsed);
+                startElapsed = endElapsed;
+            }
+        }
+        finally
+        {
+            // Never leave indexers running once the write lock has been released, nor the listing going on after a
+            // failure
+            stopListing.set(true);
+            listing.get();
+            for (Future<Integer> indexer : indexers)
+            {
+                totalIndexedNodes += indexer.get();
+            }
+        }
 
-                    // Index nodes contained in the transactions
-                    long idTxBatch = System.currentTimeMillis();
-                    nodeBatches.addAll(buildBatchOfTransactions(batch, idTrackerCycle, idTxBatch));
-                }
-                
-                // Counter used to identify the worker inside the parallel stream processing
-                final AtomicInteger counterBatch = new AtomicInteger(0);
-                long idThread = Thread.currentThread().getId();
-                totalUpdatedDocs += forkJoinPool.submit(() ->
-                        nodeBatches.parallelStream().map(batch -> {
-                            int count = counterBatch.addAndGet(1);
-                            if (LOGGER.isTraceEnabled())
-                            {
-                                LOGGER.trace("{}:{}:{}-[CORE {}] indexing {} nodes ...",
-                                        idThread, idTrackerCycle, count,
-                                        coreName, batch.size());
-                            }
-                            new NodeIndexWorker(batch, infoSrv, idThread, idTrackerCycle, count).run();
-                            return batch.size();
-                        }).reduce(0, Integer::sum)).get();
+        return totalIndexedNodes;
+    }
 
-                for (List<Transaction> batch : txBatches)
-                {
-                    // Add the transactions as found to avoid processing them again in the next iteration
-                    batch.forEach(txnsFound::add);
-    
-                    // Index the transactions
-                    indexTransactionsAfterWorker(batch);
-                    long endElapsed = System.nanoTime();
-                    trackerStats.addElapsedNodeTime(totalUpdatedDocs, endElapsed - startElapsed);
-                    startElapsed = endElapsed;
-                }
-                
-                setLastTxCommitTimeAndTxIdInTrackerState(transactions);
+    private static void putUninterruptibly(BlockingQueue<PipelinedNodeBatch> queue, PipelinedNodeBatch nodeBatch)
+    {
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                queue.put(nodeBatch);
+                break;
             }
-            catch(Exception e)
+            catch (InterruptedException e)
             {
-                throw new IOException(e);
+                interrupted = true;
             }
-            finally
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A batch of transactions travelling through the indexing pipeline.
+     * The batch is completely indexed when the node listing has finished and every node batch has been indexed.
+     */
+    private static class PipelinedTransactionBatch
+    {
+        final List<Transaction> transactions;
+        // Starts at 1 so the batch cannot complete before all the node batches have been listed
+        final AtomicInteger pendingNodeBatches = new AtomicInteger(1);
+        final CompletableFuture<Void> indexed = new CompletableFuture<>();
+
+        PipelinedTransactionBatch(List<Transaction> transactions)
+        {
+            this.transactions = transactions;
+        }
+
+        void nodeBatchCompleted()
+        {
+            if (pendingNodeBatches.decrementAndGet() == 0)
             {
-                getWriteLock().release();
+                indexed.complete(null);
             }
-        
         }
-        while ((transactions.getTransactions().size() > 0));
+    }
 
-        LOGGER.info("{}-[CORE {}] Tracked {} DOCs", Thread.currentThread().getId(), coreName, totalUpdatedDocs);
+    /**
+     * A batch of nodes (at most "nodeBatchSize") belonging to a batch of transactions.
+     */
+    private static class PipelinedNodeBatch
+    {
+        static final PipelinedNodeBatch END_OF_STREAM = new PipelinedNodeBatch(null, Collections.emptyList());
+
+        final PipelinedTransactionBatch txBatch;
+        final List<Node> nodes;
+
+        PipelinedNodeBatch(PipelinedTransactionBatch txBatch, List<Node> nodes)
+        {
+            this.txBatch = txBatch;
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * A page of transactions fetched in background by the pipeline.
+     */
+    private static class PrefetchedTransactions
+    {
+        private final TrackerState state;
+        private final Long fromCommitTime;
+        private final CompletableFuture<Transactions> transactions;
+
+        PrefetchedTransactions(TrackerState state, Long fromCommitTime, CompletableFuture<Transactions> transactions)
+        {
+            this.state = state;
+            this.fromCommitTime = fromCommitTime;
+            this.transactions = transactions;
+        }
+
+        /**
+         * @return the prefetched transactions, or null if they were fetched for a different state or commit time.
+         */
+        Transactions take(TrackerState currentState, Long currentFromCommitTime) throws InterruptedException, ExecutionException
+        {
+            if (state != currentState || !Objects.equals(fromCommitTime, currentFromCommitTime))
+            {
+                cancel();
+                return null;
+            }
+            return transactions.get();
+        }
+
+        void cancel()
+        {
+            transactions.cancel(true);
+        }
     }
 
     /**
@@ -1038,25 +1424,29 @@ public class MetadataTracker extends ActivatableTracker
     }
 
     /**
-     * Index transactions and update state of the tracker
+     * Index transactions and update state of the tracker.
+     * The transaction and state documents of the whole batch are written through a single indexing session.
      * @param txsIndexed List of transactions to be indexed
      * @throws IOException
      */
     private void indexTransactionsAfterWorker(List<Transaction> txsIndexed)
                 throws IOException
     {
-        for (Transaction tx : txsIndexed)
+        try (IndexingSession session = infoSrv.openIndexingSession())
         {
-            infoSrv.indexTransaction(tx, true);
-            // Transactions are ordered by commit time and tie-broken by tx id
-            if (tx.getCommitTimeMs() > state.getLastIndexedTxCommitTime()
-                    || tx.getCommitTimeMs() == state.getLastIndexedTxCommitTime()
-                    && tx.getId() > state.getLastIndexedTxId())
+            for (Transaction tx : txsIndexed)
             {
-                state.setLastIndexedTxCommitTime(tx.getCommitTimeMs());
-                state.setLastIndexedTxId(tx.getId());
+                session.indexTransaction(tx, true);
+                // Transactions are ordered by commit time and tie-broken by tx id
+                if (tx.getCommitTimeMs() > state.getLastIndexedTxCommitTime()
+                        || tx.getCommitTimeMs() == state.getLastIndexedTxCommitTime()
+                        && tx.getId() > state.getLastIndexedTxId())
+                {
+                    state.setLastIndexedTxCommitTime(tx.getCommitTimeMs());
+                    state.setLastIndexedTxId(tx.getId());
+                }
+                trackerStats.addTxDocs((int) (tx.getDeletes() + tx.getUpdates()));
             }
-            trackerStats.addTxDocs((int) (tx.getDeletes() + tx.getUpdates()));
         }
         txsIndexed.clear();
     }
@@ -1077,7 +1467,45 @@ public class MetadataTracker extends ActivatableTracker
     private List<List<Node>> buildBatchOfTransactions(List<Transaction> txBatch, long idTrackerCycle, long idTxBatch)
             throws AuthenticationException, IOException, JSONException, ExecutionException, InterruptedException 
     {
-        
+        Optional<GetNodesParameters> gnp = getNodesParameters(txBatch);
+        if (gnp.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+        return partitionNodes(client.getNodes(gnp.get(), Integer.MAX_VALUE), gnp.get(), idTrackerCycle, idTxBatch);
+    }
+
+    /**
+     * Same as {@link #buildBatchOfTransactions(List, long, long)}, but the nodes are requested through the
+     * asynchronous Repository client.
+     */
+    private CompletableFuture<List<List<Node>>> listNodes(AsyncSOLRAPIClient asyncClient, List<Transaction> txBatch, long idTrackerCycle)
+    {
+        long idTxBatch = System.currentTimeMillis();
+        return getNodesParameters(txBatch)
+                .map(gnp -> {
+                    CompletableFuture<List<Node>> nodes = asyncClient.getNodes(gnp, Integer.MAX_VALUE);
+                    CompletableFuture<List<List<Node>>> nodeBatches =
+                            nodes.thenApply(listed -> partitionNodes(listed, gnp, idTrackerCycle, idTxBatch));
+                    // Cancelling the node batches cancels the request, e.g. while it is queued by the client
+                    nodeBatches.whenComplete((result, exception) -> {
+                        if (nodeBatches.isCancelled())
+                        {
+                            nodes.cancel(true);
+                        }
+                    });
+                    return nodeBatches;
+                })
+                .orElseGet(() -> CompletableFuture.completedFuture(Collections.emptyList()));
+    }
+
+    /**
+     * Builds the parameters for getting the nodes of the given batch of transactions.
+     *
+     * @return the parameters, empty if no transaction of the batch has modifications
+     */
+    private Optional<GetNodesParameters> getNodesParameters(List<Transaction> txBatch)
+    {
         // Skip transactions without modifications (updates, deletes)
         ArrayList<Long> txIds = new ArrayList<>();
         for (Transaction tx : txBatch)
@@ -1091,7 +1519,7 @@ public class MetadataTracker extends ActivatableTracker
         // Skip getting nodes when no transactions left
         if (txIds.size() == 0)
         {
-            return Collections.emptyList();
+            return Optional.empty();
         }
         
         // Get Nodes Id properties for every transaction
@@ -1103,18 +1531,20 @@ public class MetadataTracker extends ActivatableTracker
         shardProperty.ifPresent(gnp::setShardProperty);
 
         gnp.setCoreName(coreName);
-        List<Node> nodes = client.getNodes(gnp, Integer.MAX_VALUE);
+        return Optional.of(gnp);
+    }
 
+    private List<List<Node>> partitionNodes(List<Node> nodes, GetNodesParameters gnp, long idTrackerCycle, long idTxBatch)
+    {
         if (LOGGER.isDebugEnabled())
         {
             LOGGER.debug("{}:{}:{}-[CORE {}] Indexing {} Nodes from Transactions: {}",
                     Thread.currentThread().getId(), idTrackerCycle, idTxBatch,
-                    coreName, nodes.size(), txIds);
+                    coreName, nodes.size(), gnp.getTransactionIds());
         }
 
         // Group the nodes in batches of nodeBatchSize (or less)
         return Lists.partition(nodes, nodeBatchSize);
-
     }
 
 
@@ -1284,56 +1714,65 @@ public class MetadataTracker extends ActivatableTracker
         }
 
         IOpenBitSet txIdsInDb = infoSrv.getOpenBitSetInstance();
-        long lastTxCommitTime = firstTransactionCommitTime;
-        if (fromTime != null)
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(checkpointFile(), txIdsInDb,
+                toTx, fromTime, toTime,
+                indexCheckCheckpointInterval, indexCheckCheckpointMaxAge))
         {
-            lastTxCommitTime = fromTime;
-        }
-        long maxTxId = 0;
-        Long minTxId = null;
+            long lastTxCommitTime = firstTransactionCommitTime;
+            if (fromTime != null)
+            {
+                lastTxCommitTime = fromTime;
+            }
+            if (checkpoint.isResumed())
+            {
+                lastTxCommitTime = checkpoint.getLastCommitTime();
+                LOGGER.info("[CORE {}] Index check resumed from transaction commit time {}", coreName, lastTxCommitTime);
+            }
 
-        Transactions transactions;
-        BoundedDeque<Transaction> txnsFound = new BoundedDeque<>(METADATA_TRANSACTIONS_FOUND_QUEUE_SIZE);
-        long endTime = System.currentTimeMillis() + infoSrv.getHoleRetention();
-        DO: do
-        {
-            transactions = getSomeTransactions(txnsFound, lastTxCommitTime, timeStep, maxNumberOfTransactions, endTime);
-            for (Transaction info : transactions.getTransactions())
+            Transactions transactions;
+            BoundedDeque<Transaction> txnsFound = new BoundedDeque<>(METADATA_TRANSACTIONS_FOUND_QUEUE_SIZE);
+            long endTime = System.currentTimeMillis() + infoSrv.getHoleRetention();
+            DO: do
             {
-                // include
-                if (toTime != null)
+                transactions = getSomeTransactions(txnsFound, lastTxCommitTime, timeStep, maxNumberOfTransactions, endTime);
+                for (Transaction info : transactions.getTransactions())
                 {
-                    if (info.getCommitTimeMs() > toTime)
+                    // include
+                    if (toTime != null)
                     {
-                        break DO;
+                        if (info.getCommitTimeMs() > toTime)
+                        {
+                            break DO;
+                        }
                     }
-                }
-                if (toTx != null)
-                {
-                    if (info.getId() > toTx)
+                    if (toTx != null)
                     {
-                        break DO;
+                        if (info.getId() > toTx)
+                        {
+                            break DO;
+                        }
                     }
-                }
 
-                // bounds for later loops
-                if (minTxId == null)
-                {
-                    minTxId = info.getId();
-                }
-                if (maxTxId < info.getId())
-                {
-                    maxTxId = info.getId();
+                    // bounds for later loops are kept by the checkpoint
+                    lastTxCommitTime = info.getCommitTimeMs();
+                    checkpoint.add(info.getId(), info.getCommitTimeMs());
+                    txnsFound.add(info);
                 }
-
-                lastTxCommitTime = info.getCommitTimeMs();
-                txIdsInDb.set(info.getId());
-                txnsFound.add(info);
+                checkpoint.save();
             }
+            while (transactions.getTransactions().size() > 0);
+
+            IndexHealthReport report =
+                    this.infoSrv.reportIndexTransactions(checkpoint.getMinId(), txIdsInDb, checkpoint.getMaxId());
+            checkpoint.delete();
+            return report;
         }
-        while (transactions.getTransactions().size() > 0);
+    }
 
-        return this.infoSrv.reportIndexTransactions(minTxId, txIdsInDb, maxTxId);
+    private Path checkpointFile()
+    {
+        Path checkpoints = infoSrv.getCheckpointsDirectory();
+        return checkpoints == null ? null : checkpoints.resolve("metadata-index-check.checkpoint");
     }
 
     public void addTransactionToPurge(Long txId)
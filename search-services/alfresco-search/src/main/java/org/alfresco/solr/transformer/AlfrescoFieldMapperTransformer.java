@@ -32,6 +32,7 @@ import org.apache.solr.common.SolrDocument;
 import org.apache.solr.response.DocsStreamer;
 import org.apache.solr.response.ResultContext;
 import org.apache.solr.response.transform.DocTransformer;
+import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.SolrReturnFields;
 import org.slf4j.Logger;
@@ -39,6 +40,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static java.util.Optional.of;
@@ -51,23 +54,46 @@ public class AlfrescoFieldMapperTransformer extends DocTransformer
 {
     protected final static Logger LOGGER = LoggerFactory.getLogger(AlfrescoFieldMapperTransformer.class);
 
+    /**
+     * What to do with a schema field found in the documents of the response, worked out once per request.
+     */
+    private static class FieldMapping
+    {
+        private final SchemaField schemaField;
+        private final String alfrescoFieldName;
+        private final String responseFieldName;
+        private final boolean requested;
+
+        private FieldMapping(SchemaField schemaField, String alfrescoFieldName, String responseFieldName, boolean requested)
+        {
+            this.schemaField = schemaField;
+            this.alfrescoFieldName = alfrescoFieldName;
+            this.responseFieldName = responseFieldName;
+            this.requested = requested;
+        }
+    }
+
+    /** Marks the field names which are not defined in the schema, so they are left untouched. */
+    private static final FieldMapping NOT_IN_SCHEMA = new FieldMapping(null, null, null, false);
+
     private ResultContext context;
     private SolrReturnFields solrReturnFields;
+    private IndexSchema schema;
+    private Map<String, FieldMapping> fieldMappings;
 
     @SuppressWarnings("unchecked")
     @Override
     public void transform(SolrDocument doc, int docid, float score)
     {
         Collection<String> fieldNames = new ArrayList<>(doc.getFieldNames());
-        solrReturnFields = new SolrReturnFields(context.getRequest().getParams().get("originalFl"), context.getRequest());
 
         for (String fieldName : fieldNames)
         {
-           SchemaField schemaField = context.getSearcher().getSchema().getFieldOrNull(fieldName);
-           if(schemaField != null)
+           FieldMapping mapping = fieldMappings.computeIfAbsent(fieldName, this::fieldMapping);
+           if(mapping != NOT_IN_SCHEMA)
            {
-               String alfrescoFieldName = AlfrescoSolrDataModel.getInstance().getAlfrescoPropertyFromSchemaField(fieldName);
-               if (isRequestedField(alfrescoFieldName) || alfrescoFieldName.equals("id"))
+               SchemaField schemaField = mapping.schemaField;
+               if (mapping.requested)
                {
                    Object value = doc.getFieldValue(fieldName);
                    doc.removeFields(fieldName);
@@ -77,16 +103,16 @@ public class AlfrescoFieldMapperTransformer extends DocTransformer
                                ((Collection<Object>) value).stream()
                                     .map(elem -> getFieldValue(schemaField, elem))
                                     .collect(Collectors.toSet());
-                       doc.setField(alfrescoFieldName, collectionValue);
+                       doc.setField(mapping.alfrescoFieldName, collectionValue);
                    }
                    else
                    {
-                       doc.setField(transformToUnderscoreNotation(alfrescoFieldName), getFieldValue(schemaField, value));
+                       doc.setField(mapping.responseFieldName, getFieldValue(schemaField, value));
                    }
                }
                else
                {
-                   doc.removeFields(alfrescoFieldName);
+                   doc.removeFields(mapping.alfrescoFieldName);
                    doc.removeFields(fieldName);
                }
            }
@@ -103,6 +129,29 @@ public class AlfrescoFieldMapperTransformer extends DocTransformer
     public void setContext( ResultContext context )
     {
         this.context = context;
+        this.solrReturnFields = new SolrReturnFields(context.getRequest().getParams().get("originalFl"), context.getRequest());
+        this.schema = context.getSearcher().getSchema();
+        this.fieldMappings = new HashMap<>();
+    }
+
+    /**
+     * Maps a field of the returned documents to its Alfresco name and checks whether it has been requested.
+     * The result only depends on the field name, so it is computed the first time the field is found in the response.
+     */
+    private FieldMapping fieldMapping(String fieldName)
+    {
+        SchemaField schemaField = schema.getFieldOrNull(fieldName);
+        if (schemaField == null)
+        {
+            return NOT_IN_SCHEMA;
+        }
+
+        String alfrescoFieldName = AlfrescoSolrDataModel.getInstance().getAlfrescoPropertyFromSchemaField(fieldName);
+        return new FieldMapping(
+                schemaField,
+                alfrescoFieldName,
+                transformToUnderscoreNotation(alfrescoFieldName),
+                isRequestedField(alfrescoFieldName) || alfrescoFieldName.equals("id"));
     }
 
     private boolean isRequestedField(String fieldName)
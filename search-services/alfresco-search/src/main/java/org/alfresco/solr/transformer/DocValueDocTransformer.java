@@ -28,10 +28,21 @@ package org.alfresco.solr.transformer;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.alfresco.solr.AlfrescoSolrDataModel;
 import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
@@ -39,11 +50,22 @@ import org.apache.lucene.util.NumericUtils;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.response.ResultContext;
 import org.apache.solr.response.transform.DocTransformer;
+import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.DocIterator;
+import org.apache.solr.search.DocList;
+import org.apache.solr.search.SolrIndexSearcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Replaces the fields of the returned documents with the values of their doc values, using the Alfresco field names.
+ *
+ * The doc values fields are resolved once per request and the values are read from the segment of each document,
+ * through doc values instances fetched only once per segment for the whole response.
+ * When docIdOrder is set, the values of the whole page are read in advance, in increasing docid order, so that
+ * each segment is read forward only.
+ *
  * @author Andy
  *
  */
@@ -51,6 +73,47 @@ public class DocValueDocTransformer extends DocTransformer
 {
     protected final static Logger log = LoggerFactory.getLogger(DocValueDocTransformer.class);
 
+    /**
+     * A doc values field of the index, with the doc values of each segment fetched the first time a document of the
+     * segment is transformed.
+     */
+    private static class DocValuesField
+    {
+        private final String fieldName;
+        private final SchemaField schemaField;
+        private final String alfrescoFieldName;
+        private final DocValuesType docValuesType;
+        private final Object[] leafDocValues;
+
+        private DocValuesField(String fieldName, SchemaField schemaField, DocValuesType docValuesType, int leaves)
+        {
+            this.fieldName = fieldName;
+            this.schemaField = schemaField;
+            this.alfrescoFieldName = AlfrescoSolrDataModel.getInstance().getAlfrescoPropertyFromSchemaField(fieldName);
+            this.docValuesType = docValuesType;
+            this.leafDocValues = new Object[leaves];
+        }
+    }
+
+    private final boolean docIdOrder;
+
+    private List<LeafReaderContext> leaves;
+    private List<DocValuesField> fields;
+    private Map<Integer, Object[]> prefetchedValues;
+
+    public DocValueDocTransformer()
+    {
+        this(false);
+    }
+
+    /**
+     * @param docIdOrder true if the values of the whole page must be read in docid order when the context is set
+     */
+    public DocValueDocTransformer(boolean docIdOrder)
+    {
+        this.docIdOrder = docIdOrder;
+    }
+
     /* (non-Javadoc)
      * @see org.apache.solr.response.transform.DocTransformer#getName()
      */
@@ -64,8 +127,38 @@ public class DocValueDocTransformer extends DocTransformer
     public void setContext( ResultContext context ) 
     {
         this.context = context;
+
+        SolrIndexSearcher searcher = context.getSearcher();
+        IndexSchema schema = searcher.getSchema();
+        FieldInfos fieldInfos = searcher.getSlowAtomicReader().getFieldInfos();
+        leaves = searcher.getTopReaderContext().leaves();
+        fields = new ArrayList<>();
+        for (String fieldName : searcher.getFieldNames())
+        {
+            SchemaField schemaField = schema.getFieldOrNull(fieldName);
+            FieldInfo fieldInfo = fieldInfos.fieldInfo(fieldName);
+            if (schemaField != null && schemaField.hasDocValues()
+                    && fieldInfo != null && fieldInfo.getDocValuesType() != DocValuesType.NONE)
+            {
+                fields.add(new DocValuesField(fieldName, schemaField, fieldInfo.getDocValuesType(), leaves.size()));
+            }
+        }
+
+        prefetchedValues = null;
+        DocList docList = context.getDocList();
+        if (docIdOrder && docList != null)
+        {
+            try
+            {
+                prefetchedValues = prefetch(docList);
+            }
+            catch (IOException exception)
+            {
+                log.warn("Unable to read the doc values of the result page in docid order, they will be read per document.", exception);
+            }
+        }
     }
-    
+
     
     /* (non-Javadoc)
      * @see org.apache.solr.response.transform.DocTransformer#transform(org.apache.solr.common.SolrDocument, int)
@@ -73,117 +166,162 @@ public class DocValueDocTransformer extends DocTransformer
     @Override
     public void transform(SolrDocument doc, int docid, float score) throws IOException
     {
-        for(String fieldName :context.getSearcher().getFieldNames())
+        Object[] values = prefetchedValues != null ? prefetchedValues.get(docid) : null;
+        if (values == null)
+        {
+            values = read(docid);
+        }
+
+        for (int i = 0; i < values.length; i++)
+        {
+            if (values[i] != null)
+            {
+                DocValuesField field = fields.get(i);
+                doc.removeFields(field.fieldName);
+                doc.removeFields(field.alfrescoFieldName);
+                doc.addField(field.alfrescoFieldName, values[i]);
+            }
+        }
+    }
+
+    private Map<Integer, Object[]> prefetch(DocList docList) throws IOException
+    {
+        int[] docids = new int[docList.size()];
+        DocIterator iterator = docList.iterator();
+        for (int i = 0; i < docids.length && iterator.hasNext(); i++)
+        {
+            docids[i] = iterator.nextDoc();
+        }
+        Arrays.sort(docids);
+
+        Map<Integer, Object[]> values = new HashMap<>(docids.length * 2);
+        for (int docid : docids)
+        {
+            values.put(docid, read(docid));
+        }
+        return values;
+    }
+
+    /**
+     * Reads the values of all the doc values fields of the given document: null for the fields to leave untouched.
+     */
+    private Object[] read(int docid) throws IOException
+    {
+        int leafIndex = ReaderUtil.subIndex(docid, leaves);
+        LeafReaderContext leaf = leaves.get(leafIndex);
+        int leafDocid = docid - leaf.docBase;
+
+        Object[] values = new Object[fields.size()];
+        for (int i = 0; i < values.length; i++)
+        {
+            DocValuesField field = fields.get(i);
+            Object docValues = field.leafDocValues[leafIndex];
+            if (docValues == null)
+            {
+                docValues = docValues(leaf.reader(), field);
+                field.leafDocValues[leafIndex] = docValues;
+            }
+            values[i] = value(field, docValues, leafDocid);
+        }
+        return values;
+    }
+
+    private Object docValues(LeafReader reader, DocValuesField field) throws IOException
+    {
+        switch (field.docValuesType)
         {
-            SchemaField schemaField = context.getSearcher().getSchema().getFieldOrNull(fieldName);
-            if(schemaField != null)
+            case SORTED:
+                return DocValues.getSorted(reader, field.fieldName);
+            case SORTED_SET:
+                return DocValues.getSortedSet(reader, field.fieldName);
+            case BINARY:
+                return DocValues.getBinary(reader, field.fieldName);
+            case NUMERIC:
+                return DocValues.getNumeric(reader, field.fieldName);
+            case SORTED_NUMERIC:
+                return DocValues.getSortedNumeric(reader, field.fieldName);
+            default:
+                throw new IllegalStateException("Unexpected doc values type " + field.docValuesType + " of field " + field.fieldName);
+        }
+    }
+
+    private Object value(DocValuesField field, Object docValues, int docid)
+    {
+        SchemaField schemaField = field.schemaField;
+        switch (field.docValuesType)
+        {
+            case SORTED:
             {
-                if(schemaField.hasDocValues())
+                SortedDocValues sortedDocValues = (SortedDocValues) docValues;
+                int ordinal = sortedDocValues.getOrd(docid);
+                return ordinal > -1 ? schemaField.getType().toObject(schemaField, sortedDocValues.lookupOrd(ordinal)) : null;
+            }
+            case SORTED_SET:
+            {
+                SortedSetDocValues sortedSetDocValues = (SortedSetDocValues) docValues;
+                ArrayList<Object> newValues = new ArrayList<Object>();
+                sortedSetDocValues.setDocument(docid);
+                long ordinal;
+                while ( (ordinal = sortedSetDocValues.nextOrd()) !=  SortedSetDocValues.NO_MORE_ORDS)
                 {
-                    SortedDocValues sortedDocValues = context.getSearcher().getSlowAtomicReader().getSortedDocValues(fieldName);
-                    if(sortedDocValues != null)
-                    {
-                        int ordinal = sortedDocValues.getOrd(docid);
-                        if(ordinal > -1)
-                        {
-                            doc.removeFields(fieldName);
-                            String alfrescoFieldName = AlfrescoSolrDataModel.getInstance().getAlfrescoPropertyFromSchemaField(fieldName);
-                            doc.removeFields(alfrescoFieldName);
-                            doc.addField(alfrescoFieldName, schemaField.getType().toObject(schemaField, sortedDocValues.lookupOrd(ordinal)));
-                        }
-                    }
-                    
-                    SortedSetDocValues sortedSetDocValues = context.getSearcher().getSlowAtomicReader().getSortedSetDocValues(fieldName);
-                    if(sortedSetDocValues != null)
-                    {
-                        ArrayList<Object> newValues = new ArrayList<Object>();
-                        sortedSetDocValues.setDocument(docid);
-                        long ordinal;
-                        while ( (ordinal = sortedSetDocValues.nextOrd()) !=  SortedSetDocValues.NO_MORE_ORDS)
-                        {
-                            newValues.add(schemaField.getType().toObject(schemaField, sortedSetDocValues.lookupOrd(ordinal)));       
-                        }
-                        doc.removeFields(fieldName);
-                        String alfrescoFieldName = AlfrescoSolrDataModel.getInstance().getAlfrescoPropertyFromSchemaField(fieldName);
-                        doc.removeFields(alfrescoFieldName);
-                        doc.addField(alfrescoFieldName, newValues);
-                    }
-                    
-                    
-                    BinaryDocValues binaryDocValues = context.getSearcher().getSlowAtomicReader().getBinaryDocValues(fieldName);
-                    if(binaryDocValues != null)
-                    {
-                        doc.removeFields(fieldName);
-                        String alfrescoFieldName = AlfrescoSolrDataModel.getInstance().getAlfrescoPropertyFromSchemaField(fieldName);
-                        doc.removeFields(alfrescoFieldName);
-                        doc.addField(alfrescoFieldName, schemaField.getType().toObject(schemaField, binaryDocValues.get(docid)));
-                    }
-                    
-                    if(schemaField.getType().getNumericType() != null)
+                    newValues.add(schemaField.getType().toObject(schemaField, sortedSetDocValues.lookupOrd(ordinal)));
+                }
+                return newValues;
+            }
+            case BINARY:
+                return schemaField.getType().toObject(schemaField, ((BinaryDocValues) docValues).get(docid));
+            case NUMERIC:
+            {
+                if (schemaField.getType().getNumericType() == null)
+                {
+                    return null;
+                }
+                NumericDocValues numericDocValues = (NumericDocValues) docValues;
+                switch(schemaField.getType().getNumericType())
+                {
+                    case DOUBLE:
+                        return Double.longBitsToDouble(numericDocValues.get(docid));
+                    case FLOAT:
+                        return Float.intBitsToFloat((int) numericDocValues.get(docid));
+                    case INT:
+                        return (int) numericDocValues.get(docid);
+                    case LONG:
+                        return numericDocValues.get(docid);
+                    default:
+                        return null;
+                }
+            }
+            case SORTED_NUMERIC:
+            {
+                if (schemaField.getType().getNumericType() == null)
+                {
+                    return null;
+                }
+                SortedNumericDocValues sortedNumericDocValues = (SortedNumericDocValues) docValues;
+                sortedNumericDocValues.setDocument(docid);
+                ArrayList<Object> newValues = new ArrayList<Object>(sortedNumericDocValues.count());
+                for(int i = 0; i < sortedNumericDocValues.count(); i++)
+                {
+                    switch(schemaField.getType().getNumericType())
                     {
-                        NumericDocValues numericDocValues = context.getSearcher().getSlowAtomicReader().getNumericDocValues(fieldName);
-                        if(numericDocValues != null)
-                        {
-                            doc.removeFields(fieldName);
-                            String alfrescoFieldName = AlfrescoSolrDataModel.getInstance().getAlfrescoPropertyFromSchemaField(fieldName);
-                            doc.removeFields(alfrescoFieldName);
-                            switch(schemaField.getType().getNumericType())
-                            {
-                            case DOUBLE:
-                                doc.addField(alfrescoFieldName,  Double.longBitsToDouble(numericDocValues.get(docid)));
-                                break;
-                            case FLOAT:
-                                doc.addField(alfrescoFieldName,  Float.intBitsToFloat((int) numericDocValues.get(docid)));
-                                break;
-                            case INT:
-                                doc.addField(alfrescoFieldName, (int) numericDocValues.get(docid));
-                                break;
-                            case LONG:
-                                doc.addField(alfrescoFieldName, numericDocValues.get(docid));
-                                break;
-                            }
-                        }
-                        
-                        SortedNumericDocValues sortedNumericDocValues = context.getSearcher().getSlowAtomicReader().getSortedNumericDocValues(fieldName);
-                        if(sortedNumericDocValues != null)
-                        {
-                            sortedNumericDocValues.setDocument(docid);
-                            doc.removeFields(fieldName);
-                            String alfrescoFieldName = AlfrescoSolrDataModel.getInstance().getAlfrescoPropertyFromSchemaField(fieldName);
-                            doc.removeFields(alfrescoFieldName);
-                            ArrayList<Object> newValues = new ArrayList<Object>(sortedNumericDocValues.count()); 
-                            if(sortedNumericDocValues.count() > 0)
-                            {
-                               
-                                for(int i = 0; i < sortedNumericDocValues.count(); i++)
-                                {
-                                    switch(schemaField.getType().getNumericType())
-                                    {
-                                        case DOUBLE:
-                                            newValues.add(NumericUtils.sortableLongToDouble(sortedNumericDocValues.valueAt(i)));
-                                            break;
-                                        case FLOAT:
-                                            newValues.add(NumericUtils.sortableIntToFloat((int)sortedNumericDocValues.valueAt(i)));
-                                            break;
-                                        case INT:
-                                            newValues.add((int)sortedNumericDocValues.valueAt(i));
-                                            break;
-                                        case LONG:
-                                            newValues.add(sortedNumericDocValues.valueAt(i));
-                                            break;
-                                          
-                                    }
-                                }
-                            }
-                            doc.addField(alfrescoFieldName, newValues);
-                            
-                        }
+                        case DOUBLE:
+                            newValues.add(NumericUtils.sortableLongToDouble(sortedNumericDocValues.valueAt(i)));
+                            break;
+                        case FLOAT:
+                            newValues.add(NumericUtils.sortableIntToFloat((int)sortedNumericDocValues.valueAt(i)));
+                            break;
+                        case INT:
+                            newValues.add((int)sortedNumericDocValues.valueAt(i));
+                            break;
+                        case LONG:
+                            newValues.add(sortedNumericDocValues.valueAt(i));
+                            break;
                     }
                 }
+                return newValues;
             }
+            default:
+                return null;
         }
-        
     }
-
-    
 }
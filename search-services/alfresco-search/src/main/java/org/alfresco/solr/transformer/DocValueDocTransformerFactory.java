@@ -32,11 +32,15 @@ import org.apache.solr.response.transform.DocTransformer;
 import org.apache.solr.response.transform.TransformerFactory;
 
 /**
+ * Creates the {@link DocValueDocTransformer}: with [dv docIdOrder=true] the values of the result page are read
+ * in docid order.
+ *
  * @author Andy
  *
  */
 public class DocValueDocTransformerFactory extends TransformerFactory
 {
+    static final String DOC_ID_ORDER = "docIdOrder";
 
     /* (non-Javadoc)
      * @see org.apache.solr.response.transform.TransformerFactory#create(java.lang.String, org.apache.solr.common.params.SolrParams, org.apache.solr.request.SolrQueryRequest)
@@ -44,7 +48,7 @@ public class DocValueDocTransformerFactory extends TransformerFactory
     @Override
     public DocTransformer create(String field, SolrParams params, SolrQueryRequest req)
     {
-        return new DocValueDocTransformer();
+        return new DocValueDocTransformer(params != null && params.getBool(DOC_ID_ORDER, false));
     }
 
 }
@@ -27,25 +27,49 @@
 package org.apache.lucene.analysis.minhash;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.minhash.MinHashFilter.LongPair;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Accumulates, for each shingle, the hash of its context (the words around the middle ones) under its middle word(s)
+ * in the {@link ContextStore} of the core.
+ *
+ * The shingle is split in place: the middle words and the context are copied into buffers reused from one token to
+ * the next, and the context is hashed from its UTF-16LE bytes without intermediate strings.
+ *
+ * Only the first 64 bits of the 128 bits murmur3 hash of a context are stored, which halves the size of the store.
+ * Two distinct contexts of the same word are then counted once if their hashes collide on 64 bits.
+ */
 public class ContextAccumulatingFilter extends TokenFilter
 {   
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContextAccumulatingFilter.class);
 
     private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
     
-    private static  Map<String, Set<LongPair> > contexts = new ConcurrentHashMap<String, Set<LongPair> >(128);
+    private final ContextStore contexts;
+
+    private final LongPair contextHash = new LongPair();
+
+    /** Start and end of the space separated parts of the current token */
+    private int[] partStarts = new int[8];
+    private int[] partEnds = new int[8];
+
+    private char[] word = new char[64];
+    private int wordLength;
+
+    /** UTF-16LE encoding of the context */
+    private byte[] context = new byte[256];
+    private int contextLength;
  
-    protected ContextAccumulatingFilter(TokenStream input)
+    protected ContextAccumulatingFilter(TokenStream input, ContextStore contexts)
     {
         super(input);
+        this.contexts = contexts;
     }
   
 
@@ -53,68 +77,124 @@ public class ContextAccumulatingFilter extends TokenFilter
     final public boolean incrementToken() throws IOException
     {
         // Pull the underlying stream of tokens
-        // Hash each token found
-        // Generate the required number of variants of this hash
-        // Keep the minimum hash value found so far of each variant
+        // Split each token into its middle word(s) and its context
+        // Hash the context and record it against the word
 
         boolean incremented = input.incrementToken();
         
         if(incremented)
         {
-            String current = new String(termAttribute.buffer(), 0, termAttribute.length());
-            String[] parts = current.split(" ");
-            StringBuilder contextBuilder = new StringBuilder();
-            StringBuilder wordBuilder = new StringBuilder();
-            for(int i = 0, l = parts.length; i < l; i++)
+            char[] buffer = termAttribute.buffer();
+            int l = split(buffer, termAttribute.length());
+            int firstMiddle = (l - 1) / 2;
+            int lastMiddle = l / 2;
+
+            wordLength = 0;
+            contextLength = 0;
+            for(int i = 0; i < l; i++)
             {
-                if( (i == Math.round(Math.floor((l-1)/2.0))) || (i == Math.round(Math.ceil((l-1)/2.0))))
+                if(i == firstMiddle || i == lastMiddle)
                 {
-                    if(wordBuilder.length() > 0)
+                    if(wordLength > 0)
+                    {
+                        appendToWord(' ');
+                    }
+                    for(int c = partStarts[i]; c < partEnds[i]; c++)
                     {
-                        wordBuilder.append(" ");
+                        appendToWord(buffer[c]);
                     }
-                    wordBuilder.append(parts[i]);
                 }
                 else
                 {
-                    if(contextBuilder.length() > 0)
+                    if(contextLength > 0)
+                    {
+                        appendToContext(' ');
+                    }
+                    for(int c = partStarts[i]; c < partEnds[i]; c++)
                     {
-                        contextBuilder.append(" ");
+                        appendToContext(buffer[c]);
                     }
-                    contextBuilder.append(parts[i]);
                 }
             }
-            
-            String word = wordBuilder.toString();
-            String context = contextBuilder.toString();
-            
-            Set<LongPair> wordContexts = contexts.get(word);
-            if(wordContexts == null)
-            {
-                wordContexts = ConcurrentHashMap.<LongPair>newKeySet(128);
-                contexts.put(word, wordContexts);
-            }
-            byte[] bytes = context.getBytes("UTF-16LE");
-            LongPair contextHash = new LongPair();
-            MinHashFilter.murmurhash3_x64_128(bytes, 0, bytes.length, 0, contextHash);
-            wordContexts.add(contextHash);
+
+            MinHashFilter.murmurhash3_x64_128(context, 0, contextLength, 0, contextHash);
+            // The first half of the hash only, see above
+            contexts.add(new String(word, 0, wordLength), contextHash.val1);
         }
         
         return incremented;
     }
 
+    /**
+     * Splits the token on single spaces, as String.split(" ") does: trailing empty parts are dropped.
+     *
+     * @return the number of parts
+     */
+    private int split(char[] buffer, int length)
+    {
+        int parts = 0;
+        int start = 0;
+        for(int i = 0; i <= length; i++)
+        {
+            if(i == length || buffer[i] == ' ')
+            {
+                if(parts == partStarts.length)
+                {
+                    partStarts = grow(partStarts);
+                    partEnds = grow(partEnds);
+                }
+                partStarts[parts] = start;
+                partEnds[parts] = i;
+                parts++;
+                start = i + 1;
+            }
+        }
+        while(parts > 0 && partStarts[parts - 1] == partEnds[parts - 1])
+        {
+            parts--;
+        }
+        return parts;
+    }
+
+    private static int[] grow(int[] array)
+    {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private void appendToWord(char c)
+    {
+        if(wordLength == word.length)
+        {
+            char[] grown = new char[word.length * 2];
+            System.arraycopy(word, 0, grown, 0, wordLength);
+            word = grown;
+        }
+        word[wordLength++] = c;
+    }
+
+    private void appendToContext(char c)
+    {
+        if(contextLength + 2 > context.length)
+        {
+            byte[] grown = new byte[context.length * 2];
+            System.arraycopy(context, 0, grown, 0, contextLength);
+            context = grown;
+        }
+        context[contextLength++] = (byte) c;
+        context[contextLength++] = (byte) (c >>> 8);
+    }
+
 
     @Override
     public void end() throws IOException
     {
         super.end();
-        long count = 0;
-        for(Set<LongPair> thing : contexts.values())
+        if(LOGGER.isDebugEnabled())
         {
-            count += thing.size();
+            LOGGER.debug("Accumulated contexts: {}", contexts);
         }
-        
-        System.out.println("Words = "+contexts.size() + "     contexts = "+count);
     } 
     
     
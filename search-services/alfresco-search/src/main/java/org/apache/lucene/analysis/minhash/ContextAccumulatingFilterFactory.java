@@ -26,22 +26,52 @@
 
 package org.apache.lucene.analysis.minhash;
 
+import java.net.URL;
 import java.util.Map;
 
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.SolrInfoMBean;
 
 /**
+ * Creates the {@link ContextAccumulatingFilter}s of a field type. The factory is created with the schema, so all
+ * the filters of a core share its {@link ContextStore}, bounded by the maxContextStoreMB parameter (16 by default).
+ *
+ * The factory is registered with the core MBeans (see SolrCoreLoadListener), so the counters of the store are
+ * exposed with the statistics of the core.
+ *
  * @author Andy
  */
-public class ContextAccumulatingFilterFactory extends TokenFilterFactory
+public class ContextAccumulatingFilterFactory extends TokenFilterFactory implements SolrInfoMBean
 {
+    static final int DEFAULT_MAX_CONTEXT_STORE_MB = 16;
+
+    /** The key of the factory in the core MBeans is this prefix followed by the field type name */
+    public static final String MBEAN_KEY_PREFIX = "contextStore.";
+
+    private final ContextStore contextStore;
+    private final long maxContextStoreBytes;
+
     /**
      * @param args
      */
     public ContextAccumulatingFilterFactory(Map<String, String> args)
     {
         super(args);
+        int maxContextStoreMB = getInt(args, "maxContextStoreMB", DEFAULT_MAX_CONTEXT_STORE_MB);
+        if (!args.isEmpty())
+        {
+            throw new IllegalArgumentException("Unknown parameters: " + args);
+        }
+        maxContextStoreBytes = maxContextStoreMB * 1024L * 1024L;
+        contextStore = new ContextStore(maxContextStoreBytes);
+    }
+
+    public ContextStore getContextStore()
+    {
+        return contextStore;
     }
 
     /*
@@ -51,8 +81,56 @@ public class ContextAccumulatingFilterFactory extends TokenFilterFactory
     @Override
     public TokenStream create(TokenStream input)
     {
-        ContextAccumulatingFilter filter = new ContextAccumulatingFilter(input);
+        ContextAccumulatingFilter filter = new ContextAccumulatingFilter(input, contextStore);
         return filter;
     }
 
+    @Override
+    public String getName()
+    {
+        return ContextAccumulatingFilterFactory.class.getName();
+    }
+
+    @Override
+    public String getVersion()
+    {
+        return getClass().getPackage().getSpecificationVersion();
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "Contexts accumulated for each word by the ContextAccumulatingFilters of a field type";
+    }
+
+    @Override
+    public Category getCategory()
+    {
+        return Category.OTHER;
+    }
+
+    @Override
+    public String getSource()
+    {
+        return null;
+    }
+
+    @Override
+    public URL[] getDocs()
+    {
+        return null;
+    }
+
+    @Override
+    public NamedList getStatistics()
+    {
+        NamedList<Object> statistics = new SimpleOrderedMap<>();
+        statistics.add("words", contextStore.getWords());
+        statistics.add("contexts", contextStore.getContexts());
+        statistics.add("bytes", contextStore.getBytes());
+        statistics.add("maxBytes", maxContextStoreBytes);
+        statistics.add("evictedWords", contextStore.getEvictedWords());
+        return statistics;
+    }
+
 }
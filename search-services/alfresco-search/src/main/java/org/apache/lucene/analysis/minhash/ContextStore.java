@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.apache.lucene.analysis.minhash;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.carrotsearch.hppc.LongHashSet;
+
+/**
+ * The contexts (64 bits hashes of the surrounding words) found for each word by the
+ * {@link ContextAccumulatingFilter}s of a field type, i.e. of one core.
+ *
+ * The store is bounded by a memory budget: when an addition goes over it, the least recently used words are evicted
+ * with all their contexts. The words are spread across segments, each with its own share of the budget and its own
+ * lock, so that the indexing threads don't all contend on a single lock.
+ */
+public class ContextStore
+{
+    private static final int SEGMENTS = 16;
+
+    /** Estimated size of a word entry without its text and contexts: map entry, String and hash set */
+    private static final int WORD_OVERHEAD_BYTES = 160;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * @param maxBytes the memory budget of the whole store, in bytes
+     */
+    public ContextStore(long maxBytes)
+    {
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            segments[i] = new Segment(Math.max(1, maxBytes / SEGMENTS));
+        }
+    }
+
+    /**
+     * Records a context of the given word.
+     */
+    public void add(String word, long contextHash)
+    {
+        segments[(word.hashCode() & 0x7fffffff) % SEGMENTS].add(word, contextHash);
+    }
+
+    /**
+     * @return the number of words in the store
+     */
+    public long getWords()
+    {
+        long words = 0;
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                words += segment.words.size();
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @return the number of distinct contexts of all the words in the store
+     */
+    public long getContexts()
+    {
+        long contexts = 0;
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                contexts += segment.contexts;
+            }
+        }
+        return contexts;
+    }
+
+    /**
+     * @return the estimated memory used by the store, in bytes
+     */
+    public long getBytes()
+    {
+        long bytes = 0;
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                bytes += segment.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the number of words evicted so far to stay within the memory budget
+     */
+    public long getEvictedWords()
+    {
+        long evictedWords = 0;
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                evictedWords += segment.evictedWords;
+            }
+        }
+        return evictedWords;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ContextStore [words=" + getWords() + ", contexts=" + getContexts() + ", bytes=" + getBytes()
+                + ", evictedWords=" + getEvictedWords() + "]";
+    }
+
+    static long sizeOf(String word, LongHashSet contexts)
+    {
+        return WORD_OVERHEAD_BYTES + 2L * word.length() + 8L * contexts.keys.length;
+    }
+
+    private static class Segment
+    {
+        private final long maxBytes;
+
+        /** In access order: the least recently used word comes first */
+        private final LinkedHashMap<String, LongHashSet> words = new LinkedHashMap<>(16, 0.75f, true);
+
+        private long bytes;
+        private long contexts;
+        private long evictedWords;
+
+        private Segment(long maxBytes)
+        {
+            this.maxBytes = maxBytes;
+        }
+
+        private synchronized void add(String word, long contextHash)
+        {
+            LongHashSet wordContexts = words.get(word);
+            if (wordContexts == null)
+            {
+                wordContexts = new LongHashSet();
+                words.put(word, wordContexts);
+                bytes += sizeOf(word, wordContexts);
+            }
+
+            long before = sizeOf(word, wordContexts);
+            if (wordContexts.add(contextHash))
+            {
+                contexts++;
+                bytes += sizeOf(word, wordContexts) - before;
+            }
+
+            // The word just added is the most recently used, so it is evicted last
+            Iterator<Map.Entry<String, LongHashSet>> leastRecentlyUsed = words.entrySet().iterator();
+            while (bytes > maxBytes && words.size() > 1)
+            {
+                Map.Entry<String, LongHashSet> evicted = leastRecentlyUsed.next();
+                bytes -= sizeOf(evicted.getKey(), evicted.getValue());
+                contexts -= evicted.getValue().size();
+                evictedWords++;
+                leastRecentlyUsed.remove();
+            }
+        }
+    }
+}
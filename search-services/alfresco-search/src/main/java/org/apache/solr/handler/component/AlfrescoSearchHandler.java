@@ -42,12 +42,18 @@ import java.io.Reader;
 import java.io.StringWriter;
 import java.lang.invoke.MethodHandles;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.solr.AlfrescoSolrDataModel;
 import org.alfresco.solr.query.AbstractQParser;
+import org.alfresco.solr.query.ConcurrentSegmentSearch;
+import org.alfresco.util.TraceableThreadFactory;
 import org.apache.cxf.transport.http.auth.HttpAuthHeader;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.ExitableDirectoryReader;
@@ -100,6 +106,14 @@ public class AlfrescoSearchHandler extends RequestHandlerBase implements
 	static final String INIT_COMPONENTS = "components";
 	static final String INIT_FIRST_COMPONENTS = "first-components";
 	static final String INIT_LAST_COMPONENTS = "last-components";
+	static final String INIT_CONCURRENT_SEGMENT_SEARCH = "concurrentSegmentSearch";
+	static final String INIT_CONCURRENT_SEGMENT_SEARCH_THREADS = "concurrentSegmentSearchThreads";
+
+	/**
+	 * Request parameter which turns the concurrent segment search off for a
+	 * single request (when the handler has been configured with it).
+	 */
+	public static final String CONCURRENT_SEGMENT_SEARCH = "alfresco.concurrentSegmentSearch";
 
 	private static final Logger log = LoggerFactory.getLogger(MethodHandles
 			.lookup().lookupClass());
@@ -108,6 +122,7 @@ public class AlfrescoSearchHandler extends RequestHandlerBase implements
 	private ShardHandlerFactory shardHandlerFactory;
 	private PluginInfo shfInfo;
 	private SolrCore core;
+	private ExecutorService segmentSearchExecutor;
 
 	protected List<String> getDefaultComponents() {
 		ArrayList<String> names = new ArrayList<>(8);
@@ -175,6 +190,46 @@ public class AlfrescoSearchHandler extends RequestHandlerBase implements
 			});
 		}
 
+		initConcurrentSegmentSearch(core);
+	}
+
+	/**
+	 * When enabled, the segments of the index are searched concurrently (see
+	 * {@link ConcurrentSegmentSearch}) on a pool of
+	 * <code>concurrentSegmentSearchThreads</code> threads (by default, one
+	 * per processor) which is shared by the requests of this handler.
+	 */
+	private void initConcurrentSegmentSearch(SolrCore core) {
+		Object enabled = initArgs.get(INIT_CONCURRENT_SEGMENT_SEARCH);
+		if (enabled == null || !Boolean.parseBoolean(enabled.toString())) {
+			return;
+		}
+
+		Object configuredThreads = initArgs.get(INIT_CONCURRENT_SEGMENT_SEARCH_THREADS);
+		int threads = configuredThreads == null ? 0 : Integer.parseInt(configuredThreads.toString());
+		if (threads <= 0) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+
+		TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+		threadFactory.setThreadDaemon(true);
+		threadFactory.setNamePrefix("SegmentSearch-" + core.getName() + "-");
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+				60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+		executor.allowCoreThreadTimeOut(true);
+		segmentSearchExecutor = executor;
+
+		core.addCloseHook(new CloseHook() {
+			@Override
+			public void preClose(SolrCore core) {
+				executor.shutdownNow();
+			}
+
+			@Override
+			public void postClose(SolrCore core) {
+			}
+		});
+		log.info("Concurrent segment search enabled on " + threads + " threads");
 	}
 
 	private void initComponents() {
@@ -361,6 +416,11 @@ public class AlfrescoSearchHandler extends RequestHandlerBase implements
 		if (!rb.isDistrib) {
 			// a normal non-distributed request
 
+			if (segmentSearchExecutor != null
+					&& req.getParams().getBool(CONCURRENT_SEGMENT_SEARCH, true)) {
+				req.getContext().put(ConcurrentSegmentSearch.EXECUTOR, segmentSearchExecutor);
+			}
+
 			long timeAllowed = req.getParams().getLong(
 					CommonParams.TIME_ALLOWED, -1L);
 			if (timeAllowed > 0L) {
@@ -162,6 +162,33 @@ public class PathTokenFilterTest extends TestCase
         assertEquals(path.length(), offsetAtt.endOffset());
     }
     
+    public void testPathLengthsAndSeparators() throws IOException
+    {
+        PathTokenFilter ts = new PathTokenFilter(PathTokenFilter.PATH_SEPARATOR,
+                PathTokenFilter.SEPARATOR_TOKEN_TEXT, PathTokenFilter.NO_NS_TOKEN_TEXT,
+                PathTokenFilter.NAMESPACE_START_DELIMITER, PathTokenFilter.NAMESPACE_END_DELIMITER, true);
+        ts.setReader(new StringReader("/uri1:one/{uri2}two;/three"));
+
+        CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+        StringBuilder terms = new StringBuilder();
+        try
+        {
+            ts.reset();
+            while (ts.incrementToken())
+            {
+                terms.append(termAtt.toString()).append(' ');
+            }
+            ts.end();
+        }
+        finally
+        {
+            ts.close();
+        }
+
+        // Each path starts with the number of its elements and ends with a separator
+        assertEquals("0000000002 uri1 one uri2 two ; 0000000001 <No Namespace> three ; ", terms.toString());
+    }
+
     private void tokenise(String path, String[] tokens) throws IOException
     {
         StringReader reader = new StringReader(path);
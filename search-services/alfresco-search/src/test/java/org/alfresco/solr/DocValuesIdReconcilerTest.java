@@ -0,0 +1,204 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.alfresco.solr.adapters.IOpenBitSet;
+import org.alfresco.solr.adapters.SolrOpenBitSetAdapter;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+public class DocValuesIdReconcilerTest
+{
+    private static final String ID = "id";
+    private static final String TXID = "TXID";
+    private static final String DBID = "DBID";
+    private static final String DOC_TYPE = "DOC_TYPE";
+
+    private final List<Long> inIndexButNotInDb = new ArrayList<>();
+    private final List<Long> inDbButNotInIndex = new ArrayList<>();
+    private final List<Long> duplicated = new ArrayList<>();
+    private long uniqueIdsInIndex = -1;
+
+    private final SolrInformationServer.TransactionInfoReporter reporter = new SolrInformationServer.TransactionInfoReporter(null)
+    {
+        @Override
+        void reportIdInIndexButNotInDb(long id)
+        {
+            inIndexButNotInDb.add(id);
+        }
+
+        @Override
+        void reportIdInDbButNotInIndex(long id)
+        {
+            inDbButNotInIndex.add(id);
+        }
+
+        @Override
+        void reportDuplicatedIdInIndex(long id)
+        {
+            duplicated.add(id);
+        }
+
+        @Override
+        void reportUniqueIdsInIndex(long count)
+        {
+            uniqueIdsInIndex = count;
+        }
+    };
+
+    @Test
+    public void reconcile_mergesTheLiveIdsOfAllSegmentsWithTheRepositoryIds() throws Exception
+    {
+        try (Directory directory = new RAMDirectory())
+        {
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig()))
+            {
+                writer.addDocument(transaction("a", 5));
+                writer.addDocument(transaction("b", 6));
+                writer.commit();
+
+                writer.addDocument(transaction("c", 6));
+                writer.addDocument(transaction("d", 7));
+                writer.addDocument(transaction("e", 9));
+                writer.addDocument(transaction("f", 20));
+                writer.addDocument(new Document());
+                writer.deleteDocuments(new Term(ID, "d"));
+            }
+
+            try (DirectoryReader reader = DirectoryReader.open(directory))
+            {
+                IOpenBitSet idsInDb = new SolrOpenBitSetAdapter();
+                idsInDb.set(5);
+                idsInDb.set(7);
+                idsInDb.set(8);
+                idsInDb.set(9);
+
+                DocValuesIdReconciler.IndexedIds idsInIndex = DocValuesIdReconciler.collect(reader, TXID, null, 5, 9);
+                DocValuesIdReconciler.reconcile(idsInIndex, idsInDb, 5, 9, reporter);
+
+                assertEquals(List.of(6L), inIndexButNotInDb);
+                assertEquals(List.of(7L, 8L), inDbButNotInIndex);
+                assertEquals(List.of(6L), duplicated);
+                assertEquals(3, uniqueIdsInIndex);
+            }
+        }
+    }
+
+    @Test
+    public void collect_onlyConsidersTheDocumentsOfTheFilter() throws Exception
+    {
+        try (Directory directory = new RAMDirectory())
+        {
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig()))
+            {
+                writer.addDocument(node("Node", 1));
+                writer.addDocument(node("Node", 2));
+                writer.commit();
+
+                writer.addDocument(node("Node", 1));
+                writer.addDocument(node("ErrorNode", 2));
+            }
+
+            try (DirectoryReader reader = DirectoryReader.open(directory))
+            {
+                DocValuesIdReconciler.IndexedIds nodes =
+                        DocValuesIdReconciler.collect(reader, DBID, new Term(DOC_TYPE, "Node"), 0, Long.MAX_VALUE);
+                DocValuesIdReconciler.IndexedIds unindexed =
+                        DocValuesIdReconciler.collect(reader, DBID, new Term(DOC_TYPE, "UnindexedNode"), 0, Long.MAX_VALUE);
+
+                assertEquals(1, nodes.duplicates().length);
+                assertEquals(1, nodes.duplicates()[0]);
+                assertEquals(2, nodes.cardinality());
+                assertEquals(0, unindexed.cardinality());
+            }
+        }
+    }
+
+    @Test
+    public void reconcile_sparseIds() throws Exception
+    {
+        try (Directory directory = new RAMDirectory())
+        {
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig()))
+            {
+                writer.addDocument(transaction("a", 1));
+                writer.addDocument(transaction("b", 1_000_000));
+                writer.commit();
+
+                writer.addDocument(transaction("c", 1_000_000));
+                writer.addDocument(transaction("d", 5_000_000));
+            }
+
+            try (DirectoryReader reader = DirectoryReader.open(directory))
+            {
+                IOpenBitSet idsInDb = new SolrOpenBitSetAdapter();
+                idsInDb.set(1);
+                idsInDb.set(2);
+                idsInDb.set(5_000_000);
+
+                DocValuesIdReconciler.IndexedIds idsInIndex =
+                        DocValuesIdReconciler.collect(reader, TXID, null, 0, Long.MAX_VALUE);
+                DocValuesIdReconciler.reconcile(idsInIndex, idsInDb, 1, 5_000_000, reporter);
+
+                assertEquals(List.of(1_000_000L), inIndexButNotInDb);
+                assertEquals(List.of(2L), inDbButNotInIndex);
+                assertEquals(List.of(1_000_000L), duplicated);
+                assertEquals(3, uniqueIdsInIndex);
+            }
+        }
+    }
+
+    private static Document transaction(String id, long txId)
+    {
+        Document document = new Document();
+        document.add(new StringField(ID, id, Field.Store.NO));
+        document.add(new NumericDocValuesField(TXID, txId));
+        return document;
+    }
+
+    private static Document node(String docType, long dbId)
+    {
+        Document document = new Document();
+        document.add(new StringField(DOC_TYPE, docType, Field.Store.NO));
+        document.add(new NumericDocValuesField(DBID, dbId));
+        return document;
+    }
+}
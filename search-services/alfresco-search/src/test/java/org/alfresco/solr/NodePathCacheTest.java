@@ -0,0 +1,212 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.solr.client.NodeMetaData;
+import org.alfresco.solr.client.PropertyValue;
+import org.alfresco.solr.client.StringPropertyValue;
+import org.alfresco.util.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NodePathCacheTest
+{
+    private static final String CM = "http://www.alfresco.org/model/content/1.0";
+    private static final QName CONTAINS = QName.createQName(CM, "contains");
+    private static final QName CATEGORIES = QName.createQName(CM, "categories");
+
+    private static final NodeRef COMPANY_HOME = nodeRef("companyhome");
+    private static final NodeRef FOLDER = nodeRef("folder");
+
+    private NodePathCache cache;
+
+    @Before
+    public void setUp()
+    {
+        cache = new NodePathCache(10, CATEGORIES::equals);
+    }
+
+    @Test
+    public void siblingOfAFetchedNode_pathsAreDerivedFromTheParent()
+    {
+        cache.learn(fetched("first", "first"), false);
+
+        NodeMetaData sibling = batched("second", "second");
+        assertTrue(cache.derivePaths(sibling, false));
+
+        assertEquals(List.of("/{" + CM + "}company_home/{" + CM + "}folder/{" + CM + "}second"),
+                sibling.getPaths().stream().map(Pair::getFirst).collect(Collectors.toList()));
+        assertNull(sibling.getPaths().get(0).getSecond());
+        assertEquals(List.of("/companyhome/folder/second"), sibling.getAncestorPaths());
+        assertEquals(List.of(List.of("Company Home", "Folder", "second")), sibling.getNamePaths());
+        assertEquals(Set.of(COMPANY_HOME, FOLDER), sibling.getAncestors());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void parentNotCached_pathsAreNotDerived()
+    {
+        NodeMetaData node = batched("second", "second");
+
+        assertFalse(cache.derivePaths(node, false));
+        assertNull(node.getPaths());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void nodeWithCategories_pathsAreNotDerived()
+    {
+        cache.learn(fetched("first", "first"), false);
+
+        NodeMetaData categorised = batched("second", "second");
+        categorised.getProperties().put(CATEGORIES, new StringPropertyValue("workspace://SpacesStore/category"));
+
+        assertFalse(cache.derivePaths(categorised, false));
+    }
+
+    @Test
+    public void unexpectedPathFormat_nothingIsCached()
+    {
+        NodeMetaData fetched = fetched("first", "first");
+        fetched.setAncestorPaths(singletonList("/1/2/3"));
+
+        cache.learn(fetched, true);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void ancestorInvalidated_descendantsAreEvicted()
+    {
+        NodeMetaData subFolder = fetched("sub", "sub");
+        cache.learn(subFolder, true);
+        assertEquals(2, cache.size());
+
+        cache.invalidate(COMPANY_HOME);
+
+        assertEquals(0, cache.size());
+        assertFalse(cache.derivePaths(batched("second", "second"), false));
+    }
+
+    @Test
+    public void derivedContainer_isCachedForItsChildren()
+    {
+        cache.learn(fetched("first", "first"), false);
+        assertTrue(cache.derivePaths(batched("sub", "sub"), true));
+
+        NodeMetaData child = batched("child", "child");
+        ChildAssociationRef assoc = new ChildAssociationRef(CONTAINS, nodeRef("sub"), QName.createQName(CM, "child"), child.getNodeRef(), true, 0);
+        child.setParentAssocs(singletonList(assoc));
+
+        assertTrue(cache.derivePaths(child, false));
+        assertEquals(List.of("/companyhome/folder/sub/child"), child.getAncestorPaths());
+        assertEquals(Set.of(COMPANY_HOME, FOLDER, nodeRef("sub")), child.getAncestors());
+    }
+
+    @Test
+    public void folderRenamed_descendantsAreResolvedWithTheNewName()
+    {
+        cache.learn(fetched("sub", "sub"), true);
+        NodeMetaData child = child("child", nodeRef("sub"));
+        assertTrue(cache.derivePaths(child, true));
+        assertEquals(List.of(List.of("Company Home", "Folder", "sub", "child")), child.getNamePaths());
+
+        // cm:name only rename: the QName paths are the same, the name paths are not
+        NodeMetaData renamed = fetched("sub", "sub");
+        renamed.getProperties().put(ContentModel.PROP_NAME, new StringPropertyValue("renamed"));
+        renamed.setNamePaths(singletonList(List.of("Company Home", "Folder", "renamed")));
+        cache.learn(renamed, true);
+
+        assertFalse(cache.derivePaths(child("grandchild", nodeRef("child")), false));
+
+        NodeMetaData resolved = child("child", nodeRef("sub"));
+        assertTrue(cache.derivePaths(resolved, true));
+        assertEquals(List.of(List.of("Company Home", "Folder", "renamed", "child")), resolved.getNamePaths());
+
+        NodeMetaData grandchild = child("grandchild", nodeRef("child"));
+        assertTrue(cache.derivePaths(grandchild, false));
+        assertEquals(List.of(List.of("Company Home", "Folder", "renamed", "child", "grandchild")), grandchild.getNamePaths());
+    }
+
+    /**
+     * A node fetched without paths, contained in the given parent.
+     */
+    private NodeMetaData child(String id, NodeRef parent)
+    {
+        NodeMetaData node = batched(id, id);
+        node.setParentAssocs(singletonList(new ChildAssociationRef(CONTAINS, parent, QName.createQName(CM, id), node.getNodeRef(), true, 0)));
+        return node;
+    }
+
+    /**
+     * A node of the folder fetched with its paths.
+     */
+    private NodeMetaData fetched(String id, String name)
+    {
+        NodeMetaData node = batched(id, name);
+        node.setPaths(singletonList(new Pair<>("/{" + CM + "}company_home/{" + CM + "}folder/{" + CM + "}" + name, null)));
+        node.setAncestorPaths(singletonList("/companyhome/folder/" + id));
+        node.setNamePaths(singletonList(List.of("Company Home", "Folder", name)));
+        node.setAncestors(Set.of(COMPANY_HOME, FOLDER));
+        return node;
+    }
+
+    /**
+     * A node of the folder fetched without paths.
+     */
+    private NodeMetaData batched(String id, String name)
+    {
+        NodeMetaData node = new NodeMetaData();
+        node.setNodeRef(nodeRef(id));
+        Map<QName, PropertyValue> properties = new HashMap<>();
+        properties.put(ContentModel.PROP_NAME, new StringPropertyValue(name));
+        node.setProperties(properties);
+        node.setParentAssocs(singletonList(new ChildAssociationRef(CONTAINS, FOLDER, QName.createQName(CM, name), node.getNodeRef(), true, 0)));
+        return node;
+    }
+
+    private static NodeRef nodeRef(String id)
+    {
+        return new NodeRef("workspace://SpacesStore/" + id);
+    }
+}
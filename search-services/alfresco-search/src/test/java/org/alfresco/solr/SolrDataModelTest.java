@@ -28,8 +28,13 @@ package org.alfresco.solr;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
 
 import org.alfresco.service.namespace.QName;
+import org.alfresco.solr.AlfrescoSolrDataModel.FieldInstance;
+import org.alfresco.solr.AlfrescoSolrDataModel.IndexedField;
 import org.junit.Test;
 
 /**
@@ -53,4 +58,22 @@ public class SolrDataModelTest
         Long actualId = AlfrescoSolrDataModel.parseTransactionId(id);
         assertEquals(expectedId, actualId);
     }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void indexedFieldImmutableCopy_keepsFieldsAndRejectsNewOnes()
+    {
+        IndexedField indexedField = new IndexedField();
+        indexedField.addField("text@s____@" + NAME, false, false);
+        indexedField.addField("mltext@m___t@" + NAME, true, true);
+
+        IndexedField copy = indexedField.immutableCopy();
+        List<FieldInstance> fields = copy.getFields();
+        assertEquals(2, fields.size());
+        assertEquals("text@s____@" + NAME, fields.get(0).getField());
+        assertEquals("mltext@m___t@" + NAME, fields.get(1).getField());
+        assertTrue(fields.get(1).isLocalised());
+        assertTrue(fields.get(1).isSort());
+
+        copy.addField("suggest_@" + NAME, false, false);
+    }
 }
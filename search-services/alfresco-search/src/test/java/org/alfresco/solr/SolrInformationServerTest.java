@@ -52,36 +52,80 @@ import static org.alfresco.solr.SolrInformationServer.UNIT_OF_TIME_MONTH_FIELD_S
 import static org.alfresco.solr.SolrInformationServer.UNIT_OF_TIME_QUARTER_FIELD_SUFFIX;
 import static org.alfresco.solr.SolrInformationServer.UNIT_OF_TIME_SECOND_FIELD_SUFFIX;
 import static org.alfresco.solr.SolrInformationServer.UNIT_OF_TIME_YEAR_FIELD_SUFFIX;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import com.carrotsearch.hppc.LongHashSet;
 import org.alfresco.repo.search.adaptor.QueryConstants;
+import org.alfresco.repo.tenant.TenantService;
 import org.alfresco.service.cmr.dictionary.DataTypeDefinition;
 import org.alfresco.service.cmr.dictionary.PropertyDefinition;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.solr.client.Node;
 import org.alfresco.solr.client.NodeMetaData;
+import org.alfresco.solr.client.NodeMetaDataParameters;
 import org.alfresco.solr.client.SOLRAPIClient;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrResourceLoader;
+import org.apache.solr.request.LocalSolrQueryRequest;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.request.SolrRequestHandler;
 import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.apache.solr.update.processor.UpdateRequestProcessorChain;
+import org.apache.solr.util.RefCounted;
+import org.json.JSONException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -118,6 +162,9 @@ public class SolrInformationServerTest
     @Mock
     private SolrQueryResponse response;
 
+    @Mock
+    private UpdateRequestProcessorChain updateProcessorChain;
+
     private SolrQueryRequest request;
 
     @Before
@@ -418,4 +465,373 @@ public class SolrInformationServerTest
 
     }
     
-}
\ No newline at end of file
+    /**
+     * The documents with outdated content are collected only if their transaction hasn't been processed yet, and
+     * it is within the window which starts from the lowest transaction found.
+     */
+    @Test
+    public void outdatedContentCollector_keepsOnlyTheNextTransactions() throws Exception
+    {
+        long[] txnIds = { 1000, 10, 600, 11, 12 };
+        Map<Long, Long> cleanContentCache = new HashMap<>();
+        cleanContentCache.put(12L, System.currentTimeMillis());
+
+        try (Directory directory = new RAMDirectory())
+        {
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig()))
+            {
+                for (long txnId : txnIds)
+                {
+                    Document document = new Document();
+                    document.add(new NumericDocValuesField(QueryConstants.FIELD_INTXID, txnId));
+                    writer.addDocument(document);
+                }
+            }
+
+            try (DirectoryReader reader = DirectoryReader.open(directory))
+            {
+                SolrInformationServer.OutdatedContentCollector collector = new SolrInformationServer.OutdatedContentCollector(cleanContentCache);
+                new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+
+                List<Long> collected = new ArrayList<>();
+                collector.forEachDocument((doc, txnId) -> collected.add(txnId));
+
+                assertEquals(List.of(10L, 11L), collected);
+            }
+        }
+    }
+
+    /**
+     * Without content to add, the content document only marks the content of the node as in synch.
+     */
+    @Test
+    public void contentDocumentWithoutContent_onlyMarksTheContentAsInSynch() throws Exception
+    {
+        AlfrescoSolrDataModel.TenantDbId docRef = new AlfrescoSolrDataModel.TenantDbId();
+        docRef.tenant = "";
+        docRef.dbId = 123L;
+        docRef.setProperty("LATEST_APPLIED_CONTENT_VERSION_ID", "456");
+
+        SolrInputDocument document = infoServer.getContentDocument(docRef).get();
+
+        assertEquals(4, document.size());
+        assertEquals(AlfrescoSolrDataModel.getNodeDocumentId("", 123L), document.getFieldValue(QueryConstants.FIELD_SOLR4_ID));
+        assertEquals(Map.of("set", List.of(123L)), document.getFieldValue(QueryConstants.FIELD_DBID));
+        assertEquals(456L, document.getFieldValue("LATEST_APPLIED_CONTENT_VERSION_ID"));
+        assertEquals(456L, document.getFieldValue("LAST_INCOMING_CONTENT_VERSION_ID"));
+    }
+
+    /**
+     * Only the wanted ids found in the doc values are added to the target set.
+     */
+    @Test
+    public void idsInIndexCollector_collectsOnlyTheWantedIds() throws Exception
+    {
+        try (Directory directory = new RAMDirectory())
+        {
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig()))
+            {
+                for (long txnId : new long[] { 5, 6, 7, 9 })
+                {
+                    Document document = new Document();
+                    document.add(new NumericDocValuesField(QueryConstants.FIELD_TXID, txnId));
+                    writer.addDocument(document);
+                }
+                // A document without the field
+                writer.addDocument(new Document());
+            }
+
+            try (DirectoryReader reader = DirectoryReader.open(directory))
+            {
+                LongHashSet wanted = LongHashSet.from(6, 8, 9);
+                LongHashSet found = LongHashSet.from(1);
+                new IndexSearcher(reader).search(new MatchAllDocsQuery(),
+                        new SolrInformationServer.IdsInIndexCollector(QueryConstants.FIELD_TXID, wanted, found));
+
+                assertEquals(LongHashSet.from(1, 6, 9), found);
+            }
+        }
+    }
+
+    /**
+     * The DBIDs collected from the doc values are the ones decoded from the stored ids of the matching documents,
+     * including in the segments written without DBID doc values.
+     */
+    @Test
+    public void dbidCollector_collectsTheDbidsOfTheStoredIds() throws Exception
+    {
+        try (Directory directory = new RAMDirectory())
+        {
+            writeDescendants(directory);
+
+            try (DirectoryReader reader = DirectoryReader.open(directory))
+            {
+                assertEquals(3, reader.leaves().size());
+
+                IndexSearcher searcher = new IndexSearcher(reader);
+                SolrInformationServer.DbidCollector collector = new SolrInformationServer.DbidCollector();
+                searcher.search(descendantsOf(PARENT_NODE_REF), collector);
+
+                assertArrayEquals(new long[] { 1, 2, 4, 5, 6 }, collector.getDbids());
+                assertArrayEquals(dbidsOfTheStoredIds(searcher, descendantsOf(PARENT_NODE_REF)), collector.getDbids());
+            }
+        }
+    }
+
+    /**
+     * The cascade updates the descendants not changed after the parent, as the previous one request per child did,
+     * with the metadata requested in batches.
+     */
+    @Test
+    public void cascadeUpdate_updatesTheDescendantsNotChangedAfterTheParent() throws Exception
+    {
+        Properties coreProperties = new Properties();
+        coreProperties.setProperty("alfresco.cascade.tracker.metadataBatchSize", "2");
+        when(resourceLoader.getCoreProperties()).thenReturn(coreProperties);
+        SolrInformationServer server = new SolrInformationServer(adminHandler, core, client);
+
+        try (Directory directory = new RAMDirectory())
+        {
+            writeDescendants(directory);
+
+            try (DirectoryReader reader = DirectoryReader.open(directory))
+            {
+                IndexSearcher indexSearcher = new IndexSearcher(reader);
+                SolrIndexSearcher solrIndexSearcher = mock(SolrIndexSearcher.class);
+                doAnswer(invocation -> {
+                    indexSearcher.search(invocation.<Query>getArgument(0), invocation.<Collector>getArgument(1));
+                    return null;
+                }).when(solrIndexSearcher).search(any(Query.class), any(Collector.class));
+                when(core.getSearcher()).thenReturn(new RefCounted<>(solrIndexSearcher)
+                {
+                    @Override
+                    protected void close()
+                    {
+                        // Nothing to be done here
+                    }
+                });
+
+                // The node 5 has changed after its parent
+                ConcurrentLinkedQueue<Integer> batchSizes = new ConcurrentLinkedQueue<>();
+                when(client.getNodesMetaData(any(NodeMetaDataParameters.class))).thenAnswer(invocation -> {
+                    List<Long> nodeIds = invocation.<NodeMetaDataParameters>getArgument(0).getNodeIds();
+                    batchSizes.add(nodeIds.size());
+                    return nodeIds.stream()
+                            .map(id -> childMetadata(id, id == 5L ? 200L : 50L))
+                            .collect(Collectors.toList());
+                });
+
+                List<SolrInputDocument> cascaded = new ArrayList<>();
+                UpdateRequestProcessor processor = mock(UpdateRequestProcessor.class);
+                doAnswer(invocation -> cascaded.add(invocation.<AddUpdateCommand>getArgument(0).solrDoc))
+                        .when(processor).processAdd(any(AddUpdateCommand.class));
+
+                NodeMetaData parent = childMetadata(100L, 100L);
+                parent.setNodeRef(new NodeRef(PARENT_NODE_REF));
+                server.cascadeUpdateV2(parent, true, request, processor);
+
+                // Same documents as the previous path: the stored ids of the descendants, without the node changed later
+                Set<Object> expectedIds = new TreeSet<>();
+                for (long dbid : dbidsOfTheStoredIds(indexSearcher, descendantsOf(PARENT_NODE_REF)))
+                {
+                    if (dbid != 5L)
+                    {
+                        expectedIds.add(AlfrescoSolrDataModel.getNodeDocumentId(AlfrescoSolrDataModel.DEFAULT_TENANT, dbid));
+                    }
+                }
+                Set<Object> cascadedIds = new TreeSet<>();
+                cascaded.forEach(document -> cascadedIds.add(document.getFieldValue(QueryConstants.FIELD_SOLR4_ID)));
+
+                assertEquals(expectedIds, cascadedIds);
+                assertEquals(List.of(1, 2, 2), batchSizes.stream().sorted().collect(Collectors.toList()));
+            }
+        }
+    }
+
+    private static final String PARENT_NODE_REF = "workspace://SpacesStore/parent";
+
+    /**
+     * Writes three segments: one with the DBID doc values, one without (as written by older versions), and one with a
+     * deleted document. Each segment also has a document which doesn't descend from the parent.
+     */
+    private void writeDescendants(Directory directory) throws IOException
+    {
+        IndexWriterConfig config = new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        try (IndexWriter writer = new IndexWriter(directory, config))
+        {
+            writer.addDocument(nodeDocument(1, PARENT_NODE_REF, true));
+            writer.addDocument(nodeDocument(2, PARENT_NODE_REF, true));
+            writer.addDocument(nodeDocument(3, "workspace://SpacesStore/other", true));
+            writer.commit();
+
+            writer.addDocument(nodeDocument(4, PARENT_NODE_REF, false));
+            writer.addDocument(nodeDocument(5, PARENT_NODE_REF, false));
+            writer.addDocument(nodeDocument(8, "workspace://SpacesStore/other", false));
+            writer.commit();
+
+            writer.addDocument(nodeDocument(6, PARENT_NODE_REF, true));
+            writer.addDocument(nodeDocument(7, PARENT_NODE_REF, true));
+            writer.addDocument(nodeDocument(9, "workspace://SpacesStore/other", true));
+            writer.commit();
+
+            writer.deleteDocuments(new Term(QueryConstants.FIELD_SOLR4_ID,
+                    AlfrescoSolrDataModel.getNodeDocumentId(AlfrescoSolrDataModel.DEFAULT_TENANT, 7L)));
+        }
+    }
+
+    private Document nodeDocument(long dbid, String ancestor, boolean withDbidDocValues)
+    {
+        Document document = new Document();
+        document.add(new StringField(QueryConstants.FIELD_SOLR4_ID,
+                AlfrescoSolrDataModel.getNodeDocumentId(AlfrescoSolrDataModel.DEFAULT_TENANT, dbid), Field.Store.YES));
+        document.add(new StringField(QueryConstants.FIELD_ANCESTOR, ancestor, Field.Store.NO));
+        if (withDbidDocValues)
+        {
+            document.add(new NumericDocValuesField(QueryConstants.FIELD_DBID, dbid));
+        }
+        return document;
+    }
+
+    private Query descendantsOf(String nodeRef)
+    {
+        return new TermQuery(new Term(QueryConstants.FIELD_ANCESTOR, nodeRef));
+    }
+
+    /**
+     * The previous path: the DBIDs decoded from the stored ids of the matching documents, in ascending order.
+     */
+    private long[] dbidsOfTheStoredIds(IndexSearcher searcher, Query query) throws IOException
+    {
+        Set<Long> dbids = new TreeSet<>();
+        for (ScoreDoc scoreDoc : searcher.search(query, Integer.MAX_VALUE).scoreDocs)
+        {
+            Document document = searcher.doc(scoreDoc.doc, Collections.singleton(QueryConstants.FIELD_SOLR4_ID));
+            dbids.add(AlfrescoSolrDataModel.decodeNodeDocumentId(document.get(QueryConstants.FIELD_SOLR4_ID)).dbId);
+        }
+        return dbids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private NodeMetaData childMetadata(long id, long txnId)
+    {
+        NodeMetaData metadata = new NodeMetaData();
+        metadata.setId(id);
+        metadata.setTxnId(txnId);
+        metadata.setAclId(1L);
+        metadata.setTenantDomain(TenantService.DEFAULT_DOMAIN);
+        metadata.setNodeRef(new NodeRef("workspace://SpacesStore/node-" + id));
+        metadata.setPaths(Collections.emptyList());
+        metadata.setAncestorPaths(Collections.emptyList());
+        metadata.setNamePaths(Collections.emptyList());
+        metadata.setAncestors(Collections.emptySet());
+        return metadata;
+    }
+
+    /**
+     * All the updates of a session go through the same processor, which is finished once when the session is closed.
+     */
+    @Test
+    public void indexingSession_finishesTheProcessorOnceWhenClosed() throws Exception
+    {
+        LocalSolrQueryRequest sessionRequest = mock(LocalSolrQueryRequest.class);
+        UpdateRequestProcessor processor = mock(UpdateRequestProcessor.class);
+        when(core.getUpdateProcessingChain(null)).thenReturn(updateProcessorChain);
+        when(updateProcessorChain.createProcessor(sessionRequest, response)).thenReturn(processor);
+
+        try (IndexingSession session = infoServerWithRequests(sessionRequest).openIndexingSession())
+        {
+            session.indexContent(List.of(new SolrInputDocument()));
+            session.indexContent(List.of(new SolrInputDocument(), new SolrInputDocument()));
+        }
+
+        verify(processor, times(3)).processAdd(any(AddUpdateCommand.class));
+        verify(processor).finish();
+        verify(sessionRequest).close();
+    }
+
+    /**
+     * The request of a session is closed even if its processor fails to finish.
+     */
+    @Test
+    public void indexingSessionWhoseProcessorFailsToFinish_closesTheRequest() throws Exception
+    {
+        LocalSolrQueryRequest sessionRequest = mock(LocalSolrQueryRequest.class);
+        UpdateRequestProcessor processor = mock(UpdateRequestProcessor.class);
+        when(core.getUpdateProcessingChain(null)).thenReturn(updateProcessorChain);
+        when(updateProcessorChain.createProcessor(sessionRequest, response)).thenReturn(processor);
+        doThrow(new IOException("Unable to finish")).when(processor).finish();
+
+        IndexingSession session = infoServerWithRequests(sessionRequest).openIndexingSession();
+
+        assertThrows(IOException.class, session::close);
+        verify(processor).finish();
+        verify(sessionRequest).close();
+    }
+
+    /**
+     * The request of a session is closed if the processor cannot be created.
+     */
+    @Test
+    public void indexingSessionWithoutProcessor_closesTheRequest()
+    {
+        LocalSolrQueryRequest sessionRequest = mock(LocalSolrQueryRequest.class);
+        when(core.getUpdateProcessingChain(null)).thenReturn(updateProcessorChain);
+        when(updateProcessorChain.createProcessor(sessionRequest, response)).thenThrow(new IllegalStateException("No chain"));
+
+        SolrInformationServer server = infoServerWithRequests(sessionRequest);
+
+        assertThrows(IllegalStateException.class, server::openIndexingSession);
+        verify(sessionRequest).close();
+    }
+
+    /**
+     * When the bulk indexing fails, the nodes are indexed one at a time through a new request and processor,
+     * not through the processor which failed.
+     */
+    @Test
+    public void bulkIndexingFailure_nodesIndexedThroughAnotherProcessor() throws Exception
+    {
+        LocalSolrQueryRequest bulkRequest = mock(LocalSolrQueryRequest.class);
+        LocalSolrQueryRequest singleNodeRequest = mock(LocalSolrQueryRequest.class);
+        UpdateRequestProcessor bulkProcessor = mock(UpdateRequestProcessor.class);
+        UpdateRequestProcessor singleNodeProcessor = mock(UpdateRequestProcessor.class);
+        when(core.getUpdateProcessingChain(null)).thenReturn(updateProcessorChain);
+        when(updateProcessorChain.createProcessor(bulkRequest, response)).thenReturn(bulkProcessor);
+        when(updateProcessorChain.createProcessor(singleNodeRequest, response)).thenReturn(singleNodeProcessor);
+        when(client.getNodesMetaData(any(NodeMetaDataParameters.class))).thenThrow(new JSONException("Malformed response"));
+
+        Node node = new Node();
+        node.setId(123L);
+        node.setTxnId(456L);
+        node.setStatus(Node.SolrApiNodeStatus.UPDATED);
+
+        infoServerWithRequests(bulkRequest, singleNodeRequest).indexNodes(List.of(node), true);
+
+        verify(bulkProcessor).finish();
+        verifyNoMoreInteractions(bulkProcessor);
+        verify(singleNodeProcessor).finish();
+        verify(bulkRequest).close();
+        verify(singleNodeRequest).close();
+    }
+
+    /**
+     * An information server whose update requests are the given ones, in order.
+     */
+    private SolrInformationServer infoServerWithRequests(LocalSolrQueryRequest... requests)
+    {
+        Iterator<LocalSolrQueryRequest> nextRequest = List.of(requests).iterator();
+        return new SolrInformationServer(adminHandler, core, client)
+        {
+            @Override
+            LocalSolrQueryRequest newSolrQueryRequest()
+            {
+                return nextRequest.next();
+            }
+
+            @Override
+            SolrQueryResponse newSolrQueryResponse()
+            {
+                return response;
+            }
+        };
+    }
+}
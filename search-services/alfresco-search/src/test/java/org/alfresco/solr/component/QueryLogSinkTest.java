@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.component;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.apache.solr.update.processor.UpdateRequestProcessorChain;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class QueryLogSinkTest
+{
+    private static final String LOG_CORE_NAME = "alfresco_qlog";
+
+    @Mock
+    private CoreContainer container;
+    @Mock
+    private SolrCore logCore;
+    @Mock
+    private UpdateRequestProcessorChain chain;
+    @Mock
+    private UpdateRequestProcessor processor;
+
+    @Before
+    public void setUp()
+    {
+        openMocks(this);
+        when(logCore.getUpdateProcessingChain(isNull())).thenReturn(chain);
+        when(chain.createProcessor(any(), any())).thenReturn(processor);
+    }
+
+    @Test
+    public void pendingEntriesAreWrittenOnClose() throws Exception
+    {
+        when(container.getCore(LOG_CORE_NAME)).thenReturn(logCore);
+
+        QueryLogSink sink = new QueryLogSink(container, LOG_CORE_NAME, 100, 10);
+        for (int i = 0; i < 25; i++)
+        {
+            assertTrue(sink.offer(new SolrInputDocument()));
+        }
+        sink.close();
+
+        verify(processor, times(25)).processAdd(any(AddUpdateCommand.class));
+        assertEquals(25L, sink.getStatistics().get("logged"));
+        assertEquals(0L, sink.getStatistics().get("dropped"));
+        assertFalse(sink.offer(new SolrInputDocument()));
+    }
+
+    @Test
+    public void entriesAreDroppedWhenTheBufferIsFull() throws Exception
+    {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(container.getCore(LOG_CORE_NAME)).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return logCore;
+        });
+
+        QueryLogSink sink = new QueryLogSink(container, LOG_CORE_NAME, 2, 10);
+        assertTrue(sink.offer(new SolrInputDocument()));
+        writing.await();
+
+        assertTrue(sink.offer(new SolrInputDocument()));
+        assertTrue(sink.offer(new SolrInputDocument()));
+        assertFalse(sink.offer(new SolrInputDocument()));
+
+        release.countDown();
+        sink.close();
+
+        assertEquals(3L, sink.getStatistics().get("logged"));
+        assertEquals(1L, sink.getStatistics().get("dropped"));
+    }
+}
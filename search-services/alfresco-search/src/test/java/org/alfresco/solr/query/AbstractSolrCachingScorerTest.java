@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.search.BitDocSet;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SortedIntDocSet;
+import org.junit.Test;
+
+public class AbstractSolrCachingScorerTest
+{
+    private static final int[] DOCS = {0, 3, 9, 10, 11, 19, 20, 29};
+
+    @Test
+    public void bitDocSet_onlySegmentDocsAreIterated() throws IOException
+    {
+        assertSegments(new BitDocSet(bitsOf(DOCS, 30)));
+    }
+
+    @Test
+    public void sortedIntDocSet_onlySegmentDocsAreIterated() throws IOException
+    {
+        assertSegments(new SortedIntDocSet(DOCS));
+    }
+
+    @Test
+    public void emptyBitDocSet_noDocsInAnySegment() throws IOException
+    {
+        DocSet empty = new BitDocSet(new FixedBitSet(0));
+
+        assertEquals(NO_MORE_DOCS, AbstractSolrCachingScorer.segmentIterator(empty, 0, 10).nextDoc());
+        assertEquals(NO_MORE_DOCS, AbstractSolrCachingScorer.segmentIterator(empty, 10, 10).nextDoc());
+    }
+
+    @Test
+    public void advance_returnsTheFirstDocNotBeforeTarget() throws IOException
+    {
+        DocIdSetIterator bits = AbstractSolrCachingScorer.segmentIterator(new BitDocSet(bitsOf(DOCS, 30)), 10, 10);
+        DocIdSetIterator sorted = AbstractSolrCachingScorer.segmentIterator(new SortedIntDocSet(DOCS), 10, 10);
+
+        for (DocIdSetIterator iterator : List.of(bits, sorted))
+        {
+            assertEquals(1, iterator.advance(1));
+            assertEquals(9, iterator.advance(2));
+            assertEquals(NO_MORE_DOCS, iterator.advance(10));
+        }
+    }
+
+    @Test
+    public void advanceToNoMoreDocs_exhaustsTheIterator() throws IOException
+    {
+        DocIdSetIterator bits = AbstractSolrCachingScorer.segmentIterator(new BitDocSet(bitsOf(DOCS, 30)), 10, 10);
+        DocIdSetIterator sorted = AbstractSolrCachingScorer.segmentIterator(new SortedIntDocSet(DOCS), 10, 10);
+
+        for (DocIdSetIterator iterator : List.of(bits, sorted))
+        {
+            assertEquals(0, iterator.nextDoc());
+            assertEquals(NO_MORE_DOCS, iterator.advance(NO_MORE_DOCS));
+            assertEquals(NO_MORE_DOCS, iterator.docID());
+            assertEquals(NO_MORE_DOCS, iterator.nextDoc());
+        }
+    }
+
+    @Test
+    public void nextDocAfterTheLastDoc_staysExhausted() throws IOException
+    {
+        DocIdSetIterator bits = AbstractSolrCachingScorer.segmentIterator(new BitDocSet(bitsOf(DOCS, 30)), 20, 10);
+        DocIdSetIterator sorted = AbstractSolrCachingScorer.segmentIterator(new SortedIntDocSet(DOCS), 20, 10);
+
+        for (DocIdSetIterator iterator : List.of(bits, sorted))
+        {
+            assertEquals(9, iterator.advance(1));
+            assertEquals(NO_MORE_DOCS, iterator.nextDoc());
+            assertEquals(NO_MORE_DOCS, iterator.nextDoc());
+            assertEquals(NO_MORE_DOCS, iterator.advance(NO_MORE_DOCS));
+        }
+    }
+
+    /**
+     * Three segments of 10 documents each.
+     */
+    private void assertSegments(DocSet docSet) throws IOException
+    {
+        assertEquals(List.of(0, 3, 9), segmentDocs(docSet, 0));
+        assertEquals(List.of(0, 1, 9), segmentDocs(docSet, 10));
+        assertEquals(List.of(0, 9), segmentDocs(docSet, 20));
+    }
+
+    private List<Integer> segmentDocs(DocSet docSet, int base) throws IOException
+    {
+        List<Integer> docs = new ArrayList<>();
+        DocIdSetIterator iterator = AbstractSolrCachingScorer.segmentIterator(docSet, base, 10);
+        for (int doc = iterator.nextDoc(); doc != NO_MORE_DOCS; doc = iterator.nextDoc())
+        {
+            docs.add(doc);
+        }
+        return docs;
+    }
+
+    private FixedBitSet bitsOf(int[] docs, int maxDoc)
+    {
+        FixedBitSet bits = new FixedBitSet(maxDoc);
+        for (int doc : docs)
+        {
+            bits.set(doc);
+        }
+        return bits;
+    }
+}
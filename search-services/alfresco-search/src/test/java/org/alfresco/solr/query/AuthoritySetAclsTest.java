@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.alfresco.repo.search.adaptor.QueryConstants;
+import org.alfresco.solr.cache.CacheConstants;
+import org.alfresco.service.cmr.security.PermissionService;
+import org.apache.lucene.search.Query;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.junit.Test;
+
+public class AuthoritySetAclsTest
+{
+    @Test
+    public void normalize_sortsAndRemovesDuplicates()
+    {
+        String[] normalized = AuthoritySetAcls.normalize(new String[] {"GROUP_B", "user1", "GROUP_A", "GROUP_B", "user1"});
+
+        assertArrayEquals(new String[] {"GROUP_A", "GROUP_B", "user1"}, normalized);
+    }
+
+    @Test
+    public void sameAuthoritiesInDifferentOrder_sameKey()
+    {
+        AuthoritySetAcls.Key key = new AuthoritySetAcls.Key(QueryConstants.FIELD_READER,
+                AuthoritySetAcls.normalize(new String[] {"user1", "GROUP_EVERYONE"}));
+        AuthoritySetAcls.Key sameAuthorities = new AuthoritySetAcls.Key(QueryConstants.FIELD_READER,
+                AuthoritySetAcls.normalize(new String[] {"GROUP_EVERYONE", "user1", "user1"}));
+        AuthoritySetAcls.Key otherField = new AuthoritySetAcls.Key(QueryConstants.FIELD_DENIED,
+                AuthoritySetAcls.normalize(new String[] {"user1", "GROUP_EVERYONE"}));
+
+        assertEquals(key, sameAuthorities);
+        assertEquals(key.hashCode(), sameAuthorities.hashCode());
+        assertNotEquals(key, otherField);
+    }
+
+    @Test
+    public void cachedAcls_areReturnedWithoutSearching() throws Exception
+    {
+        SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+        AuthoritySetAcls cached = mock(AuthoritySetAcls.class);
+        AuthoritySetAcls.Key key = new AuthoritySetAcls.Key(QueryConstants.FIELD_DENIED, new String[] {"GROUP_A", "user1"});
+        when(searcher.cacheLookup(CacheConstants.ALFRESCO_ACL_SET_CACHE, key)).thenReturn(cached);
+
+        AuthoritySetAcls acls = AuthoritySetAcls.lookup(searcher, QueryConstants.FIELD_DENIED, new String[] {"user1", "GROUP_A"});
+
+        assertSame(cached, acls);
+        verify(searcher, never()).getDocSet(any(Query.class));
+        verify(searcher, never()).cacheInsert(eq(CacheConstants.ALFRESCO_ACL_SET_CACHE), any(), any());
+    }
+
+    @Test
+    public void readersWithoutUser_ownedDocsNotSearched() throws Exception
+    {
+        SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+        when(searcher.getDocSet(any(Query.class))).thenReturn(DocSet.EMPTY);
+
+        AuthoritySetAcls acls = AuthoritySetAcls.build(searcher, QueryConstants.FIELD_READER,
+                new String[] {"GROUP_A", PermissionService.OWNER_AUTHORITY});
+
+        // Only the ACL records are searched
+        verify(searcher).getDocSet(any(Query.class));
+        assertEquals(0, acls.getOwnedDocs().size());
+    }
+
+    @Test
+    public void readersWithUser_ownedDocsSearched() throws Exception
+    {
+        SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+        when(searcher.getDocSet(any(Query.class))).thenReturn(DocSet.EMPTY);
+
+        AuthoritySetAcls.build(searcher, QueryConstants.FIELD_READER, new String[] {"GROUP_A", "user1"});
+
+        verify(searcher, times(2)).getDocSet(any(Query.class));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.junit.After;
+import org.junit.Test;
+
+public class ConcurrentSegmentSearchTest
+{
+    private final List<LeafReaderContext> leaves = asList(mock(LeafReaderContext.class), mock(LeafReaderContext.class), mock(LeafReaderContext.class));
+
+    private ExecutorService executor;
+
+    @After
+    public void tearDown()
+    {
+        SolrRequestInfo.clearRequestInfo();
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void withoutRequest_segmentsAreSearchedOnTheCallingThread() throws Exception
+    {
+        Thread caller = Thread.currentThread();
+
+        List<Thread> threads = ConcurrentSegmentSearch.forEachLeaf(leaves, leaf -> Thread.currentThread());
+
+        assertEquals(asList(caller, caller, caller), threads);
+    }
+
+    @Test
+    public void withExecutorInRequestContext_segmentsAreSearchedOnTheExecutor() throws Exception
+    {
+        executor = Executors.newFixedThreadPool(2);
+        Map<Object, Object> context = new HashMap<>();
+        context.put(ConcurrentSegmentSearch.EXECUTOR, executor);
+        SolrQueryRequest request = mock(SolrQueryRequest.class);
+        when(request.getContext()).thenReturn(context);
+        SolrRequestInfo.setRequestInfo(new SolrRequestInfo(request, new SolrQueryResponse()));
+
+        Thread caller = Thread.currentThread();
+        List<Object> results = ConcurrentSegmentSearch.forEachLeaf(leaves, leaf -> {
+            assertNotEquals(caller, Thread.currentThread());
+            return leaf;
+        });
+
+        // The results are in the order of the segments
+        assertEquals(leaves, results);
+    }
+
+    @Test
+    public void or_shiftsTheSegmentDocsByTheSegmentBase()
+    {
+        FixedBitSet segment = new FixedBitSet(10);
+        segment.set(0);
+        segment.set(9);
+        FixedBitSet target = new FixedBitSet(30);
+
+        ConcurrentSegmentSearch.or(target, 10, segment);
+
+        assertEquals(2, target.cardinality());
+        assertEquals(10, target.nextSetBit(0));
+        assertEquals(19, target.nextSetBit(11));
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrInfoMBean;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DocValuesCacheTest
+{
+    private static final String FIELD = "ACLID";
+
+    private Directory directory;
+    private DocValuesCache cache;
+
+    @Before
+    public void setUp()
+    {
+        directory = new RAMDirectory();
+        cache = new DocValuesCache();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        directory.close();
+    }
+
+    @Test
+    public void intValues_decodedOnceAndShared() throws IOException
+    {
+        index(10, 20, 30);
+        try (DirectoryReader reader = DirectoryReader.open(directory))
+        {
+            LeafReader leafReader = reader.leaves().get(0).reader();
+
+            NumericDocValues values = cache.getNumericDocValues(FIELD, leafReader);
+
+            assertEquals(10, values.get(0));
+            assertEquals(20, values.get(1));
+            assertEquals(30, values.get(2));
+            assertSame(values, cache.getNumericDocValues(FIELD, leafReader));
+        }
+    }
+
+    @Test
+    public void valuesOutsideTheIntRange_areNotTruncated() throws IOException
+    {
+        index(1, Integer.MAX_VALUE + 1L, Long.MIN_VALUE);
+        try (DirectoryReader reader = DirectoryReader.open(directory))
+        {
+            NumericDocValues values = cache.getNumericDocValues(FIELD, reader.leaves().get(0).reader());
+
+            assertEquals(1, values.get(0));
+            assertEquals(Integer.MAX_VALUE + 1L, values.get(1));
+            assertEquals(Long.MIN_VALUE, values.get(2));
+        }
+    }
+
+    @Test
+    public void missingField_returnsNull() throws IOException
+    {
+        index(1);
+        try (DirectoryReader reader = DirectoryReader.open(directory))
+        {
+            LeafReader leafReader = reader.leaves().get(0).reader();
+
+            assertNull(cache.getNumericDocValues("NOT_THERE", leafReader));
+            assertNull(cache.getNumericDocValues("NOT_THERE", leafReader));
+        }
+    }
+
+    @Test
+    public void closedSegment_isEvicted() throws IOException
+    {
+        index(1, 2, 3);
+        try (DirectoryReader reader = DirectoryReader.open(directory))
+        {
+            cache.getNumericDocValues(FIELD, reader.leaves().get(0).reader());
+            assertEquals(1, cache.getStatistics().get("size"));
+        }
+
+        assertEquals(0, cache.getStatistics().get("size"));
+    }
+
+    @Test
+    public void closedCore_valuesCleared() throws IOException
+    {
+        index(1, 2, 3);
+        try (DirectoryReader reader = DirectoryReader.open(directory))
+        {
+            LeafReader leafReader = reader.leaves().get(0).reader();
+            NumericDocValues values = cache.getNumericDocValues(FIELD, leafReader);
+
+            cache.clear();
+
+            assertEquals(0, cache.getStatistics().get("size"));
+            NumericDocValues reloaded = cache.getNumericDocValues(FIELD, leafReader);
+            assertEquals(values.get(2), reloaded.get(2));
+            assertEquals(1, cache.getStatistics().get("size"));
+        }
+
+        assertEquals(0, cache.getStatistics().get("size"));
+    }
+
+    @Test
+    public void statistics_areReportedForTheValuesOfTheCacheOnly() throws IOException
+    {
+        index(1, 2, 3);
+        DocValuesCache otherCache = new DocValuesCache();
+        try (DirectoryReader reader = DirectoryReader.open(directory))
+        {
+            LeafReader leafReader = reader.leaves().get(0).reader();
+            cache.getNumericDocValues(FIELD, leafReader);
+            cache.getNumericDocValues(FIELD, leafReader);
+
+            NamedList<Object> statistics = cache.getStatistics();
+            assertEquals(2L, statistics.get("lookups"));
+            assertEquals(1L, statistics.get("hits"));
+            assertEquals(1, statistics.get("size"));
+
+            NamedList<Object> otherStatistics = otherCache.getStatistics();
+            assertEquals(0L, otherStatistics.get("lookups"));
+            assertEquals(0, otherStatistics.get("size"));
+        }
+    }
+
+    @Test
+    public void searcherOfACoreWithACache_usesTheCacheOfTheCore()
+    {
+        SolrCore core = mock(SolrCore.class);
+        when(core.getInfoRegistry()).thenReturn(Collections.<String, SolrInfoMBean>singletonMap(DocValuesCache.MBEAN_KEY, cache));
+        SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+        when(searcher.getCore()).thenReturn(core);
+
+        assertSame(cache, DocValuesCache.of(searcher));
+    }
+
+    @Test
+    public void searcherOfACoreWithoutACache_valuesReadButNotRetained() throws IOException
+    {
+        index(10, 20, 30);
+        SolrCore core = mock(SolrCore.class);
+        when(core.getInfoRegistry()).thenReturn(Collections.emptyMap());
+        SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+        when(searcher.getCore()).thenReturn(core);
+
+        DocValuesCache uncached = DocValuesCache.of(searcher);
+        try (DirectoryReader reader = DirectoryReader.open(directory))
+        {
+            NumericDocValues values = uncached.getNumericDocValues(FIELD, reader.leaves().get(0).reader());
+
+            assertEquals(20, values.get(1));
+            assertEquals(0, uncached.getStatistics().get("size"));
+        }
+    }
+
+    private void index(long... values) throws IOException
+    {
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig()))
+        {
+            for (long value : values)
+            {
+                Document document = new Document();
+                document.add(new NumericDocValuesField(FIELD, value));
+                writer.addDocument(document);
+            }
+        }
+    }
+}
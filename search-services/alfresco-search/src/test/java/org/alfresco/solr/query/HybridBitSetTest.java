@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class HybridBitSetTest
+{
+    @Test
+    public void newSet_isEmpty()
+    {
+        HybridBitSet set = new HybridBitSet();
+
+        assertTrue(set.isEmpty());
+        assertFalse(set.get(0));
+        assertFalse(set.get(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void sparseValues_onlySetValuesAreFound()
+    {
+        HybridBitSet set = new HybridBitSet();
+        set.set(0);
+        set.set(65535);
+        set.set(65536);
+        set.set(60_000_001);
+
+        assertFalse(set.isEmpty());
+        assertTrue(set.get(0));
+        assertTrue(set.get(65535));
+        assertTrue(set.get(65536));
+        assertTrue(set.get(60_000_001));
+        assertFalse(set.get(1));
+        assertFalse(set.get(65537));
+        assertFalse(set.get(60_000_000));
+        assertFalse(set.get(120_000_000));
+    }
+
+    @Test
+    public void denseContainer_isConvertedWithoutLosingValues()
+    {
+        HybridBitSet set = new HybridBitSet();
+        for (long value = 10_000; value > 0; value -= 2)
+        {
+            set.set(value);
+        }
+
+        for (long value = 0; value <= 10_001; value++)
+        {
+            assertTrue("Unexpected result for " + value, set.get(value) == (value > 0 && value % 2 == 0));
+        }
+    }
+
+    @Test
+    public void valuesOutsideTheContainers_areStoredAsWell()
+    {
+        HybridBitSet set = new HybridBitSet();
+        set.set(1L << 40);
+        set.set(-1);
+
+        assertTrue(set.get(1L << 40));
+        assertTrue(set.get(-1));
+        assertFalse(set.get((1L << 40) + 1));
+    }
+
+    @Test
+    public void sameValues_equalRegardlessOfInsertionOrder()
+    {
+        HybridBitSet set = new HybridBitSet();
+        HybridBitSet reversed = new HybridBitSet();
+        for (long value = 0; value < 20_000; value += 3)
+        {
+            set.set(value);
+            reversed.set(19_998 - value);
+        }
+        set.set(1L << 40);
+        reversed.set(1L << 40);
+
+        HybridBitSet other = new HybridBitSet();
+        for (long value = 0; value < 20_000; value += 3)
+        {
+            other.set(19_998 - value);
+        }
+
+        assertEquals(set, reversed);
+        assertEquals(set.hashCode(), reversed.hashCode());
+        assertNotEquals(set, other);
+        assertEquals(new HybridBitSet(), new EmptyHybridBitSet());
+    }
+
+    @Test
+    public void randomValues_sameAsHashSet()
+    {
+        Random random = new Random(42);
+        Set<Long> expected = new HashSet<>();
+        HybridBitSet set = new HybridBitSet();
+        for (int i = 0; i < 50_000; i++)
+        {
+            long value = random.nextInt(1 << 22);
+            expected.add(value);
+            set.set(value);
+        }
+
+        for (long value = 0; value < (1 << 22); value++)
+        {
+            assertTrue("Unexpected result for " + value, set.get(value) == expected.contains(value));
+        }
+    }
+}
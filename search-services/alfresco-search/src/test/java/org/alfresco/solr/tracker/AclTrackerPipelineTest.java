@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.solr.tracker;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+import java.util.Properties;
+
+import org.alfresco.solr.IndexingSession;
+import org.alfresco.solr.InformationServer;
+import org.alfresco.solr.TrackerState;
+import org.alfresco.solr.client.Acl;
+import org.alfresco.solr.client.AclChangeSet;
+import org.alfresco.solr.client.AclChangeSets;
+import org.alfresco.solr.client.AclReaders;
+import org.alfresco.solr.client.AsyncSOLRAPIClient;
+import org.alfresco.solr.client.SOLRAPIClient;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+
+/** Unit tests for the pipelined mode of the {@link AclTracker}. */
+public class AclTrackerPipelineTest
+{
+    private static final long COMMIT_TIME = 1000L;
+
+    /** The class that gets information from the Repository. */
+    @Mock
+    private SOLRAPIClient repositoryClient;
+    /** The class that gets information from Solr. */
+    @Mock
+    private InformationServer solrInformationServer;
+    @Mock
+    private IndexingSession indexingSession;
+    @Mock
+    private TrackerStats trackerStats;
+
+    private TrackerState trackerState;
+    private AclTracker aclTracker;
+
+    @Before
+    public void setUp()
+    {
+        openMocks(this);
+
+        trackerState = new TrackerState();
+        trackerState.setTimeToStopIndexing(2 * COMMIT_TIME);
+        when(solrInformationServer.getTrackerStats()).thenReturn(trackerStats);
+        when(solrInformationServer.getTrackerInitialState()).thenReturn(trackerState);
+        when(solrInformationServer.openIndexingSession()).thenReturn(indexingSession);
+        when(solrInformationServer.getAsyncRepositoryClient()).thenReturn(new AsyncSOLRAPIClient(repositoryClient, Runnable::run, 2));
+
+        Properties properties = new Properties();
+        properties.setProperty("alfresco.acl.tracker.pipeline.enabled", "true");
+        properties.setProperty("alfresco.acl.tracker.pipeline.pageSize", "2");
+        properties.setProperty("alfresco.acl.tracker.pipeline.maxInFlight", "1");
+        properties.setProperty("alfresco.aclBatchSize", "1");
+        aclTracker = new AclTracker(properties, repositoryClient, "theCoreName", solrInformationServer);
+    }
+
+    /** Check that the ACLs are listed by pages and each change set is indexed once all its ACLs have been indexed. */
+    @Test
+    public void testTrackAclChangeSets_pipelined_changeSetIndexedAfterItsAcls() throws Exception
+    {
+        AclChangeSet first = new AclChangeSet(10L, COMMIT_TIME, 2);
+        AclChangeSet second = new AclChangeSet(11L, COMMIT_TIME, 1);
+        when(repositoryClient.getAclChangeSets(eq(0L), isNull(), any(), isNull(), eq(2000)))
+                .thenReturn(new AclChangeSets(asList(first, second)));
+        when(repositoryClient.getAclChangeSets(eq(COMMIT_TIME), isNull(), any(), isNull(), eq(2000)))
+                .thenReturn(new AclChangeSets(emptyList()));
+        when(repositoryClient.getAcls(anyList(), isNull(), eq(2)))
+                .thenReturn(asList(new Acl(10L, 1L), new Acl(10L, 2L)));
+        when(repositoryClient.getAcls(anyList(), eq(3L), eq(2)))
+                .thenReturn(singletonList(new Acl(11L, 3L)));
+        when(repositoryClient.getAclReaders(anyList()))
+                .thenReturn(singletonList(new AclReaders(1L, emptyList(), emptyList(), 10L, "")));
+
+        // Call the method under test.
+        aclTracker.trackAclChangeSets();
+
+        verify(repositoryClient, never()).getAcls(anyList(), isNull(), eq(Integer.MAX_VALUE));
+        InOrder inOrder = inOrder(solrInformationServer, indexingSession);
+        inOrder.verify(solrInformationServer, times(2)).indexAcl(anyList(), eq(true));
+        inOrder.verify(indexingSession).indexAclTransaction(first, true);
+        inOrder.verify(solrInformationServer).indexAcl(anyList(), eq(true));
+        inOrder.verify(indexingSession).indexAclTransaction(second, true);
+        assertEquals("Expected state to point to the last indexed change set.", 11L, trackerState.getLastIndexedChangeSetId());
+        assertEquals(COMMIT_TIME, trackerState.getLastIndexedChangeSetCommitTime());
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.alfresco.solr.AlfrescoSolrDataModel.TenantDbId;
+import org.alfresco.solr.InformationServer;
+import org.alfresco.solr.client.SOLRAPIClient;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+/** Unit tests for the {@link ContentTracker}. */
+public class ContentTrackerTest
+{
+    @Mock
+    private SOLRAPIClient repositoryClient;
+    @Mock
+    private InformationServer informationServer;
+    @Mock
+    private TrackerStats trackerStats;
+
+    private ContentTracker contentTracker;
+    private final List<List<SolrInputDocument>> indexedBatches = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        openMocks(this);
+
+        when(informationServer.getTrackerStats()).thenReturn(trackerStats);
+        doAnswer(invocation -> indexedBatches.add(new ArrayList<>(invocation.getArgument(0))))
+                .when(informationServer).indexContent(anyList());
+
+        Properties properties = new Properties();
+        properties.setProperty("alfresco.content.tracker.maxInFlight", "2");
+        properties.setProperty("alfresco.content.tracker.indexBatchSize", "2");
+        contentTracker = new ContentTracker(properties, repositoryClient, "theCoreName", informationServer);
+    }
+
+    /** Check that the fetched documents are written in batches, and that a failed fetch doesn't stop the others. */
+    @Test
+    public void doTrack_fetchedDocumentsIndexedInBatches() throws Exception
+    {
+        List<TenantDbId> docs = asList(doc(1L), doc(2L), doc(3L), doc(4L));
+        when(informationServer.getDocsWithUncleanContent()).thenReturn(docs).thenReturn(emptyList());
+        for (TenantDbId doc : docs)
+        {
+            if (doc.dbId == 2L)
+            {
+                when(informationServer.getContentDocument(doc)).thenReturn(failedFuture(new RuntimeException("Transformation failed")));
+            }
+            else
+            {
+                when(informationServer.getContentDocument(doc)).thenReturn(completedFuture(solrDocument(doc.dbId)));
+            }
+        }
+
+        // Call the method under test.
+        contentTracker.doTrack("anIterationId");
+
+        verify(informationServer, times(2)).indexContent(anyList());
+        assertEquals(2, indexedBatches.get(0).size());
+        assertEquals(1, indexedBatches.get(1).size());
+
+        Set<Object> indexedIds = new HashSet<>();
+        indexedBatches.forEach(batch -> batch.forEach(doc -> indexedIds.add(doc.getFieldValue("DBID"))));
+        assertEquals(new HashSet<>(asList(1L, 3L, 4L)), indexedIds);
+        verify(trackerStats).addElapsedContentTime(anyInt(), anyLong());
+    }
+
+    /** Check that the content of the next documents is requested only as the documents requested before come back. */
+    @Test
+    public void doTrack_atMostMaxInFlightDocumentsRequested() throws Exception
+    {
+        List<TenantDbId> docs = asList(doc(1L), doc(2L), doc(3L));
+        when(informationServer.getDocsWithUncleanContent()).thenReturn(docs).thenReturn(emptyList());
+
+        CompletableFuture<SolrInputDocument> firstDocument = new CompletableFuture<>();
+        CompletableFuture<SolrInputDocument> secondDocument =
+                new CompletableFuture<SolrInputDocument>().completeOnTimeout(solrDocument(2L), 100, MILLISECONDS);
+        when(informationServer.getContentDocument(docs.get(0))).thenReturn(firstDocument);
+        when(informationServer.getContentDocument(docs.get(1))).thenReturn(secondDocument);
+        when(informationServer.getContentDocument(docs.get(2))).thenAnswer(invocation -> {
+            // The third document is requested only once the second one came back, the first one being still in flight
+            assertTrue(secondDocument.isDone());
+            assertFalse(firstDocument.isDone());
+            firstDocument.complete(solrDocument(1L));
+            return completedFuture(solrDocument(3L));
+        });
+
+        // Call the method under test.
+        contentTracker.doTrack("anIterationId");
+
+        Set<Object> indexedIds = new HashSet<>();
+        indexedBatches.forEach(batch -> batch.forEach(doc -> indexedIds.add(doc.getFieldValue("DBID"))));
+        assertEquals(new HashSet<>(asList(1L, 2L, 3L)), indexedIds);
+    }
+
+    private TenantDbId doc(long dbId)
+    {
+        TenantDbId doc = new TenantDbId();
+        doc.dbId = dbId;
+        doc.tenant = "";
+        return doc;
+    }
+
+    private SolrInputDocument solrDocument(long dbId)
+    {
+        SolrInputDocument document = new SolrInputDocument();
+        document.addField("DBID", dbId);
+        return document;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.alfresco.solr.adapters.IOpenBitSet;
+import org.alfresco.solr.adapters.SolrOpenBitSetAdapter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexHealthCheckpointTest
+{
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp()
+    {
+        file = folder.getRoot().toPath().resolve("checkpoints").resolve("index-check.checkpoint");
+    }
+
+    @Test
+    public void interruptedCheck_isResumedWithTheSameParameters()
+    {
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(file, new SolrOpenBitSetAdapter(), 10L, null, null, 0, DAY))
+        {
+            assertFalse(checkpoint.isResumed());
+            checkpoint.add(3, 100);
+            checkpoint.add(10, 200);
+            checkpoint.save();
+            checkpoint.add(7, 200);
+        }
+
+        IOpenBitSet ids = new SolrOpenBitSetAdapter();
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(file, ids, 10L, null, null, 0, DAY))
+        {
+            assertTrue(checkpoint.isResumed());
+            assertEquals(200, checkpoint.getLastCommitTime());
+            assertEquals(Long.valueOf(3), checkpoint.getMinId());
+            assertEquals(10, checkpoint.getMaxId());
+            assertEquals(3, ids.cardinality());
+            assertTrue(ids.get(3) && ids.get(7) && ids.get(10));
+        }
+    }
+
+    @Test
+    public void checkWithOtherParameters_startsAgain()
+    {
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(file, new SolrOpenBitSetAdapter(), null, 1000L, null, 0, DAY))
+        {
+            checkpoint.add(3, 1000);
+        }
+
+        IOpenBitSet ids = new SolrOpenBitSetAdapter();
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(file, ids, null, 2000L, null, 0, DAY))
+        {
+            assertFalse(checkpoint.isResumed());
+            assertNull(checkpoint.getMinId());
+            assertEquals(0, ids.cardinality());
+        }
+    }
+
+    @Test
+    public void truncatedSave_isDiscarded() throws Exception
+    {
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(file, new SolrOpenBitSetAdapter(), null, null, null, 0, DAY))
+        {
+            checkpoint.add(3, 100);
+        }
+        Files.write(file, new byte[] { 0, 0, 0, 0, 0, 0, 1 }, StandardOpenOption.APPEND);
+
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(file, new SolrOpenBitSetAdapter(), null, null, null, 0, DAY))
+        {
+            assertTrue(checkpoint.isResumed());
+            checkpoint.add(5, 200);
+        }
+
+        IOpenBitSet ids = new SolrOpenBitSetAdapter();
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(file, ids, null, null, null, 0, DAY))
+        {
+            assertEquals(200, checkpoint.getLastCommitTime());
+            assertEquals(2, ids.cardinality());
+        }
+    }
+
+    @Test
+    public void expiredCheckpoint_isDiscarded() throws Exception
+    {
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(file, new SolrOpenBitSetAdapter(), null, null, null, 0, DAY))
+        {
+            checkpoint.add(3, 100);
+        }
+        Thread.sleep(10);
+
+        IOpenBitSet ids = new SolrOpenBitSetAdapter();
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(file, ids, null, null, null, 0, 1))
+        {
+            assertFalse(checkpoint.isResumed());
+            assertEquals(0, ids.cardinality());
+        }
+    }
+
+    @Test
+    public void concurrentChecks_onlyOneUsesTheCheckpointFile()
+    {
+        try (IndexHealthCheckpoint first = IndexHealthCheckpoint.open(file, new SolrOpenBitSetAdapter(), null, null, null, 0, DAY))
+        {
+            try (IndexHealthCheckpoint second = IndexHealthCheckpoint.open(file, new SolrOpenBitSetAdapter(), null, null, null, 0, DAY))
+            {
+                second.add(5, 200);
+                second.delete();
+            }
+            assertTrue(Files.exists(file));
+            first.add(3, 100);
+        }
+
+        IOpenBitSet ids = new SolrOpenBitSetAdapter();
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(file, ids, null, null, null, 0, DAY))
+        {
+            assertTrue(checkpoint.isResumed());
+            assertEquals(1, ids.cardinality());
+            assertTrue(ids.get(3));
+        }
+    }
+
+    @Test
+    public void completedCheck_deletesTheCheckpoint()
+    {
+        try (IndexHealthCheckpoint checkpoint = IndexHealthCheckpoint.open(file, new SolrOpenBitSetAdapter(), null, null, null, 0, DAY))
+        {
+            checkpoint.add(3, 100);
+            checkpoint.save();
+            checkpoint.delete();
+        }
+
+        assertFalse(Files.exists(file));
+    }
+}
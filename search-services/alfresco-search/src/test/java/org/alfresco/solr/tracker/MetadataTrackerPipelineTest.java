@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.tracker;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+import java.util.List;
+import java.util.Properties;
+
+import org.alfresco.solr.IndexingSession;
+import org.alfresco.solr.InformationServer;
+import org.alfresco.solr.TrackerState;
+import org.alfresco.solr.client.AsyncSOLRAPIClient;
+import org.alfresco.solr.client.GetNodesParameters;
+import org.alfresco.solr.client.Node;
+import org.alfresco.solr.client.SOLRAPIClient;
+import org.alfresco.solr.client.Transaction;
+import org.alfresco.solr.client.Transactions;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+
+/** Unit tests for the pipelined mode of the {@link MetadataTracker}. */
+public class MetadataTrackerPipelineTest
+{
+    private static final long TX_ID = 10L;
+    private static final long TX_COMMIT_TIME = 1000L;
+
+    /** The class that gets information from the Repository. */
+    @Mock
+    private SOLRAPIClient repositoryClient;
+    /** The class that gets information from Solr. */
+    @Mock
+    private InformationServer solrInformationServer;
+    @Mock
+    private IndexingSession indexingSession;
+    @Mock
+    private TrackerStats trackerStats;
+
+    private TrackerState trackerState;
+    private MetadataTracker metadataTracker;
+
+    @Before
+    public void setUp()
+    {
+        openMocks(this);
+
+        trackerState = new TrackerState();
+        trackerState.setTimeToStopIndexing(2 * TX_COMMIT_TIME);
+        when(solrInformationServer.getTrackerStats()).thenReturn(trackerStats);
+        when(solrInformationServer.getTrackerInitialState()).thenReturn(trackerState);
+        when(solrInformationServer.openIndexingSession()).thenReturn(indexingSession);
+        when(solrInformationServer.getAsyncRepositoryClient()).thenReturn(new AsyncSOLRAPIClient(repositoryClient, Runnable::run, 2));
+
+        Properties properties = new Properties();
+        properties.setProperty("alfresco.metadata.tracker.pipeline.enabled", "true");
+        properties.setProperty("alfresco.metadata.tracker.pipeline.queueSize", "1");
+        properties.setProperty("alfresco.metadata.tracker.maxParallelism", "2");
+        properties.setProperty("alfresco.nodeBatchSize", "2");
+        metadataTracker = new MetadataTracker(properties, repositoryClient, "theCoreName", solrInformationServer);
+    }
+
+    /** Check that the transaction is indexed (and the state advanced) only after all its nodes have been indexed. */
+    @Test
+    public void testTrackTransactions_pipelined_transactionIndexedAfterItsNodes() throws Exception
+    {
+        Transaction transaction = new Transaction();
+        transaction.setId(TX_ID);
+        transaction.setCommitTimeMs(TX_COMMIT_TIME);
+        transaction.setUpdates(3);
+        when(repositoryClient.getTransactions(eq(0L), isNull(), any(), isNull(), eq(2000)))
+                .thenReturn(new Transactions(singletonList(transaction)));
+        when(repositoryClient.getTransactions(eq(TX_COMMIT_TIME), isNull(), any(), isNull(), eq(2000)))
+                .thenReturn(new Transactions(emptyList()));
+        when(repositoryClient.getNodes(any(GetNodesParameters.class), eq(Integer.MAX_VALUE)))
+                .thenReturn(asList(node(1L), node(2L), node(3L)));
+
+        // Call the method under test.
+        metadataTracker.trackTransactions();
+
+        InOrder inOrder = inOrder(solrInformationServer, indexingSession);
+        inOrder.verify(solrInformationServer, times(2)).indexNodes(anyList(), eq(true));
+        inOrder.verify(indexingSession).indexTransaction(transaction, true);
+        inOrder.verify(indexingSession).close();
+        assertEquals("Expected state to point to the indexed transaction.", TX_ID, trackerState.getLastIndexedTxId());
+        assertEquals(TX_COMMIT_TIME, trackerState.getLastIndexedTxCommitTime());
+    }
+
+    /** Check that the page of transactions prefetched while indexing is reused by the next iteration. */
+    @Test
+    public void testTrackTransactions_pipelined_nextPageFetchedOnce() throws Exception
+    {
+        Transaction transaction = new Transaction();
+        transaction.setId(TX_ID);
+        transaction.setCommitTimeMs(TX_COMMIT_TIME);
+        transaction.setUpdates(1);
+        when(repositoryClient.getTransactions(eq(0L), isNull(), any(), isNull(), eq(2000)))
+                .thenReturn(new Transactions(singletonList(transaction)));
+        when(repositoryClient.getTransactions(eq(TX_COMMIT_TIME), isNull(), any(), isNull(), eq(2000)))
+                .thenReturn(new Transactions(emptyList()));
+        List<Node> nodes = singletonList(node(1L));
+        when(repositoryClient.getNodes(any(GetNodesParameters.class), eq(Integer.MAX_VALUE))).thenReturn(nodes);
+
+        // Call the method under test.
+        metadataTracker.trackTransactions();
+
+        verify(repositoryClient).getTransactions(eq(TX_COMMIT_TIME), isNull(), any(), isNull(), eq(2000));
+        verify(solrInformationServer).indexNodes(nodes, true);
+    }
+
+    private Node node(long id)
+    {
+        Node node = new Node();
+        node.setId(id);
+        node.setTxnId(TX_ID);
+        node.setStatus(Node.SolrApiNodeStatus.UPDATED);
+        return node;
+    }
+}
@@ -37,6 +37,7 @@ import java.util.Properties;
 import org.alfresco.httpclient.AuthenticationException;
 import org.alfresco.repo.index.shard.ShardState;
 import org.alfresco.solr.AlfrescoCoreAdminHandler;
+import org.alfresco.solr.IndexingSession;
 import org.alfresco.solr.InformationServer;
 import org.alfresco.solr.NodeReport;
 import org.alfresco.solr.TrackerState;
@@ -69,6 +70,9 @@ public class MetadataTrackerTest
     @Mock
     private InformationServer srv;
 
+    @Mock
+    private IndexingSession indexingSession;
+
     @Spy
     private Properties props;
 
@@ -123,12 +127,13 @@ public class MetadataTrackerTest
         Node node = new Node();
         nodes.add(node );
         when(repositoryClient.getNodes(any(GetNodesParameters.class), anyInt())).thenReturn(nodes);
+        when(srv.openIndexingSession()).thenReturn(indexingSession);
         
         this.metadataTracker.doTrack("AnIterationId");
 
-        InOrder inOrder = inOrder(srv);
+        InOrder inOrder = inOrder(srv, indexingSession);
         inOrder.verify(srv).indexNodes(nodes, true);
-        inOrder.verify(srv).indexTransaction(tx, true);
+        inOrder.verify(indexingSession).indexTransaction(tx, true);
         inOrder.verify(srv).commit();
     }
 
@@ -0,0 +1,235 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.transformer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType.LegacyNumericType;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.SlowCompositeReaderWrapper;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.response.ResultContext;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.DocSlice;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link DocValueDocTransformer}, over a multi-segment index with deleted documents.
+ */
+public class DocValueDocTransformerTest
+{
+    private static final String SORTED = "sorted";
+    private static final String SORTED_SET = "sortedSet";
+    private static final String NUMERIC = "numeric";
+    private static final String STORED_VALUE = "stored value";
+
+    // The docids of the live documents, in the order of a result page sorted by something else than the docid
+    private static final int[] PAGE = { 5, 0, 4, 2, 1 };
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private ResultContext context;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        try (IndexWriter writer = new IndexWriter(directory, config))
+        {
+            // docids 0 and 1
+            writer.addDocument(document("0", "a", Arrays.asList("x", "y"), 10L));
+            writer.addDocument(document("1", null, Arrays.asList(), 11L));
+            writer.commit();
+
+            // docids 2, 3 (deleted) and 4
+            writer.addDocument(document("2", "c", Arrays.asList("z"), -12L));
+            writer.addDocument(document("3", "d", Arrays.asList("w"), 13L));
+            writer.addDocument(document("4", "e", Arrays.asList("y", "x", "z"), null));
+            writer.commit();
+
+            // docid 5, in a segment without sorted and sorted set doc values
+            writer.addDocument(document("5", null, Arrays.asList(), 15L));
+            writer.commit();
+
+            writer.deleteDocuments(new Term("id", "3"));
+        }
+        reader = DirectoryReader.open(directory);
+
+        SchemaField sortedField = schemaField(stringType());
+        SchemaField sortedSetField = schemaField(stringType());
+        SchemaField numericField = schemaField(longType());
+        IndexSchema schema = mock(IndexSchema.class);
+        when(schema.getFieldOrNull(SORTED)).thenReturn(sortedField);
+        when(schema.getFieldOrNull(SORTED_SET)).thenReturn(sortedSetField);
+        when(schema.getFieldOrNull(NUMERIC)).thenReturn(numericField);
+
+        SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+        when(searcher.getSchema()).thenReturn(schema);
+        when(searcher.getSlowAtomicReader()).thenReturn(SlowCompositeReaderWrapper.wrap(reader));
+        when(searcher.getTopReaderContext()).thenReturn(reader.getContext());
+        when(searcher.getFieldNames()).thenReturn(Arrays.asList("id", SORTED, SORTED_SET, NUMERIC));
+
+        context = mock(ResultContext.class);
+        when(context.getSearcher()).thenReturn(searcher);
+        when(context.getDocList()).thenReturn(new DocSlice(0, PAGE.length, PAGE, null, PAGE.length, 0));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        reader.close();
+        directory.close();
+    }
+
+    @Test
+    public void transform_readsTheDocValuesOfTheSegmentOfEachDocument() throws IOException
+    {
+        assertEquals(3, reader.leaves().size());
+        assertEquals(1, reader.numDeletedDocs());
+
+        List<SolrDocument> documents = transform(new DocValueDocTransformer(false));
+
+        // Documents 5, 0, 4, 2 and 1
+        assertDocument(documents.get(0), STORED_VALUE, Arrays.asList(), 15L);
+        assertDocument(documents.get(1), "a", Arrays.asList("x", "y"), 10L);
+        assertDocument(documents.get(2), "e", Arrays.asList("x", "y", "z"), 0L);
+        assertDocument(documents.get(3), "c", Arrays.asList("z"), -12L);
+        assertDocument(documents.get(4), STORED_VALUE, Arrays.asList(), 11L);
+    }
+
+    @Test
+    public void transformInDocIdOrder_sameDocumentsAsPerDocument() throws IOException
+    {
+        List<SolrDocument> perDocument = transform(new DocValueDocTransformer(false));
+        List<SolrDocument> inDocIdOrder = transform(new DocValueDocTransformer(true));
+
+        assertEquals(perDocument.size(), inDocIdOrder.size());
+        for (int i = 0; i < perDocument.size(); i++)
+        {
+            SolrDocument expected = perDocument.get(i);
+            SolrDocument actual = inDocIdOrder.get(i);
+            assertEquals(expected.getFieldNames(), actual.getFieldNames());
+            for (String fieldName : expected.getFieldNames())
+            {
+                assertEquals(expected.getFieldValues(fieldName), actual.getFieldValues(fieldName));
+            }
+        }
+    }
+
+    private List<SolrDocument> transform(DocValueDocTransformer transformer) throws IOException
+    {
+        transformer.setContext(context);
+
+        List<SolrDocument> documents = new ArrayList<>();
+        for (int docid : PAGE)
+        {
+            SolrDocument document = new SolrDocument();
+            document.setField(SORTED, STORED_VALUE);
+            transformer.transform(document, docid, 0);
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    private void assertDocument(SolrDocument document, Object sorted, List<Object> sortedSet, long numeric)
+    {
+        assertEquals(sorted, document.getFieldValue(SORTED));
+        assertEquals(sortedSet, new ArrayList<>(document.getFieldValues(SORTED_SET)));
+        assertEquals(numeric, document.getFieldValue(NUMERIC));
+        assertFalse(document.containsKey("id"));
+    }
+
+    private Document document(String id, String sorted, List<String> sortedSet, Long numeric)
+    {
+        Document document = new Document();
+        document.add(new StringField("id", id, Field.Store.YES));
+        if (sorted != null)
+        {
+            document.add(new SortedDocValuesField(SORTED, new BytesRef(sorted)));
+        }
+        for (String value : sortedSet)
+        {
+            document.add(new SortedSetDocValuesField(SORTED_SET, new BytesRef(value)));
+        }
+        if (numeric != null)
+        {
+            document.add(new NumericDocValuesField(NUMERIC, numeric));
+        }
+        return document;
+    }
+
+    private SchemaField schemaField(FieldType type)
+    {
+        SchemaField schemaField = mock(SchemaField.class);
+        when(schemaField.hasDocValues()).thenReturn(true);
+        when(schemaField.getType()).thenReturn(type);
+        return schemaField;
+    }
+
+    private FieldType stringType()
+    {
+        FieldType type = mock(FieldType.class);
+        when(type.toObject(any(SchemaField.class), any(BytesRef.class)))
+                .thenAnswer(invocation -> invocation.<BytesRef>getArgument(1).utf8ToString());
+        return type;
+    }
+
+    private FieldType longType()
+    {
+        FieldType type = mock(FieldType.class);
+        when(type.getNumericType()).thenReturn(LegacyNumericType.LONG);
+        return type;
+    }
+}
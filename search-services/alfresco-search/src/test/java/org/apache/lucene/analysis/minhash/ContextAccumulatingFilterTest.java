@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.apache.lucene.analysis.minhash;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.minhash.MinHashFilter.LongPair;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.junit.Test;
+
+public class ContextAccumulatingFilterTest
+{
+    @Test
+    public void shingles_sameWordsAndContextsAsStringSplit() throws IOException
+    {
+        assertSameAsStringSplit(
+                "the quick brown fox jumps",
+                "quick brown fox jumps",
+                "one",
+                "two words");
+    }
+
+    @Test
+    public void emptyAndBlankShingles_sameWordsAndContextsAsStringSplit() throws IOException
+    {
+        assertSameAsStringSplit("", " ", "   ");
+    }
+
+    @Test
+    public void leadingTrailingAndRepeatedSpaces_sameWordsAndContextsAsStringSplit() throws IOException
+    {
+        assertSameAsStringSplit(
+                " the quick brown fox",
+                "the quick brown fox ",
+                "the quick brown fox   ",
+                "the  quick   brown fox",
+                "  the quick  brown  fox  ");
+    }
+
+    @Test
+    public void longAndNonAsciiShingles_sameWordsAndContextsAsStringSplit() throws IOException
+    {
+        StringBuilder manyWords = new StringBuilder();
+        for (int i = 0; i < 40; i++)
+        {
+            manyWords.append("word").append(i).append(' ');
+        }
+        String longWord = "x".repeat(200);
+
+        assertSameAsStringSplit(
+                manyWords.toString(),
+                "a " + longWord + " b",
+                "été à la mer 𝄞 clef");
+    }
+
+    private void assertSameAsStringSplit(String... shingles) throws IOException
+    {
+        List<String> expected = new ArrayList<>();
+        for (String shingle : shingles)
+        {
+            expected.add(splitWithString(shingle));
+        }
+
+        List<String> actual = new ArrayList<>();
+        ContextStore store = new ContextStore(1024 * 1024)
+        {
+            @Override
+            public void add(String word, long contextHash)
+            {
+                actual.add(word + "|" + contextHash);
+            }
+        };
+        try (TokenStream filter = new ContextAccumulatingFilter(new ShingleStream(shingles), store))
+        {
+            filter.reset();
+            while (filter.incrementToken())
+            {
+                // Nothing to do: the filter accumulates the contexts in the store
+            }
+            filter.end();
+        }
+
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * The previous implementation of the filter, based on String.split, returning "word|context hash".
+     */
+    private static String splitWithString(String shingle)
+    {
+        String[] parts = shingle.split(" ");
+        StringBuilder contextBuilder = new StringBuilder();
+        StringBuilder wordBuilder = new StringBuilder();
+        for (int i = 0, l = parts.length; i < l; i++)
+        {
+            if ((i == Math.round(Math.floor((l - 1) / 2.0))) || (i == Math.round(Math.ceil((l - 1) / 2.0))))
+            {
+                if (wordBuilder.length() > 0)
+                {
+                    wordBuilder.append(" ");
+                }
+                wordBuilder.append(parts[i]);
+            }
+            else
+            {
+                if (contextBuilder.length() > 0)
+                {
+                    contextBuilder.append(" ");
+                }
+                contextBuilder.append(parts[i]);
+            }
+        }
+
+        byte[] bytes = contextBuilder.toString().getBytes(StandardCharsets.UTF_16LE);
+        LongPair contextHash = new LongPair();
+        MinHashFilter.murmurhash3_x64_128(bytes, 0, bytes.length, 0, contextHash);
+        return wordBuilder + "|" + contextHash.val1;
+    }
+
+    /**
+     * Returns the given shingles, one token each.
+     */
+    private static class ShingleStream extends TokenStream
+    {
+        private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+        private final String[] shingles;
+        private Iterator<String> next;
+
+        ShingleStream(String... shingles)
+        {
+            this.shingles = shingles;
+        }
+
+        @Override
+        public void reset() throws IOException
+        {
+            super.reset();
+            next = List.of(shingles).iterator();
+        }
+
+        @Override
+        public boolean incrementToken()
+        {
+            if (!next.hasNext())
+            {
+                return false;
+            }
+            clearAttributes();
+            termAttribute.setEmpty().append(next.next());
+            return true;
+        }
+    }
+}
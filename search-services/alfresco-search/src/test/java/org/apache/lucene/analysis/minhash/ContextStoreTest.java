@@ -0,0 +1,69 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.apache.lucene.analysis.minhash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ContextStoreTest
+{
+    @Test
+    public void addedContexts_areCountedOncePerWord()
+    {
+        ContextStore store = new ContextStore(1024 * 1024);
+        store.add("quick", 1L);
+        store.add("quick", 1L);
+        store.add("quick", 2L);
+        store.add("brown", 1L);
+
+        assertEquals(2, store.getWords());
+        assertEquals(3, store.getContexts());
+        assertEquals(0, store.getEvictedWords());
+        assertTrue(store.getBytes() > 0);
+    }
+
+    @Test
+    public void overBudget_leastRecentlyUsedWordsAreEvicted()
+    {
+        long maxBytes = 64 * 1024;
+        ContextStore store = new ContextStore(maxBytes);
+        for (int word = 0; word < 10000; word++)
+        {
+            for (long context = 0; context < 10; context++)
+            {
+                store.add("word" + word, context);
+            }
+        }
+
+        assertTrue(store.getBytes() <= maxBytes);
+        assertTrue(store.getEvictedWords() > 0);
+        assertEquals(10000, store.getWords() + store.getEvictedWords());
+        assertEquals(10 * store.getWords(), store.getContexts());
+    }
+}
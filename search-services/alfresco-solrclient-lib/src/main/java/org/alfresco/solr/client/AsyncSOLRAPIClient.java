@@ -0,0 +1,339 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.client;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.repo.index.shard.ShardState;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.solr.client.SOLRAPIClient.GetTextContentResponse;
+import org.alfresco.util.TraceableThreadFactory;
+
+/**
+ * Asynchronous variant of the {@link SOLRAPIClient} calls used by the trackers.
+ *
+ * Each call returns immediately a {@link CompletableFuture}, completed with the result of the underlying
+ * (blocking) request or, exceptionally, with the exception it raised. No more than "maxInFlightRequests" requests
+ * are sent to the Repository at the same time: the exceeding ones are queued and sent as soon as one of the
+ * running requests completes, so the callers are never blocked. A request cancelled (through its future) while it is
+ * queued is never sent, so a caller which gives up (e.g. a failing tracker) doesn't leave work behind it.
+ *
+ * An instance is meant to be used by all the trackers of a core, so the limit applies to the whole core even if the
+ * underlying {@link SOLRAPIClient} is shared with the other cores pointing to the same Repository.
+ *
+ * @see SOLRAPIClient
+ */
+public class AsyncSOLRAPIClient implements Closeable
+{
+    private final SOLRAPIClient client;
+    private final Executor executor;
+    private final int maxInFlightRequests;
+
+    private final Queue<RepositoryRequest<?>> pendingRequests = new ArrayDeque<>();
+    private final Set<RepositoryRequest<?>> sentRequests = new HashSet<>();
+    private int inFlightRequests;
+    private boolean closed;
+
+    /**
+     * Creates a client which sends the requests from a dedicated pool of "maxInFlightRequests" threads.
+     *
+     * @param client the client used for sending the requests.
+     * @param name the name of the owner (e.g. the core), used for naming the threads.
+     * @param maxInFlightRequests the maximum number of requests sent at the same time.
+     */
+    public AsyncSOLRAPIClient(SOLRAPIClient client, String name, int maxInFlightRequests)
+    {
+        this(client, newExecutor(name, maxInFlightRequests), maxInFlightRequests);
+    }
+
+    /**
+     * Creates a client which sends the requests from the given executor.
+     *
+     * @param client the client used for sending the requests.
+     * @param executor the executor which runs the (blocking) requests.
+     * @param maxInFlightRequests the maximum number of requests sent at the same time.
+     */
+    public AsyncSOLRAPIClient(SOLRAPIClient client, Executor executor, int maxInFlightRequests)
+    {
+        if (maxInFlightRequests <= 0)
+        {
+            throw new IllegalArgumentException("The maximum number of in-flight requests must be positive: " + maxInFlightRequests);
+        }
+        this.client = client;
+        this.executor = executor;
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    /**
+     * @see SOLRAPIClient#getTransactions(Long, Long, Long, Long, int)
+     */
+    public CompletableFuture<Transactions> getTransactions(Long fromCommitTime, Long minTxnId, Long toCommitTime, Long maxTxnId, int maxResults)
+    {
+        return submit(() -> client.getTransactions(fromCommitTime, minTxnId, toCommitTime, maxTxnId, maxResults));
+    }
+
+    /**
+     * @see SOLRAPIClient#getTransactions(Long, Long, Long, Long, int, ShardState)
+     */
+    public CompletableFuture<Transactions> getTransactions(Long fromCommitTime, Long minTxnId, Long toCommitTime,
+                Long maxTxnId, int maxResults, ShardState shardState)
+    {
+        return submit(() -> client.getTransactions(fromCommitTime, minTxnId, toCommitTime, maxTxnId, maxResults, shardState));
+    }
+
+    /**
+     * @see SOLRAPIClient#getNodes(GetNodesParameters, int)
+     */
+    public CompletableFuture<List<Node>> getNodes(GetNodesParameters parameters, int maxResults)
+    {
+        return submit(() -> client.getNodes(parameters, maxResults));
+    }
+
+    /**
+     * @see SOLRAPIClient#getNodesMetaData(NodeMetaDataParameters)
+     */
+    public CompletableFuture<List<NodeMetaData>> getNodesMetaData(NodeMetaDataParameters params)
+    {
+        return submit(() -> client.getNodesMetaData(params));
+    }
+
+    /**
+     * @see SOLRAPIClient#getAcls(List, Long, int)
+     */
+    public CompletableFuture<List<Acl>> getAcls(List<AclChangeSet> aclChangeSets, Long minAclId, int maxResults)
+    {
+        return submit(() -> client.getAcls(aclChangeSets, minAclId, maxResults));
+    }
+
+    /**
+     * @see SOLRAPIClient#getAclReaders(List)
+     */
+    public CompletableFuture<List<AclReaders>> getAclReaders(List<Acl> acls)
+    {
+        return submit(() -> client.getAclReaders(acls));
+    }
+
+    /**
+     * The returned response must be closed by the caller, like the one returned by the blocking variant.
+     *
+     * @see SOLRAPIClient#getTextContent(Long, QName, Long)
+     */
+    public CompletableFuture<GetTextContentResponse> getTextContent(Long nodeId, QName propertyQName, Long modifiedSince)
+    {
+        return submit(() -> client.getTextContent(nodeId, propertyQName, modifiedSince));
+    }
+
+    /**
+     * Returns the number of requests currently sent to the Repository.
+     */
+    public int getInFlightRequests()
+    {
+        synchronized (pendingRequests)
+        {
+            return inFlightRequests;
+        }
+    }
+
+    /**
+     * Cancels the requests not completed yet and stops the threads owned by this client, if any. The requests
+     * submitted afterwards are rejected. The underlying {@link SOLRAPIClient} is not closed.
+     */
+    @Override
+    public void close()
+    {
+        List<RepositoryRequest<?>> cancelledRequests;
+        synchronized (pendingRequests)
+        {
+            closed = true;
+            cancelledRequests = new ArrayList<>(pendingRequests);
+            cancelledRequests.addAll(sentRequests);
+            pendingRequests.clear();
+        }
+        cancelledRequests.forEach(request -> request.result.cancel(true));
+
+        if (executor instanceof ExecutorService)
+        {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    <T> CompletableFuture<T> submit(RepositoryCall<T> call)
+    {
+        RepositoryRequest<T> request = new RepositoryRequest<>(call);
+        synchronized (pendingRequests)
+        {
+            if (closed)
+            {
+                request.result.completeExceptionally(new RejectedExecutionException("The Repository client has been closed."));
+                return request.result;
+            }
+            if (inFlightRequests >= maxInFlightRequests)
+            {
+                pendingRequests.add(request);
+                request.result.whenComplete((result, exception) -> dequeue(request));
+                return request.result;
+            }
+            inFlightRequests++;
+        }
+
+        send(request);
+        return request.result;
+    }
+
+    private void send(RepositoryRequest<?> request)
+    {
+        synchronized (pendingRequests)
+        {
+            sentRequests.add(request);
+        }
+
+        try
+        {
+            executor.execute(() -> {
+                try
+                {
+                    request.run();
+                }
+                finally
+                {
+                    sendNext(request);
+                }
+            });
+        }
+        catch (RejectedExecutionException exception)
+        {
+            request.result.completeExceptionally(exception);
+            sendNext(request);
+        }
+    }
+
+    private void sendNext(RepositoryRequest<?> completed)
+    {
+        RepositoryRequest<?> next;
+        synchronized (pendingRequests)
+        {
+            sentRequests.remove(completed);
+            next = pendingRequests.poll();
+            if (next == null)
+            {
+                inFlightRequests--;
+                return;
+            }
+        }
+        send(next);
+    }
+
+    /**
+     * Removes a request completed (i.e. cancelled) while it was still queued.
+     */
+    private void dequeue(RepositoryRequest<?> request)
+    {
+        synchronized (pendingRequests)
+        {
+            pendingRequests.remove(request);
+        }
+    }
+
+    private static ExecutorService newExecutor(String name, int threads)
+    {
+        TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+        threadFactory.setThreadDaemon(true);
+        threadFactory.setNamePrefix("RepositoryClient-" + name + "-");
+
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * A blocking call to the Repository.
+     */
+    @FunctionalInterface
+    interface RepositoryCall<T>
+    {
+        T call() throws Exception;
+    }
+
+    private static class RepositoryRequest<T>
+    {
+        private final RepositoryCall<T> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        RepositoryRequest(RepositoryCall<T> call)
+        {
+            this.call = call;
+        }
+
+        void run()
+        {
+            if (result.isDone())
+            {
+                // Cancelled in the meantime
+                return;
+            }
+
+            T value;
+            try
+            {
+                value = call.call();
+            }
+            catch (Throwable exception)
+            {
+                result.completeExceptionally(exception);
+                return;
+            }
+
+            // Cancelled (or the client closed) while the call was running: nobody is going to release the value,
+            // e.g. the pooled connection of a text content response
+            if (!result.complete(value) && value instanceof AutoCloseable)
+            {
+                try
+                {
+                    ((AutoCloseable) value).close();
+                }
+                catch (Exception exception)
+                {
+                    // Nothing else to do with a value nobody waits for
+                }
+            }
+        }
+    }
+}
@@ -218,6 +218,23 @@ public class LookAheadBufferedReader extends BufferedReader
         return ch;
     }
 
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException
+    {
+        int count = super.read(cbuf, off, len);
+
+        // Bulk reads (e.g. from a streaming JSON parser) must be collected as well
+        if (count > 0 && !isBufferingDisabled())
+        {
+            for (int i = off; i < off + count; i++)
+            {
+                bufferingMode.append(cbuf[i]);
+            }
+        }
+
+        return count;
+    }
+
     public String lookAheadAndGetBufferedContent()
     {
         try
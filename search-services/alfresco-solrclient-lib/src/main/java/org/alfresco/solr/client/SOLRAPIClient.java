@@ -28,6 +28,7 @@ package org.alfresco.solr.client;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonToken;
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.httpclient.AlfrescoHttpClient;
@@ -126,6 +127,12 @@ public class SOLRAPIClient
      */
     private boolean compression;
 
+    /**
+     * When enabled (default) the responses of GET_NODES_URL, GET_METADATA_URL and GET_ACLS_READERS are decoded
+     * with a pull parser straight from the response stream, instead of building an intermediate {@link JSONObject}.
+     */
+    private boolean streamingDecoding;
+
     public SOLRAPIClient(AlfrescoHttpClient repositoryHttpClient,
             DictionaryService dictionaryService,
             NamespaceDAO namespaceDAO)
@@ -137,13 +144,25 @@ public class SOLRAPIClient
             DictionaryService dictionaryService,
             NamespaceDAO namespaceDAO,
             boolean compression)
+    {
+        this(repositoryHttpClient, dictionaryService, namespaceDAO, compression, true);
+    }
+
+    public SOLRAPIClient(AlfrescoHttpClient repositoryHttpClient,
+            DictionaryService dictionaryService,
+            NamespaceDAO namespaceDAO,
+            boolean compression,
+            boolean streamingDecoding)
     {
         this.repositoryHttpClient = repositoryHttpClient;
         this.dictionaryService = dictionaryService;
         this.namespaceDAO = namespaceDAO;
         this.deserializer = new SOLRDeserializer(namespaceDAO);
         this.jsonFactory = new JsonFactory();
+        // The reader is closed by the caller, after the (optional) look ahead on malformed payloads
+        this.jsonFactory.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
         this.compression = compression;
+        this.streamingDecoding = streamingDecoding;
     }
 
     /**
@@ -288,8 +307,18 @@ public class SOLRAPIClient
         jsonReq.put("aclIds", aclIdsJSON);
 
         PostRequest req = new PostRequest(url.toString(), jsonReq.toString(), "application/json");
-        JSONObject json = callRepository(GET_ACLS_READERS, req);
+        if (streamingDecoding)
+        {
+            return callRepository(GET_ACLS_READERS, req, this::readAclReaders);
+        }
+        return aclReadersFromJSON(callRepository(GET_ACLS_READERS, req));
+    }
 
+    /**
+     * Decodes a GET_ACLS_READERS response which has been entirely loaded in a {@link JSONObject}.
+     */
+    List<AclReaders> aclReadersFromJSON(JSONObject json) throws JSONException
+    {
         JSONArray aclsReadersJSON = json.getJSONArray("aclsReaders");
         List<AclReaders> aclsReaders = new ArrayList<AclReaders>(aclsReadersJSON.length());
         for (int i = 0; i < aclsReadersJSON.length(); i++)
@@ -575,8 +604,18 @@ public class SOLRAPIClient
 
         
         PostRequest req = new PostRequest(url.toString(), body.toString(), "application/json");
-        JSONObject json = callRepository(GET_NODES_URL, req);
+        if (streamingDecoding)
+        {
+            return callRepository(GET_NODES_URL, req, this::readNodes);
+        }
+        return nodesFromJSON(callRepository(GET_NODES_URL, req));
+    }
 
+    /**
+     * Decodes a GET_NODES_URL response which has been entirely loaded in a {@link JSONObject}.
+     */
+    List<Node> nodesFromJSON(JSONObject json) throws JSONException
+    {
         JSONArray jsonNodes = json.getJSONArray("nodes");
         List<Node> nodes = new ArrayList<>(jsonNodes.length());
         for(int i = 0; i < jsonNodes.length(); i++)
@@ -809,8 +848,18 @@ public class SOLRAPIClient
         }
 
         PostRequest req = new PostRequest(url.toString(), body.toString(), "application/json");
-        JSONObject json = callRepository(GET_METADATA_URL, req);
+        if (streamingDecoding)
+        {
+            return callRepository(GET_METADATA_URL, req, this::readNodesMetaData);
+        }
+        return nodesMetaDataFromJSON(callRepository(GET_METADATA_URL, req));
+    }
 
+    /**
+     * Decodes a GET_METADATA_URL response which has been entirely loaded in a {@link JSONObject}.
+     */
+    List<NodeMetaData> nodesMetaDataFromJSON(JSONObject json) throws JSONException
+    {
         JSONArray jsonNodes = json.getJSONArray("nodes");
         List<NodeMetaData> nodes = new ArrayList<>(jsonNodes.length());
         for(int i = 0; i < jsonNodes.length(); i++)
@@ -1583,6 +1632,518 @@ public class SOLRAPIClient
        repositoryHttpClient.close();
     }
 
+    /**
+     * Decodes a response straight from the incoming character stream.
+     */
+    @FunctionalInterface
+    interface JsonResponseDecoder<T>
+    {
+        T decode(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * Decodes a GET_NODES_URL response using a pull parser.
+     * The parser is expected to be positioned before the start of the response object.
+     */
+    List<Node> readNodes(JsonParser parser) throws IOException
+    {
+        List<Node> nodes = new ArrayList<>();
+        readArrayField(parser, "nodes", () -> nodes.add(readNode(parser)));
+        return nodes;
+    }
+
+    private Node readNode(JsonParser parser) throws IOException
+    {
+        Node nodeInfo = new Node();
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String fieldName = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.VALUE_NULL)
+            {
+                continue;
+            }
+
+            switch (fieldName)
+            {
+                case "id":
+                    nodeInfo.setId(parser.getValueAsLong());
+                    break;
+                case "nodeRef":
+                    nodeInfo.setNodeRef(parser.getValueAsString());
+                    break;
+                case "txnId":
+                    nodeInfo.setTxnId(parser.getValueAsLong());
+                    break;
+                case "aclId":
+                    nodeInfo.setAclId(parser.getValueAsLong());
+                    break;
+                case "shardPropertyValue":
+                    nodeInfo.setShardPropertyValue(parser.getValueAsString());
+                    break;
+                case "explicitShardId":
+                    nodeInfo.setExplicitShardId(parser.getValueAsInt());
+                    break;
+                case "tenant":
+                    nodeInfo.setTenant(parser.getValueAsString());
+                    break;
+                case "status":
+                    String statusStr = parser.getValueAsString();
+                    if ("u".equals(statusStr))
+                    {
+                        nodeInfo.setStatus(Node.SolrApiNodeStatus.UPDATED);
+                    }
+                    else if ("d".equals(statusStr))
+                    {
+                        nodeInfo.setStatus(Node.SolrApiNodeStatus.DELETED);
+                    }
+                    else
+                    {
+                        nodeInfo.setStatus(Node.SolrApiNodeStatus.UNKNOWN);
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return nodeInfo;
+    }
+
+    /**
+     * Decodes a GET_METADATA_URL response using a pull parser.
+     * The parser is expected to be positioned before the start of the response object.
+     */
+    List<NodeMetaData> readNodesMetaData(JsonParser parser) throws IOException
+    {
+        List<NodeMetaData> nodes = new ArrayList<>();
+        readArrayField(parser, "nodes", () -> nodes.add(readNodeMetaData(parser)));
+        return nodes;
+    }
+
+    private NodeMetaData readNodeMetaData(JsonParser parser) throws IOException
+    {
+        NodeMetaData metaData = new NodeMetaData();
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String fieldName = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.VALUE_NULL)
+            {
+                continue;
+            }
+
+            switch (fieldName)
+            {
+                case "id":
+                    metaData.setId(parser.getValueAsLong());
+                    break;
+                case "tenantDomain":
+                    metaData.setTenantDomain(parser.getValueAsString());
+                    break;
+                case "txnId":
+                    metaData.setTxnId(parser.getValueAsLong());
+                    break;
+                case "aclId":
+                    metaData.setAclId(parser.getValueAsLong());
+                    break;
+                case "nodeRef":
+                    metaData.setNodeRef(new NodeRef(parser.getValueAsString()));
+                    break;
+                case "type":
+                    metaData.setType(deserializer.deserializeValue(QName.class, parser.getValueAsString()));
+                    break;
+                case "aspects":
+                    Set<QName> aspects = new HashSet<>();
+                    readArray(parser, () -> aspects.add(deserializer.deserializeValue(QName.class, parser.getValueAsString())));
+                    metaData.setAspects(aspects);
+                    break;
+                case "paths":
+                    List<Pair<String, QName>> paths = new ArrayList<>();
+                    List<String> ancestorPaths = new ArrayList<>();
+                    readArray(parser, () -> readPath(parser, paths, ancestorPaths));
+                    metaData.setPaths(paths);
+                    metaData.setAncestorPaths(ancestorPaths);
+                    break;
+                case "namePaths":
+                    List<List<String>> namePaths = new ArrayList<>();
+                    readArray(parser, () -> readArrayField(parser, "namePath", () -> namePaths.add(readStrings(parser))));
+                    metaData.setNamePaths(namePaths);
+                    break;
+                case "ancestors":
+                    Set<NodeRef> ancestors = new HashSet<>();
+                    readArray(parser, () -> ancestors.add(new NodeRef(parser.getValueAsString())));
+                    metaData.setAncestors(ancestors);
+                    break;
+                case "properties":
+                    metaData.setProperties(readProperties(parser));
+                    break;
+                case "parentAssocsCrc":
+                    metaData.setParentAssocsCrc(parser.getValueAsLong());
+                    break;
+                case "parentAssocs":
+                    List<ChildAssociationRef> parentAssocs = new ArrayList<>();
+                    readArray(parser, () -> parentAssocs.add(new ChildAssociationRef(parser.getValueAsString())));
+                    metaData.setParentAssocs(parentAssocs);
+                    break;
+                case "childAssocs":
+                    List<ChildAssociationRef> childAssocs = new ArrayList<>();
+                    readArray(parser, () -> childAssocs.add(new ChildAssociationRef(parser.getValueAsString())));
+                    metaData.setChildAssocs(childAssocs);
+                    break;
+                case "childIds":
+                    List<Long> childIds = new ArrayList<>();
+                    readArray(parser, () -> childIds.add(parser.getValueAsLong()));
+                    metaData.setChildIds(childIds);
+                    break;
+                case "owner":
+                    metaData.setOwner(parser.getValueAsString());
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return metaData;
+    }
+
+    private void readPath(JsonParser parser, List<Pair<String, QName>> paths, List<String> ancestorPaths) throws IOException
+    {
+        String pathValue = null;
+        QName qname = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName)
+            {
+                case "path":
+                    pathValue = parser.getValueAsString();
+                    break;
+                case "qname":
+                    qname = deserializer.deserializeValue(QName.class, parser.getValueAsString());
+                    break;
+                case "apath":
+                    ancestorPaths.add(parser.getValueAsString());
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        paths.add(new Pair<>(pathValue, qname));
+    }
+
+    private Map<QName, PropertyValue> readProperties(JsonParser parser) throws IOException
+    {
+        Map<QName, PropertyValue> properties = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            QName propQName = deserializer.deserializeValue(QName.class, parser.getCurrentName());
+            parser.nextToken();
+
+            // check the expected property type to determine how to process the value
+            PropertyDefinition propertyDef = dictionaryService.getProperty(propQName);
+            properties.put(propQName, readPropertyValue(parser, propertyDef));
+        }
+        return properties;
+    }
+
+    /**
+     * Streaming counterpart of {@link #getPropertyValue(PropertyDefinition, Object)}.
+     * The parser is expected to be positioned on the first token of the value.
+     */
+    private PropertyValue readPropertyValue(JsonParser parser, PropertyDefinition propertyDef) throws IOException
+    {
+        if (parser.currentToken() == JsonToken.VALUE_NULL)
+        {
+            return null;
+        }
+        else if (propertyDef == null)
+        {
+            // assume a string
+            return new StringPropertyValue(readScalarAsString(parser));
+        }
+
+        DataTypeDefinition dataType = propertyDef.getDataType();
+        if (propertyDef.isMultiValued())
+        {
+            if (parser.currentToken() != JsonToken.START_ARRAY)
+            {
+                throw new IllegalArgumentException("Expected json array, got " + parser.currentToken());
+            }
+
+            MultiPropertyValue multi = new MultiPropertyValue();
+            while (parser.nextToken() != JsonToken.END_ARRAY)
+            {
+                multi.addValue(readSinglePropertyValue(parser, dataType));
+            }
+            return multi;
+        }
+        return readSinglePropertyValue(parser, dataType);
+    }
+
+    /**
+     * Streaming counterpart of {@link #getSinglePropertyValue(DataTypeDefinition, Object)}.
+     * The parser is expected to be positioned on the first token of the value.
+     */
+    private PropertyValue readSinglePropertyValue(JsonParser parser, DataTypeDefinition dataType) throws IOException
+    {
+        QName dataTypeName = dataType.getName();
+
+        if (parser.currentToken() == JsonToken.VALUE_NULL)
+        {
+            return null;
+        }
+        else if (dataTypeName.equals(DataTypeDefinition.MLTEXT))
+        {
+            if (parser.currentToken() != JsonToken.START_ARRAY)
+            {
+                throw new IllegalArgumentException("Expected json array, got " + parser.currentToken());
+            }
+
+            Map<Locale, String> mlValues = new HashMap<>();
+            while (parser.nextToken() == JsonToken.START_OBJECT)
+            {
+                String localeStr = null;
+                String mlValue = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME)
+                {
+                    String fieldName = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("locale".equals(fieldName))
+                    {
+                        localeStr = parser.getValueAsString();
+                    }
+                    else if ("value".equals(fieldName))
+                    {
+                        mlValue = parser.getValueAsString();
+                    }
+                    else
+                    {
+                        parser.skipChildren();
+                    }
+                }
+                mlValues.put(deserializer.deserializeValue(Locale.class, localeStr), mlValue);
+            }
+            return new MLTextPropertyValue(mlValues);
+        }
+        else if (dataTypeName.equals(DataTypeDefinition.CONTENT))
+        {
+            if (parser.currentToken() != JsonToken.START_OBJECT)
+            {
+                throw new IllegalArgumentException("Expected json object, got " + parser.currentToken());
+            }
+
+            Locale locale = null;
+            long size = 0;
+            String encoding = null;
+            String mimetype = null;
+            Long id = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME)
+            {
+                String fieldName = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.VALUE_NULL)
+                {
+                    continue;
+                }
+
+                switch (fieldName)
+                {
+                    case "locale":
+                        locale = deserializer.deserializeValue(Locale.class, parser.getValueAsString());
+                        break;
+                    case "size":
+                        size = parser.getValueAsLong();
+                        break;
+                    case "encoding":
+                        encoding = parser.getValueAsString();
+                        break;
+                    case "mimetype":
+                        mimetype = parser.getValueAsString();
+                        break;
+                    case "contentId":
+                        id = parser.getValueAsLong();
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new ContentPropertyValue(locale, size, encoding, mimetype, id);
+        }
+        else
+        {
+            return new StringPropertyValue(readScalarAsString(parser));
+        }
+    }
+
+    private String readScalarAsString(JsonParser parser) throws IOException
+    {
+        if (!parser.currentToken().isScalarValue())
+        {
+            throw new IllegalArgumentException("Expected json string, got " + parser.currentToken());
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Decodes a GET_ACLS_READERS response using a pull parser.
+     * The parser is expected to be positioned before the start of the response object.
+     */
+    List<AclReaders> readAclReaders(JsonParser parser) throws IOException
+    {
+        List<AclReaders> aclsReaders = new ArrayList<>();
+        readArrayField(parser, "aclsReaders", () -> {
+            long aclId = 0;
+            long aclChangeSetId = 0;
+            List<String> readers = null;
+            List<String> denied = null;
+            String tenantDomain = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME)
+            {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                switch (fieldName)
+                {
+                    case "aclId":
+                        aclId = parser.getValueAsLong();
+                        break;
+                    case "readers":
+                        readers = readStrings(parser);
+                        break;
+                    case "denied":
+                        denied = readStrings(parser);
+                        break;
+                    case "aclChangeSetId":
+                        aclChangeSetId = parser.getValueAsLong();
+                        break;
+                    case "tenantDomain":
+                        tenantDomain = parser.getValueAsString();
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+
+            if (readers == null || denied == null)
+            {
+                throw new JSONException("Missing readers or denied authorities for ACL " + aclId);
+            }
+            if (tenantDomain == null)
+            {
+                tenantDomain = TenantService.DEFAULT_DOMAIN;
+            }
+            aclsReaders.add(new AclReaders(aclId, readers, denied, aclChangeSetId, tenantDomain));
+        });
+        return aclsReaders;
+    }
+
+    @FunctionalInterface
+    private interface ElementReader
+    {
+        void read() throws IOException;
+    }
+
+    /**
+     * Moves the parser through the response object up to the array with the given name and calls the element reader
+     * once per array element, with the parser positioned on the first token of the element.
+     * Any other field of the response object is skipped.
+     */
+    private void readArrayField(JsonParser parser, String arrayName, ElementReader elementReader) throws IOException
+    {
+        JsonToken token = parser.currentToken() == null ? parser.nextToken() : parser.currentToken();
+        if (token != JsonToken.START_OBJECT)
+        {
+            throw new JSONException("Expected json object, got " + token);
+        }
+
+        boolean found = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String fieldName = parser.getCurrentName();
+            token = parser.nextToken();
+            if (arrayName.equals(fieldName) && token == JsonToken.START_ARRAY)
+            {
+                found = true;
+                readArray(parser, elementReader);
+            }
+            else
+            {
+                parser.skipChildren();
+            }
+        }
+
+        if (!found)
+        {
+            throw new JSONException("JSONObject[\"" + arrayName + "\"] not found.");
+        }
+    }
+
+    /**
+     * Calls the element reader once per element of the array the parser is positioned on.
+     */
+    private void readArray(JsonParser parser, ElementReader elementReader) throws IOException
+    {
+        if (parser.currentToken() != JsonToken.START_ARRAY)
+        {
+            throw new JSONException("Expected json array, got " + parser.currentToken());
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY)
+        {
+            elementReader.read();
+        }
+    }
+
+    private List<String> readStrings(JsonParser parser) throws IOException
+    {
+        List<String> values = new ArrayList<>();
+        readArray(parser, () -> values.add(parser.getValueAsString()));
+        return values;
+    }
+
+    /**
+     * Sends the request and decodes the response while it is being read, without loading the whole payload in memory.
+     * The data collected by the {@link LookAheadBufferedReader} is logged in case of malformed payloads and,
+     * at DEBUG level, after a successful decoding.
+     */
+    private <T> T callRepository(String msgId, Request req, JsonResponseDecoder<T> decoder) throws IOException, AuthenticationException
+    {
+        Response response = null;
+        LookAheadBufferedReader reader = null;
+        try
+        {
+            response = repositoryHttpClient.sendRequest(req);
+            if (response.getStatus() != HttpStatus.SC_OK)
+            {
+                throw new AlfrescoRuntimeException(msgId + " return status:" + response.getStatus());
+            }
+
+            reader = new LookAheadBufferedReader(new InputStreamReader(response.getContentAsStream(), StandardCharsets.UTF_8), LOGGER);
+            T result;
+            try (JsonParser parser = jsonFactory.createParser(reader))
+            {
+                result = decoder.decode(parser);
+            }
+
+            if (LOGGER.isDebugEnabled())
+            {
+                LOGGER.debug(reader.lookAheadAndGetBufferedContent());
+            }
+            return result;
+        }
+        catch (JsonProcessingException | JSONException exception)
+        {
+            String message = "Received a malformed JSON payload. Request was \"" +
+                    req.getFullUri() +
+                    "Data: "
+                    + ofNullable(reader)
+                    .map(LookAheadBufferedReader::lookAheadAndGetBufferedContent)
+                    .orElse("Not available");
+            LOGGER.error(message);
+            throw exception;
+        }
+        finally
+        {
+            ofNullable(response).ifPresent(Response::release);
+            ofNullable(reader).ifPresent(this::silentlyClose);
+        }
+    }
+
     private JSONObject callRepository(String msgId, Request req) throws IOException, AuthenticationException
     {
         Response response = null;
@@ -151,6 +151,7 @@ public class SOLRAPIClientFactory
         alfrescoPort = Integer.parseInt(props.getProperty("alfresco.port", "8080"));
         alfrescoPortSSL = Integer.parseInt(props.getProperty("alfresco.port.ssl", "8443"));
         boolean compression = Boolean.parseBoolean(props.getProperty("solr.request.content.compress", "false"));
+        boolean streamingDecoding = Boolean.parseBoolean(props.getProperty("solr.request.streamingDecoding", "true"));
 
         SOLRAPIClient client = getCachedClient(alfrescoHost, alfrescoPort, alfrescoPortSSL);
         if (client == null)
@@ -182,7 +183,8 @@ public class SOLRAPIClientFactory
             maxHostConnections = Integer.parseInt(props.getProperty("alfresco.maxHostConnections", "40"));
             socketTimeout = Integer.parseInt(props.getProperty("alfresco.socketTimeout", "60000"));
 
-            client = new SOLRAPIClient(getRepoClient(keyResourceLoader), dictionaryService, namespaceDAO, compression);
+            client = new SOLRAPIClient(getRepoClient(keyResourceLoader), dictionaryService, namespaceDAO, compression,
+                        streamingDecoding);
             setCachedClient(alfrescoHost, alfrescoPort, alfrescoPortSSL, client);
         }
 
@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.client;
+
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncSOLRAPIClientTest
+{
+    private SOLRAPIClient client;
+    private List<Runnable> sentRequests;
+
+    @Before
+    public void setUp()
+    {
+        client = mock(SOLRAPIClient.class);
+        sentRequests = new ArrayList<>();
+    }
+
+    @Test
+    public void requestsExceedingTheLimit_areSentWhenARunningOneCompletes() throws Exception
+    {
+        List<Node> nodes = List.of(new Node());
+        GetNodesParameters parameters = new GetNodesParameters();
+        when(client.getNodes(parameters, 10)).thenReturn(nodes);
+        AsyncSOLRAPIClient asyncClient = new AsyncSOLRAPIClient(client, sentRequests::add, 2);
+
+        CompletableFuture<List<Node>> first = asyncClient.getNodes(parameters, 10);
+        CompletableFuture<List<Node>> second = asyncClient.getNodes(parameters, 10);
+        CompletableFuture<List<Node>> third = asyncClient.getNodes(parameters, 10);
+
+        assertEquals(2, sentRequests.size());
+        assertEquals(2, asyncClient.getInFlightRequests());
+        assertFalse(first.isDone());
+
+        sentRequests.get(0).run();
+
+        assertSame(nodes, first.get());
+        assertEquals(3, sentRequests.size());
+        assertEquals(2, asyncClient.getInFlightRequests());
+
+        sentRequests.get(1).run();
+        sentRequests.get(2).run();
+
+        assertTrue(second.isDone() && third.isDone());
+        assertEquals(0, asyncClient.getInFlightRequests());
+    }
+
+    @Test
+    public void requestCancelledWhileQueued_isNeverSent() throws Exception
+    {
+        GetNodesParameters parameters = new GetNodesParameters();
+        AsyncSOLRAPIClient asyncClient = new AsyncSOLRAPIClient(client, sentRequests::add, 1);
+
+        CompletableFuture<List<Node>> first = asyncClient.getNodes(parameters, 10);
+        CompletableFuture<List<Node>> second = asyncClient.getNodes(parameters, 10);
+        CompletableFuture<List<Node>> third = asyncClient.getNodes(parameters, 10);
+        second.cancel(true);
+
+        sentRequests.get(0).run();
+        sentRequests.get(1).run();
+
+        assertTrue(first.isDone() && third.isDone());
+        assertEquals(2, sentRequests.size());
+        assertEquals(0, asyncClient.getInFlightRequests());
+        verify(client, times(2)).getNodes(parameters, 10);
+    }
+
+    @Test
+    public void responseOfARequestCancelledWhileRunning_isReleased() throws Exception
+    {
+        SOLRAPIClient.GetTextContentResponse response = mock(SOLRAPIClient.GetTextContentResponse.class);
+        List<CompletableFuture<?>> contents = new ArrayList<>();
+        when(client.getTextContent(1L, null, null)).thenAnswer(invocation -> {
+            contents.get(0).cancel(true);
+            return response;
+        });
+        AsyncSOLRAPIClient asyncClient = new AsyncSOLRAPIClient(client, sentRequests::add, 1);
+
+        contents.add(asyncClient.getTextContent(1L, null, null));
+        sentRequests.get(0).run();
+
+        assertTrue(contents.get(0).isCancelled());
+        verify(response).close();
+        assertEquals(0, asyncClient.getInFlightRequests());
+    }
+
+    @Test
+    public void close_cancelsTheRequestsNotCompleted() throws Exception
+    {
+        AsyncSOLRAPIClient asyncClient = new AsyncSOLRAPIClient(client, sentRequests::add, 1);
+
+        CompletableFuture<List<Node>> sent = asyncClient.getNodes(new GetNodesParameters(), 10);
+        CompletableFuture<List<Node>> queued = asyncClient.getNodes(new GetNodesParameters(), 10);
+        asyncClient.close();
+        sentRequests.get(0).run();
+
+        assertTrue(sent.isCancelled());
+        assertTrue(queued.isCancelled());
+        assertEquals(1, sentRequests.size());
+        verify(client, times(0)).getNodes(any(), anyInt());
+        assertTrue(asyncClient.getNodes(new GetNodesParameters(), 10).isCompletedExceptionally());
+    }
+
+    @Test
+    public void failingRequest_completesTheFutureExceptionally() throws Exception
+    {
+        IOException failure = new IOException("Repository not available");
+        when(client.getAclReaders(emptyList())).thenThrow(failure);
+        AsyncSOLRAPIClient asyncClient = new AsyncSOLRAPIClient(client, Runnable::run, 1);
+
+        try
+        {
+            asyncClient.getAclReaders(emptyList()).get();
+            fail("The request failure should have been propagated.");
+        }
+        catch (ExecutionException exception)
+        {
+            assertSame(failure, exception.getCause());
+        }
+        assertEquals(0, asyncClient.getInFlightRequests());
+    }
+
+    @Test
+    public void rejectedRequest_completesTheFutureExceptionally()
+    {
+        AsyncSOLRAPIClient asyncClient = new AsyncSOLRAPIClient(client, task -> {
+            throw new RejectedExecutionException();
+        }, 1);
+
+        CompletableFuture<Transactions> transactions = asyncClient.getTransactions(0L, null, null, null, 10);
+
+        assertTrue(transactions.isCompletedExceptionally());
+        assertEquals(0, asyncClient.getInFlightRequests());
+    }
+}
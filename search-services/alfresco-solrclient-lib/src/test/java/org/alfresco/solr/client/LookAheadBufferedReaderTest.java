@@ -197,6 +197,21 @@ public class LookAheadBufferedReaderTest
         assertEquals(LookAheadBufferedReader.BUFFERING_DISABLED_INFO_MESSAGE, collectedData);
     }
 
+    @Test
+    public void collectEverythingModeShouldCollectBulkReads() throws Exception
+    {
+        Reader reader = new StringReader(data);
+        LookAheadBufferedReader classUnderTest = new LookAheadBufferedReader(reader, 10, false, true);
+
+        // Read 12 chars at once, as a streaming parser does
+        char[] buffer = new char[12];
+        assertEquals(12, classUnderTest.read(buffer, 0, buffer.length));
+
+        String collectedData = classUnderTest.lookAheadAndGetBufferedContent();
+
+        assertEquals(data, collectedData);
+    }
+
     private void consume(Reader reader)
     {
         try
@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * Alfresco Search Services
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+package org.alfresco.solr.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.alfresco.repo.dictionary.NamespaceDAO;
+import org.alfresco.service.cmr.dictionary.DataTypeDefinition;
+import org.alfresco.service.cmr.dictionary.DictionaryService;
+import org.alfresco.service.cmr.dictionary.PropertyDefinition;
+import org.alfresco.service.namespace.QName;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the streaming decoding of the Repository responses builds the same objects as the {@link JSONObject} one.
+ */
+public class SOLRAPIClientDecodingTest
+{
+    private static final String CM = "{http://www.alfresco.org/model/content/1.0}";
+
+    private static final String NODES =
+            "{\"nodes\":[" +
+                "{\"id\":1,\"nodeRef\":\"workspace://SpacesStore/a\",\"txnId\":10,\"aclId\":5,\"status\":\"u\",\"tenant\":\"\"}," +
+                "{\"id\":2,\"nodeRef\":\"workspace://SpacesStore/b\",\"txnId\":10,\"aclId\":5,\"status\":\"d\",\"explicitShardId\":3}" +
+            "]}";
+
+    private static final String NODES_METADATA =
+            "{\"nodes\":[{" +
+                "\"id\":1," +
+                "\"tenantDomain\":\"\"," +
+                "\"aclId\":5," +
+                "\"txnId\":10," +
+                "\"nodeRef\":\"workspace://SpacesStore/a\"," +
+                "\"type\":\"" + CM + "content\"," +
+                "\"aspects\":[\"" + CM + "auditable\",\"" + CM + "titled\"]," +
+                "\"paths\":[{\"path\":\"/" + CM + "company_home\",\"qname\":\"" + CM + "a\",\"apath\":\"/1/2\"}]," +
+                "\"namePaths\":[{\"namePath\":[\"Company Home\",\"a\"]}]," +
+                "\"ancestors\":[\"workspace://SpacesStore/root\"]," +
+                "\"properties\":{" +
+                    "\"" + CM + "name\":\"a\"," +
+                    "\"" + CM + "title\":[{\"locale\":\"en_\",\"value\":\"A title\"},{\"locale\":\"fr_\",\"value\":null}]," +
+                    "\"" + CM + "content\":{\"contentId\":7,\"encoding\":\"UTF-8\",\"locale\":\"en_\",\"mimetype\":\"text/plain\",\"size\":12}," +
+                    "\"" + CM + "tags\":[\"t1\",null,\"t2\"]," +
+                    "\"" + CM + "description\":null" +
+                "}," +
+                "\"parentAssocsCrc\":99," +
+                "\"parentAssocs\":[]," +
+                "\"childIds\":[3,4]," +
+                "\"owner\":\"admin\"," +
+                "\"unknownField\":{\"nested\":[1,2]}" +
+            "}]}";
+
+    private static final String ACL_READERS =
+            "{\"aclsReaders\":[" +
+                "{\"aclId\":5,\"readers\":[\"GROUP_EVERYONE\",\"admin\"],\"denied\":[],\"aclChangeSetId\":2,\"tenantDomain\":\"\"}" +
+            "]}";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private SOLRAPIClient client;
+
+    @Before
+    public void setUp()
+    {
+        DictionaryService dictionaryService = mock(DictionaryService.class);
+        mockProperty(dictionaryService, "title", DataTypeDefinition.MLTEXT, false);
+        mockProperty(dictionaryService, "content", DataTypeDefinition.CONTENT, false);
+        mockProperty(dictionaryService, "tags", DataTypeDefinition.TEXT, true);
+
+        client = new SOLRAPIClient(null, dictionaryService, mock(NamespaceDAO.class));
+    }
+
+    @Test
+    public void readNodes_sameAsJSONObject() throws Exception
+    {
+        List<Node> streamed = client.readNodes(parser(NODES));
+        List<Node> expected = client.nodesFromJSON(new JSONObject(NODES));
+
+        assertEquals(expected.toString(), streamed.toString());
+    }
+
+    @Test
+    public void readNodesMetaData_sameAsJSONObject() throws Exception
+    {
+        NodeMetaData streamed = client.readNodesMetaData(parser(NODES_METADATA)).get(0);
+        NodeMetaData expected = client.nodesMetaDataFromJSON(new JSONObject(NODES_METADATA)).get(0);
+
+        assertEquals(expected.getId(), streamed.getId());
+        assertEquals(expected.getTenantDomain(), streamed.getTenantDomain());
+        assertEquals(expected.getAclId(), streamed.getAclId());
+        assertEquals(expected.getTxnId(), streamed.getTxnId());
+        assertEquals(expected.getNodeRef(), streamed.getNodeRef());
+        assertEquals(expected.getType(), streamed.getType());
+        assertEquals(expected.getAspects(), streamed.getAspects());
+        assertEquals(expected.getPaths(), streamed.getPaths());
+        assertEquals(expected.getAncestorPaths(), streamed.getAncestorPaths());
+        assertEquals(expected.getNamePaths(), streamed.getNamePaths());
+        assertEquals(expected.getAncestors(), streamed.getAncestors());
+        assertEquals(toString(expected.getProperties()), toString(streamed.getProperties()));
+        assertEquals(expected.getParentAssocsCrc(), streamed.getParentAssocsCrc());
+        assertEquals(expected.getParentAssocs(), streamed.getParentAssocs());
+        assertEquals(expected.getChildIds(), streamed.getChildIds());
+        assertEquals(expected.getOwner(), streamed.getOwner());
+    }
+
+    @Test
+    public void readAclReaders_sameAsJSONObject() throws Exception
+    {
+        List<AclReaders> streamed = client.readAclReaders(parser(ACL_READERS));
+        List<AclReaders> expected = client.aclReadersFromJSON(new JSONObject(ACL_READERS));
+
+        assertEquals(expected, streamed);
+        assertEquals(expected.get(0).getReaders(), streamed.get(0).getReaders());
+    }
+
+    @Test(expected = JSONException.class)
+    public void readNodes_missingArray_shouldFail() throws Exception
+    {
+        client.readNodes(parser("{\"somethingElse\":[]}"));
+    }
+
+    private JsonParser parser(String json) throws Exception
+    {
+        return jsonFactory.createParser(json);
+    }
+
+    private static void mockProperty(DictionaryService dictionaryService, String localName, QName dataTypeName, boolean multiValued)
+    {
+        DataTypeDefinition dataType = mock(DataTypeDefinition.class);
+        when(dataType.getName()).thenReturn(dataTypeName);
+        PropertyDefinition propertyDefinition = mock(PropertyDefinition.class);
+        when(propertyDefinition.getDataType()).thenReturn(dataType);
+        when(propertyDefinition.isMultiValued()).thenReturn(multiValued);
+        when(dictionaryService.getProperty(QName.createQName(CM + localName))).thenReturn(propertyDefinition);
+    }
+
+    /** Property maps may have different iteration orders, depending on their initial capacity. */
+    private static Map<String, String> toString(Map<QName, PropertyValue> properties)
+    {
+        Map<String, String> sorted = new TreeMap<>();
+        properties.forEach((name, value) -> sorted.put(name.toString(), String.valueOf(value)));
+        return sorted;
+    }
+}